@@ -0,0 +1,13 @@
+package moanote.backend.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 주기적인 작업 처리를 위한 설정
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+}
@@ -0,0 +1,44 @@
+package moanote.backend.controller;
+
+import moanote.backend.dto.CacheStatsDTO;
+import moanote.backend.service.AclService;
+import moanote.backend.service.MetadataCacheService;
+import moanote.backend.service.SymbolIndexService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 서비스 수준 cache 의 적중률 지표를 조회하는 컨트롤러입니다.
+ */
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController {
+
+  private final AclService aclService;
+
+  private final MetadataCacheService metadataCacheService;
+
+  private final SymbolIndexService symbolIndexService;
+
+  @Autowired
+  public CacheController(AclService aclService, MetadataCacheService metadataCacheService,
+      SymbolIndexService symbolIndexService) {
+    this.aclService = aclService;
+    this.metadataCacheService = metadataCacheService;
+    this.symbolIndexService = symbolIndexService;
+  }
+
+  @GetMapping("/stats")
+  public ResponseEntity<List<CacheStatsDTO>> stats() {
+    List<CacheStatsDTO> stats = new ArrayList<>(aclService.stats());
+    stats.addAll(metadataCacheService.stats());
+    stats.addAll(symbolIndexService.stats());
+    return ResponseEntity.ok().body(stats);
+  }
+}
@@ -1,11 +1,15 @@
 package moanote.backend.controller;
 
 import com.github.f4b6a3.uuid.util.UuidValidator;
+import moanote.backend.domain.LWWDiagramElement;
 import moanote.backend.domain.LWWNoteContent;
 import moanote.backend.dto.CRDTOperationDTO;
 import moanote.backend.dto.CaretDTO;
+import moanote.backend.dto.LWWElementStateDTO;
+import moanote.backend.dto.LWWPatchDTO;
 import moanote.backend.dto.LWWStateDTO;
 import moanote.backend.dto.TextEditParticipateDTO;
+import moanote.backend.service.AclService;
 import moanote.backend.service.LWWCollaborativeEditingService;
 import moanote.backend.service.TextCollaborativeEditingService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,9 +17,12 @@ import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.stereotype.Controller;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Controller
@@ -25,12 +32,24 @@ public class CollaborativeEditingController {
 
   private final TextCollaborativeEditingService textCollaborativeEditingService;
 
+  private final SimpMessagingTemplate messagingTemplate;
+
+  private final AclService aclService;
+
+  /**
+   * 세션 참여 시 확인한 사용자 id 를 STOMP session attribute 에 저장할 때 사용하는 key
+   */
+  private static final String PARTICIPANT_ATTRIBUTE = "participantUserId";
+
   @Autowired
   public CollaborativeEditingController(
       LWWCollaborativeEditingService diagramCollaborativeEditingService,
-      TextCollaborativeEditingService textCollaborativeEditingService) {
+      TextCollaborativeEditingService textCollaborativeEditingService,
+      SimpMessagingTemplate messagingTemplate, AclService aclService) {
     this.diagramCollaborativeEditingService = diagramCollaborativeEditingService;
     this.textCollaborativeEditingService = textCollaborativeEditingService;
+    this.messagingTemplate = messagingTemplate;
+    this.aclService = aclService;
   }
 
   /**
@@ -45,21 +64,158 @@ public class CollaborativeEditingController {
    *  }
    *  </pre>
    *
+   * timeStamp 는 HybridLogicalClock 값이어야 하며, 이전 방식의 작은 값은 서버가 받은 시각으로 다시 발급하여 전파합니다.
+   * 병합에서 이긴 수정 사항만 구독자에게 전파합니다. 진 수정 사항은 전파하지 않고, 보낸 사용자에게만
+   * "/user/queue/docs/{segmentId}" 로 세션의 현재 상태를 보냅니다.
+   *
    * @param editedContent 문서 동기화를 위해 주고 받는 수정 사항
+   * @return 세션에 반영된 수정 사항. 반영되지 않았으면 전파하지 않습니다.
    */
   @MessageMapping("/docs/diagram/edit/{segmentId}")
   @SendTo("/topic/docs/{segmentId}")
   public LWWStateDTO<LWWNoteContent> editingDocs(LWWStateDTO<LWWNoteContent> editedContent,
-      @DestinationVariable("segmentId") String segmentId) {
+      @DestinationVariable("segmentId") String segmentId,
+      SimpMessageHeaderAccessor messageHeaderAccessor) {
     System.out.println("Edited content received");
-    // TODO@ (ACLService) ACL check here
+    if (!UuidValidator.isValid(segmentId)) {
+      System.out.println("Doc ID not valid");
+      return null;
+    }
+    UUID sessionId = UUID.fromString(segmentId);
+    if (!canWriteSegment(messageHeaderAccessor, sessionId)) {
+      return null;
+    }
+    var applied = diagramCollaborativeEditingService.editSegment(editedContent, sessionId);
+    if (applied.isPresent()) {
+      broadcastElementStates(segmentId, sessionId);
+      return applied.get();
+    }
+    sendToSender(messageHeaderAccessor, "/queue/docs/" + segmentId,
+        diagramCollaborativeEditingService.getSessionState(sessionId));
+    return null;
+  }
 
+  /**
+   * <pre>
+   * 다이어그램 content 전체 대신 바뀐 부분만 보내는 편집 요청입니다.
+   * body : LWWPatchDTO
+   * {
+   *  "stateId":String,
+   *  "timeStamp":Number,
+   *  "baseStateId":String,     // patch 를 만든 기준 상태
+   *  "baseTimeStamp":Number,
+   *  "splices":[{"offset":Number, "deleteCount":Number, "insert":String}],
+   *  "resultLength":Number
+   * }
+   * 적용된 patch 는 "/topic/docs/{segmentId}/patch" 로 전파합니다.
+   * 기준 상태가 서버의 현재 상태와 다르거나 patch 가 올바르지 않으면, 보낸 사용자에게만 "/user/queue/docs/{segmentId}" 로 전체 상태를
+   * 보냅니다.
+   * </pre>
+   *
+   * @param patch 바뀐 부분만 담은 수정 사항
+   * @return 세션에 반영된 patch. 반영되지 않았으면 전파하지 않습니다.
+   */
+  @MessageMapping("/docs/diagram/patch/{segmentId}")
+  @SendTo("/topic/docs/{segmentId}/patch")
+  public LWWPatchDTO patchingDocs(LWWPatchDTO patch,
+      @DestinationVariable("segmentId") String segmentId,
+      SimpMessageHeaderAccessor messageHeaderAccessor) {
     if (!UuidValidator.isValid(segmentId)) {
       System.out.println("Doc ID not valid");
       return null;
     }
-    diagramCollaborativeEditingService.editSegment(editedContent, UUID.fromString(segmentId));
-    return editedContent;
+    UUID sessionId = UUID.fromString(segmentId);
+    if (!canWriteSegment(messageHeaderAccessor, sessionId)) {
+      return null;
+    }
+    var applied = diagramCollaborativeEditingService.patchSegment(patch, sessionId);
+    if (applied.isPresent()) {
+      broadcastElementStates(segmentId, sessionId);
+      LWWStateDTO<LWWNoteContent> state = diagramCollaborativeEditingService.getSessionState(sessionId);
+      if (!state.stateId().equals(applied.get().stateId())
+          || state.timeStamp() != applied.get().timeStamp()) {
+        // 요소 상태와 병합하여 content 가 patch 결과와 달라졌으면 전체 상태를 전파합니다.
+        messagingTemplate.convertAndSend("/topic/docs/" + segmentId, state);
+      }
+      return applied.get();
+    }
+    sendToSender(messageHeaderAccessor, "/queue/docs/" + segmentId,
+        diagramCollaborativeEditingService.getSessionState(sessionId));
+    return null;
+  }
+
+  /**
+   * <pre>
+   * 메시지를 보낸 사용자를 찾습니다.
+   * 세션 참여 시 저장한 session attribute 를 우선 사용하고, 없으면 "participantUserId" native header 를 사용합니다.
+   * </pre>
+   *
+   * @return 사용자 id. 알 수 없으면 null
+   */
+  private UUID participantOf(SimpMessageHeaderAccessor messageHeaderAccessor) {
+    Map<String, Object> attributes = messageHeaderAccessor.getSessionAttributes();
+    if (attributes != null && attributes.get(PARTICIPANT_ATTRIBUTE) instanceof UUID userId) {
+      return userId;
+    }
+    String participantUserId = messageHeaderAccessor.getFirstNativeHeader("participantUserId");
+    return UuidValidator.isValid(participantUserId) ? UUID.fromString(participantUserId) : null;
+  }
+
+  /**
+   * 세션 참여 권한을 확인하고, 권한이 있으면 이후 편집 요청의 권한 확인을 위해 사용자 id 를 STOMP 세션에 저장합니다.
+   *
+   * @return 참여를 허용하면 true
+   */
+  private boolean admitParticipant(SimpMessageHeaderAccessor messageHeaderAccessor, UUID userId,
+      boolean permitted) {
+    if (!permitted) {
+      System.out.println("Permission denied : user=" + userId);
+      return false;
+    }
+    Map<String, Object> attributes = messageHeaderAccessor.getSessionAttributes();
+    if (attributes != null) {
+      attributes.put(PARTICIPANT_ATTRIBUTE, userId);
+    }
+    return true;
+  }
+
+  /**
+   * @return 메시지를 보낸 사용자가 세그먼트를 수정할 수 있는지 여부
+   */
+  private boolean canWriteSegment(SimpMessageHeaderAccessor messageHeaderAccessor,
+      UUID segmentId) {
+    UUID userId = participantOf(messageHeaderAccessor);
+    if (userId == null || !aclService.canWriteSegment(segmentId, userId)) {
+      System.out.println("Permission denied : user=" + userId + " segment=" + segmentId);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * 전체 content 편집이 바꾼 요소 상태를 요소 단위 참여자에게 전파합니다. 요소가 없는 다이어그램이면 보내지 않습니다.
+   */
+  private void broadcastElementStates(String segmentId, UUID sessionId) {
+    var elementStates = diagramCollaborativeEditingService.getElementStates(sessionId);
+    if (!elementStates.isEmpty()) {
+      messagingTemplate.convertAndSend("/topic/docs/" + segmentId + "/elements", elementStates);
+    }
+  }
+
+  /**
+   * 메시지를 보낸 STOMP 세션에게만 payload 를 보냅니다.
+   */
+  private void sendToSender(SimpMessageHeaderAccessor messageHeaderAccessor, String destination,
+      Object payload) {
+    String stompSessionId = messageHeaderAccessor.getSessionId();
+    if (stompSessionId == null) {
+      return;
+    }
+    SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+    headers.setSessionId(stompSessionId);
+    headers.setLeaveMutable(true);
+    messagingTemplate.convertAndSendToUser(stompSessionId, destination, payload,
+        headers.getMessageHeaders());
   }
 
   /**
@@ -82,17 +238,138 @@ public class CollaborativeEditingController {
       System.out.println("Doc ID not valid");
       return null;
     }
+    if (!admitParticipant(messageHeaderAccessor, UUID.fromString(participantUserId),
+        aclService.canReadSegment(UUID.fromString(segmentId), UUID.fromString(participantUserId)))) {
+      return null;
+    }
     return diagramCollaborativeEditingService.participateSession(
         UUID.fromString(participantUserId),
         UUID.fromString(segmentId));
   }
 
+  /**
+   * 다이어그램 동시 편집 세션에서 나갈 때 호출되는 메서드. STOMP Message header 에 "participantUserId" 속성이 있어야 함
+   * 마지막 참여자가 나가면 저장되지 않은 편집 사항을 저장하고 세션을 닫습니다.
+   *
+   * @param messageHeaderAccessor STOMP message header accessor "participantUserId" 속성을 요구함
+   * @param segmentId             세그먼트 ID
+   */
+  @MessageMapping("/docs/diagram/leave/{segmentId}")
+  public void leaveDiagramSession(SimpMessageHeaderAccessor messageHeaderAccessor,
+      @DestinationVariable("segmentId") String segmentId) {
+    String participantUserId = messageHeaderAccessor.getFirstNativeHeader("participantUserId");
+    if (!UuidValidator.isValid(participantUserId) || !UuidValidator.isValid(segmentId)) {
+      System.out.println("Leave request not valid");
+      return;
+    }
+    diagramCollaborativeEditingService.leaveSession(UUID.fromString(participantUserId),
+        UUID.fromString(segmentId));
+  }
+
+  /**
+   * <pre>
+   * 다이어그램의 바뀐 요소만 주고 받는 편집 요청입니다. 병합에서 이긴 요소만 구독자에게 전파합니다.
+   * body : List&lt;LWWElementStateDTO&lt;LWWDiagramElement&gt;&gt;
+   * [
+   *  {
+   *    "elementId":String,
+   *    "stateId":String,
+   *    "timeStamp":Number,
+   *    "value":{
+   *        "content":String
+   *      }             // 요소를 삭제하는 경우 null
+   *  }
+   * ]
+   * </pre>
+   *
+   * 병합에서 진 요소는 보낸 사용자에게만 "/user/queue/docs/{segmentId}/elements" 로 현재 상태를 보냅니다.
+   * content 가 요소 문서가 아니어서 편집이 거절되면 "/user/queue/docs/{segmentId}" 로 현재 content 를 보냅니다.
+   *
+   * @param editedElements 바뀐 요소들의 상태
+   * @return 세션에 반영된 요소들의 상태. 반영된 요소가 없으면 전파하지 않습니다.
+   */
+  @MessageMapping("/docs/diagram/elements/edit/{segmentId}")
+  @SendTo("/topic/docs/{segmentId}/elements")
+  public List<LWWElementStateDTO<LWWDiagramElement>> editingDiagramElements(
+      List<LWWElementStateDTO<LWWDiagramElement>> editedElements,
+      @DestinationVariable("segmentId") String segmentId,
+      SimpMessageHeaderAccessor messageHeaderAccessor) {
+    if (!UuidValidator.isValid(segmentId)) {
+      System.out.println("Doc ID not valid");
+      return null;
+    }
+    UUID sessionId = UUID.fromString(segmentId);
+    if (!canWriteSegment(messageHeaderAccessor, sessionId)) {
+      return null;
+    }
+    var applied = diagramCollaborativeEditingService.editElements(editedElements, sessionId);
+    if (applied.size() < editedElements.size()) {
+      // 같은 요소에 대해 이긴 편집이 있으면 그 상태가 전파되므로, 이긴 편집이 없는 요소만 따로 보냅니다.
+      List<String> acceptedElementIds = applied.stream().map(LWWElementStateDTO::elementId).toList();
+      List<String> rejectedElementIds = editedElements.stream()
+          .map(LWWElementStateDTO::elementId)
+          .filter(elementId -> !acceptedElementIds.contains(elementId))
+          .toList();
+      if (!rejectedElementIds.isEmpty()) {
+        sendToSender(messageHeaderAccessor, "/queue/docs/" + segmentId + "/elements",
+            diagramCollaborativeEditingService.getElementStates(sessionId, rejectedElementIds));
+      }
+      if (!diagramCollaborativeEditingService.acceptsElementEdits(sessionId)) {
+        // 요소 문서가 아닌 content 는 요소 편집으로 바꿀 수 없으므로, 보낸 사용자에게 현재 content 를 보냅니다.
+        sendToSender(messageHeaderAccessor, "/queue/docs/" + segmentId,
+            diagramCollaborativeEditingService.getSessionState(sessionId));
+      }
+    }
+    if (applied.isEmpty()) {
+      return null;
+    }
+    // 요소 편집은 content 도 바꾸므로 전체 content 를 다루는 참여자에게도 전파합니다.
+    messagingTemplate.convertAndSend("/topic/docs/" + segmentId,
+        diagramCollaborativeEditingService.getSessionState(sessionId));
+    return applied;
+  }
+
+  /**
+   * 요소 단위로 다이어그램을 편집하려는 사용자가 구독을 요청할 때 호출되는 메서드. STOMP Message header 에 "participantUserId" 속성이
+   * 있어야 함
+   *
+   * @param messageHeaderAccessor STOMP message header accessor "participantUserId" 속성을 요구함
+   * @param segmentId             세그먼트 ID
+   * @return 세션의 모든 요소 상태
+   */
+  @SubscribeMapping("/docs/diagram/elements/participate/{segmentId}")
+  public List<LWWElementStateDTO<LWWDiagramElement>> participateDiagramElementSession(
+      SimpMessageHeaderAccessor messageHeaderAccessor, @DestinationVariable("segmentId") String segmentId) {
+    String participantUserId = messageHeaderAccessor.getFirstNativeHeader("participantUserId");
+    if (!UuidValidator.isValid(participantUserId)) {
+      System.out.println("User Access not valid");
+      return null;
+    }
+    if (!UuidValidator.isValid(segmentId)) {
+      System.out.println("Doc ID not valid");
+      return null;
+    }
+    if (!admitParticipant(messageHeaderAccessor, UUID.fromString(participantUserId),
+        aclService.canReadSegment(UUID.fromString(segmentId), UUID.fromString(participantUserId)))) {
+      return null;
+    }
+    return diagramCollaborativeEditingService.participateElementSession(
+        UUID.fromString(participantUserId),
+        UUID.fromString(segmentId));
+  }
+
   @MessageMapping("/docs/text/edit/{noteId}/{segmentId}")
   @SendTo("/topic/docs/text/{noteId}/{segmentId}")
   public List<CRDTOperationDTO> editingDocs(List<CRDTOperationDTO> editOperations,
       @DestinationVariable("segmentId") UUID segmentId,
-      @DestinationVariable("noteId") UUID noteId) {
+      @DestinationVariable("noteId") UUID noteId,
+      SimpMessageHeaderAccessor messageHeaderAccessor) {
     System.out.println("Edit operation received: " + editOperations);
+    UUID userId = participantOf(messageHeaderAccessor);
+    if (userId == null || !aclService.canWriteNote(noteId, userId)) {
+      System.out.println("Permission denied : user=" + userId + " note=" + noteId);
+      return null;
+    }
     textCollaborativeEditingService.editSegment(editOperations, segmentId, noteId);
     return editOperations;
   }
@@ -117,6 +394,10 @@ public class CollaborativeEditingController {
       System.out.println("Doc ID not valid");
       return null;
     }
+    if (!admitParticipant(messageHeaderAccessor, UUID.fromString(participantUserId),
+        aclService.canReadNote(UUID.fromString(noteId), UUID.fromString(participantUserId)))) {
+      return null;
+    }
     return textCollaborativeEditingService.participateSession(UUID.fromString(participantUserId),
         UUID.fromString(noteId));
   }
@@ -0,0 +1,36 @@
+package moanote.backend.controller;
+
+/**
+ * 조건부 GET 요청의 If-None-Match 헤더를 처리하기 위한 유틸리티입니다.
+ */
+final class ETags {
+
+  private ETags() {
+  }
+
+  /**
+   * <pre>
+   * If-None-Match 헤더가 eTag 와 일치하는지 확인합니다.
+   * 헤더에 여러 ETag 가 ',' 로 나열되거나 weak ETag(W/) 가 오는 경우도 처리합니다.
+   * </pre>
+   *
+   * @param ifNoneMatch 요청의 If-None-Match 헤더. 없으면 null
+   * @param eTag        현재 리소스의 ETag
+   * @return 클라이언트가 가진 리소스가 최신이면 true
+   */
+  static boolean matches(String ifNoneMatch, String eTag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      candidate = candidate.trim();
+      if (candidate.startsWith("W/")) {
+        candidate = candidate.substring(2);
+      }
+      if (candidate.equals("*") || candidate.equals(eTag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
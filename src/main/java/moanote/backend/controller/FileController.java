@@ -5,10 +5,15 @@ import moanote.backend.dto.CollaboratorDTO;
 import moanote.backend.dto.FileCreateDTO;
 import moanote.backend.dto.FileDTO;
 import moanote.backend.dto.FileEditDTO;
+import moanote.backend.dto.FilePageDTO;
+import moanote.backend.dto.FilePageRequestDTO;
 import moanote.backend.dto.ShareFileDTO;
+import moanote.backend.entity.File.FileType;
 import moanote.backend.entity.FileUserData.Permission;
 import moanote.backend.service.FileService;
 import moanote.backend.service.UserService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -26,11 +31,23 @@ public class FileController {
     this.fileService = fileService;
   }
 
+  /**
+   * <pre>
+   * 디렉토리 아래의 파일 목록을 반환합니다. 응답에는 디렉토리 목록 버전으로 만든 ETag 가 포함됩니다.
+   * If-None-Match 가 현재 ETag 와 같다면 목록을 불러오지 않고 304 를 반환합니다.
+   * </pre>
+   */
   @GetMapping({"/list", "/list/{fileId}"})
-  public ResponseEntity<List<FileDTO>> listFiles(@PathVariable(required = false) UUID fileId, @RequestParam(name = "user", required = true) UUID userId, @RequestParam(name = "recursive", defaultValue = "false") boolean recursive) {
+  public ResponseEntity<List<FileDTO>> listFiles(@PathVariable(required = false) UUID fileId, @RequestParam(name = "user", required = true) UUID userId, @RequestParam(name = "recursive", defaultValue = "false") boolean recursive,
+      @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
     try {
-      return ResponseEntity.ok().body(fileService.getFilesInDirectory(fileId, userId, recursive));
+      String eTag = fileService.getListingETag(fileId, userId, recursive);
+      if (ETags.matches(ifNoneMatch, eTag)) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+      }
+      return ResponseEntity.ok().eTag(eTag)
+          .body(fileService.getFilesInDirectory(fileId, userId, recursive));
     } catch (NoSuchElementException e) {
       System.out.println(e.getMessage());
       return ResponseEntity.status(404).body(null);
@@ -70,6 +87,93 @@ public class FileController {
     }
   }
 
+  /**
+   * <pre>
+   * 디렉토리 바로 아래의 파일을 cursor 기반으로 한 페이지씩 반환합니다.
+   * 응답의 nextCursor 를 다음 요청의 cursor 로 넘기면 이어지는 페이지를 받을 수 있습니다.
+   * </pre>
+   *
+   * @param fileId 디렉토리 ID, null 이면 루트 디렉토리
+   * @param order  asc 이면 오래된 파일부터, desc 이면 최신 파일부터 반환합니다.
+   */
+  @GetMapping({"/list/page", "/list/{fileId}/page"})
+  public ResponseEntity<FilePageDTO> listFilesPage(@PathVariable(required = false) UUID fileId,
+      @RequestParam(name = "user") UUID userId,
+      @RequestParam(name = "cursor", required = false) UUID cursor,
+      @RequestParam(name = "size", defaultValue = "" + FilePageRequestDTO.DEFAULT_SIZE) int size,
+      @RequestParam(name = "type", required = false) FileType type,
+      @RequestParam(name = "namePrefix", required = false) String namePrefix,
+      @RequestParam(name = "githubImported", required = false) Boolean githubImported,
+      @RequestParam(name = "order", defaultValue = "asc") String order) {
+
+    FilePageRequestDTO request;
+    try {
+      request = toPageRequest(cursor, size, type, namePrefix, githubImported, order);
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.badRequest().body(null);
+    }
+
+    try {
+      return ResponseEntity.ok().body(fileService.getFilePageInDirectory(fileId, userId, request));
+    } catch (NoSuchElementException e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.status(404).body(null);
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.status(403).body(null);
+    } catch (Exception e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.status(500).body(null);
+    }
+  }
+
+  /**
+   * 유저가 접근할 수 있는 모든 파일을 cursor 기반으로 한 페이지씩 반환합니다.
+   *
+   * @see #listFilesPage
+   */
+  @GetMapping("/all/{userId}/page")
+  public ResponseEntity<FilePageDTO> allFileAccessiblePage(@PathVariable UUID userId,
+      @RequestParam(name = "cursor", required = false) UUID cursor,
+      @RequestParam(name = "size", defaultValue = "" + FilePageRequestDTO.DEFAULT_SIZE) int size,
+      @RequestParam(name = "type", required = false) FileType type,
+      @RequestParam(name = "namePrefix", required = false) String namePrefix,
+      @RequestParam(name = "githubImported", required = false) Boolean githubImported,
+      @RequestParam(name = "order", defaultValue = "asc") String order) {
+
+    FilePageRequestDTO request;
+    try {
+      request = toPageRequest(cursor, size, type, namePrefix, githubImported, order);
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.badRequest().body(null);
+    }
+
+    try {
+      return ResponseEntity.ok().body(fileService.getFileDTOPageByUserId(userId, request));
+    } catch (NoSuchElementException e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.status(404).body(null);
+    } catch (Exception e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.status(500).body(null);
+    }
+  }
+
+  private static FilePageRequestDTO toPageRequest(UUID cursor, int size, FileType type,
+      String namePrefix, Boolean githubImported, String order) {
+    boolean descending;
+    if (order.equalsIgnoreCase("asc")) {
+      descending = false;
+    } else if (order.equalsIgnoreCase("desc")) {
+      descending = true;
+    } else {
+      throw new IllegalArgumentException("Unknown order: " + order);
+    }
+    return new FilePageRequestDTO(cursor, size, type, namePrefix, githubImported, descending);
+  }
+
   /**
    * <pre>
    * 새로운 파일을 생성합니다.
@@ -1,5 +1,6 @@
 package moanote.backend.controller;
 
+import moanote.backend.dto.CodeSearchHitDTO;
 import moanote.backend.dto.FileDTO;
 import moanote.backend.dto.GithubBranchCommitRequest;
 import moanote.backend.dto.GithubFetchRequest;
@@ -10,6 +11,7 @@ import moanote.backend.dto.GithubOAuthAuthorizeResponse;
 import moanote.backend.dto.GithubOAuthCallbackRequest;
 import moanote.backend.service.GithubIntegrationService;
 import moanote.backend.service.GithubOAuthService;
+import moanote.backend.service.CodeSearchService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -185,4 +187,31 @@ public class GithubController {
       return ResponseEntity.internalServerError().build();
     }
   }
+
+  /**
+   * <pre>
+   *   import 한 저장소의 파일에서 검색어에 일치하는 줄을 찾습니다.
+   *   regex 가 true 이면 검색어를 정규식으로, 아니면 부분 문자열로 취급합니다.
+   * </pre>
+   *
+   * @param repositoryId 저장소 루트 디렉토리의 파일 ID
+   * @return 일치하는 줄의 파일, 경로, 줄 번호와 내용
+   */
+  @GetMapping("/search")
+  public ResponseEntity<List<CodeSearchHitDTO>> searchRepository(@RequestParam("userId") UUID userId,
+      @RequestParam("repositoryId") UUID repositoryId, @RequestParam("q") String query,
+      @RequestParam(name = "regex", defaultValue = "false") boolean regex,
+      @RequestParam(name = "caseSensitive", defaultValue = "false") boolean caseSensitive,
+      @RequestParam(name = "maxHits", defaultValue = "" + CodeSearchService.DEFAULT_MAX_HITS) int maxHits) {
+    try {
+      return ResponseEntity.ok(githubIntegrationService.searchRepository(userId, repositoryId, query, regex,
+          caseSensitive, maxHits));
+    } catch (NoSuchElementException e) {
+      return ResponseEntity.status(404).build();
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().build();
+    } catch (Exception e) {
+      return ResponseEntity.internalServerError().build();
+    }
+  }
 }
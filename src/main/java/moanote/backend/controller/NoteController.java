@@ -5,6 +5,8 @@ import moanote.backend.dto.NoteDTO;
 import moanote.backend.dto.SegmentType;
 import moanote.backend.service.NoteService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -23,11 +25,22 @@ public class NoteController {
     this.noteService = noteService;
   }
 
+  /**
+   * <pre>
+   * 노트의 메타데이터를 반환합니다. 응답에는 노트와 파일의 버전으로 만든 ETag 가 포함됩니다.
+   * If-None-Match 가 현재 ETag 와 같다면 메타데이터를 불러오지 않고 304 를 반환합니다.
+   * </pre>
+   */
   @GetMapping("/metadata/{fileId}")
   public ResponseEntity<NoteDTO> getNoteMetadata(@PathVariable("fileId") UUID fileId,
-      @RequestParam(name = "user") UUID userId) {
+      @RequestParam(name = "user") UUID userId,
+      @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
     try {
-      return ResponseEntity.ok().body(noteService.getNoteMetadata(fileId, userId));
+      String eTag = noteService.getNoteMetadataETag(fileId, userId);
+      if (ETags.matches(ifNoneMatch, eTag)) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+      }
+      return ResponseEntity.ok().eTag(eTag).body(noteService.getNoteMetadata(fileId, userId));
     } catch (NoSuchElementException e) {
       System.out.println(e.getMessage());
       return ResponseEntity.status(404).build();
@@ -57,6 +70,28 @@ public class NoteController {
     }
   }
 
+  /**
+   * 세그먼트를 after 세그먼트 바로 뒤로 옮깁니다. after 가 없으면 노트의 처음으로 옮깁니다.
+   */
+  @PostMapping("/{fileId}/move/segment")
+  public ResponseEntity<Void> moveSegment(@PathVariable("fileId") UUID fileId,
+      @RequestParam(name = "user") UUID userId, @RequestParam(name = "segment") UUID segmentId,
+      @RequestParam(name = "after", required = false) UUID afterSegmentId) {
+    try {
+      noteService.moveSegment(fileId, segmentId, afterSegmentId, userId);
+      return ResponseEntity.noContent().build();
+    } catch (NoSuchElementException e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.status(404).build();
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.status(403).build();
+    } catch (Exception e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.status(500).build();
+    }
+  }
+
   @PostMapping("/{fileId}/delete/segment")
   public ResponseEntity<Void> deleteSegment(@PathVariable("fileId") UUID fileId,
       @RequestParam(name = "user") UUID userId, @RequestParam(name = "segment") UUID segmentId) {
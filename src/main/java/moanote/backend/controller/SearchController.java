@@ -0,0 +1,53 @@
+package moanote.backend.controller;
+
+import moanote.backend.dto.SearchPageDTO;
+import moanote.backend.service.SearchIndexService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/search")
+public class SearchController {
+
+  private final SearchIndexService searchIndexService;
+
+  @Autowired
+  public SearchController(SearchIndexService searchIndexService) {
+    this.searchIndexService = searchIndexService;
+  }
+
+  /**
+   * <pre>
+   * 유저가 접근할 수 있는 노트를 파일 이름과 내용으로 검색하여 관련도 순서로 한 페이지씩 반환합니다.
+   * 검색어가 비어 있거나 페이지 범위가 올바르지 않으면 400 을 반환합니다.
+   * </pre>
+   *
+   * @param query 검색어. 모든 단어가 파일 이름이나 내용에 포함된 노트만 반환합니다.
+   * @param page  0 부터 시작하는 페이지 번호
+   */
+  @GetMapping
+  public ResponseEntity<SearchPageDTO> search(@RequestParam(name = "user") UUID userId,
+      @RequestParam(name = "q") String query,
+      @RequestParam(name = "page", defaultValue = "0") int page,
+      @RequestParam(name = "size", defaultValue = "" + SearchIndexService.DEFAULT_PAGE_SIZE) int size) {
+    try {
+      return ResponseEntity.ok().body(searchIndexService.search(userId, query, page, size));
+    } catch (NoSuchElementException e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.status(404).body(null);
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.badRequest().body(null);
+    } catch (Exception e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.status(500).body(null);
+    }
+  }
+}
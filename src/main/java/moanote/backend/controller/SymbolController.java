@@ -0,0 +1,78 @@
+package moanote.backend.controller;
+
+import moanote.backend.dto.SymbolDTO;
+import moanote.backend.service.SymbolIndexService;
+import moanote.backend.service.SymbolIndexService.InvalidSymbolQueryException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/symbols")
+public class SymbolController {
+
+  private final SymbolIndexService symbolIndexService;
+
+  @Autowired
+  public SymbolController(SymbolIndexService symbolIndexService) {
+    this.symbolIndexService = symbolIndexService;
+  }
+
+  /**
+   * 코드 노트의 클래스, 함수, MARKDOWN 제목을 노트에 나타나는 순서대로 반환합니다.
+   */
+  @GetMapping("/outline/{fileId}")
+  public ResponseEntity<List<SymbolDTO>> getOutline(@PathVariable("fileId") UUID fileId,
+      @RequestParam(name = "user") UUID userId) {
+    try {
+      return ResponseEntity.ok().body(symbolIndexService.getOutline(fileId, userId));
+    } catch (NoSuchElementException e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.status(404).build();
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.status(403).build();
+    } catch (Exception e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.status(500).build();
+    }
+  }
+
+  /**
+   * <pre>
+   * root 디렉토리 아래의 코드 노트에서 이름에 q 가 포함된 심볼을 찾습니다. (go-to-symbol)
+   * q 가 비어 있거나 limit 이 범위를 벗어나면 400, root 에 대한 권한이 없으면 403 을 반환합니다.
+   * </pre>
+   *
+   * @param rootId 검색할 디렉토리 또는 노트 파일 id
+   */
+  @GetMapping
+  public ResponseEntity<List<SymbolDTO>> findSymbols(@RequestParam(name = "user") UUID userId,
+      @RequestParam(name = "root") UUID rootId, @RequestParam(name = "q") String query,
+      @RequestParam(name = "limit", defaultValue = ""
+          + SymbolIndexService.DEFAULT_SYMBOL_LIMIT) int limit) {
+    try {
+      return ResponseEntity.ok().body(symbolIndexService.findSymbols(rootId, userId, query, limit));
+    } catch (NoSuchElementException e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.status(404).build();
+    } catch (InvalidSymbolQueryException e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.badRequest().build();
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.status(403).build();
+    } catch (Exception e) {
+      System.out.println(e.getMessage());
+      return ResponseEntity.status(500).build();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package moanote.backend.domain;
+
+import moanote.backend.dto.PermissionAncestryDTO;
+import moanote.backend.entity.FileUserData.Permission;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * <pre>
+ *   한 유저가 접근할 수 있는 파일의 범위입니다.
+ *
+ *   권한은 디렉토리로부터 상속되고, 파일의 권한은 파일 자신부터 루트까지 중 유저의 행이 있는 가장 가까운 파일의 권한입니다.
+ *   NONE 행은 상위 디렉토리의 권한을 가리는 접근 거부이고, 그 아래에서 다시 권한을 부여할 수 있습니다.
+ *   유저의 행을 루트부터 권한이 바뀌는 횟수로 나누면 (부여 0, 거부 1, 부여 2, ...), 파일은 어떤 짝수 단계의 부여된 파일 아래에
+ *   있으면서 바로 다음 단계의 거부된 파일 아래에는 없을 때 접근할 수 있습니다.
+ *   각 단계의 파일은 조상 id 집합으로 검사할 수 있으므로, 검색 index 처럼 깊이를 알 수 없는 곳에서도 범위를 표현할 수 있습니다.
+ * </pre>
+ */
+public final class AccessScope {
+
+  /**
+   * 부여 단계 하나와 바로 아래의 거부 단계입니다.
+   *
+   * @param grantedIds 이 단계에서 권한이 부여된 파일 id
+   * @param deniedIds  그 아래에서 접근이 거부된 파일 id
+   */
+  public record Layer(Set<UUID> grantedIds, Set<UUID> deniedIds) {
+
+  }
+
+  private final List<Layer> layers;
+
+  private AccessScope(List<Layer> layers) {
+    this.layers = layers;
+  }
+
+  /**
+   * @param rows 유저의 모든 권한 행과 권한 행이 있는 조상의 쌍. 각 행의 depth 0 쌍을 포함해야 합니다.
+   */
+  public static AccessScope of(Collection<PermissionAncestryDTO> rows) {
+    Map<UUID, Permission> permissions = new HashMap<>();
+    Map<UUID, PermissionAncestryDTO> nearestAncestors = new HashMap<>();
+    for (PermissionAncestryDTO row : rows) {
+      if (row.depth() == 0) {
+        permissions.put(row.fileId(), row.ancestorPermission());
+      } else {
+        nearestAncestors.merge(row.fileId(), row,
+            (current, other) -> other.depth() < current.depth() ? other : current);
+      }
+    }
+
+    Map<UUID, Integer> levels = new HashMap<>();
+    List<Layer> layers = new ArrayList<>();
+    for (UUID fileId : permissions.keySet()) {
+      int level = level(fileId, permissions, nearestAncestors, levels);
+      if (level < 0) {
+        continue;
+      }
+      while (layers.size() <= level / 2) {
+        layers.add(new Layer(new HashSet<>(), new HashSet<>()));
+      }
+      Layer layer = layers.get(level / 2);
+      (level % 2 == 0 ? layer.grantedIds() : layer.deniedIds()).add(fileId);
+    }
+    return new AccessScope(layers);
+  }
+
+  /**
+   * @return 행의 단계. 부여는 짝수, 거부는 홀수이며, 위에 부여가 없는 거부는 아무것도 가리지 않으므로 -1
+   */
+  private static int level(UUID fileId, Map<UUID, Permission> permissions,
+      Map<UUID, PermissionAncestryDTO> nearestAncestors, Map<UUID, Integer> levels) {
+    Integer known = levels.get(fileId);
+    if (known != null) {
+      return known;
+    }
+    boolean granted = permissions.get(fileId) != Permission.NONE;
+    PermissionAncestryDTO nearest = nearestAncestors.get(fileId);
+    int parentLevel = nearest == null ? -1
+        : level(nearest.ancestorId(), permissions, nearestAncestors, levels);
+    boolean parentGranted = parentLevel >= 0 && parentLevel % 2 == 0;
+    int level;
+    if (granted) {
+      level = parentGranted ? parentLevel : parentLevel + 1;
+    } else {
+      level = parentGranted ? parentLevel + 1 : parentLevel;
+    }
+    levels.put(fileId, level);
+    return level;
+  }
+
+  /**
+   * @return 루트에 가까운 단계부터의 목록. 접근할 수 있는 파일이 없으면 빈 리스트
+   */
+  public List<Layer> layers() {
+    return layers;
+  }
+
+  /**
+   * @return 부여된 권한 아래에 접근이 거부된 파일이 있는지 여부
+   */
+  public boolean hasDenials() {
+    return layers.stream().anyMatch(layer -> !layer.deniedIds().isEmpty());
+  }
+
+  /**
+   * @param ancestorIds 파일 자신을 포함한 모든 조상 id
+   * @return 유저가 파일에 접근할 수 있는지 여부
+   */
+  public boolean canAccess(Collection<UUID> ancestorIds) {
+    for (Layer layer : layers) {
+      boolean granted = false;
+      boolean denied = false;
+      for (UUID ancestorId : ancestorIds) {
+        granted |= layer.grantedIds().contains(ancestorId);
+        denied |= layer.deniedIds().contains(ancestorId);
+      }
+      if (granted && !denied) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -3,14 +3,17 @@ package moanote.backend.domain;
 import moanote.backend.domain.CRDTFugueTreeNode.Side;
 import moanote.backend.dto.CRDTOperationDTO;
 import moanote.backend.dto.FugueNodeDTO;
+import moanote.backend.dto.OperationType;
 import moanote.backend.entity.TextNoteSegment;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.Stack;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
@@ -18,6 +21,13 @@ import java.util.function.Consumer;
  * <pre>
  *   CRDTFugueTreeNode 를 Map<nodeId, CRDTFugueTreeNode> 으로 관리하는 객체입니다.
  *   CRDT 연산의 entry point 역할을 합니다.
+ *
+ *   각 노드가 유지하는 subtree 의 문자 수, 개행 수를 이용해 offset 및 줄 단위 질의를 전체 렌더링 없이 처리합니다.
+ *   질의 비용은 트리의 깊이에 비례하며, plain-text 로부터 생성되는 트리는 균형 잡힌 형태로 구성됩니다.
+ *   삽입, 삭제 및 집계 값을 읽는 질의는 트리 단위로 동기화됩니다.
+ *
+ *   적용된 삽입, 삭제마다 트리 version 이 증가하고 각 노드는 삽입, 제거된 version 을 기록합니다.
+ *   snapshot() 은 현재 version 만 기록하므로 비용이 상수이며, 이후의 편집을 막지 않고 그 시점의 텍스트를 읽을 수 있습니다.
  * </pre>
  */
 public class CRDTFugueTree {
@@ -30,6 +40,11 @@ public class CRDTFugueTree {
   private final CRDTFugueTreeNode root;
   private final Map<String, CRDTFugueTreeNode> nodes;
 
+  /**
+   * 마지막으로 적용된 삽입 또는 삭제의 version 입니다.
+   */
+  private long version;
+
   CRDTFugueTree() {
     nodes = new ConcurrentHashMap<>();
     this.root = new CRDTFugueTreeNode(ROOT_NODE_ID, null);
@@ -55,41 +70,541 @@ public class CRDTFugueTree {
 
   /**
    * Populates this tree instance using the provided plain-text data.
+   * The characters are arranged as a balanced tree so that positional queries stay logarithmic.
    *
    * @param plainText the source content that should be translated into CRDT nodes.
    */
   private void populateFromPlainText(String plainText) {
     String normalized = plainText == null ? "" : plainText;
-    CRDTFugueTreeNode currentNode = root;
-    for (int index = 0; index < normalized.length(); index++) {
-      String nodeId = String.format("pl%08d", index);
-      CRDTFugueTreeNode node = new CRDTFugueTreeNode(nodeId, String.valueOf(normalized.charAt(index)));
-      currentNode.addNode(Side.RIGHT, node);
-      nodes.put(nodeId, node);
-      currentNode = node;
+    if (normalized.isEmpty()) {
+      return;
+    }
+    CRDTFugueTreeNode subtree = buildBalancedSubtree(normalized, 0, normalized.length());
+    synchronized (this) {
+      root.addNode(Side.RIGHT, subtree);
+      root.propagate(subtree.getSubtreeLength(), subtree.getSubtreeLineBreaks());
     }
   }
 
-  public CRDTFugueTreeNode insert(CRDTOperationDTO operation) {
+  /**
+   * text[from, to) 를 중위 순회 순서로 표현하는 균형 subtree 를 생성합니다. 가운데 문자가 subtree 의 root 가 되고,
+   * 앞부분은 LEFT, 뒷부분은 RIGHT 자식으로 배치됩니다.
+   */
+  private CRDTFugueTreeNode buildBalancedSubtree(String text, int from, int to) {
+    int middle = (from + to) >>> 1;
+    String nodeId = String.format("pl%08d", middle);
+    CRDTFugueTreeNode node = new CRDTFugueTreeNode(nodeId, String.valueOf(text.charAt(middle)));
+    nodes.put(nodeId, node);
+    if (from < middle) {
+      CRDTFugueTreeNode left = buildBalancedSubtree(text, from, middle);
+      node.addNode(Side.LEFT, left);
+      node.propagate(left.getSubtreeLength(), left.getSubtreeLineBreaks());
+    }
+    if (middle + 1 < to) {
+      CRDTFugueTreeNode right = buildBalancedSubtree(text, middle + 1, to);
+      node.addNode(Side.RIGHT, right);
+      node.propagate(right.getSubtreeLength(), right.getSubtreeLineBreaks());
+    }
+    return node;
+  }
+
+  public synchronized CRDTFugueTreeNode insert(CRDTOperationDTO operation) {
     if (!nodes.containsKey(operation.parentId())) {
       return null;
     }
     CRDTFugueTreeNode parentNode = nodes.get(operation.parentId());
     CRDTFugueTreeNode newNode = new CRDTFugueTreeNode(operation.nodeId(), operation.value());
+    newNode.setInsertedVersion(++version);
     parentNode.addNode(operation.side(), newNode);
+    parentNode.propagate(newNode.getSubtreeLength(), newNode.getSubtreeLineBreaks());
     nodes.put(newNode.getNodeId(), newNode);
     return newNode;
   }
 
-  public CRDTFugueTreeNode delete(CRDTOperationDTO operation) {
+  public synchronized CRDTFugueTreeNode delete(CRDTOperationDTO operation) {
     if (!nodes.containsKey(operation.nodeId())) {
       return null;
     }
     var nodeToTombstone = nodes.get(operation.nodeId());
-    nodeToTombstone.remove();
+    String removedValue = nodeToTombstone.get().orElse(null);
+    if (removedValue == null) {
+      return nodeToTombstone;
+    }
+    nodeToTombstone.remove(++version);
+    nodeToTombstone.propagate(-CRDTFugueTreeNode.lengthOf(removedValue),
+        -CRDTFugueTreeNode.lineBreaksOf(removedValue));
     return nodeToTombstone;
   }
 
+  /**
+   * <pre>
+   *   텍스트의 [from, to) 범위를 text 로 교체하는 CRDT 연산을 생성하고 트리에 적용합니다.
+   *   서버가 외부 변경(예: GitHub fetch)을 열린 세션에 반영할 때 사용하며, 반환된 연산을 다른 참여자에게 전파하면 됩니다.
+   *
+   *   노드를 분할하는 연산은 없으므로 범위가 여러 글자를 가진 노드의 중간에 걸치면 범위를 노드 경계까지 넓히고,
+   *   넓혀진 부분의 기존 글자는 삽입할 텍스트에 포함시켜 다시 삽입합니다.
+   *   삽입되는 글자는 한 글자당 한 노드이며, 기존 노드 아래에 균형 잡힌 subtree 로 추가됩니다.
+   * </pre>
+   *
+   * @param from  교체할 범위의 시작 offset (포함)
+   * @param to    교체할 범위의 끝 offset (미포함)
+   * @param text  새로 삽입할 텍스트
+   * @param byWho 연산을 생성한 주체
+   * @return 적용된 연산 목록. REMOVE 연산이 먼저, INSERT 연산은 부모가 자식보다 먼저 오도록 정렬됩니다.
+   * @throws IndexOutOfBoundsException 범위가 텍스트를 벗어나는 경우
+   */
+  public synchronized List<CRDTOperationDTO> replaceRange(int from, int to, String text,
+      String byWho) {
+    int length = getLength();
+    if (from < 0 || to > length || from > to) {
+      throw new IndexOutOfBoundsException(
+          "Invalid range: [" + from + ", " + to + ") of " + length);
+    }
+    String replacement = text == null ? "" : text;
+    List<CRDTOperationDTO> operations = new ArrayList<>();
+
+    // 범위의 양 끝이 노드 중간에 걸치면 노드 경계까지 넓힙니다.
+    Location start = locate(from);
+    if (start.node() != null && start.index() > 0) {
+      replacement = start.node().get().orElse("").substring(0, start.index()) + replacement;
+      from -= start.index();
+    }
+    if (to > from) {
+      Location last = locate(to - 1);
+      String lastValue = last.node().get().orElse("");
+      if (last.index() + 1 < lastValue.length()) {
+        replacement = replacement + lastValue.substring(last.index() + 1);
+        to += lastValue.length() - last.index() - 1;
+      }
+    }
+
+    CRDTFugueTreeNode node = locate(from).node();
+    int removed = 0;
+    while (removed < to - from && node != null) {
+      CRDTFugueTreeNode next = nextVisible(node);
+      removed += CRDTFugueTreeNode.lengthOf(node.get().orElse(null));
+      CRDTOperationDTO operation = new CRDTOperationDTO(OperationType.REMOVE, node.getNodeId(),
+          null, null, null, byWho);
+      delete(operation);
+      operations.add(operation);
+      node = next;
+    }
+
+    if (!replacement.isEmpty()) {
+      // 새 subtree 는 앞 글자의 노드 바로 다음, 기존 자식이 없는 자리에 붙여 위치가 노드 ID 와 무관하게 결정되도록 합니다.
+      CRDTFugueTreeNode parent;
+      Side side;
+      CRDTFugueTreeNode predecessor = from == 0 ? root : locate(from - 1).node();
+      if (from == 0 && !root.getLeftChildren().isEmpty()) {
+        parent = leftmost(root);
+        side = Side.LEFT;
+      } else if (predecessor.getRightChildren().isEmpty()) {
+        parent = predecessor;
+        side = Side.RIGHT;
+      } else {
+        // predecessor 바로 다음 노드는 첫 RIGHT 자식 subtree 의 가장 왼쪽 노드이며, LEFT 자식이 없습니다.
+        parent = leftmost(predecessor.getRightChildren().getFirst());
+        side = Side.LEFT;
+      }
+      insertBalanced(replacement, 0, replacement.length(), parent.getNodeId(), side, byWho,
+          operations);
+    }
+    return operations;
+  }
+
+  private CRDTFugueTreeNode leftmost(CRDTFugueTreeNode subtreeRoot) {
+    CRDTFugueTreeNode node = subtreeRoot;
+    while (!node.getLeftChildren().isEmpty()) {
+      node = node.getLeftChildren().getFirst();
+    }
+    return node;
+  }
+
+  /**
+   * text[from, to) 를 가운데 글자를 root 로 하는 균형 subtree 로 삽입합니다. 부모 노드가 자식보다 먼저 삽입됩니다.
+   */
+  private void insertBalanced(String text, int from, int to, String parentId, Side side,
+      String byWho, List<CRDTOperationDTO> operations) {
+    int middle = (from + to) >>> 1;
+    CRDTOperationDTO operation = new CRDTOperationDTO(OperationType.INSERT,
+        UUID.randomUUID().toString(), String.valueOf(text.charAt(middle)), parentId, side, byWho);
+    insert(operation);
+    operations.add(operation);
+    if (from < middle) {
+      insertBalanced(text, from, middle, operation.nodeId(), Side.LEFT, byWho, operations);
+    }
+    if (middle + 1 < to) {
+      insertBalanced(text, middle + 1, to, operation.nodeId(), Side.RIGHT, byWho, operations);
+    }
+  }
+
+  /**
+   * @return 마지막으로 적용된 삽입 또는 삭제의 version
+   */
+  public synchronized long getVersion() {
+    return version;
+  }
+
+  /**
+   * 현재 version 의 변경 불가능한 snapshot 을 만듭니다. 텍스트를 복사하지 않으며, snapshot 을 읽는 동안에도 트리는 계속 편집될 수
+   * 있습니다.
+   *
+   * @return 현재 version 의 snapshot
+   * @see CRDTFugueTreeSnapshot
+   */
+  public synchronized CRDTFugueTreeSnapshot snapshot() {
+    return new CRDTFugueTreeSnapshot(root, version, root.getSubtreeLength(),
+        root.getSubtreeLineBreaks() + 1);
+  }
+
+  /**
+   * @return 현재 표시되는 텍스트의 길이
+   */
+  public synchronized int getLength() {
+    return root.getSubtreeLength();
+  }
+
+  /**
+   * @return 현재 표시되는 텍스트의 줄 수. 빈 텍스트도 한 줄로 간주합니다.
+   */
+  public synchronized int getLineCount() {
+    return root.getSubtreeLineBreaks() + 1;
+  }
+
+  /**
+   * 노드가 텍스트에서 시작하는 offset 을 반환합니다. tombstone 인 경우 해당 노드가 있던 자리의 offset 을 반환합니다.
+   *
+   * @param nodeId 조회할 노드의 ID
+   * @return 노드 앞에 위치한 문자 수
+   * @throws NoSuchElementException 노드가 존재하지 않는 경우
+   */
+  public synchronized int offsetOf(String nodeId) {
+    return countBefore(requireNode(nodeId)).length();
+  }
+
+  /**
+   * 노드가 위치한 줄 번호(0-based)를 반환합니다.
+   *
+   * @param nodeId 조회할 노드의 ID
+   * @return 노드 앞에 위치한 개행 문자 수
+   * @throws NoSuchElementException 노드가 존재하지 않는 경우
+   */
+  public synchronized int lineOf(String nodeId) {
+    return countBefore(requireNode(nodeId)).lineBreaks();
+  }
+
+  /**
+   * 줄(0-based)이 시작하는 offset 을 반환합니다.
+   *
+   * @param line 조회할 줄 번호
+   * @return 해당 줄의 첫 문자 offset
+   * @throws IndexOutOfBoundsException 줄 번호가 범위를 벗어나는 경우
+   */
+  public synchronized int lineStart(int line) {
+    if (line < 0 || line > root.getSubtreeLineBreaks()) {
+      throw new IndexOutOfBoundsException("Line out of range: " + line);
+    }
+    return line == 0 ? 0 : offsetAfterLineBreak(line);
+  }
+
+  /**
+   * [fromLine, toLine) 범위의 줄들을 개행 문자를 포함하여 반환합니다. 범위 밖의 노드는 방문하지 않습니다.
+   *
+   * @param fromLine 시작 줄 번호 (포함)
+   * @param toLine   끝 줄 번호 (미포함)
+   * @return 해당 범위의 텍스트
+   * @throws IndexOutOfBoundsException 줄 번호가 범위를 벗어나는 경우
+   */
+  public synchronized String lineRange(int fromLine, int toLine) {
+    int lineCount = getLineCount();
+    if (fromLine < 0 || toLine > lineCount || fromLine > toLine) {
+      throw new IndexOutOfBoundsException(
+          "Invalid line range: [" + fromLine + ", " + toLine + ") of " + lineCount);
+    }
+    int start = lineStart(fromLine);
+    int end = toLine == lineCount ? getLength() : lineStart(toLine);
+    return readRange(start, end);
+  }
+
+  /**
+   * 트리 전체 텍스트를 반환합니다. 중간 리스트를 만들지 않고 노드의 value 를 바로 이어 붙입니다.
+   *
+   * @return 현재 텍스트
+   */
+  public synchronized String getContent() {
+    return readRange(0, getLength());
+  }
+
+  /**
+   * @return 텍스트의 처음부터 읽는 reader
+   * @see CRDTFugueTreeReader
+   */
+  public CRDTFugueTreeReader reader() {
+    return reader(0);
+  }
+
+  /**
+   * @param offset 읽기 시작할 offset
+   * @return offset 부터 텍스트의 끝까지 읽는 reader
+   * @see CRDTFugueTreeReader
+   */
+  public CRDTFugueTreeReader reader(int offset) {
+    return reader(offset, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param from 읽기 시작할 offset (포함)
+   * @param to   읽기를 멈출 offset (미포함). 텍스트 길이보다 크면 텍스트의 끝까지 읽습니다.
+   * @return [from, to) 범위를 읽는 reader
+   * @throws IndexOutOfBoundsException from 이 범위를 벗어나는 경우
+   * @see CRDTFugueTreeReader
+   */
+  public synchronized CRDTFugueTreeReader reader(int from, int to) {
+    if (from < 0 || from > getLength() || to < from) {
+      throw new IndexOutOfBoundsException("Invalid range: [" + from + ", " + to + ")");
+    }
+    Location location = locate(from);
+    return new CRDTFugueTreeReader(this, location.node(), location.index(), from, to);
+  }
+
+  /**
+   * 노드의 문자부터 읽는 reader 를 반환합니다. tombstone 인 경우 그 다음 문자부터 읽습니다.
+   *
+   * @param nodeId 읽기 시작할 노드의 ID
+   * @return 노드부터 텍스트의 끝까지 읽는 reader
+   * @throws NoSuchElementException 노드가 존재하지 않는 경우
+   */
+  public synchronized CRDTFugueTreeReader reader(String nodeId) {
+    CRDTFugueTreeNode node = requireNode(nodeId);
+    int offset = countBefore(node).length();
+    CRDTFugueTreeNode start =
+        CRDTFugueTreeNode.lengthOf(node.get().orElse(null)) > 0 ? node : nextVisible(node);
+    return new CRDTFugueTreeReader(this, start, 0, offset, Integer.MAX_VALUE);
+  }
+
+  /**
+   * 현재 텍스트 전체에 대한 CharSequence view 를 반환합니다. 정규식 검색처럼 CharSequence 를 요구하는 API 에 텍스트를 복사하지 않고
+   * 전달할 때 사용합니다.
+   *
+   * @return 현재 텍스트 전체의 view
+   * @see CRDTFugueTreeText
+   */
+  public synchronized CharSequence asCharSequence() {
+    return new CRDTFugueTreeText(this, 0, getLength());
+  }
+
+  private String readRange(int from, int to) {
+    StringBuilder output = new StringBuilder(to - from);
+    char[] buffer = new char[Math.min(Math.max(to - from, 1), 8192)];
+    try (CRDTFugueTreeReader reader = reader(from, to)) {
+      int read;
+      while ((read = reader.read(buffer, 0, buffer.length)) != -1) {
+        output.append(buffer, 0, read);
+      }
+    }
+    return output.toString();
+  }
+
+  private CRDTFugueTreeNode requireNode(String nodeId) {
+    CRDTFugueTreeNode node = nodes.get(nodeId);
+    if (node == null) {
+      throw new NoSuchElementException("Node not found: " + nodeId);
+    }
+    return node;
+  }
+
+  private record Prefix(int length, int lineBreaks) {
+
+  }
+
+  /**
+   * 중위 순회 순서에서 노드보다 앞에 위치한 문자 수와 개행 수를 부모 방향으로 거슬러 올라가며 계산합니다.
+   */
+  private Prefix countBefore(CRDTFugueTreeNode node) {
+    int length = 0;
+    int lineBreaks = 0;
+    for (CRDTFugueTreeNode child : node.getLeftChildren()) {
+      length += child.getSubtreeLength();
+      lineBreaks += child.getSubtreeLineBreaks();
+    }
+    CRDTFugueTreeNode current = node;
+    while (current.getParent() != null) {
+      CRDTFugueTreeNode parent = current.getParent();
+      if (current.getSide() == Side.RIGHT) {
+        for (CRDTFugueTreeNode child : parent.getLeftChildren()) {
+          length += child.getSubtreeLength();
+          lineBreaks += child.getSubtreeLineBreaks();
+        }
+        String value = parent.get().orElse(null);
+        length += CRDTFugueTreeNode.lengthOf(value);
+        lineBreaks += CRDTFugueTreeNode.lineBreaksOf(value);
+      }
+      for (CRDTFugueTreeNode sibling : current.getSide() == Side.LEFT ? parent.getLeftChildren()
+          : parent.getRightChildren()) {
+        if (sibling == current) {
+          break;
+        }
+        length += sibling.getSubtreeLength();
+        lineBreaks += sibling.getSubtreeLineBreaks();
+      }
+      current = parent;
+    }
+    return new Prefix(length, lineBreaks);
+  }
+
+  /**
+   * 노드와 그 노드의 value 안에서의 index 로 표현한 텍스트 상의 위치입니다. 텍스트의 끝은 node 가 null 인 위치로 표현합니다.
+   */
+  record Location(CRDTFugueTreeNode node, int index) {
+
+  }
+
+  /**
+   * offset 위치의 문자를 가진 노드를 찾습니다.
+   *
+   * @return 해당 위치, offset 이 텍스트 길이 이상이면 node 가 null 인 위치
+   */
+  Location locate(int offset) {
+    if (offset < 0 || offset >= root.getSubtreeLength()) {
+      return new Location(null, 0);
+    }
+    CRDTFugueTreeNode node = root;
+    int remaining = offset;
+    descend:
+    while (true) {
+      for (CRDTFugueTreeNode child : node.getLeftChildren()) {
+        if (remaining < child.getSubtreeLength()) {
+          node = child;
+          continue descend;
+        }
+        remaining -= child.getSubtreeLength();
+      }
+      int ownLength = CRDTFugueTreeNode.lengthOf(node.get().orElse(null));
+      if (remaining < ownLength) {
+        return new Location(node, remaining);
+      }
+      remaining -= ownLength;
+      for (CRDTFugueTreeNode child : node.getRightChildren()) {
+        if (remaining < child.getSubtreeLength()) {
+          node = child;
+          continue descend;
+        }
+        remaining -= child.getSubtreeLength();
+      }
+      throw new IllegalStateException("Subtree lengths are inconsistent at node " + node.getNodeId());
+    }
+  }
+
+  /**
+   * lineBreak 번째(1-based) 개행 문자 바로 다음 offset 을 계산합니다.
+   */
+  private int offsetAfterLineBreak(int lineBreak) {
+    CRDTFugueTreeNode node = root;
+    int remaining = lineBreak;
+    int offset = 0;
+    descend:
+    while (true) {
+      for (CRDTFugueTreeNode child : node.getLeftChildren()) {
+        if (remaining <= child.getSubtreeLineBreaks()) {
+          node = child;
+          continue descend;
+        }
+        remaining -= child.getSubtreeLineBreaks();
+        offset += child.getSubtreeLength();
+      }
+      String value = node.get().orElse("");
+      for (int index = 0; index < value.length(); index++) {
+        if (value.charAt(index) == '\n' && --remaining == 0) {
+          return offset + index + 1;
+        }
+      }
+      offset += value.length();
+      for (CRDTFugueTreeNode child : node.getRightChildren()) {
+        if (remaining <= child.getSubtreeLineBreaks()) {
+          node = child;
+          continue descend;
+        }
+        remaining -= child.getSubtreeLineBreaks();
+        offset += child.getSubtreeLength();
+      }
+      throw new IllegalStateException("Subtree line breaks are inconsistent at node " + node.getNodeId());
+    }
+  }
+
+  /**
+   * 중위 순회 순서에서 node 다음에 오는, 비어 있지 않은 value 를 가진 노드를 찾습니다. 표시할 문자가 없는 subtree 는 건너뜁니다.
+   *
+   * @return 다음 노드, 없으면 null
+   */
+  CRDTFugueTreeNode nextVisible(CRDTFugueTreeNode node) {
+    CRDTFugueTreeNode candidate = firstVisibleAfter(node.getRightChildren(), null);
+    if (candidate != null) {
+      return candidate;
+    }
+    CRDTFugueTreeNode current = node;
+    while (current.getParent() != null) {
+      CRDTFugueTreeNode parent = current.getParent();
+      if (current.getSide() == Side.LEFT) {
+        candidate = firstVisibleAfter(parent.getLeftChildren(), current);
+        if (candidate != null) {
+          return candidate;
+        }
+        if (CRDTFugueTreeNode.lengthOf(parent.get().orElse(null)) > 0) {
+          return parent;
+        }
+        candidate = firstVisibleAfter(parent.getRightChildren(), null);
+      } else {
+        candidate = firstVisibleAfter(parent.getRightChildren(), current);
+      }
+      if (candidate != null) {
+        return candidate;
+      }
+      current = parent;
+    }
+    return null;
+  }
+
+  /**
+   * siblings 중 after 다음(after 가 null 이면 처음)부터 순서대로 살펴, 표시할 문자가 있는 첫 subtree 의 첫 노드를 반환합니다.
+   */
+  private CRDTFugueTreeNode firstVisibleAfter(List<CRDTFugueTreeNode> siblings,
+      CRDTFugueTreeNode after) {
+    boolean started = after == null;
+    for (CRDTFugueTreeNode sibling : siblings) {
+      if (!started) {
+        started = sibling == after;
+        continue;
+      }
+      if (sibling.getSubtreeLength() > 0) {
+        return firstVisible(sibling);
+      }
+    }
+    return null;
+  }
+
+  private CRDTFugueTreeNode firstVisible(CRDTFugueTreeNode subtreeRoot) {
+    CRDTFugueTreeNode node = subtreeRoot;
+    descend:
+    while (true) {
+      for (CRDTFugueTreeNode child : node.getLeftChildren()) {
+        if (child.getSubtreeLength() > 0) {
+          node = child;
+          continue descend;
+        }
+      }
+      if (CRDTFugueTreeNode.lengthOf(node.get().orElse(null)) > 0) {
+        return node;
+      }
+      for (CRDTFugueTreeNode child : node.getRightChildren()) {
+        if (child.getSubtreeLength() > 0) {
+          node = child;
+          continue descend;
+        }
+      }
+      throw new IllegalStateException("Subtree lengths are inconsistent at node " + node.getNodeId());
+    }
+  }
+
   /**
    * @deprecated 이 메소드는 아직 구현되지 않았습니다.
    * @param nodeId 업데이트 할 블록의 ID
@@ -110,7 +625,6 @@ public class CRDTFugueTree {
     Stack<CRDTFugueTreeNode.Side> childrenToVisit = new Stack<>();
 
     visitPath.push(root);
-    operation.accept(root);
     lastVisitChildIterators.push(root.getLeftChildren().iterator());
     childrenToVisit.push(CRDTFugueTreeNode.Side.LEFT);
 
@@ -123,11 +637,12 @@ public class CRDTFugueTree {
       if (iterator.hasNext()) {
         nextNode = iterator.next();
         visitPath.push(nextNode);
-        operation.accept(nextNode);
         lastVisitChildIterators.push(nextNode.getLeftChildren().iterator());
         childrenToVisit.push(CRDTFugueTreeNode.Side.LEFT);
         continue;
       } else if (side == CRDTFugueTreeNode.Side.LEFT) {
+        // LEFT 자식을 모두 방문한 뒤 자기 자신을 방문합니다. (중위 순회)
+        operation.accept(currentNode);
         lastVisitChildIterators.pop();
         lastVisitChildIterators.push(currentNode.getRightChildren().iterator());
         childrenToVisit.pop();
@@ -1,9 +1,10 @@
 package moanote.backend.domain;
 
 import lombok.Getter;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * <pre>
@@ -11,15 +12,21 @@ import java.util.UUID;
  *   특히 해당 객체는 Node 의 순서를 관리합니다.
  *   또한, 각 노드는 왼쪽 노드와 오른쪽 노드를 가지고 있습니다. 왼쪽 혹은 오른쪽을 Side 라고 부릅니다.
  *
- *   왼쪽 노드와 오른쪽 노드는 다수 존재할 수 있습니다. (LinkedList 로 관리)
+ *   왼쪽 노드와 오른쪽 노드는 다수 존재할 수 있습니다. (CopyOnWriteArrayList 로 관리)
  *   이는 동시 편집 시, 여러 노드가 동시에 추가되는 경우를 대비한 것입니다.
  *   같은 Side 에 있는 노드는 nodeId 에 의해 순서를 구분합니다.
  *
  *   연산은 addNode, removeNode, merge 만을 가집니다. (Commutative 한 연산)
  *
- *   제거된 Node 는 트리에서 완전히 제거되지 않고, value 를 null 로 변경합니다. (Tombstone)
+ *   제거된 Node 는 트리에서 완전히 제거되지 않고, 제거된 version 을 기록합니다. (Tombstone)
+ *   tombstone 의 value 는 외부에 null 로 보이지만, 제거 이전 version 의 snapshot 을 읽을 수 있도록 내부에 보존됩니다.
  *
  *   tombstone 에 update 가 발생하면, 해당 연산은 무시됩니다.
+ *
+ *   각 노드는 부모 노드와 자신을 root 로 하는 subtree 의 문자 수, 개행 수를 함께 유지합니다.
+ *   이 값들은 CRDTFugueTree 가 위치 및 줄 번호 질의를 전체 렌더링 없이 처리하는 데 사용됩니다.
+ *
+ *   자식 리스트는 copy-on-write 로 관리되므로, snapshot reader 는 트리 lock 없이 순회할 수 있습니다.
  * </pre>
  */
 @Getter
@@ -31,30 +38,62 @@ public class CRDTFugueTreeNode {
 
   final private String nodeId;
 
-  private String value;
+  final private String value;
+
+  final private List<CRDTFugueTreeNode> leftChildren = new CopyOnWriteArrayList<>();
+
+  final private List<CRDTFugueTreeNode> rightChildren = new CopyOnWriteArrayList<>();
+
+  /**
+   * 이 노드가 삽입된 트리 version 입니다. plain-text 로부터 생성된 노드는 0 입니다.
+   */
+  private long insertedVersion;
 
-  final private LinkedList<CRDTFugueTreeNode> leftChildren = new LinkedList<>();
+  /**
+   * 이 노드가 제거된 트리 version 입니다. 제거되지 않은 경우 Long.MAX_VALUE 입니다.
+   */
+  private volatile long removedVersion = Long.MAX_VALUE;
 
-  final private LinkedList<CRDTFugueTreeNode> rightChildren = new LinkedList<>();
+  /**
+   * 이 노드를 자식으로 가지는 노드입니다. root 인 경우 null 입니다.
+   */
+  private CRDTFugueTreeNode parent;
+
+  /**
+   * 부모 노드 기준으로 이 노드가 위치한 Side 입니다. root 인 경우 null 입니다.
+   */
+  private Side side;
+
+  /**
+   * 이 노드를 root 로 하는 subtree 에서 tombstone 이 아닌 노드들의 value 길이의 합입니다.
+   */
+  private int subtreeLength;
+
+  /**
+   * 이 노드를 root 로 하는 subtree 에서 tombstone 이 아닌 노드들의 value 에 포함된 개행 문자('\n') 수입니다.
+   */
+  private int subtreeLineBreaks;
 
   CRDTFugueTreeNode() {
-    nodeId = UUID.randomUUID().toString();
-    value = null;
+    this(UUID.randomUUID().toString(), null);
   }
 
   CRDTFugueTreeNode(final String value) {
-    this.nodeId = UUID.randomUUID().toString();
-    this.value = value;
+    this(UUID.randomUUID().toString(), value);
   }
 
   CRDTFugueTreeNode(final String nodeId, final String value) {
     this.nodeId = nodeId;
     this.value = value;
+    this.subtreeLength = lengthOf(value);
+    this.subtreeLineBreaks = lineBreaksOf(value);
   }
 
   public void addNode(Side side, CRDTFugueTreeNode node) {
-    LinkedList<CRDTFugueTreeNode> nodes = side == Side.LEFT ? leftChildren : rightChildren;
-    synchronized (side == Side.LEFT ? leftChildren : rightChildren) {
+    node.parent = this;
+    node.side = side;
+    List<CRDTFugueTreeNode> nodes = side == Side.LEFT ? leftChildren : rightChildren;
+    synchronized (nodes) {
       int insertIndex = 0;
       while (insertIndex < nodes.size()
           && nodes.get(insertIndex).getNodeId().compareTo(node.getNodeId()) < 0) {
@@ -64,12 +103,23 @@ public class CRDTFugueTreeNode {
     }
   }
 
-  public void remove() {
+  /**
+   * 노드를 tombstone 으로 만듭니다. 이미 제거된 노드는 변경하지 않습니다.
+   *
+   * @param version 제거가 반영된 트리 version
+   */
+  void remove(long version) {
     synchronized (this) {
-      this.value = null;
+      if (removedVersion == Long.MAX_VALUE) {
+        removedVersion = version;
+      }
     }
   }
 
+  void setInsertedVersion(long version) {
+    this.insertedVersion = version;
+  }
+
   /**
    * @param value 노드의 값을 주어진 값으로 업데이트합니다.
    * @throws UnsupportedOperationException 아직 구현되지 않음
@@ -85,8 +135,52 @@ public class CRDTFugueTreeNode {
   }
 
   public Optional<String> get() {
-    synchronized (this) {
-      return Optional.ofNullable(value);
+    return Optional.ofNullable(getValue());
+  }
+
+  /**
+   * @return 노드의 값, tombstone 이면 null
+   */
+  public String getValue() {
+    return removedVersion == Long.MAX_VALUE ? value : null;
+  }
+
+  /**
+   * @param version 조회할 트리 version
+   * @return 해당 version 에서의 노드의 값, 그 version 에 존재하지 않거나 제거된 상태였다면 null
+   */
+  String getValueAt(long version) {
+    return insertedVersion <= version && version < removedVersion ? value : null;
+  }
+
+  /**
+   * 이 노드와 모든 조상 노드의 subtree 집계 값을 주어진 변화량만큼 갱신합니다.
+   * 호출자는 트리 단위의 lock 을 잡은 상태여야 합니다.
+   *
+   * @param lengthDelta     문자 수 변화량
+   * @param lineBreaksDelta 개행 수 변화량
+   */
+  void propagate(int lengthDelta, int lineBreaksDelta) {
+    for (CRDTFugueTreeNode node = this; node != null; node = node.parent) {
+      node.subtreeLength += lengthDelta;
+      node.subtreeLineBreaks += lineBreaksDelta;
+    }
+  }
+
+  static int lengthOf(String value) {
+    return value == null ? 0 : value.length();
+  }
+
+  static int lineBreaksOf(String value) {
+    if (value == null) {
+      return 0;
+    }
+    int count = 0;
+    for (int index = 0; index < value.length(); index++) {
+      if (value.charAt(index) == '\n') {
+        count++;
+      }
     }
+    return count;
   }
 }
\ No newline at end of file
@@ -0,0 +1,102 @@
+package moanote.backend.domain;
+
+import java.io.Reader;
+import java.util.Objects;
+
+/**
+ * <pre>
+ *   CRDTFugueTree 의 텍스트를 앞에서부터 순서대로 읽는 Reader 입니다.
+ *   중간 리스트를 만들지 않고 노드를 부모 포인터로 따라가며 읽으므로 추가 메모리는 텍스트 길이와 무관합니다.
+ *
+ *   트리는 읽는 도중에도 편집될 수 있습니다. 각 read 호출은 트리 lock 안에서 수행되므로 한 번의 호출로 읽은 값은 일관되지만,
+ *   호출 사이에 발생한 편집은 아직 읽지 않은 부분에만 반영됩니다.
+ * </pre>
+ *
+ * @see CRDTFugueTree#reader(int, int)
+ */
+public class CRDTFugueTreeReader extends Reader {
+
+  private final CRDTFugueTree tree;
+
+  /**
+   * 다음에 읽을 문자를 가진 노드입니다. 끝에 도달하면 null 입니다.
+   */
+  private CRDTFugueTreeNode node;
+
+  /**
+   * node 의 value 안에서 다음에 읽을 문자의 index 입니다.
+   */
+  private int index;
+
+  /**
+   * 다음에 읽을 문자의 offset 입니다.
+   */
+  private int position;
+
+  /**
+   * 읽기를 멈출 offset (미포함) 입니다.
+   */
+  private final int end;
+
+  CRDTFugueTreeReader(CRDTFugueTree tree, CRDTFugueTreeNode node, int index, int position,
+      int end) {
+    this.tree = tree;
+    this.node = node;
+    this.index = index;
+    this.position = position;
+    this.end = end;
+  }
+
+  @Override
+  public int read() {
+    synchronized (tree) {
+      while (position < end && node != null) {
+        String value = node.get().orElse("");
+        if (index < value.length()) {
+          position++;
+          return value.charAt(index++);
+        }
+        node = tree.nextVisible(node);
+        index = 0;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public int read(char[] buffer, int offset, int length) {
+    Objects.checkFromIndexSize(offset, length, buffer.length);
+    if (length == 0) {
+      return 0;
+    }
+    int copied = 0;
+    synchronized (tree) {
+      while (copied < length && position < end && node != null) {
+        String value = node.get().orElse("");
+        if (index >= value.length()) {
+          node = tree.nextVisible(node);
+          index = 0;
+          continue;
+        }
+        int take = Math.min(Math.min(value.length() - index, length - copied), end - position);
+        value.getChars(index, index + take, buffer, offset + copied);
+        index += take;
+        copied += take;
+        position += take;
+      }
+    }
+    return copied == 0 ? -1 : copied;
+  }
+
+  /**
+   * @return 다음에 읽을 문자의 offset
+   */
+  public int position() {
+    return position;
+  }
+
+  @Override
+  public void close() {
+    node = null;
+  }
+}
@@ -0,0 +1,150 @@
+package moanote.backend.domain;
+
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Objects;
+import lombok.Getter;
+
+/**
+ * <pre>
+ *   CRDTFugueTree 의 특정 version 에 대한 변경 불가능한 view 입니다.
+ *
+ *   트리의 노드는 삽입, 제거된 version 을 기록하고 tombstone 도 값을 보존하므로, snapshot 은 version 번호만 가지고 있어도
+ *   그 시점의 텍스트를 재구성할 수 있습니다. 자식 리스트는 copy-on-write 로 관리되므로 snapshot 을 읽을 때는 트리 lock 을 잡지 않습니다.
+ *   따라서 export, commit, 검색 색인처럼 오래 걸리는 읽기가 편집을 막지 않습니다.
+ *
+ *   snapshot 이후에 삽입된 노드는 그 자손도 모두 이후에 삽입된 것이므로 subtree 전체를 건너뜁니다.
+ * </pre>
+ *
+ * @see CRDTFugueTree#snapshot()
+ */
+public class CRDTFugueTreeSnapshot {
+
+  private final CRDTFugueTreeNode root;
+
+  /**
+   * snapshot 이 가리키는 트리 version 입니다.
+   */
+  @Getter
+  private final long version;
+
+  /**
+   * snapshot 시점의 텍스트 길이입니다.
+   */
+  @Getter
+  private final int length;
+
+  /**
+   * snapshot 시점의 줄 수입니다.
+   */
+  @Getter
+  private final int lineCount;
+
+  CRDTFugueTreeSnapshot(CRDTFugueTreeNode root, long version, int length, int lineCount) {
+    this.root = root;
+    this.version = version;
+    this.length = length;
+    this.lineCount = lineCount;
+  }
+
+  /**
+   * @return snapshot 시점의 텍스트
+   */
+  public String getContent() {
+    StringBuilder output = new StringBuilder(length);
+    char[] buffer = new char[Math.min(Math.max(length, 1), 8192)];
+    try (SnapshotReader reader = new SnapshotReader()) {
+      int read;
+      while ((read = reader.read(buffer, 0, buffer.length)) != -1) {
+        output.append(buffer, 0, read);
+      }
+    }
+    return output.toString();
+  }
+
+  /**
+   * @return snapshot 시점의 텍스트를 처음부터 읽는 reader
+   */
+  public Reader reader() {
+    return new SnapshotReader();
+  }
+
+  /**
+   * 중위 순회를 명시적인 stack 으로 진행하며 snapshot version 에 보이는 노드의 값을 읽습니다.
+   */
+  private class SnapshotReader extends Reader {
+
+    private record Frame(CRDTFugueTreeNode node, Iterator<CRDTFugueTreeNode> children,
+                         boolean left) {
+
+    }
+
+    private final Deque<Frame> frames = new ArrayDeque<>();
+
+    private String current = "";
+
+    private int index;
+
+    private SnapshotReader() {
+      frames.push(new Frame(root, root.getLeftChildren().iterator(), true));
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+      Objects.checkFromIndexSize(offset, length, buffer.length);
+      if (length == 0) {
+        return 0;
+      }
+      int copied = 0;
+      while (copied < length) {
+        if (index >= current.length() && !advance()) {
+          break;
+        }
+        int take = Math.min(current.length() - index, length - copied);
+        current.getChars(index, index + take, buffer, offset + copied);
+        index += take;
+        copied += take;
+      }
+      return copied == 0 ? -1 : copied;
+    }
+
+    /**
+     * 다음으로 보이는 값을 가진 노드까지 순회합니다.
+     *
+     * @return 읽을 값이 남아 있으면 true
+     */
+    private boolean advance() {
+      while (!frames.isEmpty()) {
+        Frame frame = frames.peek();
+        if (frame.children().hasNext()) {
+          CRDTFugueTreeNode child = frame.children().next();
+          if (child.getInsertedVersion() <= version) {
+            frames.push(new Frame(child, child.getLeftChildren().iterator(), true));
+          }
+          continue;
+        }
+        frames.pop();
+        if (frame.left()) {
+          CRDTFugueTreeNode node = frame.node();
+          frames.push(new Frame(node, node.getRightChildren().iterator(), false));
+          String value = node.getValueAt(version);
+          if (value != null && !value.isEmpty()) {
+            current = value;
+            index = 0;
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public void close() {
+      frames.clear();
+      current = "";
+      index = 0;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package moanote.backend.domain;
+
+/**
+ * <pre>
+ *   CRDTFugueTree 의 [start, end) 범위에 대한 CharSequence view 입니다.
+ *   텍스트를 복사하지 않고 내부 reader 로 필요한 문자만 읽습니다. 앞에서부터 순차적으로 접근하면 문자당 상수 비용이 들고,
+ *   임의 위치에 접근하면 트리 깊이에 비례하는 비용으로 reader 를 다시 배치합니다.
+ *
+ *   live 트리에 대한 view 이므로 생성 이후의 편집이 반영될 수 있습니다. 일관된 내용이 필요하면 편집이 없는 동안 사용해야 합니다.
+ * </pre>
+ *
+ * @see CRDTFugueTree#asCharSequence()
+ */
+public class CRDTFugueTreeText implements CharSequence {
+
+  private final CRDTFugueTree tree;
+
+  private final int start;
+
+  private final int end;
+
+  private CRDTFugueTreeReader reader;
+
+  private int lastIndex = -1;
+
+  private char lastChar;
+
+  CRDTFugueTreeText(CRDTFugueTree tree, int start, int end) {
+    this.tree = tree;
+    this.start = start;
+    this.end = end;
+  }
+
+  @Override
+  public int length() {
+    return end - start;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length()) {
+      throw new IndexOutOfBoundsException("Index out of range: " + index);
+    }
+    if (index == lastIndex) {
+      return lastChar;
+    }
+    if (reader == null || reader.position() != start + index) {
+      reader = tree.reader(start + index, end);
+    }
+    int read = reader.read();
+    if (read == -1) {
+      throw new IndexOutOfBoundsException("Text was shortened while reading: " + index);
+    }
+    lastIndex = index;
+    lastChar = (char) read;
+    return lastChar;
+  }
+
+  @Override
+  public CharSequence subSequence(int from, int to) {
+    if (from < 0 || to > length() || from > to) {
+      throw new IndexOutOfBoundsException("Invalid range: [" + from + ", " + to + ")");
+    }
+    return new CRDTFugueTreeText(tree, start + from, start + to);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder output = new StringBuilder(length());
+    char[] buffer = new char[Math.min(Math.max(length(), 1), 8192)];
+    try (CRDTFugueTreeReader rangeReader = tree.reader(start, end)) {
+      int read;
+      while ((read = rangeReader.read(buffer, 0, buffer.length)) != -1) {
+        output.append(buffer, 0, read);
+      }
+    }
+    return output.toString();
+  }
+}
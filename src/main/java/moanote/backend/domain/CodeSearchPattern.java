@@ -0,0 +1,303 @@
+package moanote.backend.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * <pre>
+ *   코드 검색어를 줄 단위로 검사할 정규식과, trigram index 로 후보 문서를 줄이는 데 쓸 문자열로 변환합니다.
+ *
+ *   부분 문자열 검색어는 그 자체가 반드시 포함되어야 하는 문자열입니다. 정규식은 일치하는 모든 줄에 반드시 포함되는
+ *   문자열만 보수적으로 뽑아냅니다. 최상위에 '|' 가 있으면 반드시 포함되는 문자열이 없다고 보며,
+ *   그룹, 문자 클래스, 생략 가능한 문자는 문자열을 끊습니다. 뽑아낸 문자열이 없으면 모든 문서를 검사합니다.
+ *
+ *   java.util.regex 는 backtracking 으로 동작하여 (a+)+$ 같은 정규식은 한 줄을 검사하는 데에도 지수 시간이 걸릴 수 있습니다.
+ *   사용자가 보낸 정규식이 CPU 를 계속 점유하지 않도록, 검사할 줄을 기한이 지나면 예외를 던지는 CharSequence 로 감싸서 검사합니다.
+ * </pre>
+ */
+public final class CodeSearchPattern {
+
+  private static final Pattern COMMENTS_FLAG = Pattern.compile("\\(\\?[a-zA-Z]*x");
+
+  /**
+   * 기한을 확인하는 charAt 호출 간격. System.nanoTime 을 매번 호출하지 않기 위함입니다.
+   */
+  private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+  /**
+   * 검사가 기한을 넘긴 경우 던지는 예외입니다.
+   */
+  public static class MatchTimeoutException extends IllegalArgumentException {
+
+    public MatchTimeoutException() {
+      super("Search pattern took too long to match");
+    }
+  }
+
+  private final Pattern pattern;
+
+  private final List<String> requiredLiterals;
+
+  private CodeSearchPattern(Pattern pattern, List<String> requiredLiterals) {
+    this.pattern = pattern;
+    this.requiredLiterals = requiredLiterals;
+  }
+
+  /**
+   * @throws IllegalArgumentException text 가 비어 있는 경우
+   */
+  public static CodeSearchPattern substring(String text, boolean caseSensitive) {
+    if (text == null || text.isEmpty()) {
+      throw new IllegalArgumentException("Search query must not be empty");
+    }
+    return new CodeSearchPattern(Pattern.compile(Pattern.quote(text), flags(caseSensitive)),
+        List.of(text));
+  }
+
+  /**
+   * @throws IllegalArgumentException regex 가 비어 있거나 올바른 정규식이 아닌 경우
+   */
+  public static CodeSearchPattern regex(String regex, boolean caseSensitive) {
+    if (regex == null || regex.isEmpty()) {
+      throw new IllegalArgumentException("Search query must not be empty");
+    }
+    return new CodeSearchPattern(Pattern.compile(regex, flags(caseSensitive)),
+        requiredLiterals(regex));
+  }
+
+  private static int flags(boolean caseSensitive) {
+    return caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+  }
+
+  public boolean matches(CharSequence line) {
+    return pattern.matcher(line).find();
+  }
+
+  /**
+   * @param deadlineNanos 검사를 끝내야 하는 System.nanoTime 값
+   * @throws MatchTimeoutException 검사가 기한을 넘긴 경우
+   */
+  public boolean matches(CharSequence line, long deadlineNanos) {
+    if (System.nanoTime() - deadlineNanos > 0) {
+      throw new MatchTimeoutException();
+    }
+    return pattern.matcher(new DeadlineCharSequence(line, deadlineNanos)).find();
+  }
+
+  public List<String> requiredLiterals() {
+    return requiredLiterals;
+  }
+
+  /**
+   * 정규식에 일치하는 모든 문자열이 포함하는 literal 목록을 반환합니다. 올바른 정규식이라고 가정합니다.
+   */
+  static List<String> requiredLiterals(String regex) {
+    if (COMMENTS_FLAG.matcher(regex).find()) {
+      // 공백과 주석이 무시되므로 정규식의 문자가 그대로 일치하지 않습니다.
+      return List.of();
+    }
+    List<String> literals = new ArrayList<>();
+    StringBuilder run = new StringBuilder();
+    int depth = 0;
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (depth > 0) {
+        if (c == '\\') {
+          i = escapeEnd(regex, i);
+        } else if (c == '[') {
+          i = skipCharacterClass(regex, i);
+        } else if (c == '(') {
+          depth++;
+        } else if (c == ')') {
+          depth--;
+        }
+        continue;
+      }
+      switch (c) {
+        case '\\' -> {
+          if (i + 1 >= regex.length()) {
+            break;
+          }
+          char escaped = regex.charAt(++i);
+          if (escaped == 'Q') {
+            int end = regex.indexOf("\\E", i + 1);
+            int quoteEnd = end < 0 ? regex.length() : end;
+            run.append(regex, i + 1, quoteEnd);
+            i = end < 0 ? regex.length() : end + 1;
+          } else if (Character.isLetterOrDigit(escaped)) {
+            // \d, \w, \x41, 역참조 등은 정규식의 문자가 그대로 일치하지 않으므로 escape 전체를 건너뜁니다.
+            flush(run, literals);
+            i = escapeEnd(regex, i - 1);
+          } else {
+            run.append(escaped);
+          }
+        }
+        case '[' -> {
+          flush(run, literals);
+          i = skipCharacterClass(regex, i);
+        }
+        case '(' -> {
+          flush(run, literals);
+          depth++;
+        }
+        case '|' -> {
+          return List.of();
+        }
+        case '*', '?' -> {
+          dropLast(run);
+          flush(run, literals);
+        }
+        case '{' -> {
+          int end = regex.indexOf('}', i);
+          if (end < 0) {
+            run.append(c);
+            break;
+          }
+          if (regex.startsWith("{0", i)) {
+            dropLast(run);
+          }
+          flush(run, literals);
+          i = end;
+        }
+        case '+', '.', '^', '$', ')' -> flush(run, literals);
+        default -> run.append(c);
+      }
+    }
+    flush(run, literals);
+    return literals;
+  }
+
+  /**
+   * <pre>
+   * '\' 로 시작하는 escape 의 마지막 문자 위치를 반환합니다.
+   * \Q...\E, \xhh, \x{h...h}, &#92;uhhhh, \0ooo, \cX, \k&lt;name&gt;, \p{...}, \N{...}, \b{g} 와 역참조의 숫자를 모두 포함합니다.
+   * </pre>
+   *
+   * @param start '\' 의 위치
+   */
+  private static int escapeEnd(String regex, int start) {
+    int last = regex.length() - 1;
+    int i = start + 1;
+    if (i > last) {
+      return last;
+    }
+    return switch (regex.charAt(i)) {
+      case 'Q' -> {
+        int end = regex.indexOf("\\E", i + 1);
+        yield end < 0 ? last : end + 1;
+      }
+      case 'x' -> i + 1 <= last && regex.charAt(i + 1) == '{'
+          ? closingIndex(regex, i + 1, '}') : Math.min(i + 2, last);
+      case 'u' -> Math.min(i + 4, last);
+      case 'c' -> Math.min(i + 1, last);
+      case '0' -> {
+        int maxDigits = i + 3 <= last && regex.charAt(i + 1) <= '3' ? 3 : 2;
+        int end = i;
+        while (end < last && end - i < maxDigits && isOctalDigit(regex.charAt(end + 1))) {
+          end++;
+        }
+        yield end;
+      }
+      case 'k' -> i + 1 <= last && regex.charAt(i + 1) == '<' ? closingIndex(regex, i + 1, '>') : i;
+      case 'p', 'P', 'N', 'b' -> i + 1 <= last && regex.charAt(i + 1) == '{'
+          ? closingIndex(regex, i + 1, '}') : (regex.charAt(i) == 'b' ? i : Math.min(i + 1, last));
+      default -> {
+        int end = i;
+        if (Character.isDigit(regex.charAt(i))) {
+          while (end < last && Character.isDigit(regex.charAt(end + 1))) {
+            end++;
+          }
+        }
+        yield end;
+      }
+    };
+  }
+
+  private static int closingIndex(String regex, int from, char close) {
+    int end = regex.indexOf(close, from);
+    return end < 0 ? regex.length() - 1 : end;
+  }
+
+  private static boolean isOctalDigit(char c) {
+    return c >= '0' && c <= '7';
+  }
+
+  /**
+   * @return '[' 로 시작하는 문자 클래스를 닫는 ']' 의 위치
+   */
+  private static int skipCharacterClass(String regex, int start) {
+    int i = start + 1;
+    if (i < regex.length() && regex.charAt(i) == '^') {
+      i++;
+    }
+    if (i < regex.length() && regex.charAt(i) == ']') {
+      i++;
+    }
+    int nesting = 1;
+    for (; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i = escapeEnd(regex, i);
+      } else if (c == '[') {
+        nesting++;
+      } else if (c == ']' && --nesting == 0) {
+        return i;
+      }
+    }
+    return regex.length();
+  }
+
+  private static void dropLast(StringBuilder run) {
+    if (!run.isEmpty()) {
+      run.setLength(run.length() - 1);
+    }
+  }
+
+  private static void flush(StringBuilder run, List<String> literals) {
+    if (!run.isEmpty()) {
+      literals.add(run.toString());
+      run.setLength(0);
+    }
+  }
+
+  /**
+   * 정규식 엔진이 문자를 읽을 때마다 기한을 확인하는 CharSequence 입니다.
+   */
+  private static final class DeadlineCharSequence implements CharSequence {
+
+    private final CharSequence text;
+
+    private final long deadlineNanos;
+
+    private int reads;
+
+    private DeadlineCharSequence(CharSequence text, long deadlineNanos) {
+      this.text = text;
+      this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (++reads % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadlineNanos > 0) {
+        throw new MatchTimeoutException();
+      }
+      return text.charAt(index);
+    }
+
+    @Override
+    public int length() {
+      return text.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return new DeadlineCharSequence(text.subSequence(start, end), deadlineNanos);
+    }
+
+    @Override
+    public String toString() {
+      return text.toString();
+    }
+  }
+}
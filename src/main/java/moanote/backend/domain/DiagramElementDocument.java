@@ -0,0 +1,86 @@
+package moanote.backend.domain;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * <pre>
+ *   요소 단위로 편집되는 다이어그램 세그먼트의 content 형식입니다.
+ *   요소 단위 편집의 상태는 세그먼트 content 에만 저장하므로, 전체 content 를 다루는 참여자, export, 검색도 같은 상태를 봅니다.
+ *
+ *   {"elements":[{"id":String, "stateId":String, "timeStamp":Number, "content":String}, ...]}
+ *
+ *   삭제된 요소는 content 가 null 인 tombstone 으로 남아, 세션을 다시 만든 뒤에도 늦게 도착한 이전 수정이 요소를 되살리지 못하게 합니다.
+ *   요소는 id 순서로 직렬화하므로 같은 상태는 항상 같은 문자열이 됩니다.
+ * </pre>
+ */
+public final class DiagramElementDocument {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private DiagramElementDocument() {
+  }
+
+  /**
+   * @param content 세그먼트 content
+   * @return 요소 id 별 상태. content 가 요소 문서 형식이 아니면 빈 값
+   */
+  public static Optional<Map<String, LWWRegister.State<LWWDiagramElement>>> parse(String content) {
+    if (content == null || content.isBlank()) {
+      return Optional.empty();
+    }
+    JsonNode root;
+    try {
+      root = MAPPER.readTree(content);
+    } catch (JsonProcessingException e) {
+      return Optional.empty();
+    }
+    if (root == null || !root.isObject() || !root.path("elements").isArray()) {
+      return Optional.empty();
+    }
+    Map<String, LWWRegister.State<LWWDiagramElement>> elements = new LinkedHashMap<>();
+    for (Iterator<JsonNode> it = root.get("elements").elements(); it.hasNext(); ) {
+      JsonNode element = it.next();
+      JsonNode id = element.get("id");
+      JsonNode elementContent = element.path("content");
+      if (id == null || !id.isTextual()
+          || !(elementContent.isTextual() || elementContent.isNull() || elementContent.isMissingNode())) {
+        return Optional.empty();
+      }
+      elements.put(id.asText(), new LWWRegister.State<>(element.path("stateId").asText(""),
+          element.path("timeStamp").asLong(0),
+          elementContent.isTextual() ? new LWWDiagramElement(elementContent.asText()) : null));
+    }
+    return Optional.of(elements);
+  }
+
+  /**
+   * @param elements 요소 id 별 상태
+   * @return 요소 문서 형식의 content
+   */
+  public static String serialize(Map<String, LWWRegister.State<LWWDiagramElement>> elements) {
+    ObjectNode root = MAPPER.createObjectNode();
+    ArrayNode array = root.putArray("elements");
+    new TreeMap<>(elements).forEach((id, state) -> {
+      ObjectNode element = array.addObject();
+      element.put("id", id);
+      element.put("stateId", state.stateId());
+      element.put("timeStamp", state.timeStamp());
+      element.put("content", state.value() == null ? null : state.value().content());
+    });
+    try {
+      return MAPPER.writeValueAsString(root);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Failed to serialize diagram elements", e);
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package moanote.backend.domain;
+
+/**
+ * <pre>
+ *   순서가 있는 목록의 원소에 부여하는 fractional index key 를 만드는 유틸리티입니다.
+ *
+ *   key 는 0 과 1 사이의 36진 소수의 소수부 자릿수 문자열이며, 문자열 비교 순서가 곧 목록의 순서입니다.
+ *   두 key 사이에는 항상 새로운 key 를 만들 수 있으므로, 원소를 끼워 넣거나 옮길 때 해당 원소의 key 만 바꾸면 됩니다.
+ *
+ *   자릿수는 숫자와 소문자만 사용합니다. MySQL 의 대소문자 구분 없는 collation 에서도 문자열 순서가 바뀌지 않도록 하기 위함입니다.
+ *   key 는 '0' 으로 끝나지 않으므로, 어떤 key 앞에도 항상 더 작은 key 가 존재합니다.
+ *
+ *   목록의 끝에 원소를 계속 추가하는 경우 key 가 한 자리씩만 증가하도록, 한쪽이 열린 구간에서는 중간값 대신
+ *   이웃한 자릿수를 선택합니다.
+ * </pre>
+ */
+public final class FractionalIndex {
+
+  private static final String DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+  private FractionalIndex() {
+  }
+
+  /**
+   * before 와 after 사이에 오는 key 를 반환합니다.
+   *
+   * @param before 앞 원소의 key. null 이면 목록의 처음에 추가합니다.
+   * @param after  뒤 원소의 key. null 이면 목록의 끝에 추가합니다.
+   * @return before < key < after 를 만족하는 key
+   * @throws IllegalArgumentException before 가 after 보다 작지 않거나, 올바른 key 가 아닌 경우
+   */
+  public static String between(String before, String after) {
+    String a = before == null ? "" : before;
+    validate(a);
+    if (after != null) {
+      validate(after);
+      if (after.isEmpty() || a.compareTo(after) >= 0) {
+        throw new IllegalArgumentException(
+            "Fractional index " + before + " must precede " + after);
+      }
+    }
+    return midpoint(a, after);
+  }
+
+  /**
+   * a < key < b 인 key 를 만듭니다. a 는 빈 문자열(0)일 수 있고, b 는 null(1)일 수 있습니다.
+   */
+  private static String midpoint(String a, String b) {
+    if (b != null) {
+      int common = 0;
+      while (common < b.length() && digitAt(a, common) == b.charAt(common)) {
+        common++;
+      }
+      if (common > 0) {
+        return b.substring(0, common) + midpoint(suffix(a, common), b.substring(common));
+      }
+    }
+
+    int digitA = a.isEmpty() ? 0 : DIGITS.indexOf(a.charAt(0));
+    int digitB = b == null ? DIGITS.length() : DIGITS.indexOf(b.charAt(0));
+    if (digitB - digitA > 1) {
+      int digit;
+      if (b == null) {
+        digit = digitA + 1;
+      } else if (a.isEmpty()) {
+        digit = digitB - 1;
+      } else {
+        digit = (digitA + digitB + 1) / 2;
+      }
+      return String.valueOf(DIGITS.charAt(digit));
+    }
+    // 첫 자릿수가 연속되어 있으므로 다음 자릿수에서 구간을 찾습니다.
+    if (b != null && b.length() > 1) {
+      return b.substring(0, 1);
+    }
+    return DIGITS.charAt(digitA) + midpoint(suffix(a, 1), null);
+  }
+
+  private static char digitAt(String key, int index) {
+    return index < key.length() ? key.charAt(index) : DIGITS.charAt(0);
+  }
+
+  private static String suffix(String key, int from) {
+    return from < key.length() ? key.substring(from) : "";
+  }
+
+  private static void validate(String key) {
+    for (int i = 0; i < key.length(); i++) {
+      if (DIGITS.indexOf(key.charAt(i)) < 0) {
+        throw new IllegalArgumentException("Invalid fractional index: " + key);
+      }
+    }
+    if (!key.isEmpty() && key.charAt(key.length() - 1) == DIGITS.charAt(0)) {
+      throw new IllegalArgumentException("Fractional index must not end with 0: " + key);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package moanote.backend.domain;
+
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ *   Hybrid Logical Clock(HLC) 입니다. 물리 시각(ms)과 논리 counter 를 하나의 long 으로 묶어 LWW 의 timeStamp 로 사용합니다.
+ *
+ *   상위 비트는 epoch 이후의 ms, 하위 {@value #COUNTER_BITS} 비트는 같은 ms 안에서의 counter 입니다.
+ *   값은 2^53 보다 작으므로 JavaScript number 로도 손실 없이 주고 받을 수 있습니다.
+ *
+ *   서버는 받은 timeStamp 로 자신의 clock 을 앞으로 당기고(receive), 서버 시각보다 허용 범위 이상 앞선 timeStamp 는 거부합니다.
+ *   따라서 시계가 크게 앞선 클라이언트가 이후의 모든 편집을 이기는 일이 없습니다.
+ * </pre>
+ */
+public class HybridLogicalClock {
+
+  public static final int COUNTER_BITS = 11;
+
+  /**
+   * 이 시각(2020-01-01T00:00:00Z)보다 이전의 물리 시각을 가진 값은 HLC 가 아니라 이전 방식의 논리 시계 값으로 간주합니다.
+   */
+  private static final long MIN_PHYSICAL_MILLIS = 1_577_836_800_000L;
+
+  private final Clock clock;
+
+  private final long maxDriftMillis;
+
+  /**
+   * 마지막으로 발급하거나 관측한 timeStamp 입니다.
+   */
+  private final AtomicLong last = new AtomicLong();
+
+  /**
+   * @param clock          물리 시각을 제공하는 clock
+   * @param maxDriftMillis 받은 timeStamp 가 서버 시각보다 앞설 수 있는 최대 ms
+   */
+  public HybridLogicalClock(Clock clock, long maxDriftMillis) {
+    this.clock = clock;
+    this.maxDriftMillis = maxDriftMillis;
+  }
+
+  public static long pack(long physicalMillis, int counter) {
+    return (physicalMillis << COUNTER_BITS) | counter;
+  }
+
+  public static long physicalMillis(long timeStamp) {
+    return timeStamp >> COUNTER_BITS;
+  }
+
+  public static int counter(long timeStamp) {
+    return (int) (timeStamp & ((1L << COUNTER_BITS) - 1));
+  }
+
+  /**
+   * @return timeStamp 가 HLC 로 발급된 값이면 true, 이전 방식의 작은 논리 시계 값이면 false
+   */
+  public static boolean isHybrid(long timeStamp) {
+    return physicalMillis(timeStamp) >= MIN_PHYSICAL_MILLIS;
+  }
+
+  /**
+   * 서버에서 일어난 사건의 timeStamp 를 발급합니다. 발급된 값은 이전에 발급하거나 관측한 모든 값보다 큽니다.
+   *
+   * @return 새 timeStamp
+   */
+  public long now() {
+    long wall = pack(clock.millis(), 0);
+    return last.updateAndGet(previous -> Math.max(previous + 1, wall));
+  }
+
+  /**
+   * 다른 노드에서 받은 timeStamp 를 관측하여 clock 을 갱신합니다.
+   *
+   * @param remote 받은 timeStamp
+   * @return 갱신된 clock 의 값
+   * @throws IllegalArgumentException remote 가 서버 시각보다 허용 범위 이상 앞선 경우
+   */
+  public long receive(long remote) {
+    long wallMillis = clock.millis();
+    if (physicalMillis(remote) - wallMillis > maxDriftMillis) {
+      throw new IllegalArgumentException(
+          "Timestamp is too far ahead of server clock: " + physicalMillis(remote) + " > "
+              + wallMillis);
+    }
+    long wall = pack(wallMillis, 0);
+    return last.updateAndGet(previous -> Math.max(Math.max(previous, remote) + 1, wall));
+  }
+}
@@ -1,6 +1,8 @@
 package moanote.backend.domain;
 
 import lombok.Getter;
+import moanote.backend.dto.LWWElementStateDTO;
+import moanote.backend.dto.LWWPatchDTO;
 import moanote.backend.dto.LWWStateDTO;
 import moanote.backend.entity.DiagramNoteSegment;
 import moanote.backend.entity.UserData;
@@ -8,13 +10,34 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
 
 /**
  * 동일한 데이터를 LWW 를 통해 동시 편집하는 사용자 목록과 편집 사항을 관리하는 클래스입니다.
  * 지금은 다이어그램 동시 편집에 이용됩니다.
+ * 다이어그램 전체를 하나의 값으로 다루는 LWWRegister 와, 요소 단위로 다루는 LWWElementMap 을 함께 관리합니다.
+ * 저장되는 상태는 LWWRegister 의 content 하나이며, LWWElementMap 은 content 가 요소 문서({@link DiagramElementDocument}) 일 때
+ * content 에서 만들어집니다. 요소 편집이 이기면 LWWElementMap 을 직렬화한 content 를 새 timeStamp 로 LWWRegister 에 반영하고,
+ * 요소 문서인 전체 content 편집이 이기면 바뀐 요소를 같은 timeStamp 로 LWWElementMap 에 병합합니다.
+ * 빈 content 는 요소가 없는 요소 문서로 취급합니다.
+ *
+ * 요소 문서가 아닌 content (요소 단위 편집 이전의 다이어그램) 는 전체 content 편집으로만 바꿀 수 있습니다.
+ * 이런 content 에 대한 요소 편집은 거절하고, 이런 content 가 이겨도 요소 상태를 지우지 않습니다.
+ * 요소 문서로의 전환은 전체 content 를 다루는 참여자가 요소 문서를 저장할 때만 일어납니다.
+ *
+ * 요소 상태와 content 를 함께 바꾸는 편집(요소 편집과 요소 문서인 content 편집)만 세션의 lock 안에서 적용하며,
+ * 요소 문서가 아닌 content 편집과 상태 조회는 lock 을 잡지 않습니다.
+ *
+ * 편집 사항은 세션에만 반영하고 저장되지 않은 상태(dirty)로 표시합니다. 저장은 서비스가 주기적으로 drain 메소드를 통해 최신 상태만 가져가
+ * 수행하므로, 짧은 시간에 여러 번 이긴 편집도 한 번만 저장됩니다.
  */
 public class LWWCollaborationSession {
 
@@ -39,15 +62,52 @@ public class LWWCollaborationSession {
    */
   final private LWWRegister<LWWNoteContent> lwwRegister;
 
+  /**
+   * 요소 단위 동시 편집을 위한 LWWElementMap 입니다. 요소 ID 마다 독립적으로 병합됩니다.
+   *
+   * @see LWWElementMap
+   */
+  final private LWWElementMap<LWWDiagramElement> elements;
+
   /**
    * 동시 편집에 참여하는 사용자 목록입니다. ConcurrentHashMap 으로 Thread-safe 하게 관리합니다.
    */
   final private Map<UUID, Participation> participants;
 
+  /**
+   * lwwRegister 의 상태가 마지막 저장 이후 바뀌었는지 여부입니다.
+   */
+  final private AtomicBoolean contentDirty = new AtomicBoolean(false);
+
+  /**
+   * <pre>
+   * 마지막으로 LWWElementMap 과 함께 반영된 요소 문서 상태입니다.
+   * LWWRegister 의 현재 상태가 이 상태와 같은 객체일 때만 content 가 요소 문서이며, lock 을 잡지 않은 편집이 요소 문서가 아닌
+   * content 로 바꾸면 더 이상 같지 않게 되므로 parse 없이 판단할 수 있습니다. lock 안에서만 변경합니다.
+   * </pre>
+   */
+  private volatile LWWRegister.State<LWWNoteContent> elementDocumentState;
+
+  /**
+   * 요소 편집으로 content 를 다시 만들 때 사용할 timeStamp 를 발급합니다. 발급된 값은 세션이 받은 모든 timeStamp 보다 커야 합니다.
+   */
+  final private LongSupplier clock;
+
   final public UUID segmentId;
 
-  public LWWCollaborationSession(DiagramNoteSegment segment) {
+  /**
+   * @param segment 협업 대상 세그먼트
+   * @param clock   요소 편집으로 바뀐 content 의 timeStamp 를 발급하는 clock
+   */
+  public LWWCollaborationSession(DiagramNoteSegment segment, LongSupplier clock) {
     this.lwwRegister = new LWWRegister<>("init", 0, new LWWNoteContent(segment.getContent()));
+    this.elements = new LWWElementMap<>();
+    elementDocumentOf(segment.getContent()).ifPresent(stored -> {
+      stored.forEach((elementId, state) -> this.elements.merge(elementId,
+          new LWWRegister<>(state.stateId(), state.timeStamp(), state.value())));
+      this.elementDocumentState = lwwRegister.getState();
+    });
+    this.clock = clock;
     participants = new ConcurrentHashMap<>();
     segmentId = segment.getId();
   }
@@ -90,13 +150,217 @@ public class LWWCollaborationSession {
 
   /**
    * 편집 사항을 적용하는 메소드입니다. LWWRegister 를 사용하여 편집 사항을 적용합니다.
+   * 요소 문서가 아닌 content 는 lock 없이 LWWRegister 에만 병합합니다.
    */
   public boolean applyEdit(LWWRegister<LWWNoteContent> others) {
-    return lwwRegister.merge(others);
+    LWWRegister.State<LWWNoteContent> applied = others.getState();
+    Optional<Map<String, LWWRegister.State<LWWDiagramElement>>> document =
+        elementDocumentOf(applied.value() == null ? "" : applied.value().content());
+    if (document.isEmpty()) {
+      if (!lwwRegister.merge(applied)) {
+        return false;
+      }
+      contentDirty.set(true);
+      return true;
+    }
+    synchronized (this) {
+      if (!lwwRegister.merge(applied)) {
+        return false;
+      }
+      contentDirty.set(true);
+      mergeDocumentIntoElements(applied, document.get());
+      return true;
+    }
+  }
+
+  /**
+   * <pre>
+   * content 의 일부만 바꾸는 편집 사항을 적용하는 메소드입니다.
+   * 현재 상태가 patch 의 기준 상태와 같을 때만 적용하며, 적용 결과는 일반 편집과 같은 LWW 규칙으로 병합됩니다.
+   * </pre>
+   *
+   * @return 편집 사항이 적용되었으면 true, 기준 상태가 다르거나 patch 가 올바르지 않거나 병합에서 졌으면 false
+   */
+  public boolean applyPatch(LWWPatchDTO patch) {
+    LWWRegister.State<LWWNoteContent> current = lwwRegister.getState();
+    if (!current.stateId().equals(patch.baseStateId())
+        || current.timeStamp() != patch.baseTimeStamp()) {
+      return false;
+    }
+    String baseContent = current.value() == null ? "" : current.value().content();
+    String patchedContent;
+    try {
+      patchedContent = patch.applyTo(baseContent);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+    LWWRegister.State<LWWNoteContent> patched = new LWWRegister.State<>(patch.stateId(),
+        patch.timeStamp(), new LWWNoteContent(patchedContent));
+    Optional<Map<String, LWWRegister.State<LWWDiagramElement>>> document =
+        elementDocumentOf(patchedContent);
+    if (document.isEmpty()) {
+      if (!lwwRegister.mergeIfCurrent(current, patched)) {
+        return false;
+      }
+      contentDirty.set(true);
+      return true;
+    }
+    synchronized (this) {
+      if (!lwwRegister.mergeIfCurrent(current, patched)) {
+        return false;
+      }
+      contentDirty.set(true);
+      mergeDocumentIntoElements(patched, document.get());
+      return true;
+    }
+  }
+
+  /**
+   * <pre>
+   * 이긴 요소 문서 content 편집을 요소 상태에 반영합니다. lock 안에서 호출해야 합니다.
+   * 값이 바뀐 요소와 빠진 요소를 편집의 timeStamp 로 병합하고, 병합 결과가 content 와 다르면
+   * (예: 더 나중의 요소 편집이 남은 경우) 병합 결과를 직렬화하여 content 에 반영합니다.
+   * </pre>
+   *
+   * @param applied  LWWRegister 에 반영된 편집 상태
+   * @param incoming applied 의 content 를 parse 한 요소 상태
+   */
+  private void mergeDocumentIntoElements(LWWRegister.State<LWWNoteContent> applied,
+      Map<String, LWWRegister.State<LWWDiagramElement>> incoming) {
+    elementDocumentState = applied;
+    incoming.forEach((elementId, state) -> {
+      LWWRegister<LWWDiagramElement> current = elements.get(elementId);
+      if (current == null || !Objects.equals(current.getState().value(), state.value())) {
+        elements.merge(elementId,
+            new LWWRegister<>(applied.stateId(), applied.timeStamp(), state.value()));
+      }
+    });
+    elements.getRegisters().forEach((elementId, register) -> {
+      if (!incoming.containsKey(elementId) && register.getValue().isPresent()) {
+        elements.merge(elementId,
+            new LWWRegister<>(applied.stateId(), applied.timeStamp(), null));
+      }
+    });
+    refreshContent(applied.stateId(), applied);
+  }
+
+  /**
+   * <pre>
+   * 요소 상태를 직렬화한 content 가 expected 의 content 와 다르면, 새 timeStamp 로 content 에 반영합니다. lock 안에서 호출해야 합니다.
+   * 그 사이 lock 을 잡지 않은 편집이 content 를 바꾸었다면 그 편집을 덮어쓰지 않습니다.
+   * </pre>
+   *
+   * @return content 가 요소 상태를 반영하고 있으면 true
+   */
+  private boolean refreshContent(String stateId, LWWRegister.State<LWWNoteContent> expected) {
+    String serialized = DiagramElementDocument.serialize(elementStates());
+    if (expected.value() != null && serialized.equals(expected.value().content())) {
+      return lwwRegister.getState() == expected;
+    }
+    LWWRegister.State<LWWNoteContent> refreshed = new LWWRegister.State<>(stateId,
+        clock.getAsLong(), new LWWNoteContent(serialized));
+    if (!lwwRegister.mergeIfCurrent(expected, refreshed)) {
+      return false;
+    }
+    elementDocumentState = refreshed;
+    contentDirty.set(true);
+    return true;
+  }
+
+  /**
+   * @return content 의 요소 상태. 빈 content 는 요소가 없는 문서이며, 요소 문서가 아니면 빈 값
+   */
+  private static Optional<Map<String, LWWRegister.State<LWWDiagramElement>>> elementDocumentOf(
+      String content) {
+    if (content == null || content.isBlank()) {
+      return Optional.of(Map.of());
+    }
+    return DiagramElementDocument.parse(content);
+  }
+
+  /**
+   * @return 현재 content 가 요소 문서여서 요소 편집을 받을 수 있으면 true
+   */
+  public boolean acceptsElementEdits() {
+    LWWRegister.State<LWWNoteContent> documentState = elementDocumentState;
+    return documentState != null && lwwRegister.getState() == documentState;
+  }
+
+  private Map<String, LWWRegister.State<LWWDiagramElement>> elementStates() {
+    Map<String, LWWRegister.State<LWWDiagramElement>> states = new HashMap<>();
+    elements.getRegisters().forEach((elementId, register) -> states.put(elementId, register.getState()));
+    return states;
   }
 
   public LWWStateDTO<LWWNoteContent> getLWWStateDTO() {
-    return new LWWStateDTO<>(lwwRegister.getStateId(),
-        lwwRegister.getTimeStamp(), lwwRegister.getValue().orElse(new LWWNoteContent("")));
+    LWWRegister.State<LWWNoteContent> state = lwwRegister.getState();
+    return new LWWStateDTO<>(state.stateId(), state.timeStamp(),
+        state.value() == null ? new LWWNoteContent("") : state.value());
+  }
+
+  /**
+   * <pre>
+   * 요소 하나의 편집 사항을 적용하는 메소드입니다. 다른 요소의 상태에는 영향을 주지 않습니다.
+   * 편집이 이기면 요소 상태를 직렬화한 content 를 새 timeStamp 로 반영합니다.
+   * content 가 요소 문서가 아니면 content 를 덮어쓰지 않도록 편집을 거절합니다.
+   * </pre>
+   *
+   * @return 편집 사항이 이겨서 요소의 값과 content 가 바뀌었으면 true
+   */
+  public synchronized boolean applyElementEdit(LWWElementStateDTO<LWWDiagramElement> edit) {
+    LWWRegister.State<LWWNoteContent> current = lwwRegister.getState();
+    if (current != elementDocumentState) {
+      return false;
+    }
+    if (!elements.merge(edit.elementId(),
+        new LWWRegister<>(edit.stateId(), edit.timeStamp(), edit.value()))) {
+      return false;
+    }
+    return refreshContent(edit.stateId(), current);
+  }
+
+  /**
+   * @param elementId 조회할 요소의 ID
+   * @return 요소의 현재 상태, 한 번도 편집되지 않은 요소면 null
+   */
+  public LWWElementStateDTO<LWWDiagramElement> getElementStateDTO(String elementId) {
+    LWWRegister<LWWDiagramElement> register = elements.get(elementId);
+    if (register == null || !acceptsElementEdits()) {
+      return null;
+    }
+    LWWRegister.State<LWWDiagramElement> state = register.getState();
+    return new LWWElementStateDTO<>(elementId, state.stateId(), state.timeStamp(), state.value());
+  }
+
+  /**
+   * @return 모든 요소의 현재 상태. 삭제된 요소는 value 가 null 이며, content 가 요소 문서가 아니면 빈 리스트입니다.
+   */
+  public List<LWWElementStateDTO<LWWDiagramElement>> getElementStateDTOs() {
+    if (!acceptsElementEdits()) {
+      return List.of();
+    }
+    return elements.getRegisters().keySet().stream()
+        .map(this::getElementStateDTO)
+        .filter(Objects::nonNull)
+        .toList();
+  }
+
+  /**
+   * 저장되지 않은 content 상태를 가져가고 dirty 표시를 지웁니다. 표시를 먼저 지우므로, 가져가는 도중에 이긴 편집은 다시 dirty 로 남습니다.
+   *
+   * @return 저장해야 할 최신 content 상태, 바뀐 것이 없으면 빈 값
+   */
+  public Optional<LWWStateDTO<LWWNoteContent>> drainDirtyContent() {
+    if (!contentDirty.getAndSet(false)) {
+      return Optional.empty();
+    }
+    return Optional.of(getLWWStateDTO());
+  }
+
+  /**
+   * 저장에 실패한 content 상태를 다시 dirty 로 표시합니다.
+   */
+  public void markDirty() {
+    contentDirty.set(true);
   }
 }
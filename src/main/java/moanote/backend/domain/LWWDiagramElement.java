@@ -0,0 +1,10 @@
+package moanote.backend.domain;
+
+/**
+ * <pre>
+ * LWWElementMap 을 통해 동기화되는 다이어그램 요소 하나의 데이터입니다.
+ * content 는 클라이언트가 직렬화한 요소(도형, 연결선 등)의 내용입니다.
+ * </pre>
+ * @param content
+ */
+public record LWWDiagramElement(String content) {}
@@ -0,0 +1,50 @@
+package moanote.backend.domain;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <pre>
+ * LWW-Element-Map 은 key 마다 독립적인 LWWRegister 를 가지는 State-based CRDT 이다.
+ * 다이어그램의 각 요소를 요소 ID 로 구분하여, 서로 다른 요소에 대한 동시 편집이 서로를 덮어쓰지 않도록 한다.
+ *
+ * 요소의 삭제는 value 가 null 인 상태로 표현한다. (Tombstone)
+ * 삭제도 timeStamp 를 가지므로, 삭제와 수정이 동시에 일어나면 일반적인 LWW 규칙에 따라 결정된다.
+ * </pre>
+ *
+ * @param <T> 동기화 할 요소의 데이터 타입. Record 이어야 한다.
+ */
+public class LWWElementMap<T extends Record> {
+
+  private final Map<String, LWWRegister<T>> registers = new ConcurrentHashMap<>();
+
+  /**
+   * 한 요소의 상태를 병합한다. Thread-Safe 하게 동작한다.
+   *
+   * @param elementId 병합할 요소의 ID
+   * @param other     병합할 요소의 상태
+   * @return 병합한 상태가 이겨서 요소의 값이 바뀌었으면 true
+   */
+  public boolean merge(String elementId, LWWRegister<T> other) {
+    return registers.computeIfAbsent(elementId, key -> new LWWRegister<>(""))
+        .merge(other);
+  }
+
+  /**
+   * @param elementId 조회할 요소의 ID
+   * @return 요소의 상태, 한 번도 병합된 적 없는 요소면 null
+   */
+  public LWWRegister<T> get(String elementId) {
+    return registers.get(elementId);
+  }
+
+  /**
+   * 모든 요소의 상태를 반환합니다. 삭제된 요소도 tombstone 으로 포함됩니다.
+   *
+   * @return 요소 ID 와 상태의 수정 불가능한 map
+   */
+  public Map<String, LWWRegister<T>> getRegisters() {
+    return Collections.unmodifiableMap(registers);
+  }
+}
@@ -1,66 +1,103 @@
 package moanote.backend.domain;
 
-import lombok.AccessLevel;
-import lombok.Getter;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * LWWRegister 은 Last-Write-Wins Register 의 약자로, 가장 최근에 업데이트된 값을 가지는 레지스터를 의미한다. State-based CRDT 중
  * 하나이다.
  *
+ * <p>
+ * 레지스터의 상태는 변경 불가능한 {@link State} 하나로 관리하며, 병합은 lock 없이 compare-and-set 으로 교체한다. 따라서 stateId,
+ * timeStamp, value 는 항상 같은 상태에서 함께 읽힌다.
+ * </p>
+ *
  * @param <T> 동기화 할 데이터 타입. Record 이어야 한다.
  */
-@Getter
 public class LWWRegister<T extends Record> {
 
   /**
-   * stateId 는 timeStamp 가 같을 때, 두 레지스터의 값을 비교할 때 사용된다. Tie-breaker 로 사용된다.
+   * 레지스터의 한 시점의 상태이다.
+   *
+   * @param stateId   timeStamp 가 같을 때, 두 레지스터의 값을 비교할 때 사용된다. Tie-breaker 로 사용된다.
+   * @param timeStamp 레지스터의 업데이트 시간을 나타내는 Hybrid Logical Clock 값이다. ({@link HybridLogicalClock})
+   * @param value     레지스터의 값. 값이 없으면 null 이다.
    */
-  private String stateId;
+  public record State<T>(String stateId, long timeStamp, T value) {
 
-  /**
-   * 논리 시계로, 레지스터의 업데이트 시간을 나타낸다.
-   */
-  private int timeStamp;
+    /**
+     * @return 이 상태가 other 보다 나중에 쓰인 상태이면 true
+     */
+    boolean winsOver(State<T> other) {
+      return timeStamp > other.timeStamp || (timeStamp == other.timeStamp
+          && stateId.compareTo(other.stateId) > 0);
+    }
+  }
 
-  @Getter(AccessLevel.NONE)
-  private T value;
+  private final AtomicReference<State<T>> state;
 
-  public LWWRegister(String stateId, int timeStamp, T value) {
-    this.stateId = stateId;
-    this.timeStamp = timeStamp;
-    this.value = value;
+  public LWWRegister(String stateId, long timeStamp, T value) {
+    this.state = new AtomicReference<>(new State<>(stateId, timeStamp, value));
   }
 
   public LWWRegister(String stateId) {
-    this.stateId = stateId;
-    this.timeStamp = 0;
-    this.value = null;
+    this(stateId, 0, null);
   }
 
   /**
    * 다른 레지스터와 병합한다. Thread-Safe 하게 동작한다.
    *
    * @param other 병합할 레지스터
+   * @return 병합한 상태가 이겨서 레지스터의 상태가 바뀌었으면 true
    */
   public boolean merge(LWWRegister<T> other) {
-    String othersStateId = other.getStateId();
-    int othersTimeStamp = other.getTimeStamp();
-    T othersValue = other.getValue().orElse(null);
+    return merge(other.getState());
+  }
 
-    synchronized (this) {
-      if (othersTimeStamp > this.timeStamp || (othersTimeStamp == this.timeStamp
-          && othersStateId.compareTo(this.stateId) > 0)) {
-        this.stateId = othersStateId;
-        this.timeStamp = othersTimeStamp;
-        this.value = othersValue;
+  /**
+   * 주어진 상태와 병합한다. lock 없이 compare-and-set 을 반복하며, 다른 스레드가 먼저 상태를 바꾸었으면 바뀐 상태와 다시 비교한다.
+   *
+   * @param incoming 병합할 상태
+   * @return 병합한 상태가 이겨서 레지스터의 상태가 바뀌었으면 true
+   */
+  public boolean merge(State<T> incoming) {
+    State<T> current = state.get();
+    while (incoming.winsOver(current)) {
+      if (state.compareAndSet(current, incoming)) {
         return true;
       }
-      return false;
+      current = state.get();
     }
+    return false;
+  }
+
+  /**
+   * 레지스터의 현재 상태가 expected 일 때만 병합한다. 다른 상태를 기준으로 만들어진 변경이 끼어든 편집을 덮어쓰지 않도록 할 때 사용한다.
+   *
+   * @param expected 기대하는 현재 상태
+   * @param incoming 병합할 상태
+   * @return 현재 상태가 expected 였고 incoming 이 이겨서 상태가 바뀌었으면 true
+   */
+  public boolean mergeIfCurrent(State<T> expected, State<T> incoming) {
+    return incoming.winsOver(expected) && state.compareAndSet(expected, incoming);
+  }
+
+  /**
+   * @return 레지스터의 현재 상태. stateId, timeStamp, value 를 함께 읽어야 하면 이 메소드를 사용한다.
+   */
+  public State<T> getState() {
+    return state.get();
+  }
+
+  public String getStateId() {
+    return state.get().stateId();
+  }
+
+  public long getTimeStamp() {
+    return state.get().timeStamp();
   }
 
   public Optional<T> getValue() {
-    return Optional.ofNullable(value);
+    return Optional.ofNullable(state.get().value());
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,685 @@
+package moanote.backend.domain;
+
+import moanote.backend.entity.Note.CodeLanguage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <pre>
+ *   코드 노트의 내용에서 선언(클래스, 함수, MARKDOWN 의 제목)을 뽑아 outline 을 만드는 가벼운 lexer 입니다.
+ *
+ *   구문 분석기를 쓰지 않고 언어별로 다음 규칙만 적용하므로, 정확도보다 속도와 견고함을 우선합니다.
+ *   - 중괄호 언어(JAVA, CSHARP, C, CPP, JavaScript, TypeScript): 주석과 문자열을 건너뛴 token 에서
+ *     class, interface, enum 등의 선언과 "이름(...) {" 형태의 함수 정의를 찾고, 중괄호로 중첩 단계를 계산합니다.
+ *     JavaScript 계열은 변수에 대입한 함수와 화살표 함수도 찾습니다.
+ *   - PYTHON: 줄의 들여쓰기로 중첩 단계를 계산하며 def, class 를 찾습니다.
+ *   - MARKDOWN: fenced code block 밖의 '#' 제목을 찾고, 제목 단계로 중첩 단계를 계산합니다.
+ *   그 밖의 언어는 빈 outline 을 반환합니다.
+ *
+ *   세그먼트마다 따로 호출되므로, 여러 세그먼트에 걸친 선언의 중첩 단계는 세그먼트 안에서만 계산됩니다.
+ * </pre>
+ */
+public final class SymbolLexer {
+
+  public enum Kind {
+    NAMESPACE,
+    TYPE,
+    FUNCTION,
+    HEADING
+  }
+
+  /**
+   * @param name  심볼 이름
+   * @param kind  심볼 종류
+   * @param line  선언이 있는 줄 번호. 1 부터 시작합니다.
+   * @param depth 선언을 감싸는 심볼의 수
+   */
+  public record Symbol(String name, Kind kind, int line, int depth) {
+
+  }
+
+  private static final Set<String> NAMESPACE_KEYWORDS = Set.of("namespace", "module");
+
+  private static final Set<String> TYPE_KEYWORDS = Set.of("class", "interface", "enum", "struct",
+      "record", "union");
+
+  /**
+   * 뒤에 괄호가 오지만 함수 이름이 아닌 keyword
+   */
+  private static final Set<String> NON_FUNCTION_KEYWORDS = Set.of("if", "else", "for", "foreach",
+      "while", "do", "switch", "case", "catch", "try", "finally", "synchronized", "using", "lock",
+      "fixed", "checked", "unchecked", "return", "throw", "new", "delete", "sizeof", "typeof",
+      "alignof", "decltype", "defined", "static_assert", "function", "await", "yield", "with",
+      "when", "super", "this", "assert");
+
+  private static final Set<String> VARIABLE_KEYWORDS = Set.of("const", "let", "var");
+
+  /**
+   * 함수 정의의 ')' 와 '{' 사이에 올 수 있는 token 의 최대 수 (throws 절, 반환 타입, 생성자 초기화 목록 등)
+   */
+  private static final int MAX_FUNCTION_TRAILER_TOKENS = 64;
+
+  private static final Pattern PYTHON_DEFINITION = Pattern.compile(
+      "^[ \\t]*(?:async[ \\t]+)?(def|class)[ \\t]+(\\w+)", Pattern.UNICODE_CHARACTER_CLASS);
+
+  private static final Pattern MARKDOWN_FENCE = Pattern.compile("^ {0,3}(`{3,}|~{3,})");
+
+  private static final Pattern MARKDOWN_HEADING = Pattern.compile(
+      "^ {0,3}(#{1,6})(?:[ \\t]+(.*?))?(?:[ \\t]+#+)?[ \\t]*$");
+
+  private SymbolLexer() {
+  }
+
+  /**
+   * @return language 의 내용에서 심볼을 뽑을 수 있는지 여부
+   */
+  public static boolean supports(CodeLanguage language) {
+    return language != null && switch (language) {
+      case TEXT, JSON, HTML, CSS -> false;
+      default -> true;
+    };
+  }
+
+  /**
+   * @param language 내용의 언어
+   * @param content  세그먼트 내용
+   * @return 내용에 나타나는 순서대로 정렬된 심볼
+   */
+  public static List<Symbol> extract(CodeLanguage language, String content) {
+    if (language == null || content == null || content.isEmpty()) {
+      return List.of();
+    }
+    return switch (language) {
+      case JAVA, CSHARP, C, CPP, JAVASCRIPT, JAVASCRIPT_JSX, TYPESCRIPT, TYPESCRIPT_JSX ->
+          new BraceParser(language, tokenize(language, content)).parse();
+      case PYTHON -> pythonSymbols(content);
+      case MARKDOWN -> markdownHeadings(content);
+      default -> List.of();
+    };
+  }
+
+  private static boolean isJavaScript(CodeLanguage language) {
+    return switch (language) {
+      case JAVASCRIPT, JAVASCRIPT_JSX, TYPESCRIPT, TYPESCRIPT_JSX -> true;
+      default -> false;
+    };
+  }
+
+  /**
+   * @param identifier 식별자이면 true, 숫자나 기호이면 false
+   */
+  private record Token(String text, int line, boolean identifier) {
+
+    boolean is(String value) {
+      return text.equals(value);
+    }
+  }
+
+  /**
+   * 주석, 문자열, 전처리 지시문을 건너뛰고 식별자, 숫자, 기호 token 으로 나눕니다.
+   */
+  private static List<Token> tokenize(CodeLanguage language, String s) {
+    boolean javaScript = isJavaScript(language);
+    boolean preprocessor = language == CodeLanguage.C || language == CodeLanguage.CPP
+        || language == CodeLanguage.CSHARP;
+    List<Token> tokens = new ArrayList<>();
+    int n = s.length();
+    int line = 1;
+    boolean lineStart = true;
+    int i = 0;
+    while (i < n) {
+      char c = s.charAt(i);
+      if (c == '\n') {
+        line++;
+        lineStart = true;
+        i++;
+        continue;
+      }
+      if (Character.isWhitespace(c)) {
+        i++;
+        continue;
+      }
+      if (preprocessor && lineStart && c == '#') {
+        // 줄 끝의 '\' 로 이어지는 줄까지 전처리 지시문입니다.
+        while (i < n && s.charAt(i) != '\n') {
+          if (s.charAt(i) == '\\' && i + 1 < n && s.charAt(i + 1) == '\n') {
+            line++;
+            i++;
+          }
+          i++;
+        }
+        continue;
+      }
+      lineStart = false;
+      if (s.startsWith("//", i)) {
+        int end = s.indexOf('\n', i);
+        i = end < 0 ? n : end;
+        continue;
+      }
+      if (s.startsWith("/*", i)) {
+        int end = s.indexOf("*/", i + 2);
+        int stop = end < 0 ? n : end + 2;
+        line += countLineBreaks(s, i, stop);
+        i = stop;
+        continue;
+      }
+      if (s.startsWith("\"\"\"", i)) {
+        int end = s.indexOf("\"\"\"", i + 3);
+        int stop = end < 0 ? n : end + 3;
+        line += countLineBreaks(s, i, stop);
+        i = stop;
+        continue;
+      }
+      if (c == '@' && i + 1 < n && s.charAt(i + 1) == '"' && language == CodeLanguage.CSHARP) {
+        int stop = skipVerbatimString(s, i + 2);
+        line += countLineBreaks(s, i, stop);
+        i = stop;
+        continue;
+      }
+      if (c == '"' || c == '\'' || (javaScript && c == '`')) {
+        int stop = skipQuoted(s, i, c == '`');
+        line += countLineBreaks(s, i, stop);
+        i = stop;
+        continue;
+      }
+      if (javaScript && c == '/' && startsRegexLiteral(tokens)) {
+        i = skipRegexLiteral(s, i);
+        continue;
+      }
+      if (Character.isJavaIdentifierStart(c)) {
+        int start = i;
+        while (i < n && Character.isJavaIdentifierPart(s.charAt(i))) {
+          i++;
+        }
+        tokens.add(new Token(s.substring(start, i), line, true));
+        continue;
+      }
+      if (Character.isDigit(c)) {
+        int start = i;
+        while (i < n && (Character.isLetterOrDigit(s.charAt(i)) || s.charAt(i) == '.'
+            || s.charAt(i) == '_')) {
+          i++;
+        }
+        tokens.add(new Token(s.substring(start, i), line, false));
+        continue;
+      }
+      if (s.startsWith("=>", i) || s.startsWith("::", i) || s.startsWith("->", i)) {
+        tokens.add(new Token(s.substring(i, i + 2), line, false));
+        i += 2;
+        continue;
+      }
+      tokens.add(new Token(String.valueOf(c), line, false));
+      i++;
+    }
+    return tokens;
+  }
+
+  private static int countLineBreaks(String s, int from, int to) {
+    int count = 0;
+    for (int i = from; i < to; i++) {
+      if (s.charAt(i) == '\n') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return quote 로 시작하는 문자열 literal 의 바로 다음 위치. 닫히지 않은 문자열은 줄 끝에서 끝납니다.
+   */
+  private static int skipQuoted(String s, int start, boolean multiline) {
+    char quote = s.charAt(start);
+    int i = start + 1;
+    while (i < s.length()) {
+      char c = s.charAt(i);
+      if (c == '\\') {
+        i += 2;
+        continue;
+      }
+      if (c == quote) {
+        return i + 1;
+      }
+      if (c == '\n' && !multiline) {
+        return i;
+      }
+      i++;
+    }
+    return s.length();
+  }
+
+  /**
+   * C# 의 @"..." 문자열은 '\' 로 escape 하지 않고 "" 로 따옴표를 나타냅니다.
+   */
+  private static int skipVerbatimString(String s, int start) {
+    int i = start;
+    while (i < s.length()) {
+      if (s.charAt(i) == '"') {
+        if (i + 1 < s.length() && s.charAt(i + 1) == '"') {
+          i += 2;
+          continue;
+        }
+        return i + 1;
+      }
+      i++;
+    }
+    return s.length();
+  }
+
+  /**
+   * 나눗셈은 값 뒤에만 올 수 있으므로, 직전 token 이 값이 아니면 '/' 를 정규식 literal 의 시작으로 봅니다.
+   */
+  private static boolean startsRegexLiteral(List<Token> tokens) {
+    if (tokens.isEmpty()) {
+      return true;
+    }
+    Token previous = tokens.getLast();
+    if (previous.identifier()) {
+      return previous.is("return") || previous.is("typeof");
+    }
+    return !(Character.isDigit(previous.text().charAt(0)) || previous.is(")")
+        || previous.is("]"));
+  }
+
+  private static int skipRegexLiteral(String s, int start) {
+    boolean inClass = false;
+    int i = start + 1;
+    while (i < s.length()) {
+      char c = s.charAt(i);
+      if (c == '\n') {
+        return i;
+      }
+      if (c == '\\') {
+        i += 2;
+        continue;
+      }
+      if (c == '[') {
+        inClass = true;
+      } else if (c == ']') {
+        inClass = false;
+      } else if (c == '/' && !inClass) {
+        return i + 1;
+      }
+      i++;
+    }
+    return s.length();
+  }
+
+  /**
+   * token 을 앞에서부터 읽으며 선언을 찾고, 중괄호마다 그 블록이 어떤 심볼의 본문인지 기록합니다.
+   */
+  private static final class BraceParser {
+
+    private final CodeLanguage language;
+
+    private final List<Token> tokens;
+
+    private final List<Symbol> symbols = new ArrayList<>();
+
+    /**
+     * 열린 중괄호마다 본문의 심볼 종류. 심볼의 본문이 아닌 블록은 null 입니다.
+     */
+    private final List<Kind> scopes = new ArrayList<>();
+
+    private int depth = 0;
+
+    /**
+     * 선언을 찾았지만 본문의 '{' 를 아직 만나지 않은 심볼
+     */
+    private Symbol pending;
+
+    BraceParser(CodeLanguage language, List<Token> tokens) {
+      this.language = language;
+      this.tokens = tokens;
+    }
+
+    List<Symbol> parse() {
+      for (int i = 0; i < tokens.size(); i++) {
+        Token token = tokens.get(i);
+        if (token.is("{")) {
+          scopes.add(pending == null ? null : pending.kind());
+          if (pending != null) {
+            symbols.add(pending);
+            depth++;
+            pending = null;
+          }
+        } else if (token.is("}")) {
+          if (!scopes.isEmpty() && scopes.removeLast() != null) {
+            depth--;
+          }
+          pending = null;
+        } else if (token.is(";") || token.is("=")) {
+          // 전방 선언, struct 변수 선언 등은 본문이 없습니다.
+          pending = null;
+          if (token.is("=")) {
+            i = variableFunction(i);
+          }
+        } else if (token.identifier() && !isMemberAccess(i)) {
+          i = declaration(i);
+        }
+      }
+      return symbols;
+    }
+
+    private Token at(int index) {
+      return index >= 0 && index < tokens.size() ? tokens.get(index) : null;
+    }
+
+    private boolean isAt(int index, String text) {
+      Token token = at(index);
+      return token != null && token.is(text);
+    }
+
+    private boolean isMemberAccess(int index) {
+      return isAt(index - 1, ".") || isAt(index - 1, "->") || isAt(index - 1, "@");
+    }
+
+    /**
+     * @return 다음에 읽을 token 의 바로 앞 위치
+     */
+    private int declaration(int index) {
+      Token token = tokens.get(index);
+      if (NAMESPACE_KEYWORDS.contains(token.text())) {
+        return typeDeclaration(index, Kind.NAMESPACE);
+      }
+      if (TYPE_KEYWORDS.contains(token.text())) {
+        // C++ template 의 "<class T>" 는 선언이 아닙니다.
+        if (isAt(index - 1, "<") || isAt(index - 1, ",")) {
+          return index;
+        }
+        return typeDeclaration(index, Kind.TYPE);
+      }
+      if (isAt(index + 1, "(") && !NON_FUNCTION_KEYWORDS.contains(token.text())
+          && !isAt(index - 1, "[")) {
+        return functionDeclaration(index);
+      }
+      return index;
+    }
+
+    private int typeDeclaration(int keywordIndex, Kind kind) {
+      int nameIndex = keywordIndex + 1;
+      // C++ 의 "enum class Name"
+      while (at(nameIndex) != null && TYPE_KEYWORDS.contains(at(nameIndex).text())) {
+        nameIndex++;
+      }
+      Token name = at(nameIndex);
+      // JavaScript 의 이름 없는 class 식 "class extends Base"
+      if (name == null || !name.identifier() || name.is("extends") || name.is("implements")) {
+        return keywordIndex;
+      }
+      StringBuilder qualified = new StringBuilder(name.text());
+      int last = nameIndex;
+      while ((isAt(last + 1, ".") || isAt(last + 1, "::")) && at(last + 2) != null
+          && at(last + 2).identifier()) {
+        qualified.append(at(last + 1).text()).append(at(last + 2).text());
+        last += 2;
+      }
+      pending = new Symbol(qualified.toString(), kind, tokens.get(keywordIndex).line(), depth);
+      return last;
+    }
+
+    private int functionDeclaration(int nameIndex) {
+      int close = matchingParenthesis(nameIndex + 1);
+      if (close < 0) {
+        return nameIndex;
+      }
+      int body = functionBody(close + 1);
+      if (body < 0) {
+        return nameIndex;
+      }
+      pending = new Symbol(qualifiedFunctionName(nameIndex), Kind.FUNCTION,
+          tokens.get(nameIndex).line(), depth);
+      return body - 1;
+    }
+
+    /**
+     * C++ 의 "Type::name", "~Type" 을 이름으로 사용합니다.
+     */
+    private String qualifiedFunctionName(int nameIndex) {
+      String name = tokens.get(nameIndex).text();
+      int index = nameIndex;
+      if (isAt(index - 1, "~")) {
+        name = "~" + name;
+        index--;
+      }
+      while (isAt(index - 1, "::") && at(index - 2) != null && at(index - 2).identifier()) {
+        name = at(index - 2).text() + "::" + name;
+        index -= 2;
+      }
+      return name;
+    }
+
+    /**
+     * @return open 의 '(' 와 짝이 되는 ')' 의 위치. 괄호 안에 중괄호나 ';' 가 있으면 함수 정의가 아니므로 -1
+     */
+    private int matchingParenthesis(int open) {
+      int nesting = 0;
+      for (int i = open; i < tokens.size(); i++) {
+        Token token = tokens.get(i);
+        if (token.is("(")) {
+          nesting++;
+        } else if (token.is(")")) {
+          if (--nesting == 0) {
+            return i;
+          }
+        } else if (token.is("{") || token.is("}") || token.is(";")) {
+          return -1;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * @return 함수 매개변수 목록 뒤에 오는 본문 '{' 의 위치. 본문이 없으면 -1
+     */
+    private int functionBody(int from) {
+      int limit = Math.min(tokens.size(), from + MAX_FUNCTION_TRAILER_TOKENS);
+      for (int i = from; i < limit; i++) {
+        Token token = tokens.get(i);
+        if (token.is("{")) {
+          return i;
+        }
+        if (token.is(";") || token.is("=") || token.is("=>") || token.is("}")) {
+          return -1;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * <pre>
+     * JavaScript 계열에서 "const name = function", "name = (...) => ..." 처럼 변수나 class field 에 대입한 함수를
+     * 찾습니다. 본문의 위치를 정확히 알 수 없으므로 중첩 단계는 늘리지 않습니다.
+     * </pre>
+     *
+     * @return 다음에 읽을 token 의 바로 앞 위치
+     */
+    private int variableFunction(int assignIndex) {
+      if (!isJavaScript(language)) {
+        return assignIndex;
+      }
+      Token name = at(assignIndex - 1);
+      if (name == null || !name.identifier() || isMemberAccess(assignIndex - 1)) {
+        return assignIndex;
+      }
+      boolean declared = at(assignIndex - 2) != null
+          && VARIABLE_KEYWORDS.contains(at(assignIndex - 2).text());
+      boolean classField = !scopes.isEmpty() && scopes.getLast() == Kind.TYPE;
+      if ((declared || classField) && isFunctionExpression(assignIndex + 1)) {
+        symbols.add(new Symbol(name.text(), Kind.FUNCTION, name.line(), depth));
+      }
+      return assignIndex;
+    }
+
+    private boolean isFunctionExpression(int index) {
+      Token token = at(index);
+      if (token == null) {
+        return false;
+      }
+      if (token.is("function") || token.is("async")) {
+        return true;
+      }
+      if (token.identifier()) {
+        return isAt(index + 1, "=>");
+      }
+      if (!token.is("(")) {
+        return false;
+      }
+      int close = matchingParenthesis(index);
+      if (close < 0) {
+        return false;
+      }
+      // TypeScript 의 반환 타입 "(...): Type =>"
+      int limit = Math.min(tokens.size(), close + 1 + MAX_FUNCTION_TRAILER_TOKENS);
+      for (int i = close + 1; i < limit; i++) {
+        Token next = tokens.get(i);
+        if (next.is("=>")) {
+          return true;
+        }
+        if (i == close + 1 ? !next.is(":") : next.is(";") || next.is("{") || next.is("=")) {
+          return false;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * PYTHON 은 들여쓰기로 블록을 나타내므로, 자신보다 덜 들여쓴 마지막 선언들을 감싸는 심볼로 봅니다.
+   */
+  private static List<Symbol> pythonSymbols(String content) {
+    List<Symbol> symbols = new ArrayList<>();
+    List<Integer> enclosingIndents = new ArrayList<>();
+    PythonLineState state = new PythonLineState();
+    String[] lines = content.split("\n", -1);
+    for (int i = 0; i < lines.length; i++) {
+      String line = lines[i];
+      boolean continuation = state.openTripleQuote != null || state.brackets > 0
+          || state.backslash;
+      state.scan(line);
+      String stripped = line.strip();
+      if (continuation || stripped.isEmpty() || stripped.startsWith("#")) {
+        continue;
+      }
+      int indent = indentWidth(line);
+      while (!enclosingIndents.isEmpty() && enclosingIndents.getLast() >= indent) {
+        enclosingIndents.removeLast();
+      }
+      Matcher matcher = PYTHON_DEFINITION.matcher(line);
+      if (matcher.find()) {
+        Kind kind = matcher.group(1).equals("class") ? Kind.TYPE : Kind.FUNCTION;
+        symbols.add(new Symbol(matcher.group(2), kind, i + 1, enclosingIndents.size()));
+        enclosingIndents.add(indent);
+      }
+    }
+    return symbols;
+  }
+
+  private static int indentWidth(String line) {
+    int width = 0;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == ' ') {
+        width++;
+      } else if (c == '\t') {
+        width = (width / 8 + 1) * 8;
+      } else {
+        break;
+      }
+    }
+    return width;
+  }
+
+  /**
+   * 다음 줄이 앞 줄에 이어지는지 판단하기 위해 줄 끝의 열린 괄호, 여러 줄 문자열, '\' 를 기록합니다.
+   */
+  private static final class PythonLineState {
+
+    private String openTripleQuote;
+
+    private int brackets;
+
+    private boolean backslash;
+
+    void scan(String line) {
+      backslash = false;
+      int i = 0;
+      while (i < line.length()) {
+        if (openTripleQuote != null) {
+          int end = line.indexOf(openTripleQuote, i);
+          if (end < 0) {
+            return;
+          }
+          openTripleQuote = null;
+          i = end + 3;
+          continue;
+        }
+        char c = line.charAt(i);
+        if (c == '#') {
+          return;
+        }
+        if (c == '"' || c == '\'') {
+          String triple = String.valueOf(c).repeat(3);
+          if (line.startsWith(triple, i)) {
+            openTripleQuote = triple;
+            i += 3;
+          } else {
+            i = skipQuoted(line, i, false);
+          }
+          continue;
+        }
+        if (c == '(' || c == '[' || c == '{') {
+          brackets++;
+        } else if ((c == ')' || c == ']' || c == '}') && brackets > 0) {
+          brackets--;
+        } else if (c == '\\' && i == line.stripTrailing().length() - 1) {
+          backslash = true;
+        }
+        i++;
+      }
+    }
+  }
+
+  /**
+   * '#' 제목을 찾습니다. 단계를 건너뛴 제목도 바로 앞의 더 높은 단계 제목 아래에 둡니다.
+   */
+  private static List<Symbol> markdownHeadings(String content) {
+    List<Symbol> symbols = new ArrayList<>();
+    List<Integer> enclosingLevels = new ArrayList<>();
+    String fence = null;
+    String[] lines = content.split("\n", -1);
+    for (int i = 0; i < lines.length; i++) {
+      String line = lines[i].endsWith("\r") ? lines[i].substring(0, lines[i].length() - 1)
+          : lines[i];
+      Matcher fenceMatcher = MARKDOWN_FENCE.matcher(line);
+      if (fenceMatcher.find()) {
+        String marker = fenceMatcher.group(1);
+        if (fence == null) {
+          fence = marker;
+        } else if (marker.charAt(0) == fence.charAt(0) && marker.length() >= fence.length()
+            && line.strip().length() == marker.length()) {
+          fence = null;
+        }
+        continue;
+      }
+      if (fence != null) {
+        continue;
+      }
+      Matcher heading = MARKDOWN_HEADING.matcher(line);
+      if (!heading.matches() || heading.group(2) == null || heading.group(2).isBlank()) {
+        continue;
+      }
+      int level = heading.group(1).length();
+      while (!enclosingLevels.isEmpty() && enclosingLevels.getLast() >= level) {
+        enclosingLevels.removeLast();
+      }
+      symbols.add(new Symbol(heading.group(2).strip(), Kind.HEADING, i + 1,
+          enclosingLevels.size()));
+      enclosingLevels.add(level);
+    }
+    return symbols;
+  }
+}
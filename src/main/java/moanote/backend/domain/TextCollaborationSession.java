@@ -62,6 +62,17 @@ public class TextCollaborationSession {
     return segmentTreeMap.get(segmentId);
   }
 
+  /**
+   * 세그먼트의 현재 version 에 대한 snapshot 을 만듭니다. 편집을 막지 않고 일관된 내용을 읽어야 하는 곳에서 사용합니다.
+   *
+   * @param segmentId snapshot 을 만들 세그먼트 ID
+   * @return 세그먼트의 snapshot, 세션에 없는 세그먼트면 null
+   */
+  public CRDTFugueTreeSnapshot snapshot(UUID segmentId) {
+    var tree = getSegment(segmentId);
+    return tree == null ? null : tree.snapshot();
+  }
+
   public CRDTFugueTreeNode applyOperation(UUID segmentId, CRDTOperationDTO operation) {
     var tree = getSegment(segmentId);
     if (operation.type() == OperationType.INSERT) {
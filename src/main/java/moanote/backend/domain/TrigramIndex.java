@@ -0,0 +1,404 @@
+package moanote.backend.domain;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * <pre>
+ *   코드 검색을 위한 trigram index 의 shard 하나입니다.
+ *
+ *   shard 는 문서(저장소 안의 파일 경로, 파일 id, 내용)와, 소문자로 바꾼 내용의 연속된 세 글자(trigram)마다
+ *   그 trigram 을 포함한 문서 id 의 정렬된 목록(posting)을 저장합니다. 부분 문자열이나 정규식에 반드시 포함되는
+ *   문자열의 trigram 들의 posting 을 교집합하면 후보 문서만 남으므로, 후보 문서의 내용만 실제로 검사하면 됩니다.
+ *
+ *   shard 는 한 번 쓰면 바뀌지 않는 파일이며 memory-mapped 로 읽습니다. 새 shard 는 이전 shard 의 같은 경로의 문서를
+ *   가리며, tombstone 으로 지정된 경로도 이전 shard 에서 가립니다. 그래서 변경된 파일만 담은 shard 를 추가하는 방식으로
+ *   index 를 갱신할 수 있습니다.
+ *
+ *   파일 구조 (big endian)
+ *   header     : magic, version, 문서 수, trigram 수, tombstone 수
+ *   documents  : 문서마다 파일 id(16), 경로 offset, 경로 길이, 내용 offset, 내용 길이
+ *   trigrams   : trigram 의 오름차순으로 trigram(8), posting offset, posting 길이
+ *   tombstones : 경로 offset, 경로 길이
+ *   postings   : 문서 id 의 오름차순 목록
+ *   strings    : UTF-8 로 인코딩한 경로와 내용
+ *
+ *   offset 은 int 이므로 shard 하나의 크기는 2GB 를 넘을 수 없습니다.
+ * </pre>
+ */
+public final class TrigramIndex {
+
+  /**
+   * shard 에 저장할 문서입니다.
+   *
+   * @param path    저장소 루트로부터의 경로. 구분자는 '/' 입니다.
+   * @param fileId  문서에 해당하는 노트 파일 id
+   * @param content 파일 내용
+   */
+  public record Document(String path, UUID fileId, String content) {
+
+  }
+
+  private static final int MAGIC = 0x4D545249;
+
+  private static final int VERSION = 1;
+
+  private static final int HEADER_SIZE = 20;
+
+  private static final int DOCUMENT_ENTRY_SIZE = 32;
+
+  private static final int TRIGRAM_ENTRY_SIZE = 16;
+
+  private static final int TOMBSTONE_ENTRY_SIZE = 8;
+
+  private final ByteBuffer buffer;
+
+  private final int documentCount;
+
+  private final int trigramCount;
+
+  private final int trigramTableOffset;
+
+  private final Map<String, Integer> documentIdsByPath;
+
+  private final Set<String> tombstones;
+
+  private TrigramIndex(ByteBuffer buffer) {
+    this.buffer = buffer;
+    if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IllegalStateException("Not a trigram index shard");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IllegalStateException("Unsupported trigram index version: " + buffer.getInt(4));
+    }
+    this.documentCount = buffer.getInt(8);
+    this.trigramCount = buffer.getInt(12);
+    int tombstoneCount = buffer.getInt(16);
+    this.trigramTableOffset = HEADER_SIZE + documentCount * DOCUMENT_ENTRY_SIZE;
+    int tombstoneTableOffset = trigramTableOffset + trigramCount * TRIGRAM_ENTRY_SIZE;
+
+    this.documentIdsByPath = new HashMap<>();
+    for (int id = 0; id < documentCount; id++) {
+      documentIdsByPath.put(path(id), id);
+    }
+    String[] tombstonePaths = new String[tombstoneCount];
+    for (int i = 0; i < tombstoneCount; i++) {
+      int entry = tombstoneTableOffset + i * TOMBSTONE_ENTRY_SIZE;
+      tombstonePaths[i] = readString(buffer.getInt(entry), buffer.getInt(entry + 4));
+    }
+    this.tombstones = Set.of(tombstonePaths);
+  }
+
+  /**
+   * shard 파일을 memory-mapped 로 엽니다. 반환된 shard 는 파일 channel 을 닫은 뒤에도 사용할 수 있습니다.
+   */
+  public static TrigramIndex open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new TrigramIndex(mapped);
+    }
+  }
+
+  /**
+   * <pre>
+   * documents 와 tombstones 로 shard 파일을 만듭니다. 같은 경로의 문서가 여러 개이면 마지막 문서만 저장합니다.
+   * 파일은 임시 파일에 먼저 쓴 뒤 target 으로 옮기므로, 읽는 쪽에서 쓰다 만 shard 를 보지 않습니다.
+   * </pre>
+   *
+   * @param target     만들 shard 파일 경로
+   * @param documents  저장할 문서
+   * @param tombstones 이전 shard 에서 가릴 경로
+   */
+  public static void write(Path target, Collection<Document> documents,
+      Collection<String> tombstones) throws IOException {
+    Map<String, Document> byPath = new TreeMap<>();
+    documents.forEach(document -> byPath.put(document.path(), document));
+    List<Document> sorted = new ArrayList<>(byPath.values());
+    List<String> tombstonePaths = tombstones.stream().distinct().sorted().toList();
+
+    byte[][] paths = new byte[sorted.size()][];
+    byte[][] contents = new byte[sorted.size()][];
+    Map<Long, IntList> postings = new HashMap<>();
+    for (int id = 0; id < sorted.size(); id++) {
+      Document document = sorted.get(id);
+      paths[id] = document.path().getBytes(StandardCharsets.UTF_8);
+      contents[id] = document.content().getBytes(StandardCharsets.UTF_8);
+      for (long trigram : distinctTrigrams(document.content())) {
+        postings.computeIfAbsent(trigram, key -> new IntList()).add(id);
+      }
+    }
+    long[] trigrams = postings.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+    byte[][] tombstoneBytes = tombstonePaths.stream()
+        .map(path -> path.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+
+    long postingsOffset = HEADER_SIZE + (long) sorted.size() * DOCUMENT_ENTRY_SIZE
+        + (long) trigrams.length * TRIGRAM_ENTRY_SIZE
+        + (long) tombstoneBytes.length * TOMBSTONE_ENTRY_SIZE;
+    long postingsSize = 4L * postings.values().stream().mapToLong(IntList::size).sum();
+    long stringsOffset = postingsOffset + postingsSize;
+    long totalSize = stringsOffset + Arrays.stream(paths).mapToLong(bytes -> bytes.length).sum()
+        + Arrays.stream(contents).mapToLong(bytes -> bytes.length).sum()
+        + Arrays.stream(tombstoneBytes).mapToLong(bytes -> bytes.length).sum();
+    if (totalSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Trigram index shard exceeds 2GB");
+    }
+
+    Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+    try (OutputStream file = Files.newOutputStream(temporary);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(sorted.size());
+      out.writeInt(trigrams.length);
+      out.writeInt(tombstoneBytes.length);
+
+      int stringOffset = (int) stringsOffset;
+      for (int id = 0; id < sorted.size(); id++) {
+        UUID fileId = sorted.get(id).fileId();
+        out.writeLong(fileId.getMostSignificantBits());
+        out.writeLong(fileId.getLeastSignificantBits());
+        out.writeInt(stringOffset);
+        out.writeInt(paths[id].length);
+        stringOffset += paths[id].length;
+        out.writeInt(stringOffset);
+        out.writeInt(contents[id].length);
+        stringOffset += contents[id].length;
+      }
+      int postingOffset = (int) postingsOffset;
+      for (long trigram : trigrams) {
+        int count = postings.get(trigram).size();
+        out.writeLong(trigram);
+        out.writeInt(postingOffset);
+        out.writeInt(count);
+        postingOffset += 4 * count;
+      }
+      for (byte[] tombstone : tombstoneBytes) {
+        out.writeInt(stringOffset);
+        out.writeInt(tombstone.length);
+        stringOffset += tombstone.length;
+      }
+      for (long trigram : trigrams) {
+        IntList ids = postings.get(trigram);
+        for (int i = 0; i < ids.size(); i++) {
+          out.writeInt(ids.get(i));
+        }
+      }
+      for (int id = 0; id < sorted.size(); id++) {
+        out.write(paths[id]);
+        out.write(contents[id]);
+      }
+      for (byte[] tombstone : tombstoneBytes) {
+        out.write(tombstone);
+      }
+    }
+    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  public int documentCount() {
+    return documentCount;
+  }
+
+  public String path(int documentId) {
+    int entry = documentEntry(documentId);
+    return readString(buffer.getInt(entry + 16), buffer.getInt(entry + 20));
+  }
+
+  public UUID fileId(int documentId) {
+    int entry = documentEntry(documentId);
+    return new UUID(buffer.getLong(entry), buffer.getLong(entry + 8));
+  }
+
+  public String content(int documentId) {
+    int entry = documentEntry(documentId);
+    return readString(buffer.getInt(entry + 24), buffer.getInt(entry + 28));
+  }
+
+  /**
+   * @return path 에 해당하는 문서 id. 문서가 없으면 -1
+   */
+  public int findDocument(String path) {
+    return documentIdsByPath.getOrDefault(path, -1);
+  }
+
+  /**
+   * @return 이 shard 에 있는 문서의 경로
+   */
+  public Set<String> paths() {
+    return documentIdsByPath.keySet();
+  }
+
+  /**
+   * @return 이 shard 가 이전 shard 에서 가리는 삭제된 경로
+   */
+  public Set<String> tombstones() {
+    return tombstones;
+  }
+
+  /**
+   * 문서의 내용이 content 와 같은지 문자열로 변환하지 않고 비교합니다.
+   */
+  public boolean contentEquals(int documentId, String content) {
+    byte[] expected = content.getBytes(StandardCharsets.UTF_8);
+    int entry = documentEntry(documentId);
+    if (buffer.getInt(entry + 28) != expected.length) {
+      return false;
+    }
+    byte[] actual = new byte[expected.length];
+    buffer.get(buffer.getInt(entry + 24), actual);
+    return Arrays.equals(expected, actual);
+  }
+
+  /**
+   * <pre>
+   * literals 를 모두 포함할 수 있는 문서 id 를 오름차순으로 반환합니다. 대소문자는 구분하지 않습니다.
+   * 결과에는 실제로 literal 을 포함하지 않는 문서가 있을 수 있으므로 caller 가 내용을 검사해야 합니다.
+   * </pre>
+   *
+   * @param literals 문서에 반드시 포함되어야 하는 문자열
+   * @return 후보 문서 id. literal 에서 trigram 을 만들 수 없으면 모든 문서 id
+   */
+  public int[] candidates(Collection<String> literals) {
+    long[] trigrams = literals.stream()
+        .flatMapToLong(literal -> Arrays.stream(distinctTrigrams(literal)))
+        .distinct().toArray();
+    if (trigrams.length == 0) {
+      int[] all = new int[documentCount];
+      Arrays.setAll(all, id -> id);
+      return all;
+    }
+    List<int[]> postingLists = new ArrayList<>(trigrams.length);
+    for (long trigram : trigrams) {
+      int[] posting = postings(trigram);
+      if (posting.length == 0) {
+        return posting;
+      }
+      postingLists.add(posting);
+    }
+    postingLists.sort(Comparator.comparingInt(posting -> posting.length));
+    int[] result = postingLists.getFirst();
+    for (int i = 1; i < postingLists.size() && result.length > 0; i++) {
+      result = intersect(result, postingLists.get(i));
+    }
+    return result;
+  }
+
+  private int[] postings(long trigram) {
+    int low = 0;
+    int high = trigramCount - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int entry = trigramTableOffset + middle * TRIGRAM_ENTRY_SIZE;
+      long key = buffer.getLong(entry);
+      if (key < trigram) {
+        low = middle + 1;
+      } else if (key > trigram) {
+        high = middle - 1;
+      } else {
+        int offset = buffer.getInt(entry + 8);
+        int[] ids = new int[buffer.getInt(entry + 12)];
+        for (int i = 0; i < ids.length; i++) {
+          ids[i] = buffer.getInt(offset + 4 * i);
+        }
+        return ids;
+      }
+    }
+    return new int[0];
+  }
+
+  private static int[] intersect(int[] left, int[] right) {
+    int[] result = new int[Math.min(left.length, right.length)];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < left.length && j < right.length) {
+      if (left[i] < right[j]) {
+        i++;
+      } else if (left[i] > right[j]) {
+        j++;
+      } else {
+        result[size++] = left[i];
+        i++;
+        j++;
+      }
+    }
+    return Arrays.copyOf(result, size);
+  }
+
+  /**
+   * 줄 단위로 검색하므로 개행 문자를 포함한 trigram 은 만들지 않습니다.
+   */
+  private static long[] distinctTrigrams(String text) {
+    if (text.length() < 3) {
+      return new long[0];
+    }
+    long[] trigrams = new long[text.length() - 2];
+    int size = 0;
+    char first = Character.toLowerCase(text.charAt(0));
+    char second = Character.toLowerCase(text.charAt(1));
+    for (int i = 2; i < text.length(); i++) {
+      char third = Character.toLowerCase(text.charAt(i));
+      if (first != '\n' && second != '\n' && third != '\n') {
+        trigrams[size++] = ((long) first << 32) | ((long) second << 16) | third;
+      }
+      first = second;
+      second = third;
+    }
+    return Arrays.stream(trigrams, 0, size).sorted().distinct().toArray();
+  }
+
+  private int documentEntry(int documentId) {
+    if (documentId < 0 || documentId >= documentCount) {
+      throw new IndexOutOfBoundsException("Document id out of range: " + documentId);
+    }
+    return HEADER_SIZE + documentId * DOCUMENT_ENTRY_SIZE;
+  }
+
+  private String readString(int offset, int length) {
+    byte[] bytes = new byte[length];
+    buffer.get(offset, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static final class IntList {
+
+    private int[] values = new int[4];
+
+    private int size;
+
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    int get(int index) {
+      return values[index];
+    }
+
+    int size() {
+      return size;
+    }
+  }
+}
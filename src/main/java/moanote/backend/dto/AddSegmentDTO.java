@@ -1,5 +1,11 @@
 package moanote.backend.dto;
 
-public record AddSegmentDTO(SegmentType type) {
+import java.util.UUID;
+
+/**
+ * @param type  추가할 세그먼트의 종류
+ * @param after 새 세그먼트의 바로 앞에 올 세그먼트 id. null 이면 노트의 끝에 추가합니다.
+ */
+public record AddSegmentDTO(SegmentType type, UUID after) {
 
 }
@@ -0,0 +1,13 @@
+package moanote.backend.dto;
+
+import java.util.UUID;
+
+/**
+ * closure table 의 (조상, 자손) 쌍입니다.
+ *
+ * @param descendantId 자손 파일 id
+ * @param ancestorId   조상 파일 id. 자손 자신일 수 있습니다.
+ */
+public record AncestorDTO(UUID descendantId, UUID ancestorId) {
+
+}
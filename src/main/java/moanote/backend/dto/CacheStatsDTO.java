@@ -0,0 +1,20 @@
+package moanote.backend.dto;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * <pre>
+ *   서비스 수준 cache 의 적중률 지표입니다.
+ *   값은 애플리케이션 시작 이후 누적된 값입니다.
+ * </pre>
+ */
+public record CacheStatsDTO(String name, long size, long hitCount, long missCount,
+                            double hitRate, long evictionCount) {
+
+  public static CacheStatsDTO of(String name, Cache<?, ?> cache) {
+    CacheStats stats = cache.stats();
+    return new CacheStatsDTO(name, cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+        stats.hitRate(), stats.evictionCount());
+  }
+}
@@ -0,0 +1,15 @@
+package moanote.backend.dto;
+
+import java.util.UUID;
+
+/**
+ * 코드 검색 결과의 한 줄입니다.
+ *
+ * @param fileId     줄이 포함된 노트 파일 id
+ * @param path       저장소 루트로부터의 파일 경로
+ * @param lineNumber 1 부터 시작하는 줄 번호
+ * @param line       줄의 내용. 너무 긴 줄은 앞부분만 포함합니다.
+ */
+public record CodeSearchHitDTO(UUID fileId, String path, int lineNumber, String line) {
+
+}
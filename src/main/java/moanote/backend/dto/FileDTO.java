@@ -3,7 +3,6 @@ package moanote.backend.dto;
 import moanote.backend.entity.File;
 import moanote.backend.entity.File.FileType;
 import moanote.backend.entity.UserData;
-import org.apache.catalina.User;
 
 import java.util.UUID;
 
@@ -25,4 +24,14 @@ public record FileDTO(String name, UUID id, FileType type, UUID dir, UserDataDTO
         file.getDirectory() != null ? file.getDirectory().getId() : null, new UserDataDTO(owner),
         file.isGithubImported());
   }
+
+  /**
+   * FileRepository 의 projection 질의에서 사용하는 생성자입니다. owner 를 entity 로 불러오지 않고 id 와 이름만으로 구성합니다.
+   *
+   * @see moanote.backend.repository.FileRepository#findFileDTOsByIds(java.util.Collection)
+   */
+  public FileDTO(String name, UUID id, FileType type, UUID dir, UUID ownerId, String ownerName,
+      boolean githubImported) {
+    this(name, id, type, dir, new UserDataDTO(ownerId, ownerName), githubImported);
+  }
 }
@@ -0,0 +1,14 @@
+package moanote.backend.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * <pre>
+ * cursor 기반으로 나누어 반환되는 파일 목록의 한 페이지입니다.
+ * nextCursor 를 다음 요청의 cursor 로 넘기면 이어지는 페이지를 받을 수 있고, 마지막 페이지라면 null 입니다.
+ * </pre>
+ */
+public record FilePageDTO(List<FileDTO> files, UUID nextCursor) {
+
+}
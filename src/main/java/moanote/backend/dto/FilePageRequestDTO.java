@@ -0,0 +1,33 @@
+package moanote.backend.dto;
+
+import moanote.backend.entity.File.FileType;
+
+import java.util.UUID;
+
+/**
+ * <pre>
+ * 파일 목록 페이지 조회 조건입니다.
+ * 파일 id 는 UUIDv7 이므로 id 순서가 생성 순서와 같고, cursor 는 이전 페이지의 마지막 파일 id 입니다.
+ * type, namePrefix, githubImported 는 null 이면 조건에서 제외됩니다.
+ * </pre>
+ *
+ * @param cursor         이전 페이지의 마지막 파일 id. null 이면 첫 페이지를 조회합니다.
+ * @param size           페이지 크기
+ * @param type           파일 종류 조건
+ * @param namePrefix     파일 이름 접두어 조건
+ * @param githubImported github 에서 import 된 파일인지에 대한 조건
+ * @param descending     true 이면 최신 파일부터 반환합니다.
+ */
+public record FilePageRequestDTO(UUID cursor, int size, FileType type, String namePrefix,
+                                 Boolean githubImported, boolean descending) {
+
+  public static final int DEFAULT_SIZE = 100;
+
+  public static final int MAX_SIZE = 500;
+
+  public FilePageRequestDTO {
+    if (size < 1 || size > MAX_SIZE) {
+      throw new IllegalArgumentException("Page size must be between 1 and " + MAX_SIZE);
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package moanote.backend.dto;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * 다이어그램 요소 하나의 동기화를 위해 주고 받는 수정 사항 DTO
+ *
+ * @param elementId 수정된 요소의 ID
+ * @param stateId   LWW state ID
+ * @param timeStamp LWW state timestamp. HybridLogicalClock 값이며, 이전 방식의 작은 논리 시계 값은 서버가 받은 시각으로 다시 발급합니다.
+ * @param value     LWW state value, 요소가 삭제된 경우 null
+ * @param <T>       LWW state value type
+ */
+public record LWWElementStateDTO<T extends Record>(String elementId, String stateId, long timeStamp,
+                                                   @Nullable T value) {
+
+  public LWWElementStateDTO {
+    if (elementId == null) {
+      throw new IllegalArgumentException("Element ID cannot be null");
+    }
+    if (stateId == null) {
+      throw new IllegalArgumentException("State ID cannot be null");
+    }
+  }
+}
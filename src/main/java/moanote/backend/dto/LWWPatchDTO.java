@@ -0,0 +1,70 @@
+package moanote.backend.dto;
+
+import java.util.List;
+
+/**
+ * <pre>
+ * 다이어그램 content 전체 대신 바뀐 부분만 주고 받는 수정 사항 DTO
+ * 클라이언트가 알고 있는 상태(base)의 content 에 splices 를 순서대로 적용하면 새 content 가 됩니다.
+ * 서버의 현재 상태가 base 와 다르면 patch 를 적용하지 않고 보낸 사용자에게 전체 상태를 보냅니다.
+ * </pre>
+ *
+ * @param stateId       새 LWW state ID
+ * @param timeStamp     새 LWW state timestamp
+ * @param baseStateId   patch 를 만든 기준 state ID
+ * @param baseTimeStamp patch 를 만든 기준 state timestamp
+ * @param splices       기준 content 에 순서대로 적용할 변경 목록
+ * @param resultLength  patch 적용 후 content 의 길이. 검증에 사용합니다.
+ */
+public record LWWPatchDTO(String stateId, long timeStamp, String baseStateId, long baseTimeStamp,
+                          List<Splice> splices, int resultLength) {
+
+  /**
+   * content[offset, offset + deleteCount) 를 insert 로 교체합니다. offset 은 앞선 splice 가 적용된 content 기준입니다.
+   *
+   * @param offset      교체를 시작할 위치
+   * @param deleteCount 삭제할 글자 수
+   * @param insert      삽입할 문자열
+   */
+  public record Splice(int offset, int deleteCount, String insert) {
+
+  }
+
+  public LWWPatchDTO {
+    if (stateId == null || baseStateId == null) {
+      throw new IllegalArgumentException("State ID cannot be null");
+    }
+    splices = splices == null ? List.of() : List.copyOf(splices);
+  }
+
+  /**
+   * @param timeStamp 새 timestamp
+   * @return timestamp 만 바꾼 patch
+   */
+  public LWWPatchDTO withTimeStamp(long timeStamp) {
+    return new LWWPatchDTO(stateId, timeStamp, baseStateId, baseTimeStamp, splices, resultLength);
+  }
+
+  /**
+   * 기준 content 에 splices 를 적용합니다.
+   *
+   * @param base 기준 content
+   * @return 새 content
+   * @throws IllegalArgumentException splice 가 범위를 벗어나거나 결과 길이가 resultLength 와 다른 경우
+   */
+  public String applyTo(String base) {
+    StringBuilder content = new StringBuilder(base);
+    for (Splice splice : splices) {
+      int end = splice.offset() + splice.deleteCount();
+      if (splice.offset() < 0 || splice.deleteCount() < 0 || end > content.length()) {
+        throw new IllegalArgumentException("Splice out of range: " + splice);
+      }
+      content.replace(splice.offset(), end, splice.insert() == null ? "" : splice.insert());
+    }
+    if (content.length() != resultLength) {
+      throw new IllegalArgumentException(
+          "Patched length mismatch: " + content.length() + " != " + resultLength);
+    }
+    return content.toString();
+  }
+}
@@ -5,11 +5,11 @@ package moanote.backend.dto;
  * 문서 동기화를 위해 주고 받는 수정 사항 DTO
  *
  * @param stateId   LWW state ID
- * @param timeStamp LWW state timestamp
+ * @param timeStamp LWW state timestamp. HybridLogicalClock 값이며, 이전 방식의 작은 논리 시계 값은 서버가 받은 시각으로 다시 발급합니다.
  * @param value     LWW state value
  * @param <T>       LWW state value type
  */
-public record LWWStateDTO<T extends Record>(String stateId, int timeStamp, T value) {
+public record LWWStateDTO<T extends Record>(String stateId, long timeStamp, T value) {
 
   public LWWStateDTO {
     if (stateId == null) {
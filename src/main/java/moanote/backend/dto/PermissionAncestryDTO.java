@@ -0,0 +1,18 @@
+package moanote.backend.dto;
+
+import moanote.backend.entity.FileUserData.Permission;
+
+import java.util.UUID;
+
+/**
+ * 유저의 권한 행이 있는 파일과, 역시 권한 행이 있는 조상 파일의 쌍입니다.
+ *
+ * @param fileId             권한 행이 있는 파일 id
+ * @param ancestorId         권한 행이 있는 조상 파일 id. depth 가 0 이면 파일 자신입니다.
+ * @param ancestorPermission 조상 파일에 대한 유저의 권한
+ * @param depth              파일로부터 조상까지의 깊이
+ */
+public record PermissionAncestryDTO(UUID fileId, UUID ancestorId, Permission ancestorPermission,
+    int depth) {
+
+}
@@ -0,0 +1,9 @@
+package moanote.backend.dto;
+
+/**
+ * @param file  검색어와 일치하는 노트 파일
+ * @param score 검색 점수. 클수록 검색어와 더 관련이 있습니다.
+ */
+public record SearchHitDTO(FileDTO file, float score) {
+
+}
@@ -0,0 +1,13 @@
+package moanote.backend.dto;
+
+import java.util.List;
+
+/**
+ * 검색 결과의 한 페이지입니다.
+ *
+ * @param hits      점수가 높은 순서로 정렬된 검색 결과
+ * @param totalHits 유저가 접근할 수 있는 파일 중 검색어와 일치하는 파일의 수
+ */
+public record SearchPageDTO(List<SearchHitDTO> hits, long totalHits) {
+
+}
@@ -0,0 +1,14 @@
+package moanote.backend.dto;
+
+import java.util.UUID;
+
+/**
+ * 검색 index 의 문서 하나를 만드는 데 필요한 노트 파일의 정보입니다.
+ *
+ * @param fileId 노트 파일 id. 검색 문서의 id 로 사용됩니다.
+ * @param noteId 노트 id
+ * @param name   파일 이름
+ */
+public record SearchSourceDTO(UUID fileId, UUID noteId, String name) {
+
+}
@@ -0,0 +1,10 @@
+package moanote.backend.dto;
+
+import java.util.UUID;
+
+/**
+ * 세그먼트의 내용 없이 세그먼트가 속한 노트와 세그먼트 id 만 담은 DTO 입니다.
+ */
+public record SegmentRefDTO(UUID noteId, UUID segmentId) {
+
+}
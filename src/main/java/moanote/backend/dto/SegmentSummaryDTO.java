@@ -0,0 +1,21 @@
+package moanote.backend.dto;
+
+import moanote.backend.entity.TextNoteSegment;
+
+import java.util.UUID;
+
+/**
+ * 세그먼트의 내용 없이 id 와 종류만 담은 DTO 입니다.
+ *
+ * @see moanote.backend.repository.BaseNoteSegmentRepository#findSummariesByNoteId(UUID)
+ */
+public record SegmentSummaryDTO(UUID id, SegmentType type) {
+
+  /**
+   * 질의의 TYPE(s) 로 얻은 세그먼트 entity class 로부터 종류를 정합니다.
+   */
+  public SegmentSummaryDTO(UUID id, Class<?> segmentClass) {
+    this(id, TextNoteSegment.class.isAssignableFrom(segmentClass) ? SegmentType.TEXT
+        : SegmentType.DIAGRAM);
+  }
+}
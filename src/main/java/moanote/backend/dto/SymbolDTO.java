@@ -0,0 +1,20 @@
+package moanote.backend.dto;
+
+import moanote.backend.domain.SymbolLexer.Kind;
+
+import java.util.UUID;
+
+/**
+ * outline 또는 go-to-symbol 결과의 심볼 하나입니다.
+ *
+ * @param fileId    심볼이 선언된 노트 파일 id
+ * @param segmentId 심볼이 선언된 세그먼트 id
+ * @param name      심볼 이름
+ * @param kind      심볼 종류
+ * @param line      세그먼트 안에서 선언이 있는 줄 번호. 1 부터 시작합니다.
+ * @param depth     선언을 감싸는 심볼의 수
+ */
+public record SymbolDTO(UUID fileId, UUID segmentId, String name, Kind kind, int line,
+                        int depth) {
+
+}
@@ -0,0 +1,15 @@
+package moanote.backend.dto;
+
+import moanote.backend.entity.Note.CodeLanguage;
+
+import java.util.UUID;
+
+/**
+ * 심볼을 뽑을 노트 파일의 정보입니다.
+ *
+ * @param fileId   노트 파일 id. 노트 id 와 같습니다.
+ * @param language 노트의 코드 언어
+ */
+public record SymbolSourceDTO(UUID fileId, CodeLanguage language) {
+
+}
@@ -4,10 +4,12 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Inheritance;
 import jakarta.persistence.InheritanceType;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 import lombok.Getter;
@@ -20,6 +22,9 @@ import java.util.UUID;
 @NoArgsConstructor
 @Entity
 @Inheritance(strategy = InheritanceType.JOINED)
+@Table(name = "base_note_segment", indexes = {
+    @Index(name = "idx_base_note_segment_note_position", columnList = "note_id, position")
+})
 public abstract class BaseNoteSegment implements NoteSegment {
 
   @Id
@@ -31,4 +36,16 @@ public abstract class BaseNoteSegment implements NoteSegment {
   @OnDelete(action = OnDeleteAction.CASCADE)
   @JoinColumn(name = "note_id", nullable = false)
   private Note note;
+
+  /**
+   * <pre>
+   * 노트 안에서 세그먼트의 순서를 나타내는 fractional index key 입니다. 문자열 오름차순이 세그먼트의 순서입니다.
+   * 세그먼트를 옮길 때는 이 값만 바꾸면 되므로, 다른 세그먼트의 row 는 수정하지 않습니다.
+   * 생성 이후에는 BaseNoteSegmentRepository#updatePosition 으로만 변경되므로 엔티티를 저장할 때는 갱신하지 않습니다.
+   * </pre>
+   *
+   * @see moanote.backend.domain.FractionalIndex
+   */
+  @Column(name = "position", nullable = false, updatable = false)
+  private String position;
 }
\ No newline at end of file
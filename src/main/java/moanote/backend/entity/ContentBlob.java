@@ -0,0 +1,46 @@
+package moanote.backend.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
+
+/**
+ * <pre>
+ * 여러 세그먼트가 공유하는 텍스트 내용입니다. 내용의 SHA-256 으로 식별되므로 같은 내용은 한 번만 저장됩니다.
+ * 여러 유저가 같은 GitHub 저장소를 import 하면 파일 내용을 이 blob 하나로 공유합니다.
+ *
+ * 내용은 생성 이후 바뀌지 않으며, refCount 는 ContentBlobRepository 의 native query 로만 변경합니다.
+ * 따라서 엔티티의 refCount 는 불러온 시점의 값이며, 엔티티를 저장해도 row 는 갱신되지 않습니다.
+ * </pre>
+ *
+ * @see moanote.backend.service.ContentBlobService
+ */
+@Getter
+@NoArgsConstructor
+@Entity
+@BatchSize(size = 100)
+@Table(name = "content_blob")
+public class ContentBlob {
+
+  /**
+   * content 의 UTF-8 byte 에 대한 SHA-256 의 16진수 문자열
+   */
+  @Id
+  @Column(name = "content_hash", length = 64, nullable = false, updatable = false)
+  private String hash;
+
+  @Lob
+  @Column(name = "content", nullable = false, updatable = false, columnDefinition = "LONGTEXT")
+  private String content;
+
+  /**
+   * 이 blob 을 가리키는 세그먼트 수. 0 이 된 blob 은 주기적으로 삭제됩니다.
+   */
+  @Column(name = "ref_count", nullable = false, updatable = false)
+  private long refCount;
+}
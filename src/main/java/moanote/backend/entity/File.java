@@ -7,6 +7,7 @@ import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
@@ -29,7 +30,9 @@ import java.util.UUID;
 @Getter
 @Setter
 @NoArgsConstructor
-@Table(name = "file")
+@Table(name = "file", indexes = {
+    @Index(name = "idx_file_directory_id", columnList = "directory_id, id")
+})
 public class File {
 
   /**
@@ -96,6 +99,15 @@ public class File {
   @Column(name = "github_imported", nullable = false)
   private boolean githubImported = false;
 
+  /**
+   * <pre>
+   * 파일 목록의 버전입니다. 이 파일이나 하위 파일이 생성, 이동, 이름 변경, 삭제될 때마다 증가합니다.
+   * 목록 조회의 ETag 로 사용되며, FileRepository#bumpVersions 로만 변경되므로 엔티티를 저장할 때는 갱신하지 않습니다.
+   * </pre>
+   */
+  @Column(name = "version", nullable = false, updatable = false)
+  private long version = 0;
+
   public void addChild(File file) {
     file.setDirectory(this);
     children.add(file);
@@ -0,0 +1,46 @@
+package moanote.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.OnDelete;
+
+/**
+ * <pre>
+ *  File 계층 구조의 closure table 입니다.
+ *  모든 (조상, 자손) 쌍을 depth 와 함께 저장하며, 각 파일은 depth 0 인 자기 자신과의 쌍도 가집니다.
+ *  조상/자손 여부와 경로 조회를 File.directory 를 한 단계씩 따라가지 않고 한 번의 질의로 처리하기 위해 사용합니다.
+ *  파일이 삭제되면 DB 의 ON DELETE CASCADE 로 함께 삭제됩니다.
+ * </pre>
+ *
+ * @see moanote.backend.repository.FileAncestryRepository
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@IdClass(FileAncestryId.class)
+@Table(name = "file_ancestry", indexes = {
+    @Index(name = "idx_file_ancestry_descendant", columnList = "descendant_id, depth")
+})
+public class FileAncestry {
+
+  @Id
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "ancestor_id")
+  @OnDelete(action = org.hibernate.annotations.OnDeleteAction.CASCADE)
+  private File ancestor;
+
+  @Id
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "descendant_id")
+  @OnDelete(action = org.hibernate.annotations.OnDeleteAction.CASCADE)
+  private File descendant;
+
+  /**
+   * ancestor 에서 descendant 까지의 거리. 자기 자신이면 0 입니다.
+   */
+  @Column(name = "depth", nullable = false)
+  private int depth;
+}
@@ -0,0 +1,16 @@
+package moanote.backend.entity;
+
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import java.io.Serializable;
+
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@NoArgsConstructor
+public class FileAncestryId implements Serializable {
+
+  @EqualsAndHashCode.Include
+  private File ancestor;
+
+  @EqualsAndHashCode.Include
+  private File descendant;
+}
@@ -18,7 +18,9 @@ import org.hibernate.annotations.OnDelete;
 @Setter
 @NoArgsConstructor
 @IdClass(FileUserDataId.class)
-@Table(name = "file_user_data")
+@Table(name = "file_user_data", indexes = {
+    @Index(name = "idx_file_user_data_user_file", columnList = "user_id, file_id")
+})
 public class FileUserData {
 
   /**
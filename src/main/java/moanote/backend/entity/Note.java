@@ -93,6 +93,15 @@ public class Note {
   @OneToMany(mappedBy = "note", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
   private Set<BaseNoteSegment> segments = new HashSet<>();
 
+  /**
+   * <pre>
+   * 노트 메타데이터의 버전입니다. 세그먼트가 추가되거나 삭제될 때마다 증가합니다.
+   * NoteRepository#bumpVersion 으로만 변경되므로 엔티티를 저장할 때는 갱신하지 않습니다.
+   * </pre>
+   */
+  @Column(name = "version", nullable = false, updatable = false)
+  private long version = 0;
+
   public void addSegment(BaseNoteSegment segment) {
     segment.setNote(this);
     segments.add(segment);
@@ -2,7 +2,10 @@ package moanote.backend.entity;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.JoinColumn;
 import jakarta.persistence.Lob;
+import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -15,16 +18,49 @@ import lombok.Setter;
 @Table(name = "text_note_segment")
 public class TextNoteSegment extends BaseNoteSegment {
 
+  /**
+   * 세그먼트에 직접 저장된 내용. blob 을 공유하는 동안에는 빈 문자열입니다.
+   */
   @Lob
   @Column(name = "content", nullable = false, columnDefinition = "LONGTEXT")
   private String content = "";
 
   /**
+   * <pre>
+   * 다른 세그먼트와 공유하는 내용. null 이면 content 가 세그먼트의 내용입니다.
+   * 참조 수를 맞추기 위해 moanote.backend.service.ContentBlobService 를 통해서만 바꿔야 합니다.
+   * </pre>
+   */
+  @ManyToOne(fetch = FetchType.EAGER)
+  @JoinColumn(name = "blob_hash")
+  private ContentBlob blob;
+
+  /**
+   * @return 세그먼트의 내용. blob 을 공유하고 있으면 blob 의 내용
+   */
+  public String getContent() {
+    return blob != null ? blob.getContent() : content;
+  }
+
+  /**
+   * <pre>
    * Updates the persisted plain-text content that backs this text segment.
+   * A shared blob is detached (copy-on-write); its reference count is released by
+   * moanote.backend.service.ContentBlobService#write, so callers should prefer that method.
+   * </pre>
    *
    * @param content the new plain-text representation. {@code null} is treated as an empty string.
    */
   public void updateContent(String content) {
     this.content = content == null ? "" : content;
+    this.blob = null;
+  }
+
+  /**
+   * 세그먼트가 blob 의 내용을 공유하게 합니다. 참조 수는 caller 가 늘려야 합니다.
+   */
+  public void shareBlob(ContentBlob blob) {
+    this.blob = blob;
+    this.content = "";
   }
-}
\ No newline at end of file
+}
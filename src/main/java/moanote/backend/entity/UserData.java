@@ -25,4 +25,25 @@ public class UserData {
 
   @Column(name = "password", nullable = false)
   private String password;
+
+  /**
+   * <pre>
+   * 유저의 루트 디렉토리입니다.
+   * 루트 디렉토리를 찾기 위해 유저가 접근할 수 있는 모든 파일을 조회하지 않도록 직접 참조합니다.
+   * 이 필드가 도입되기 전에 생성된 유저는 애플리케이션 시작 시 채워집니다.
+   * </pre>
+   */
+  @OneToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "root_directory_id")
+  private File rootDirectory;
+
+  /**
+   * <pre>
+   * 유저가 받은 권한의 버전입니다. 파일 권한이 부여되거나 변경, 회수될 때마다 증가합니다.
+   * 같은 디렉토리라도 권한에 따라 유저가 볼 수 있는 목록이 달라지므로, 목록 조회의 ETag 에 디렉토리 버전과 함께 사용합니다.
+   * UserDataRepository#bumpListingVersion 으로만 변경되므로 엔티티를 저장할 때는 갱신하지 않습니다.
+   * </pre>
+   */
+  @Column(name = "listing_version", nullable = false, updatable = false)
+  private long listingVersion = 0;
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+package moanote.backend.repository;
+
+import moanote.backend.dto.SegmentSummaryDTO;
+import moanote.backend.dto.SegmentType;
+import moanote.backend.entity.BaseNoteSegment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * 세그먼트의 종류와 상관없이 BaseNoteSegment 계층 전체를 대상으로 하는 질의를 위한 레포지토리
+ */
+public interface BaseNoteSegmentRepository extends JpaRepository<BaseNoteSegment, UUID> {
+
+  /**
+   * <pre>
+   * 노트에 속한 모든 세그먼트의 id 와 종류를 세그먼트 순서대로 한 번의 질의로 불러옵니다.
+   * (note_id, position) 인덱스를 따라 읽습니다.
+   * 세그먼트의 내용은 불러오지 않으므로, 내용이 필요한 세그먼트만 종류별 레포지토리로 따로 조회해야 합니다.
+   * </pre>
+   *
+   * @param noteId 조회할 노트 id
+   * @return 세그먼트의 id 와 종류
+   */
+  @Query(value = """
+      SELECT new moanote.backend.dto.SegmentSummaryDTO(s.id, TYPE(s))
+      FROM BaseNoteSegment s
+      WHERE s.note.id = :noteId
+      ORDER BY s.position, s.id
+      """)
+  List<SegmentSummaryDTO> findSummariesByNoteId(@Param("noteId") UUID noteId);
+
+  /**
+   * @return 노트에 속한 세그먼트의 id 와 종류의 Map. 세그먼트 순서대로 순회됩니다.
+   * @see #findSummariesByNoteId(UUID)
+   */
+  default Map<UUID, SegmentType> findSegmentTypesByNoteId(UUID noteId) {
+    Map<UUID, SegmentType> segmentTypes = new LinkedHashMap<>();
+    findSummariesByNoteId(noteId)
+        .forEach(summary -> segmentTypes.put(summary.id(), summary.type()));
+    return segmentTypes;
+  }
+
+  /**
+   * @return noteId 의 노트에 속한 세그먼트의 position. 세그먼트가 노트에 속하지 않으면 빈 값
+   */
+  @Query(value = """
+      SELECT s.position
+      FROM BaseNoteSegment s
+      WHERE s.id = :segmentId AND s.note.id = :noteId
+      """)
+  Optional<String> findPositionById(@Param("segmentId") UUID segmentId,
+      @Param("noteId") UUID noteId);
+
+  /**
+   * @return 노트의 마지막 세그먼트의 position. 세그먼트가 없으면 빈 값
+   */
+  @Query(value = "SELECT MAX(s.position) FROM BaseNoteSegment s WHERE s.note.id = :noteId")
+  Optional<String> findLastPosition(@Param("noteId") UUID noteId);
+
+  /**
+   * @return position 바로 다음에 오는 세그먼트의 position. excludedId 의 세그먼트는 제외합니다.
+   */
+  @Query(value = """
+      SELECT MIN(s.position)
+      FROM BaseNoteSegment s
+      WHERE s.note.id = :noteId AND s.position > :position AND s.id <> :excludedId
+      """)
+  Optional<String> findNextPosition(@Param("noteId") UUID noteId,
+      @Param("position") String position, @Param("excludedId") UUID excludedId);
+
+  /**
+   * @return 노트의 첫 세그먼트의 position. excludedId 의 세그먼트는 제외합니다.
+   */
+  @Query(value = """
+      SELECT MIN(s.position)
+      FROM BaseNoteSegment s
+      WHERE s.note.id = :noteId AND s.id <> :excludedId
+      """)
+  Optional<String> findFirstPosition(@Param("noteId") UUID noteId,
+      @Param("excludedId") UUID excludedId);
+
+  @Modifying(flushAutomatically = true)
+  @Query(value = "UPDATE BaseNoteSegment s SET s.position = :position WHERE s.id = :segmentId")
+  void updatePosition(@Param("segmentId") UUID segmentId, @Param("position") String position);
+
+  /**
+   * position 이 없는 세그먼트를 생성 순서대로 불러옵니다. position 이 도입되기 전에 생성된 세그먼트를 채우기 위해 사용합니다.
+   */
+  @Query(value = """
+      SELECT s
+      FROM BaseNoteSegment s
+      WHERE s.position IS NULL OR s.position = ''
+      ORDER BY s.id
+      """)
+  List<BaseNoteSegment> findUnpositioned();
+}
@@ -0,0 +1,101 @@
+package moanote.backend.repository;
+
+import moanote.backend.entity.ContentBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * <pre>
+ * ContentBlob 의 생성과 참조 수 변경을 위한 레포지토리
+ * 참조 수는 동시에 여러 transaction 이 바꿀 수 있으므로, 엔티티를 읽고 쓰지 않고 row 단위의 원자적인 UPDATE 로 바꿉니다.
+ * </pre>
+ */
+public interface ContentBlobRepository extends JpaRepository<ContentBlob, String> {
+
+  /**
+   * @return 참조 수를 늘린 row 수. blob 이 없으면 0
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = """
+      UPDATE content_blob SET ref_count = ref_count + 1 WHERE content_hash = :hash
+      """)
+  int incrementRefCount(@Param("hash") String hash);
+
+  /**
+   * <pre>
+   * 참조 수가 1 인 blob 을 생성하고, 이미 있으면 참조 수를 늘립니다. (MySQL)
+   * 같은 내용을 동시에 처음 저장하는 transaction 들이 서로의 INSERT 와 primary key 로 충돌하지 않도록 한 문장으로 수행합니다.
+   * persistence context 를 거치지 않으므로, 같은 hash 의 이전 엔티티가 context 에 남아 있어도 충돌하지 않습니다.
+   * </pre>
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = """
+      INSERT INTO content_blob (content_hash, content, ref_count) VALUES (:hash, :content, 1)
+      ON DUPLICATE KEY UPDATE ref_count = ref_count + 1
+      """)
+  void upsertReference(@Param("hash") String hash, @Param("content") String content);
+
+  /**
+   * upsertReference 와 같은 동작을 H2 의 MERGE 로 수행합니다.
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = """
+      MERGE INTO content_blob b
+      USING (VALUES (CAST(:hash AS VARCHAR(64)), CAST(:content AS CLOB))) AS s(content_hash, content)
+      ON b.content_hash = s.content_hash
+      WHEN MATCHED THEN UPDATE SET ref_count = b.ref_count + 1
+      WHEN NOT MATCHED THEN INSERT (content_hash, content, ref_count) VALUES (s.content_hash, s.content, 1)
+      """)
+  void mergeReference(@Param("hash") String hash, @Param("content") String content);
+
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = """
+      UPDATE content_blob SET ref_count = ref_count - 1 WHERE content_hash = :hash
+      """)
+  void decrementRefCount(@Param("hash") String hash);
+
+  /**
+   * 노트들의 텍스트 세그먼트가 가리키는 blob 의 참조 수를 세그먼트 수만큼 한 번에 줄입니다.
+   * 세그먼트를 삭제하기 전에 호출해야 합니다.
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = """
+      UPDATE content_blob SET ref_count = ref_count - (
+          SELECT COUNT(*)
+          FROM text_note_segment t
+          JOIN base_note_segment s ON s.id = t.id
+          WHERE s.note_id IN :noteIds AND t.blob_hash = content_blob.content_hash)
+      WHERE content_hash IN (
+          SELECT t.blob_hash
+          FROM text_note_segment t
+          JOIN base_note_segment s ON s.id = t.id
+          WHERE s.note_id IN :noteIds)
+      """)
+  void releaseByNoteIds(@Param("noteIds") Collection<UUID> noteIds);
+
+  /**
+   * <pre>
+   * 참조 수가 0 인 blob 을 삭제합니다.
+   * 참조 수를 늘리는 UPDATE 와 같은 row lock 을 사용하므로, 삭제 도중 다시 참조된 blob 은 삭제되지 않습니다.
+   * 참조 수가 잘못 줄어든 경우에도 세그먼트가 가리키는 blob 은 삭제하지 않습니다.
+   * </pre>
+   *
+   * @return 삭제한 blob 수
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = """
+      DELETE FROM content_blob
+      WHERE ref_count <= 0
+        AND NOT EXISTS (SELECT 1 FROM text_note_segment t WHERE t.blob_hash = content_blob.content_hash)
+      """)
+  int deleteUnreferenced();
+
+  @Query(nativeQuery = true, value = "SELECT ref_count FROM content_blob WHERE content_hash = :hash")
+  Optional<Long> findRefCount(@Param("hash") String hash);
+}
@@ -4,6 +4,10 @@ import com.github.f4b6a3.uuid.UuidCreator;
 import moanote.backend.entity.Note;
 import moanote.backend.entity.DiagramNoteSegment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -14,6 +18,23 @@ public interface DiagramNoteSegmentRepository extends JpaRepository<DiagramNoteS
 
   Optional<DiagramNoteSegment> findDiagramNoteSegmentById(UUID id);
 
+  @Query(value = """
+      SELECT s.id
+      FROM DiagramNoteSegment s
+      WHERE s.note.id IN :noteIds
+      """)
+  List<UUID> findIdsByNoteIds(@Param("noteIds") Collection<UUID> noteIds);
+
+  /**
+   * 노트들에 속한 다이어그램 세그먼트를 한 번에 삭제합니다. 다이어그램 요소는 DB 의 ON DELETE CASCADE 로 함께 삭제됩니다.
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = """
+      DELETE FROM diagram_note_segment
+      WHERE id IN (SELECT s.id FROM base_note_segment s WHERE s.note_id IN :noteIds)
+      """)
+  void deleteAllByNoteIds(@Param("noteIds") Collection<UUID> noteIds);
+
   /**
    * 다이어그램 노트 세그먼트를 생성합니다.
    */
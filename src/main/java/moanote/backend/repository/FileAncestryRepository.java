@@ -0,0 +1,218 @@
+package moanote.backend.repository;
+
+import moanote.backend.dto.AncestorDTO;
+import moanote.backend.dto.SymbolSourceDTO;
+import moanote.backend.entity.File;
+import moanote.backend.entity.FileAncestry;
+import moanote.backend.entity.FileAncestryId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * <pre>
+ * File 계층의 closure table 질의를 위한 레포지토리
+ * 파일을 생성하거나 이동하는 쪽에서 insertFile, moveSubtree 를 호출해 closure table 을 유지해야 합니다.
+ * </pre>
+ *
+ * @see FileAncestry
+ */
+public interface FileAncestryRepository extends JpaRepository<FileAncestry, FileAncestryId> {
+
+  /**
+   * 자기 자신과의 쌍을 추가합니다. 루트 디렉토리처럼 상위 디렉토리가 없는 파일에 사용합니다.
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = """
+      INSERT INTO file_ancestry (ancestor_id, descendant_id, depth) VALUES (:fileId, :fileId, 0)
+      """)
+  void insertRoot(@Param("fileId") UUID fileId);
+
+  /**
+   * 새로 생성된 파일이 상위 디렉토리의 모든 조상을 물려받도록 쌍을 추가합니다.
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = """
+      INSERT INTO file_ancestry (ancestor_id, descendant_id, depth)
+      SELECT a.ancestor_id, :fileId, a.depth + 1
+      FROM file_ancestry a
+      WHERE a.descendant_id = :parentId
+      """)
+  void insertInheritedAncestors(@Param("fileId") UUID fileId, @Param("parentId") UUID parentId);
+
+  /**
+   * 새로 생성된 파일의 closure 를 추가합니다.
+   *
+   * @param file closure 를 추가할 파일. directory 가 이미 설정되어 있어야 합니다.
+   */
+  default void insertFile(File file) {
+    insertRoot(file.getId());
+    if (file.getDirectory() != null) {
+      insertInheritedAncestors(file.getId(), file.getDirectory().getId());
+    }
+  }
+
+  /**
+   * descendantIds 의 자손과 ancestorIds 의 조상 사이 쌍을 모두 제거합니다.
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = """
+      DELETE FROM file_ancestry
+      WHERE descendant_id IN (:descendantIds)
+      AND ancestor_id IN (:ancestorIds)
+      """)
+  void deleteAncestorPairs(@Param("descendantIds") Collection<UUID> descendantIds,
+      @Param("ancestorIds") Collection<UUID> ancestorIds);
+
+  /**
+   * <pre>
+   * subtree 바깥의 조상과 subtree 안의 자손 사이 쌍을 모두 제거합니다.
+   * MySQL 은 DELETE 대상 테이블을 같은 문장의 subquery 에서 읽을 수 없고 (error 1093),
+   * derived table 로 감싸도 optimizer 가 이를 outer query 로 병합하면 같은 오류가 나므로,
+   * subtree 의 파일 id 와 바깥 조상 id 를 먼저 조회한 뒤 file_ancestry 를 다시 읽지 않는 DELETE 로 제거합니다.
+   * subtree 바깥의 조상은 rootId 의 조상뿐이므로 깊이만큼만 있고, subtree 의 파일 id 는
+   * FileRepository#FILE_DTO_BATCH_SIZE 개씩 나누어 IN 목록의 크기를 제한합니다.
+   * </pre>
+   */
+  default void detachSubtree(UUID rootId) {
+    List<UUID> outsideAncestorIds = findAncestors(List.of(rootId)).stream()
+        .map(AncestorDTO::ancestorId)
+        .filter(ancestorId -> !ancestorId.equals(rootId))
+        .toList();
+    if (outsideAncestorIds.isEmpty()) {
+      return;
+    }
+    List<UUID> descendantIds = findDescendantIds(rootId);
+    for (int from = 0; from < descendantIds.size(); from += FileRepository.FILE_DTO_BATCH_SIZE) {
+      deleteAncestorPairs(descendantIds.subList(from,
+          Math.min(descendantIds.size(), from + FileRepository.FILE_DTO_BATCH_SIZE)),
+          outsideAncestorIds);
+    }
+  }
+
+  /**
+   * subtree 의 모든 자손이 새 상위 디렉토리의 모든 조상을 물려받도록 쌍을 추가합니다.
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = """
+      INSERT INTO file_ancestry (ancestor_id, descendant_id, depth)
+      SELECT p.ancestor_id, s.descendant_id, p.depth + s.depth + 1
+      FROM file_ancestry p
+      JOIN file_ancestry s ON s.ancestor_id = :rootId
+      WHERE p.descendant_id = :parentId
+      """)
+  void attachSubtree(@Param("rootId") UUID rootId, @Param("parentId") UUID parentId);
+
+  /**
+   * <pre>
+   * rootId 를 루트로 하는 subtree 를 newParentId 아래로 옮긴 것으로 closure 를 갱신합니다.
+   * subtree 내부의 쌍은 그대로 두고, 바깥 조상과의 쌍만 다시 만듭니다.
+   * newParentId 가 subtree 에 속하지 않는지는 caller 가 isAncestor 로 확인해야 합니다.
+   * </pre>
+   */
+  default void moveSubtree(UUID rootId, UUID newParentId) {
+    detachSubtree(rootId);
+    attachSubtree(rootId, newParentId);
+  }
+
+  /**
+   * <pre>
+   * 전체 closure table 을 File.directory 로부터 다시 계산합니다.
+   * closure table 이 도입되기 전에 생성된 파일을 채우기 위해 사용하며, 비어 있는 table 에만 호출해야 합니다.
+   * </pre>
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = """
+      INSERT INTO file_ancestry (ancestor_id, descendant_id, depth)
+      WITH RECURSIVE closure (ancestor_id, descendant_id, depth) AS (
+        SELECT f.id, f.id, 0 FROM file f
+        UNION ALL
+        SELECT c.ancestor_id, f.id, c.depth + 1
+        FROM closure c JOIN file f ON f.directory_id = c.descendant_id
+      )
+      SELECT ancestor_id, descendant_id, depth FROM closure
+      """)
+  void rebuild();
+
+  /**
+   * @return ancestorId 가 descendantId 자신이거나 조상인지 여부
+   */
+  @Query(value = """
+      SELECT COUNT(a) > 0
+      FROM FileAncestry a
+      WHERE a.ancestor.id = :ancestorId AND a.descendant.id = :descendantId
+      """)
+  boolean isAncestor(@Param("ancestorId") UUID ancestorId,
+      @Param("descendantId") UUID descendantId);
+
+  /**
+   * 파일의 모든 조상을 루트부터 순서대로 반환합니다. 파일 자신이 마지막에 포함됩니다.
+   *
+   * @param descendantId 조회할 파일 id
+   * @return 루트 디렉토리부터 파일 자신까지의 경로
+   */
+  @Query(value = """
+      SELECT f
+      FROM File f
+      JOIN FileAncestry a ON a.ancestor.id = f.id
+      WHERE a.descendant.id = :descendantId
+      ORDER BY a.depth DESC
+      """)
+  List<File> findPath(@Param("descendantId") UUID descendantId);
+
+  /**
+   * <pre>
+   * ancestorId 아래에서 descendantId 까지의 경로에 있는 파일 이름을 순서대로 반환합니다.
+   * ancestorId 자신은 포함하지 않고 descendantId 는 포함합니다.
+   * descendantId 가 ancestorId 아래에 있지 않으면 빈 리스트를 반환합니다.
+   * </pre>
+   */
+  @Query(value = """
+      SELECT f.name
+      FROM File f
+      JOIN FileAncestry a ON a.ancestor.id = f.id
+      JOIN FileAncestry root ON root.descendant.id = a.descendant.id
+      WHERE a.descendant.id = :descendantId
+      AND root.ancestor.id = :ancestorId
+      AND a.depth < root.depth
+      ORDER BY a.depth DESC
+      """)
+  List<String> findRelativePathNames(@Param("ancestorId") UUID ancestorId,
+      @Param("descendantId") UUID descendantId);
+
+  /**
+   * @return ancestorId 를 루트로 하는 subtree 에 속한 모든 파일 id. ancestorId 자신도 포함합니다.
+   */
+  @Query(value = """
+      SELECT a.descendant.id
+      FROM FileAncestry a
+      WHERE a.ancestor.id = :ancestorId
+      """)
+  List<UUID> findDescendantIds(@Param("ancestorId") UUID ancestorId);
+
+  /**
+   * @return ancestorId 를 루트로 하는 subtree 에 속한 노트 파일. ancestorId 가 노트 파일이면 자신도 포함합니다.
+   */
+  @Query(value = """
+      SELECT new moanote.backend.dto.SymbolSourceDTO(f.id, n.codeLanguage)
+      FROM FileAncestry a
+      JOIN a.descendant f
+      JOIN f.note n
+      WHERE a.ancestor.id = :ancestorId
+      """)
+  List<SymbolSourceDTO> findSymbolSourcesInSubtree(@Param("ancestorId") UUID ancestorId);
+
+  /**
+   * @return descendantIds 각각의 모든 조상. 파일 자신도 포함합니다.
+   */
+  @Query(value = """
+      SELECT new moanote.backend.dto.AncestorDTO(a.descendant.id, a.ancestor.id)
+      FROM FileAncestry a
+      WHERE a.descendant.id IN :descendantIds
+      """)
+  List<AncestorDTO> findAncestors(@Param("descendantIds") Collection<UUID> descendantIds);
+}
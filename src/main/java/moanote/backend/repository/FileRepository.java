@@ -1,16 +1,31 @@
 package moanote.backend.repository;
 
 import com.github.f4b6a3.uuid.UuidCreator;
+import moanote.backend.dto.FileDTO;
+import moanote.backend.dto.FilePageRequestDTO;
+import moanote.backend.dto.SearchSourceDTO;
 import moanote.backend.entity.File;
 import moanote.backend.entity.File.FileType;
 import moanote.backend.entity.UserData;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.util.*;
+import java.util.stream.Stream;
 
 public interface FileRepository extends JpaRepository<File, UUID> {
+
+  /**
+   * findFileDTOsByIdsOrdered 가 한 번의 IN 질의에 담는 최대 id 수
+   */
+  int FILE_DTO_BATCH_SIZE = 500;
+
   @Query(value = """
       SELECT n
       FROM File n
@@ -20,29 +35,399 @@ public interface FileRepository extends JpaRepository<File, UUID> {
       """)
   List<File> findFilesByOwner(@Param("owner") UserData ownerUser);
 
+  /**
+   * <pre>
+   * 파일 f 에 대해 userId 의 권한을 결정하는 행을 access 로 join 합니다.
+   * 권한은 디렉토리로부터 상속되므로, f 자신부터 루트까지 중 userId 의 행이 있는 가장 가까운 파일의 행이 f 의 권한입니다.
+   * NONE 이 아닌 행만 join 하고 ACCESS_FILTER 로 더 가까운 행이 없는지 확인하므로, 가장 가까운 행이 NONE 이면 접근할 수 없습니다.
+   * </pre>
+   *
+   * @see moanote.backend.service.AclService#getPermission(UUID, UUID)
+   */
+  String ACCESS_JOIN = """
+      JOIN FileAncestry accessPath ON accessPath.descendant.id = f.id
+      JOIN FileUserData access ON access.file.id = accessPath.ancestor.id AND access.user.id = :userId
+          AND access.permission <> 'NONE'
+      """;
+
+  /**
+   * ACCESS_JOIN 과 함께 사용하는 WHERE 절의 시작입니다. 조건을 더하려면 AND 로 이어 씁니다.
+   */
+  String ACCESS_FILTER = """
+      WHERE NOT EXISTS (
+        SELECT 1
+        FROM FileAncestry closerPath
+        JOIN FileUserData closer ON closer.file.id = closerPath.ancestor.id AND closer.user.id = :userId
+        WHERE closerPath.descendant.id = f.id AND closerPath.depth < accessPath.depth
+      )
+      """;
+
+  /**
+   * 상위 디렉토리로부터 상속된 권한을 포함하여, userId 가 접근할 수 있는 모든 파일을 불러옵니다.
+   */
   @Query(value = """
-      SELECT n
-      FROM File n
-      JOIN FileUserData fud ON n.id = fud.file.id
-      WHERE fud.user = :user
-      """)
-  List<File> findFilesByUser(@Param("user") UserData user);
+      SELECT f
+      FROM File f
+      """ + ACCESS_JOIN + ACCESS_FILTER)
+  List<File> findFilesByUser(@Param("userId") UUID userId);
 
   List<File> findFilesByDirectory(File directory);
 
+  /**
+   * <pre>
+   * rootId 를 루트로 하는 subtree 전체를 한 번의 재귀 질의로 불러옵니다. 루트 자신도 포함됩니다.
+   * 결과는 루트로부터의 깊이 오름차순으로 정렬되므로, 상위 디렉토리는 항상 하위 파일보다 먼저 나옵니다.
+   * 같은 깊이의 파일 사이의 순서는 보장하지 않습니다.
+   *
+   * MySQL 8 과 H2 에서 모두 동작하는 WITH RECURSIVE 구문을 사용합니다.
+   * </pre>
+   *
+   * @param rootId subtree 의 루트 파일 id
+   * @return subtree 에 속한 File 목록
+   */
+  @Query(nativeQuery = true, value = SUBTREE_QUERY)
+  List<File> findSubtree(@Param("rootId") UUID rootId);
+
+  /**
+   * findSubtree 와 같은 결과를 cursor 로 읽어 오는 Stream 으로 반환합니다. transaction 안에서 사용하고 사용 후 닫아야 합니다.
+   *
+   * @param rootId subtree 의 루트 파일 id
+   * @return 깊이 오름차순으로 정렬된 subtree 의 Stream
+   * @see #findSubtree(UUID)
+   */
+  @Query(nativeQuery = true, value = SUBTREE_QUERY)
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + FILE_DTO_BATCH_SIZE))
+  Stream<File> streamSubtree(@Param("rootId") UUID rootId);
+
+  String SUBTREE_QUERY = """
+      WITH RECURSIVE subtree (id, depth) AS (
+        SELECT f.id, 0 FROM file f WHERE f.id = :rootId
+        UNION ALL
+        SELECT c.id, s.depth + 1 FROM file c JOIN subtree s ON c.directory_id = s.id
+      )
+      SELECT f.* FROM file f JOIN subtree s ON f.id = s.id ORDER BY s.depth
+      """;
+
+  /**
+   * <pre>
+   * 파일과 파일의 owner 를 한 번의 질의로 FileDTO 로 불러옵니다.
+   * 파일마다 owner 를 따로 조회하지 않도록, 목록을 반환하는 API 는 이 질의를 사용해야 합니다.
+   * 반환 순서는 보장하지 않습니다.
+   * </pre>
+   *
+   * @param ids 불러올 파일 id 목록
+   * @return 각 파일의 FileDTO
+   */
+  @Query(value = """
+      SELECT new moanote.backend.dto.FileDTO(f.name, f.id, f.type, d.id, u.id, u.username,
+          f.githubImported)
+      FROM File f
+      LEFT JOIN f.directory d
+      JOIN FileUserData owner ON f.id = owner.file.id AND owner.permission = 'OWNER'
+      JOIN owner.user u
+      WHERE f.id IN :ids
+      """)
+  List<FileDTO> findFileDTOsByIds(@Param("ids") Collection<UUID> ids);
+
+  /**
+   * directory 와 directory 바로 아래의 파일들을 owner 와 함께 FileDTO 로 불러옵니다.
+   *
+   * @param directory 조회할 디렉토리
+   * @return directory 자신과 하위 파일들의 FileDTO
+   */
+  @Query(value = """
+      SELECT new moanote.backend.dto.FileDTO(f.name, f.id, f.type, d.id, u.id, u.username,
+          f.githubImported)
+      FROM File f
+      LEFT JOIN f.directory d
+      JOIN FileUserData owner ON f.id = owner.file.id AND owner.permission = 'OWNER'
+      JOIN owner.user u
+      WHERE d = :directory OR f = :directory
+      """)
+  List<FileDTO> findFileDTOsInDirectory(@Param("directory") File directory);
+
+  /**
+   * 상위 디렉토리로부터 상속된 권한을 포함하여, user 가 접근할 수 있는 모든 파일을 owner 와 함께 FileDTO 로 불러옵니다.
+   *
+   * @param userId 조회할 유저 id
+   * @return user 가 접근할 수 있는 파일들의 FileDTO
+   */
+  @Query(value = """
+      SELECT new moanote.backend.dto.FileDTO(f.name, f.id, f.type, d.id, u.id, u.username,
+          f.githubImported)
+      FROM File f
+      LEFT JOIN f.directory d
+      """ + ACCESS_JOIN + """
+      JOIN FileUserData owner ON f.id = owner.file.id AND owner.permission = 'OWNER'
+      JOIN owner.user u
+      """ + ACCESS_FILTER)
+  List<FileDTO> findFileDTOsByUser(@Param("userId") UUID userId);
+
+  String PAGE_SELECT = """
+      SELECT new moanote.backend.dto.FileDTO(f.name, f.id, f.type, d.id, u.id, u.username,
+          f.githubImported)
+      FROM File f
+      LEFT JOIN f.directory d
+      """;
+
+  String PAGE_OWNER_JOIN = """
+      JOIN FileUserData owner ON f.id = owner.file.id AND owner.permission = 'OWNER'
+      JOIN owner.user u
+      """;
+
+  String PAGE_FILTER = """
+      AND (:type IS NULL OR f.type = :type)
+      AND f.name LIKE :namePattern ESCAPE '!'
+      AND (:githubImported IS NULL OR f.githubImported = :githubImported)
+      """;
+
+  /**
+   * user 가 접근할 수 있는 파일을 id 오름차순으로 cursor 다음부터 limit 개 불러옵니다. 상속된 권한을 포함합니다.
+   * 유저의 권한 행은 file_user_data 의 (user_id, file_id) 인덱스로 찾습니다.
+   *
+   * @see #findFileDTOPageByUser(UUID, FilePageRequestDTO, int)
+   */
+  @Query(value = PAGE_SELECT + ACCESS_JOIN + PAGE_OWNER_JOIN + ACCESS_FILTER + """
+      AND (:cursor IS NULL OR f.id > :cursor)
+      """ + PAGE_FILTER + """
+      ORDER BY f.id ASC
+      """)
+  List<FileDTO> findFileDTOPageByUserAsc(@Param("userId") UUID userId,
+      @Param("cursor") UUID cursor, @Param("type") FileType type,
+      @Param("namePattern") String namePattern, @Param("githubImported") Boolean githubImported,
+      Limit limit);
+
+  /**
+   * findFileDTOPageByUserAsc 의 id 내림차순 버전입니다.
+   */
+  @Query(value = PAGE_SELECT + ACCESS_JOIN + PAGE_OWNER_JOIN + ACCESS_FILTER + """
+      AND (:cursor IS NULL OR f.id < :cursor)
+      """ + PAGE_FILTER + """
+      ORDER BY f.id DESC
+      """)
+  List<FileDTO> findFileDTOPageByUserDesc(@Param("userId") UUID userId,
+      @Param("cursor") UUID cursor, @Param("type") FileType type,
+      @Param("namePattern") String namePattern, @Param("githubImported") Boolean githubImported,
+      Limit limit);
+
+  /**
+   * directory 바로 아래의 파일을 id 오름차순으로 cursor 다음부터 limit 개 불러옵니다. directory 자신은 포함하지 않습니다.
+   * file 의 (directory_id, id) 인덱스를 따라 읽습니다.
+   *
+   * @see #findFileDTOPageInDirectory(UUID, FilePageRequestDTO, int)
+   */
+  @Query(value = PAGE_SELECT + PAGE_OWNER_JOIN + """
+      WHERE d.id = :directoryId
+      AND (:cursor IS NULL OR f.id > :cursor)
+      """ + PAGE_FILTER + """
+      ORDER BY f.id ASC
+      """)
+  List<FileDTO> findFileDTOPageInDirectoryAsc(@Param("directoryId") UUID directoryId,
+      @Param("cursor") UUID cursor, @Param("type") FileType type,
+      @Param("namePattern") String namePattern, @Param("githubImported") Boolean githubImported,
+      Limit limit);
+
+  /**
+   * findFileDTOPageInDirectoryAsc 의 id 내림차순 버전입니다.
+   */
+  @Query(value = PAGE_SELECT + PAGE_OWNER_JOIN + """
+      WHERE d.id = :directoryId
+      AND (:cursor IS NULL OR f.id < :cursor)
+      """ + PAGE_FILTER + """
+      ORDER BY f.id DESC
+      """)
+  List<FileDTO> findFileDTOPageInDirectoryDesc(@Param("directoryId") UUID directoryId,
+      @Param("cursor") UUID cursor, @Param("type") FileType type,
+      @Param("namePattern") String namePattern, @Param("githubImported") Boolean githubImported,
+      Limit limit);
+
+  /**
+   * <pre>
+   * user 가 권한을 가진 파일을 request 의 조건과 정렬 순서로 limit 개까지 불러옵니다.
+   * 정렬 방향에 따라 cursor 비교 연산자가 달라지므로 방향별 질의 중 하나를 사용합니다.
+   * </pre>
+   */
+  default List<FileDTO> findFileDTOPageByUser(UUID userId, FilePageRequestDTO request,
+      int limit) {
+    String namePattern = toPrefixPattern(request.namePrefix());
+    return request.descending()
+        ? findFileDTOPageByUserDesc(userId, request.cursor(), request.type(), namePattern,
+        request.githubImported(), Limit.of(limit))
+        : findFileDTOPageByUserAsc(userId, request.cursor(), request.type(), namePattern,
+            request.githubImported(), Limit.of(limit));
+  }
+
+  /**
+   * directory 바로 아래의 파일을 request 의 조건과 정렬 순서로 limit 개까지 불러옵니다.
+   */
+  default List<FileDTO> findFileDTOPageInDirectory(UUID directoryId, FilePageRequestDTO request,
+      int limit) {
+    String namePattern = toPrefixPattern(request.namePrefix());
+    return request.descending()
+        ? findFileDTOPageInDirectoryDesc(directoryId, request.cursor(), request.type(),
+        namePattern, request.githubImported(), Limit.of(limit))
+        : findFileDTOPageInDirectoryAsc(directoryId, request.cursor(), request.type(),
+            namePattern, request.githubImported(), Limit.of(limit));
+  }
+
+  /**
+   * 이름 접두어를 LIKE 패턴으로 바꿉니다. 접두어 안의 와일드카드 문자는 '!' 로 escape 합니다.
+   */
+  static String toPrefixPattern(String prefix) {
+    if (prefix == null || prefix.isEmpty()) {
+      return "%";
+    }
+    return prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+  }
+
+  default Optional<FileDTO> findFileDTOById(UUID id) {
+    return findFileDTOsByIds(List.of(id)).stream().findFirst();
+  }
+
+  /**
+   * <pre>
+   * ids 의 순서를 유지하며 FileDTO 를 불러옵니다.
+   * IN 절이 지나치게 길어지지 않도록 FILE_DTO_BATCH_SIZE 개씩 나누어 질의합니다.
+   * </pre>
+   *
+   * @param ids 불러올 파일 id 목록
+   * @return ids 순서대로 정렬된 FileDTO 목록. owner 가 없는 파일은 제외됩니다.
+   */
+  default List<FileDTO> findFileDTOsByIdsOrdered(List<UUID> ids) {
+    Map<UUID, FileDTO> loaded = new HashMap<>();
+    for (int from = 0; from < ids.size(); from += FILE_DTO_BATCH_SIZE) {
+      List<UUID> chunk = ids.subList(from, Math.min(ids.size(), from + FILE_DTO_BATCH_SIZE));
+      findFileDTOsByIds(chunk).forEach(dto -> loaded.put(dto.id(), dto));
+    }
+    List<FileDTO> ordered = new ArrayList<>(ids.size());
+    for (UUID id : ids) {
+      FileDTO dto = loaded.get(id);
+      if (dto != null) {
+        ordered.add(dto);
+      }
+    }
+    return ordered;
+  }
+
   Optional<File> findFileById(UUID id);
 
+  @Query(value = """
+      SELECT f.id
+      FROM File f
+      WHERE f.note.id = :noteId
+      """)
+  Optional<UUID> findIdByNoteId(@Param("noteId") UUID noteId);
+
+  @Query(value = """
+      SELECT f.id
+      FROM File f
+      JOIN BaseNoteSegment s ON s.note.id = f.note.id
+      WHERE s.id = :segmentId
+      """)
+  Optional<UUID> findIdBySegmentId(@Param("segmentId") UUID segmentId);
+
+  @Query(value = """
+      SELECT f.note.id
+      FROM File f
+      WHERE f.id IN :ids AND f.note IS NOT NULL
+      """)
+  List<UUID> findNoteIdsByIds(@Param("ids") Collection<UUID> ids);
+
+  /**
+   * @return ids 중 노트가 있는 파일의 검색 문서 정보
+   */
+  @Query(value = """
+      SELECT new moanote.backend.dto.SearchSourceDTO(f.id, n.id, f.name)
+      FROM File f
+      JOIN f.note n
+      WHERE f.id IN :ids
+      """)
+  List<SearchSourceDTO> findSearchSourcesByIds(@Param("ids") Collection<UUID> ids);
+
+  /**
+   * @return noteIds 에 해당하는 노트를 가진 파일의 검색 문서 정보
+   */
+  @Query(value = """
+      SELECT new moanote.backend.dto.SearchSourceDTO(f.id, n.id, f.name)
+      FROM File f
+      JOIN f.note n
+      WHERE n.id IN :noteIds
+      """)
+  List<SearchSourceDTO> findSearchSourcesByNoteIds(@Param("noteIds") Collection<UUID> noteIds);
+
+  /**
+   * @return 노트가 있는 모든 파일의 id
+   */
+  @Query(value = """
+      SELECT f.id
+      FROM File f
+      WHERE f.note IS NOT NULL
+      """)
+  List<UUID> findIdsWithNote();
+
+  /**
+   * <pre>
+   * 파일 자신과 모든 조상 디렉토리의 목록 버전을 증가시킵니다.
+   * 재귀 목록은 subtree 전체를 포함하므로, 파일이 바뀌면 루트까지의 모든 디렉토리 버전을 함께 올립니다.
+   * </pre>
+   *
+   * @param fileId 변경된 파일 id
+   * @see File#getVersion()
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = """
+      UPDATE file SET version = version + 1
+      WHERE id IN (SELECT a.ancestor_id FROM file_ancestry a WHERE a.descendant_id = :fileId)
+      """)
+  void bumpVersions(@Param("fileId") UUID fileId);
+
+  @Query(value = "SELECT f.version FROM File f WHERE f.id = :fileId")
+  Optional<Long> findVersionById(@Param("fileId") UUID fileId);
+
+  /**
+   * <pre>
+   * 파일들의 상위 디렉토리와 노트 참조를 끊습니다.
+   * 한 번의 DELETE 로 subtree 를 지울 때 MySQL 은 row 단위로 FK 를 검사하므로, 삭제 전에 자기 참조와 노트 참조를 먼저 제거합니다.
+   * </pre>
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = "UPDATE file SET directory_id = NULL, note_id = NULL WHERE id IN :ids")
+  void unlinkDirectoriesAndNotes(@Param("ids") Collection<UUID> ids);
+
+  /**
+   * 파일들을 한 번에 삭제합니다. 권한, closure, import 기록은 DB 의 ON DELETE CASCADE 로 함께 삭제됩니다.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query(nativeQuery = true, value = "DELETE FROM file WHERE id IN :ids")
+  void deleteAllByIds(@Param("ids") Collection<UUID> ids);
+
+  /**
+   * 특정 유저가 소유한, 상위 디렉토리가 없는 디렉토리를 찾습니다. UserData.rootDirectory 가 비어 있는 경우에만 사용됩니다.
+   */
+  @Query(value = """
+      SELECT f
+      FROM File f
+      JOIN FileUserData fud ON f.id = fud.file.id
+      WHERE fud.user = :user
+      AND fud.permission = 'OWNER'
+      AND f.directory IS NULL
+      AND f.type = 'DIRECTORY'
+      """)
+  List<File> findParentlessDirectoriesByOwner(@Param("user") UserData user);
+
   /**
-   * 특정 유저의 루트 디렉토리를 반환합니다.
+   * 특정 유저의 루트 디렉토리를 반환합니다. UserData.rootDirectory 를 통해 기본키로 조회합니다.
    *
    * @param user 조회할 유저
    * @return 해당 유저의 루트 디렉토리
    */
   default File getRootDirectory(UserData user) {
-    return findFilesByUser(user).stream()
-        .filter(file -> file.getType() == FileType.DIRECTORY && file.getDirectory() == null)
-        .findFirst()
-        .orElseThrow(() -> new NoSuchElementException("Root directory not found for user: " + user.getId()));
+    File rootDirectory = user.getRootDirectory();
+    Optional<File> found = rootDirectory != null
+        ? findById(rootDirectory.getId())
+        : findParentlessDirectoriesByOwner(user).stream().findFirst();
+    return found.orElseThrow(
+        () -> new NoSuchElementException("Root directory not found for user: " + user.getId()));
   }
 
   default File createFile(String name, FileType type, File directory) {
@@ -1,11 +1,13 @@
 package moanote.backend.repository;
 
+import moanote.backend.dto.PermissionAncestryDTO;
 import moanote.backend.entity.File;
 import moanote.backend.entity.FileUserData.Permission;
 import moanote.backend.entity.UserData;
 import moanote.backend.entity.FileUserData;
 import moanote.backend.entity.FileUserDataId;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -39,4 +41,79 @@ public interface FileUserDataRepository extends JpaRepository<FileUserData, File
       WHERE fud.file = :file AND fud.permission = 'OWNER'
       """)
   FileUserData findOwnerByFile(@Param("file") File file);
+
+  /**
+   * <pre>
+   * 파일과 파일의 모든 조상 디렉토리에 대해 user 가 가진 권한을 가까운 순서대로 반환합니다.
+   * 첫 번째 원소가 상속을 고려한 user 의 실제 권한이며, NONE 이면 상위 디렉토리의 권한을 가리는 접근 거부입니다.
+   * </pre>
+   *
+   * @param fileId 조회할 파일 id
+   * @param userId 조회할 유저 id
+   * @return 파일 자신부터 루트 디렉토리까지, 권한이 있는 파일의 권한 목록
+   */
+  @Query(value = """
+      SELECT fud.permission
+      FROM FileUserData fud
+      JOIN FileAncestry a ON a.ancestor.id = fud.file.id
+      WHERE a.descendant.id = :fileId AND fud.user.id = :userId
+      ORDER BY a.depth ASC
+      """)
+  List<Permission> findInheritedPermissions(@Param("fileId") UUID fileId,
+      @Param("userId") UUID userId);
+
+  /**
+   * <pre>
+   * user 의 모든 권한 행과, 각 행의 파일 자신을 포함한 조상 중 역시 user 의 권한 행이 있는 파일을 반환합니다.
+   * 상속 관계에서 NONE 행이 가리는 범위를 계산하는 데 사용합니다.
+   * </pre>
+   *
+   * @see moanote.backend.domain.AccessScope
+   */
+  @Query(value = """
+      SELECT new moanote.backend.dto.PermissionAncestryDTO(fud.file.id, granted.file.id,
+          granted.permission, a.depth)
+      FROM FileUserData fud
+      JOIN FileAncestry a ON a.descendant.id = fud.file.id
+      JOIN FileUserData granted ON granted.file.id = a.ancestor.id AND granted.user.id = :userId
+      WHERE fud.user.id = :userId
+      """)
+  List<PermissionAncestryDTO> findPermissionAncestry(@Param("userId") UUID userId);
+
+  /**
+   * <pre>
+   * 상속을 고려하여 파일에 접근할 수 있는 모든 유저의 권한 행을 반환합니다.
+   * 유저마다 파일 자신부터 루트까지 중 가장 가까운 행이며, 그 행이 NONE 인 유저는 제외합니다.
+   * </pre>
+   */
+  @Query(value = """
+      SELECT fud
+      FROM FileUserData fud
+      JOIN FETCH fud.user
+      JOIN FileAncestry a ON a.ancestor.id = fud.file.id
+      WHERE a.descendant.id = :fileId
+      AND fud.permission <> 'NONE'
+      AND NOT EXISTS (
+        SELECT 1
+        FROM FileAncestry closerPath
+        JOIN FileUserData closer ON closer.file.id = closerPath.ancestor.id
+        WHERE closerPath.descendant.id = :fileId AND closer.user = fud.user
+        AND closerPath.depth < a.depth
+      )
+      """)
+  List<FileUserData> findEffectivePermissionsByFileId(@Param("fileId") UUID fileId);
+
+  /**
+   * rootId 의 하위 파일(rootId 자신 제외)에 부여된 user 의 권한 행을 삭제합니다. OWNER 행은 남깁니다.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query(nativeQuery = true, value = """
+      DELETE FROM file_user_data
+      WHERE user_id = :userId
+      AND permission <> 'OWNER'
+      AND file_id IN (
+        SELECT a.descendant_id FROM file_ancestry a WHERE a.ancestor_id = :rootId AND a.depth > 0
+      )
+      """)
+  void deletePermissionsBelow(@Param("rootId") UUID rootId, @Param("userId") UUID userId);
 }
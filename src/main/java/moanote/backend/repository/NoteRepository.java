@@ -5,7 +5,11 @@ import moanote.backend.entity.File;
 import moanote.backend.entity.File.FileType;
 import moanote.backend.entity.Note;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -13,6 +17,36 @@ public interface NoteRepository extends JpaRepository<Note, UUID> {
 
   Optional<Note> findNoteById(UUID noteId);
 
+  /**
+   * <pre>
+   * 노트들을 한 번에 삭제합니다. base_note_segment 의 row 는 DB 의 ON DELETE CASCADE 로 함께 삭제되므로,
+   * 하위 세그먼트 테이블의 row 는 먼저 삭제되어 있어야 합니다. 노트를 참조하는 File 도 먼저 연결이 끊어져 있어야 합니다.
+   * </pre>
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = "DELETE FROM note WHERE id IN :noteIds")
+  void deleteAllByIds(@Param("noteIds") Collection<UUID> noteIds);
+
+  /**
+   * 노트의 메타데이터 버전을 증가시킵니다.
+   *
+   * @see Note#getVersion()
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = "UPDATE note SET version = version + 1 WHERE id = :noteId")
+  void bumpVersion(@Param("noteId") UUID noteId);
+
+  /**
+   * 노트 버전과 노트를 가진 파일의 목록 버전을 '.' 로 이어 반환합니다.
+   */
+  @Query(value = """
+      SELECT CONCAT(n.version, '.', f.version)
+      FROM Note n
+      JOIN n.file f
+      WHERE n.id = :noteId
+      """)
+  Optional<String> findMetadataVersionById(@Param("noteId") UUID noteId);
+
   default Note createNote(File file) {
     Note note = new Note();
     if (file.getType() != FileType.DOCUMENT) {
@@ -1,9 +1,14 @@
 package moanote.backend.repository;
 
 import com.github.f4b6a3.uuid.UuidCreator;
+import moanote.backend.dto.SegmentRefDTO;
 import moanote.backend.entity.Note;
 import moanote.backend.entity.TextNoteSegment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -12,8 +17,48 @@ public interface TextNoteSegmentRepository extends JpaRepository<TextNoteSegment
 
   List<TextNoteSegment> findAllByNote(Note note);
 
+  /**
+   * @return 노트의 텍스트 세그먼트를 세그먼트 순서대로 정렬한 목록
+   */
+  List<TextNoteSegment> findAllByNoteOrderByPositionAscIdAsc(Note note);
+
   Optional<TextNoteSegment> findTextNoteSegmentById(UUID id);
 
+  /**
+   * @return 노트들에 속한 텍스트 세그먼트를 노트 안의 세그먼트 순서대로 정렬한 목록
+   */
+  @Query(value = """
+      SELECT s
+      FROM TextNoteSegment s
+      LEFT JOIN FETCH s.blob
+      WHERE s.note.id IN :noteIds
+      ORDER BY s.position, s.id
+      """)
+  List<TextNoteSegment> findAllByNoteIdsOrderByPosition(@Param("noteIds") Collection<UUID> noteIds);
+
+  /**
+   * 세그먼트의 내용은 불러오지 않습니다.
+   *
+   * @return 노트들에 속한 텍스트 세그먼트의 id 를 노트 안의 세그먼트 순서대로 정렬한 목록
+   */
+  @Query(value = """
+      SELECT new moanote.backend.dto.SegmentRefDTO(s.note.id, s.id)
+      FROM TextNoteSegment s
+      WHERE s.note.id IN :noteIds
+      ORDER BY s.position, s.id
+      """)
+  List<SegmentRefDTO> findRefsByNoteIdsOrderByPosition(@Param("noteIds") Collection<UUID> noteIds);
+
+  /**
+   * 노트들에 속한 텍스트 세그먼트를 한 번에 삭제합니다. base_note_segment 의 row 는 노트 삭제 시 함께 삭제됩니다.
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = """
+      DELETE FROM text_note_segment
+      WHERE id IN (SELECT s.id FROM base_note_segment s WHERE s.note_id IN :noteIds)
+      """)
+  void deleteAllByNoteIds(@Param("noteIds") Collection<UUID> noteIds);
+
   default TextNoteSegment create(TextNoteSegment segment) {
     segment.setId(UuidCreator.getTimeOrderedEpoch());
     return save(segment);
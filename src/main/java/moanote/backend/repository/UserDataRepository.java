@@ -3,6 +3,9 @@ package moanote.backend.repository;
 import com.github.f4b6a3.uuid.UuidCreator;
 import moanote.backend.entity.UserData;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -15,4 +18,35 @@ public interface UserDataRepository extends JpaRepository<UserData, UUID> {
     return save(userData);
   }
   Optional<UserData> findByUsername(String username);
-}
\ No newline at end of file
+
+  /**
+   * 루트 디렉토리 참조가 비어 있는 유저에게, 유저가 소유한 상위 디렉토리가 없는 디렉토리를 루트 디렉토리로 채웁니다.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query(nativeQuery = true, value = """
+      UPDATE user_data SET root_directory_id = (
+        SELECT MIN(f.id)
+        FROM file f
+        JOIN file_user_data fud ON fud.file_id = f.id
+        WHERE fud.user_id = user_data.id
+        AND fud.permission = 'OWNER'
+        AND f.directory_id IS NULL
+        AND f.type = 'DIRECTORY'
+      )
+      WHERE root_directory_id IS NULL
+      """)
+  int backfillRootDirectories();
+
+  /**
+   * 유저의 권한이 바뀌었음을 목록 ETag 에 반영하도록 유저의 목록 버전을 증가시킵니다.
+   *
+   * @param userId 권한이 바뀐 유저 id
+   * @see UserData#getListingVersion()
+   */
+  @Modifying(flushAutomatically = true)
+  @Query(nativeQuery = true, value = "UPDATE user_data SET listing_version = listing_version + 1 WHERE id = :userId")
+  void bumpListingVersion(@Param("userId") UUID userId);
+
+  @Query(value = "SELECT u.listingVersion FROM UserData u WHERE u.id = :userId")
+  Optional<Long> findListingVersionById(@Param("userId") UUID userId);
+}
@@ -0,0 +1,165 @@
+package moanote.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import moanote.backend.domain.AccessScope;
+import moanote.backend.dto.CacheStatsDTO;
+import moanote.backend.entity.FileUserData.Permission;
+import moanote.backend.repository.FileRepository;
+import moanote.backend.repository.FileUserDataRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * <pre>
+ *   파일 접근 권한을 판단하는 서비스입니다.
+ *
+ *   권한은 디렉토리로부터 상속됩니다. 파일에 대해 유저가 가진 권한은, 파일 자신부터 루트 디렉토리까지 중
+ *   유저에게 권한이 부여된 가장 가까운 파일의 권한입니다. 조상 목록은 closure table 로 한 번에 조회합니다.
+ *   가장 가까운 권한이 NONE 이면 상위 디렉토리가 공유되어 있더라도 접근할 수 없습니다.
+ *
+ *   동시 편집의 모든 연산에서 호출되므로, 판단 결과를 (user, file) 단위로 크기가 제한된 cache 에 보관합니다.
+ *   권한 부여, 파일 이동, 삭제 시에는 영향을 받는 항목을 무효화합니다. 진행 중인 transaction 이 있으면 commit 이후에도
+ *   한 번 더 무효화하여, commit 전에 다른 요청이 이전 권한을 다시 cache 에 넣는 경우를 막습니다.
+ * </pre>
+ */
+@Service
+public class AclService {
+
+  private record AclKey(UUID userId, UUID fileId) {
+
+  }
+
+  private final FileUserDataRepository fileUserDataRepository;
+
+  private final FileRepository fileRepository;
+
+  private final Cache<AclKey, Optional<Permission>> permissions;
+
+  /**
+   * 노트와 세그먼트가 속한 파일은 바뀌지 않으므로 무효화하지 않습니다.
+   */
+  private final Cache<UUID, UUID> fileIdsByNoteOrSegment;
+
+  @Autowired
+  public AclService(FileUserDataRepository fileUserDataRepository, FileRepository fileRepository,
+      @Value("${moanote.acl.cache-size:100000}") long cacheSize) {
+    this.fileUserDataRepository = fileUserDataRepository;
+    this.fileRepository = fileRepository;
+    this.permissions = Caffeine.newBuilder().maximumSize(cacheSize).recordStats().build();
+    this.fileIdsByNoteOrSegment = Caffeine.newBuilder().maximumSize(cacheSize).recordStats()
+        .build();
+  }
+
+  /**
+   * 상속을 고려하여 유저가 파일에 대해 가진 권한을 반환합니다.
+   *
+   * @param fileId 파일 id
+   * @param userId 유저 id
+   * @return 유저의 권한. 권한이 없으면 빈 값
+   */
+  public Optional<Permission> getPermission(UUID fileId, UUID userId) {
+    return permissions.get(new AclKey(userId, fileId),
+        key -> fileUserDataRepository.findInheritedPermissions(fileId, userId).stream()
+            .findFirst()
+            .filter(permission -> permission != Permission.NONE));
+  }
+
+  /**
+   * 검색처럼 파일을 하나씩 판단하지 않고 범위로 걸러내야 할 때 사용합니다.
+   *
+   * @param userId 유저 id
+   * @return 유저가 접근할 수 있는 파일의 범위
+   */
+  public AccessScope getAccessScope(UUID userId) {
+    return AccessScope.of(fileUserDataRepository.findPermissionAncestry(userId));
+  }
+
+  /**
+   * @return 유저가 파일에 대해 어떤 권한이든 가지고 있는지 여부
+   */
+  public boolean hasAnyPermission(UUID fileId, UUID userId) {
+    return getPermission(fileId, userId).isPresent();
+  }
+
+  /**
+   * @return 유저가 파일에 대해 required 이상의 권한을 가지고 있는지 여부
+   */
+  public boolean hasPermissionAtLeast(UUID fileId, UUID userId, Permission required) {
+    return getPermission(fileId, userId)
+        .map(permission -> permission.getValue() >= required.getValue())
+        .orElse(false);
+  }
+
+  /**
+   * @return 유저가 노트를 읽을 수 있는지 여부
+   */
+  public boolean canReadNote(UUID noteId, UUID userId) {
+    return fileIdOfNote(noteId).map(fileId -> hasAnyPermission(fileId, userId)).orElse(false);
+  }
+
+  /**
+   * @return 유저가 노트를 수정할 수 있는지 여부
+   */
+  public boolean canWriteNote(UUID noteId, UUID userId) {
+    return fileIdOfNote(noteId)
+        .map(fileId -> hasPermissionAtLeast(fileId, userId, Permission.WRITE))
+        .orElse(false);
+  }
+
+  /**
+   * @return 유저가 세그먼트를 읽을 수 있는지 여부
+   */
+  public boolean canReadSegment(UUID segmentId, UUID userId) {
+    return fileIdOfSegment(segmentId).map(fileId -> hasAnyPermission(fileId, userId))
+        .orElse(false);
+  }
+
+  /**
+   * @return 유저가 세그먼트를 수정할 수 있는지 여부
+   */
+  public boolean canWriteSegment(UUID segmentId, UUID userId) {
+    return fileIdOfSegment(segmentId)
+        .map(fileId -> hasPermissionAtLeast(fileId, userId, Permission.WRITE))
+        .orElse(false);
+  }
+
+  private Optional<UUID> fileIdOfNote(UUID noteId) {
+    return Optional.ofNullable(fileIdsByNoteOrSegment.get(noteId,
+        id -> fileRepository.findIdByNoteId(id).orElse(null)));
+  }
+
+  private Optional<UUID> fileIdOfSegment(UUID segmentId) {
+    return Optional.ofNullable(fileIdsByNoteOrSegment.get(segmentId,
+        id -> fileRepository.findIdBySegmentId(id).orElse(null)));
+  }
+
+  /**
+   * 유저의 권한이 바뀌었을 때 호출합니다. 디렉토리 권한은 하위 파일로 상속되므로 유저의 모든 항목을 무효화합니다.
+   *
+   * @param userId 권한이 바뀐 유저 id
+   */
+  public void invalidateUser(UUID userId) {
+    CacheInvalidation.runNowAndAfterCommit(
+        () -> permissions.asMap().keySet().removeIf(key -> key.userId().equals(userId)));
+  }
+
+  /**
+   * 파일이 이동하거나 삭제되어 상속 관계가 바뀌었을 때 호출합니다.
+   */
+  public void invalidateAll() {
+    CacheInvalidation.runNowAndAfterCommit(permissions::invalidateAll);
+  }
+
+  /**
+   * @return 권한 cache 와 노트/세그먼트 파일 id cache 의 적중률 지표
+   */
+  public List<CacheStatsDTO> stats() {
+    return List.of(CacheStatsDTO.of("acl.permissions", permissions),
+        CacheStatsDTO.of("acl.fileIds", fileIdsByNoteOrSegment));
+  }
+}
@@ -0,0 +1,31 @@
+package moanote.backend.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 서비스 수준 cache 의 무효화를 transaction 과 맞추기 위한 유틸리티입니다.
+ */
+final class CacheInvalidation {
+
+  private CacheInvalidation() {
+  }
+
+  /**
+   * <pre>
+   * invalidation 을 즉시 실행하고, 진행 중인 transaction 이 있으면 commit 이후에 한 번 더 실행합니다.
+   * commit 전에 다른 요청이 이전 값을 다시 cache 에 넣는 경우를 막기 위함입니다.
+   * </pre>
+   */
+  static void runNowAndAfterCommit(Runnable invalidation) {
+    invalidation.run();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          invalidation.run();
+        }
+      });
+    }
+  }
+}
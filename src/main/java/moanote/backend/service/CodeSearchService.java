@@ -0,0 +1,269 @@
+package moanote.backend.service;
+
+import moanote.backend.domain.CodeSearchPattern;
+import moanote.backend.domain.TrigramIndex;
+import moanote.backend.domain.TrigramIndex.Document;
+import moanote.backend.dto.CodeSearchHitDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * <pre>
+ *   저장소별 trigram index 를 만들고, 갱신하고, 검색하는 서비스입니다.
+ *
+ *   index 는 저장소마다 하나의 디렉토리이며, 번호가 붙은 shard 파일들로 이루어집니다. 번호가 클수록 새로운 shard 이고,
+ *   새로운 shard 의 문서와 tombstone 이 이전 shard 의 같은 경로를 가립니다.
+ *   갱신할 때는 내용이 바뀌었거나 새로 생긴 파일과 삭제된 경로만 담은 shard 를 추가합니다.
+ *   shard 가 MAX_SHARDS 개가 되면 현재 문서 전체로 shard 하나를 다시 만들어 검색 시 열어야 하는 shard 수를 제한합니다.
+ *
+ *   열린 shard 는 index 디렉토리별로 보관하며, index 를 바꿀 때는 새 shard 목록으로 교체하므로 진행 중인 검색은
+ *   이전 목록을 끝까지 사용합니다.
+ * </pre>
+ *
+ * @see TrigramIndex
+ */
+@Service
+public class CodeSearchService {
+
+  public static final int DEFAULT_MAX_HITS = 100;
+
+  public static final int MAX_HITS = 1000;
+
+  static final int MAX_SHARDS = 8;
+
+  /**
+   * 검색 결과에 포함하는 한 줄의 최대 길이. minified 파일의 긴 줄이 응답을 키우지 않도록 합니다.
+   */
+  private static final int MAX_LINE_LENGTH = 500;
+
+  private static final String SHARD_SUFFIX = ".trigram";
+
+  /**
+   * 검색 결과 후보 문서. 새로운 shard 에 가려지지 않은 문서만 후보가 됩니다.
+   */
+  private record Candidate(TrigramIndex shard, int id, String path) {
+
+  }
+
+  /**
+   * index 디렉토리별로 열린 shard 목록. 새로운 shard 가 앞에 옵니다.
+   */
+  private final Map<Path, List<TrigramIndex>> openShards = new ConcurrentHashMap<>();
+
+  /**
+   * 한 번의 검색에서 정규식 검사에 쓸 수 있는 최대 시간(ns)
+   */
+  private final long timeoutNanos;
+
+  @Autowired
+  public CodeSearchService(@Value("${moanote.code-search.timeout-ms:2000}") long timeoutMillis) {
+    this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+  }
+
+  /**
+   * index 디렉토리의 모든 shard 를 지우고 documents 로 shard 하나를 만듭니다.
+   *
+   * @param indexDirectory 저장소의 index 디렉토리
+   * @param documents      저장소의 모든 문서
+   */
+  public synchronized void rebuild(Path indexDirectory, Collection<Document> documents)
+      throws IOException {
+    Files.createDirectories(indexDirectory);
+    List<Path> previous = shardFiles(indexDirectory);
+    Path shard = shardPath(indexDirectory, nextShardNumber(previous));
+    TrigramIndex.write(shard, documents, List.of());
+    openShards.put(indexDirectory, List.of(TrigramIndex.open(shard)));
+    for (Path path : previous) {
+      Files.deleteIfExists(path);
+    }
+  }
+
+  /**
+   * <pre>
+   * 저장소의 현재 문서 전체를 받아, index 와 달라진 문서만 새 shard 로 추가합니다.
+   * documents 에 없는 경로는 삭제된 것으로 보고 tombstone 으로 가립니다. 바뀐 것이 없으면 아무 것도 쓰지 않습니다.
+   * </pre>
+   *
+   * @param indexDirectory 저장소의 index 디렉토리
+   * @param documents      저장소의 모든 문서
+   */
+  public synchronized void update(Path indexDirectory, Collection<Document> documents)
+      throws IOException {
+    List<TrigramIndex> shards = shards(indexDirectory);
+    if (shards.isEmpty() || shards.size() >= MAX_SHARDS) {
+      rebuild(indexDirectory, documents);
+      return;
+    }
+
+    Set<String> removed = visiblePaths(shards);
+    List<Document> changed = new ArrayList<>();
+    for (Document document : documents) {
+      removed.remove(document.path());
+      if (!isIndexed(shards, document)) {
+        changed.add(document);
+      }
+    }
+    if (changed.isEmpty() && removed.isEmpty()) {
+      return;
+    }
+
+    Path shard = shardPath(indexDirectory, nextShardNumber(shardFiles(indexDirectory)));
+    TrigramIndex.write(shard, changed, removed);
+    List<TrigramIndex> updated = new ArrayList<>(shards.size() + 1);
+    updated.add(TrigramIndex.open(shard));
+    updated.addAll(shards);
+    openShards.put(indexDirectory, List.copyOf(updated));
+  }
+
+  /**
+   * @return index 에 document 와 같은 경로, 파일 id, 내용의 문서가 보이는지 여부
+   */
+  private static boolean isIndexed(List<TrigramIndex> shards, Document document) {
+    for (TrigramIndex shard : shards) {
+      int id = shard.findDocument(document.path());
+      if (id >= 0) {
+        return shard.fileId(id).equals(document.fileId())
+            && shard.contentEquals(id, document.content());
+      }
+      if (shard.tombstones().contains(document.path())) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private static Set<String> visiblePaths(List<TrigramIndex> shards) {
+    Set<String> hidden = new HashSet<>();
+    Set<String> visible = new HashSet<>();
+    for (TrigramIndex shard : shards) {
+      for (String path : shard.paths()) {
+        if (!hidden.contains(path)) {
+          visible.add(path);
+        }
+      }
+      hidden.addAll(shard.paths());
+      hidden.addAll(shard.tombstones());
+    }
+    return visible;
+  }
+
+  /**
+   * <pre>
+   * 저장소에서 pattern 에 일치하는 줄을 경로와 줄 번호 순서로 최대 maxHits 개 반환합니다.
+   * trigram index 로 후보 문서를 먼저 고른 뒤 후보 문서를 경로 순서로 검사하므로, 결과는 경로와 줄 번호 순서로 처음 maxHits 개입니다.
+   * 검사는 moanote.code-search.timeout-ms 안에 끝나야 합니다. (기본값 2000ms)
+   * </pre>
+   *
+   * @param indexDirectory 저장소의 index 디렉토리
+   * @param pattern        검색할 패턴
+   * @param maxHits        반환할 최대 줄 수
+   * @return 일치하는 줄. index 가 없으면 빈 리스트
+   * @throws CodeSearchPattern.MatchTimeoutException 검사가 제한 시간을 넘긴 경우
+   */
+  public List<CodeSearchHitDTO> search(Path indexDirectory, CodeSearchPattern pattern, int maxHits)
+      throws IOException {
+    if (maxHits < 1 || maxHits > MAX_HITS) {
+      throw new IllegalArgumentException("maxHits must be between 1 and " + MAX_HITS);
+    }
+    List<Candidate> candidates = new ArrayList<>();
+    Set<String> hidden = new HashSet<>();
+    for (TrigramIndex shard : shards(indexDirectory)) {
+      for (int id : shard.candidates(pattern.requiredLiterals())) {
+        String path = shard.path(id);
+        if (!hidden.contains(path)) {
+          candidates.add(new Candidate(shard, id, path));
+        }
+      }
+      hidden.addAll(shard.paths());
+      hidden.addAll(shard.tombstones());
+    }
+    candidates.sort(Comparator.comparing(Candidate::path));
+
+    long deadlineNanos = System.nanoTime() + timeoutNanos;
+    List<CodeSearchHitDTO> hits = new ArrayList<>();
+    for (Candidate candidate : candidates) {
+      if (hits.size() >= maxHits) {
+        break;
+      }
+      searchDocument(candidate, pattern, maxHits, deadlineNanos, hits);
+    }
+    return hits;
+  }
+
+  private static void searchDocument(Candidate candidate, CodeSearchPattern pattern, int maxHits,
+      long deadlineNanos, List<CodeSearchHitDTO> hits) {
+    TrigramIndex shard = candidate.shard();
+    int id = candidate.id();
+    String path = candidate.path();
+    String content = shard.content(id);
+    int lineNumber = 0;
+    int start = 0;
+    while (start < content.length() && hits.size() < maxHits) {
+      lineNumber++;
+      int lineBreak = content.indexOf('\n', start);
+      int end = lineBreak < 0 ? content.length() : lineBreak;
+      int lineEnd = end > start && content.charAt(end - 1) == '\r' ? end - 1 : end;
+      String line = content.substring(start, lineEnd);
+      if (pattern.matches(line, deadlineNanos)) {
+        hits.add(new CodeSearchHitDTO(shard.fileId(id), path, lineNumber,
+            line.length() > MAX_LINE_LENGTH ? line.substring(0, MAX_LINE_LENGTH) : line));
+      }
+      start = end + 1;
+    }
+  }
+
+  private List<TrigramIndex> shards(Path indexDirectory) throws IOException {
+    List<TrigramIndex> shards = openShards.get(indexDirectory);
+    if (shards != null) {
+      return shards;
+    }
+    List<TrigramIndex> opened = new ArrayList<>();
+    for (Path path : shardFiles(indexDirectory).reversed()) {
+      opened.add(TrigramIndex.open(path));
+    }
+    // 재시작 후 처음 접근할 때 디스크의 shard 를 엽니다. 동시에 연 경우 먼저 등록된 목록을 사용합니다.
+    List<TrigramIndex> existing = openShards.putIfAbsent(indexDirectory, List.copyOf(opened));
+    return existing != null ? existing : openShards.get(indexDirectory);
+  }
+
+  /**
+   * @return index 디렉토리의 shard 파일을 오래된 순서로 정렬한 목록
+   */
+  private static List<Path> shardFiles(Path indexDirectory) throws IOException {
+    if (Files.notExists(indexDirectory)) {
+      return List.of();
+    }
+    try (Stream<Path> files = Files.list(indexDirectory)) {
+      return files.filter(path -> path.getFileName().toString().endsWith(SHARD_SUFFIX))
+          .sorted()
+          .toList();
+    }
+  }
+
+  private static long nextShardNumber(List<Path> shardFiles) {
+    if (shardFiles.isEmpty()) {
+      return 1;
+    }
+    String name = shardFiles.getLast().getFileName().toString();
+    return Long.parseLong(name.substring(0, name.length() - SHARD_SUFFIX.length())) + 1;
+  }
+
+  private static Path shardPath(Path indexDirectory, long number) {
+    return indexDirectory.resolve(String.format("%019d", number) + SHARD_SUFFIX);
+  }
+}
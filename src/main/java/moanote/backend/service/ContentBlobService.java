@@ -0,0 +1,149 @@
+package moanote.backend.service;
+
+import jakarta.transaction.Transactional;
+import moanote.backend.entity.ContentBlob;
+import moanote.backend.entity.TextNoteSegment;
+import moanote.backend.repository.ContentBlobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * <pre>
+ *   텍스트 세그먼트의 내용을 SHA-256 으로 식별되는 ContentBlob 으로 공유하고, blob 의 참조 수를 관리합니다.
+ *
+ *   GitHub import, fetch 처럼 외부에서 온 내용은 share 로 저장하여 같은 내용을 가진 세그먼트가 blob 하나를 가리키게 합니다.
+ *   유저의 편집은 write 로 저장하며, 세그먼트가 blob 을 가리키고 있었다면 내용을 세그먼트에 복사하고 참조를 놓습니다.
+ *   (copy-on-write) 편집 중인 세그먼트마다 매번 hash 를 계산하거나 blob 을 만들지 않기 위함입니다.
+ *
+ *   참조 수가 0 이 된 blob 은 바로 삭제하지 않고 주기적으로 삭제합니다. 같은 transaction 안에서 놓은 blob 을 다시 참조하는
+ *   경우(예: fetch 에서 두 파일의 내용이 서로 바뀐 경우)에도 row 가 남아 있도록 하기 위함입니다.
+ * </pre>
+ */
+@Service
+public class ContentBlobService {
+
+  /**
+   * <pre>
+   * 이보다 짧은 내용은 blob 으로 공유하지 않고 세그먼트에 저장합니다.
+   * 짧은 내용은 공유해도 줄어드는 크기가 참조 수 갱신 비용보다 작고, 빈 파일처럼 흔한 내용의 blob 은 여러 import 가
+   * 같은 row 의 lock 을 기다리게 만들기 때문입니다.
+   * </pre>
+   */
+  static final int MIN_SHARED_LENGTH = 128;
+
+  private final ContentBlobRepository contentBlobRepository;
+
+  /**
+   * blob 생성에 H2 의 MERGE 를 사용할지 여부. 테스트는 H2, 운영은 MySQL 을 사용합니다.
+   */
+  private final boolean h2;
+
+  @Autowired
+  public ContentBlobService(ContentBlobRepository contentBlobRepository, DataSource dataSource) {
+    this.contentBlobRepository = contentBlobRepository;
+    try (Connection connection = dataSource.getConnection()) {
+      this.h2 = "H2".equals(connection.getMetaData().getDatabaseProductName());
+    } catch (SQLException e) {
+      throw new IllegalStateException("Failed to read database metadata", e);
+    }
+  }
+
+  /**
+   * @return content 의 UTF-8 byte 에 대한 SHA-256 의 16진수 문자열
+   */
+  public static String hash(String content) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported", e);
+    }
+  }
+
+  /**
+   * <pre>
+   * 세그먼트가 content 를 같은 내용의 blob 으로 공유하게 합니다. blob 이 없으면 생성합니다.
+   * 세그먼트가 가리키던 blob 의 참조는 놓습니다. MIN_SHARED_LENGTH 보다 짧은 내용은 세그먼트에 저장합니다.
+   * </pre>
+   *
+   * @param segment 내용을 저장할 세그먼트
+   * @param content 새 내용. null 은 빈 문자열로 취급합니다.
+   */
+  @Transactional
+  public void share(TextNoteSegment segment, String content) {
+    String normalized = content == null ? "" : content;
+    if (normalized.length() < MIN_SHARED_LENGTH) {
+      write(segment, normalized);
+      return;
+    }
+    String hash = hash(normalized);
+    ContentBlob previous = segment.getBlob();
+    if (previous != null && previous.getHash().equals(hash)) {
+      return;
+    }
+    // 대부분의 blob 은 이미 있으므로 내용을 보내지 않는 UPDATE 를 먼저 시도합니다.
+    if (contentBlobRepository.incrementRefCount(hash) == 0) {
+      // 다른 transaction 이 같은 blob 을 동시에 생성할 수 있으므로 INSERT 와 증가를 한 문장으로 수행합니다.
+      if (h2) {
+        contentBlobRepository.mergeReference(hash, normalized);
+      } else {
+        contentBlobRepository.upsertReference(hash, normalized);
+      }
+    }
+    segment.shareBlob(contentBlobRepository.getReferenceById(hash));
+    if (previous != null) {
+      contentBlobRepository.decrementRefCount(previous.getHash());
+    }
+  }
+
+  /**
+   * 세그먼트에 content 를 저장합니다. 세그먼트가 blob 을 공유하고 있었다면 blob 의 참조를 놓습니다.
+   *
+   * @param segment 내용을 저장할 세그먼트
+   * @param content 새 내용. null 은 빈 문자열로 취급합니다.
+   */
+  @Transactional
+  public void write(TextNoteSegment segment, String content) {
+    ContentBlob previous = segment.getBlob();
+    segment.updateContent(content);
+    if (previous != null) {
+      contentBlobRepository.decrementRefCount(previous.getHash());
+    }
+  }
+
+  /**
+   * 노트들의 세그먼트가 가리키는 blob 의 참조를 놓습니다. 세그먼트를 삭제하기 전에 호출해야 합니다.
+   */
+  @Transactional
+  public void releaseNotes(Collection<UUID> noteIds) {
+    if (!noteIds.isEmpty()) {
+      contentBlobRepository.releaseByNoteIds(noteIds);
+    }
+  }
+
+  /**
+   * <pre>
+   * 참조 수가 0 인 blob 을 삭제합니다.
+   * 주기는 moanote.blob.gc-interval-ms 속성으로 설정합니다. (기본값 60000ms)
+   * </pre>
+   *
+   * @return 삭제한 blob 수
+   */
+  @Transactional
+  @Scheduled(initialDelayString = "${moanote.blob.gc-interval-ms:60000}",
+      fixedDelayString = "${moanote.blob.gc-interval-ms:60000}")
+  public int deleteUnreferencedBlobs() {
+    return contentBlobRepository.deleteUnreferenced();
+  }
+}
@@ -6,26 +6,34 @@ import moanote.backend.dto.CollaboratorDTO;
 import moanote.backend.dto.FileCreateDTO;
 import moanote.backend.dto.FileDTO;
 import moanote.backend.dto.FileEditDTO;
+import moanote.backend.dto.FilePageDTO;
+import moanote.backend.dto.FilePageRequestDTO;
 import moanote.backend.dto.ShareFileDTO;
+import moanote.backend.dto.UserDataDTO;
 import moanote.backend.entity.File;
 import moanote.backend.entity.File.FileType;
 import moanote.backend.entity.FileUserData;
 import moanote.backend.entity.FileUserData.Permission;
 import moanote.backend.entity.Note.NoteType;
 import moanote.backend.entity.UserData;
+import moanote.backend.repository.FileAncestryRepository;
 import moanote.backend.repository.FileRepository;
 import moanote.backend.repository.FileUserDataRepository;
 import moanote.backend.repository.UserDataRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import moanote.backend.entity.Note;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Stack;
 import java.util.UUID;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class FileService {
@@ -38,13 +46,50 @@ public class FileService {
 
   private final NoteService noteService;
 
+  private final FileAncestryRepository fileAncestryRepository;
+
+  private final AclService aclService;
+
+  private final MetadataCacheService metadataCacheService;
+
+  private final SearchIndexService searchIndexService;
+
   @Autowired
   public FileService(FileRepository fileRepository, UserDataRepository userDataRepository,
-      FileUserDataRepository fileUserDataRepository, NoteService noteService) {
+      FileUserDataRepository fileUserDataRepository, NoteService noteService,
+      FileAncestryRepository fileAncestryRepository, AclService aclService,
+      MetadataCacheService metadataCacheService, SearchIndexService searchIndexService) {
     this.fileRepository = fileRepository;
     this.userDataRepository = userDataRepository;
     this.fileUserDataRepository = fileUserDataRepository;
     this.noteService = noteService;
+    this.fileAncestryRepository = fileAncestryRepository;
+    this.aclService = aclService;
+    this.metadataCacheService = metadataCacheService;
+    this.searchIndexService = searchIndexService;
+  }
+
+  /**
+   * <pre>
+   * closure table 이 도입되기 전에 생성된 파일이 있다면 closure table 을 채웁니다.
+   * closure table 이 비어 있을 때만 동작하므로, 이미 채워진 뒤에는 아무 작업도 하지 않습니다.
+   * </pre>
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional
+  public void backfillFileAncestry() {
+    if (fileAncestryRepository.count() == 0 && fileRepository.count() > 0) {
+      fileAncestryRepository.rebuild();
+    }
+  }
+
+  /**
+   * 루트 디렉토리 참조가 도입되기 전에 생성된 유저의 UserData.rootDirectory 를 채웁니다.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional
+  public void backfillRootDirectories() {
+    userDataRepository.backfillRootDirectories();
   }
 
   /**
@@ -62,10 +107,13 @@ public class FileService {
   @Transactional
   protected File doCreateFile(UserData creator, String filename, FileType type, File directory) {
     File newFile = fileRepository.createFile(filename, type, directory);
+    fileAncestryRepository.insertFile(newFile);
+    fileRepository.bumpVersions(newFile.getId());
     FileUserData permission = fileUserDataRepository.createFileUserData(creator, newFile, FileUserData.Permission.OWNER);
 
     if (type == FileType.DOCUMENT) {
       noteService.createNote(creator.getId(), newFile);
+      searchIndexService.markFileDirty(newFile.getId());
     }
     directory.addChild(newFile);
     return newFile;
@@ -133,6 +181,7 @@ public class FileService {
    * @param userId 루트 디렉토리를 생성할 유저의 id
    * @return 생성된 루트 디렉토리 File entity
    */
+  @Transactional
   public File createRootDirectory(UUID userId) {
     UserData user = userDataRepository.findById(userId)
         .orElseThrow(() -> new NoSuchElementException("User not found with id: " + userId));
@@ -141,6 +190,8 @@ public class FileService {
     } catch (NoSuchElementException e) {
       // 루트 디렉토리가 존재하지 않는 경우에만 생성
       File rootDirectory = fileRepository.createRootDirectory();
+      fileAncestryRepository.insertFile(rootDirectory);
+      user.setRootDirectory(rootDirectory);
       FileUserData permission = fileUserDataRepository.createFileUserData(user, rootDirectory,
           FileUserData.Permission.OWNER);
       return rootDirectory;
@@ -149,7 +200,8 @@ public class FileService {
 
   /**
    * 특정 File 의 특정 User 가 가진 permission 을 생성, 혹은 이미 존재하는 경우 permission 을 업데이트합니다.
-   * 만약 permission 이 NONE 으로 설정된 경우, 기존의 permission 을 삭제합니다.
+   * 만약 permission 이 NONE 으로 설정된 경우, 기존의 permission 을 삭제합니다. 상위 디렉토리로부터 상속되는 권한이
+   * 남아 있으면 삭제하는 대신 NONE 행을 남겨 상속된 권한을 가립니다.
    *
    * @param fileId     permission 을 부여할 File 의 id
    * @param userId     permission 을 부여할 User 의 id
@@ -163,18 +215,25 @@ public class FileService {
     FileUserData oldPermission = fileUserDataRepository
         .findByFileAndUser(file, userData)
         .orElse(null);
-
-    if (oldPermission == null) {
-      fileUserDataRepository.createFileUserData(userData, file, permission);
-      return file;
+    aclService.invalidateUser(userId);
+    userDataRepository.bumpListingVersion(userId);
+    if (permission == Permission.OWNER) {
+      metadataCacheService.invalidateFile(fileId);
     }
 
-    if (oldPermission.getPermission() == FileUserData.Permission.OWNER) {
+    if (oldPermission != null
+        && oldPermission.getPermission() == FileUserData.Permission.OWNER) {
       throw new IllegalArgumentException("Cannot change permission of owner");
     }
 
-    if (permission == Permission.NONE) {
-      fileUserDataRepository.delete(oldPermission);
+    if (permission == Permission.NONE && !inheritsAccess(fileId, userId, oldPermission != null)) {
+      if (oldPermission != null) {
+        fileUserDataRepository.delete(oldPermission);
+      }
+      return file;
+    }
+    if (oldPermission == null) {
+      fileUserDataRepository.createFileUserData(userData, file, permission);
       return file;
     }
     oldPermission.setPermission(permission);
@@ -182,6 +241,18 @@ public class FileService {
     return file;
   }
 
+  /**
+   * @param hasOwnPermission 파일 자신에 user 의 권한 행이 있는지 여부
+   * @return 파일 자신의 행을 제외했을 때, user 가 상위 디렉토리로부터 접근 권한을 상속받는지 여부
+   */
+  private boolean inheritsAccess(UUID fileId, UUID userId, boolean hasOwnPermission) {
+    return fileUserDataRepository.findInheritedPermissions(fileId, userId).stream()
+        .skip(hasOwnPermission ? 1 : 0)
+        .findFirst()
+        .filter(permission -> permission != Permission.NONE)
+        .isPresent();
+  }
+
   /**
    * fileId 에 해당하는 File 검색
    *
@@ -194,8 +265,7 @@ public class FileService {
       throw new IllegalArgumentException("User does not have permission to access this file");
     }
 
-    File file = fileRepository.findById(fileId).orElseThrow();
-    return new FileDTO(file, fileUserDataRepository.findOwnerByFile(file).getUser());
+    return metadataCacheService.findFile(fileId).orElseThrow();
   }
 
   /**
@@ -206,8 +276,14 @@ public class FileService {
    * @return fileId 에 해당하는 File entity
    * @throws NoSuchElementException fileId 에 해당하는 객체를 찾을 수 없는 경우
    */
+  @Transactional
   public File updateFileName(UUID fileId, String newName) {
-    return fileRepository.updateName(fileRepository.findFileById(fileId).orElseThrow(), newName);
+    File file = fileRepository.updateName(fileRepository.findFileById(fileId).orElseThrow(),
+        newName);
+    fileRepository.bumpVersions(fileId);
+    metadataCacheService.invalidateFile(fileId);
+    searchIndexService.markFileDirty(fileId);
+    return file;
   }
 
   /**
@@ -218,15 +294,37 @@ public class FileService {
    * @return fileId 에 해당하는 File entity
    * @throws NoSuchElementException 각 파라미터의 id 에 해당하는 객체를 찾을 수 없는 경우
    */
+  @Transactional
   public File moveFile(UUID fileId, UUID newDirectoryId) {
     File file = fileRepository.findFileById(fileId)
         .orElseThrow(() -> new NoSuchElementException("File not found with id: " + fileId));
     File newDirectory = fileRepository.findFileById(newDirectoryId)
         .orElseThrow(
             () -> new NoSuchElementException("Directory not found with id: " + newDirectoryId));
+    relocateSubtree(file, newDirectory);
     return fileRepository.moveToDirectory(file, newDirectory);
   }
 
+  /**
+   * <pre>
+   * file 을 루트로 하는 subtree 의 closure 를 newDirectory 아래로 옮깁니다. File.directory 는 caller 가 변경합니다.
+   * 이전 위치와 새 위치의 조상 디렉토리 목록 버전을 모두 증가시킵니다.
+   * </pre>
+   *
+   * @throws IllegalArgumentException newDirectory 가 file 자신이거나 file 의 하위 디렉토리인 경우
+   */
+  private void relocateSubtree(File file, File newDirectory) {
+    if (fileAncestryRepository.isAncestor(file.getId(), newDirectory.getId())) {
+      throw new IllegalArgumentException("Cannot move a file into itself or its descendant");
+    }
+    fileRepository.bumpVersions(file.getId());
+    fileAncestryRepository.moveSubtree(file.getId(), newDirectory.getId());
+    fileRepository.bumpVersions(file.getId());
+    aclService.invalidateAll();
+    metadataCacheService.invalidateFile(file.getId());
+    searchIndexService.markFilesDirty(fileAncestryRepository.findDescendantIds(file.getId()));
+  }
+
   public List<File> getFilesByOwnerUserId(UUID userId) {
     UserData user = userDataRepository.findById(userId)
         .orElseThrow(() -> new NoSuchElementException("User not found with id: " + userId));
@@ -242,20 +340,21 @@ public class FileService {
   public List<File> getFilesByUserId(UUID userId) {
     UserData user = userDataRepository.findById(userId)
         .orElseThrow(() -> new NoSuchElementException("User not found with id: " + userId));
-    return fileRepository.findFilesByUser(user);
+    return fileRepository.findFilesByUser(user.getId());
   }
 
   public List<FileDTO> getFileDTOByUserId(UUID userId) {
     UserData user = userDataRepository.findById(userId)
         .orElseThrow(() -> new NoSuchElementException("User not found with id: " + userId));
-    return fileRepository.findFilesByUser(user).stream().map(file ->
-        new FileDTO(file, fileUserDataRepository.findOwnerByFile(file).getUser())).toList();
+    return fileRepository.findFileDTOsByUser(user.getId());
   }
 
   /**
    * <pre>
    * 파일을 재귀적으로 탐색합니다. 만약 파일이 디렉토리인 경우 하위 파일들을 모두 재귀적으로 탐색하는데, 후위 순회로 탐색합니다.
    * 같은 형제 노드 관계의 파일 사이에서는 임의의 순서로 방문합니다.
+   *
+   * subtree 는 FileRepository#findSubtree 로 한 번에 불러오고, 순회는 메모리에서 수행합니다.
    * </pre>
    *
    * @param file    탐색을 시작할 File 객체
@@ -263,42 +362,59 @@ public class FileService {
    */
   @Transactional
   public void traverseFilesRecursively(File file, Consumer<File> onVisit) {
-    if (file.getType() == FileType.DIRECTORY) {
-      Stack<ArrayList<File>> subFilesStack = new Stack<>();
-      Stack<Integer> resolvedSubFilesCountStack = new Stack<>();
-      subFilesStack.push(new ArrayList<>(fileRepository.findFilesByDirectory(file)));
-      resolvedSubFilesCountStack.push(0);
-
-      while (!subFilesStack.isEmpty()) {
-        ArrayList<File> subFiles = subFilesStack.peek();
-        Integer resolvedSubFilesCount = resolvedSubFilesCountStack.pop();
-
-        if (resolvedSubFilesCount == subFiles.size()) {
-          for (File subFile : subFiles) {
-            onVisit.accept(subFile);
-          }
-          subFilesStack.pop();
-          continue;
-        }
-
-        while (resolvedSubFilesCount < subFiles.size()
-            && subFiles.get(resolvedSubFilesCount).getType() != FileType.DIRECTORY) {
-          resolvedSubFilesCount++;
-        }
-
-        if (resolvedSubFilesCount == subFiles.size()) {
-          resolvedSubFilesCountStack.push(resolvedSubFilesCount);
-          continue;
-        }
+    if (file.getType() != FileType.DIRECTORY) {
+      onVisit.accept(file);
+      return;
+    }
 
-        resolvedSubFilesCountStack.push(resolvedSubFilesCount + 1);
-        File subFile = subFiles.get(resolvedSubFilesCount);
-        subFilesStack.push(new ArrayList<>(fileRepository.findFilesByDirectory(subFile)));
-        resolvedSubFilesCountStack.push(0);
+    // 결과가 깊이 순으로 정렬되어 있으므로 부모는 자식보다 먼저 나타납니다.
+    Map<UUID, List<File>> children = new HashMap<>();
+    for (File subFile : fileRepository.findSubtree(file.getId())) {
+      if (!subFile.getId().equals(file.getId())) {
+        children.computeIfAbsent(subFile.getDirectory().getId(), id -> new ArrayList<>())
+            .add(subFile);
       }
     }
 
-    onVisit.accept(file);
+    Deque<File> pending = new ArrayDeque<>();
+    Deque<File> visitOrder = new ArrayDeque<>();
+    pending.push(file);
+    while (!pending.isEmpty()) {
+      File current = pending.pop();
+      visitOrder.push(current);
+      children.getOrDefault(current.getId(), List.of()).forEach(pending::push);
+    }
+    while (!visitOrder.isEmpty()) {
+      onVisit.accept(visitOrder.pop());
+    }
+  }
+
+  /**
+   * <pre>
+   * 특정 directory 아래의 모든 파일을 FileDTO 로 하나씩 전달합니다. 요청한 directory 를 포함합니다.
+   * getFilesInDirectory 와 달리 전체 목록을 메모리에 모으지 않고, subtree 를 cursor 로 읽으며
+   * FILE_DTO_BATCH_SIZE 개씩 owner 를 함께 불러와 전달합니다.
+   * 파일은 directory 로부터의 깊이 순으로 전달되므로, 상위 디렉토리가 항상 하위 파일보다 먼저 전달됩니다.
+   * </pre>
+   *
+   * @param directoryId 디렉토리의 id null 이면 루트 디렉토리로 간주합니다.
+   * @param userId      요청한 유저의 id
+   * @param onFile      각 파일의 FileDTO 를 전달받는 Consumer 함수
+   */
+  @Transactional
+  public void streamFilesInDirectory(UUID directoryId, UUID userId, Consumer<FileDTO> onFile) {
+    File directory = resolveListableDirectory(directoryId, userId);
+    List<UUID> batch = new ArrayList<>(FileRepository.FILE_DTO_BATCH_SIZE);
+    try (Stream<File> subtree = fileRepository.streamSubtree(directory.getId())) {
+      subtree.forEach(file -> {
+        batch.add(file.getId());
+        if (batch.size() == FileRepository.FILE_DTO_BATCH_SIZE) {
+          fileRepository.findFileDTOsByIdsOrdered(batch).forEach(onFile);
+          batch.clear();
+        }
+      });
+    }
+    fileRepository.findFileDTOsByIdsOrdered(batch).forEach(onFile);
   }
 
   /**
@@ -309,12 +425,95 @@ public class FileService {
    */
   @Transactional
   public List<FileDTO> getFilesInDirectory(UUID directoryId, UUID userId, boolean recursive) {
+    File directory = resolveListableDirectory(directoryId, userId);
+    if (!recursive) {
+      return fileRepository.findFileDTOsInDirectory(directory);
+    }
+
+    // 탐색 순서만 기록하고 owner 는 마지막에 한꺼번에 불러옵니다.
+    List<UUID> visitedIds = new ArrayList<>();
+    traverseFilesRecursively(directory, file -> visitedIds.add(file.getId()));
+    return fileRepository.findFileDTOsByIdsOrdered(visitedIds);
+  }
+
+  /**
+   * <pre>
+   * 특정 directory 바로 아래의 파일을 cursor 기반으로 한 페이지씩 불러옵니다.
+   * getFilesInDirectory 와 달리 요청한 directory 자신은 포함하지 않습니다.
+   * </pre>
+   *
+   * @param directoryId 디렉토리의 id null 이면 루트 디렉토리로 간주합니다.
+   * @param userId      요청한 유저의 id
+   * @param request     페이지 조회 조건
+   * @return 조회된 페이지
+   */
+  @Transactional
+  public FilePageDTO getFilePageInDirectory(UUID directoryId, UUID userId,
+      FilePageRequestDTO request) {
+    File directory = resolveListableDirectory(directoryId, userId);
+    return toPage(
+        fileRepository.findFileDTOPageInDirectory(directory.getId(), request, request.size() + 1),
+        request.size());
+  }
+
+  /**
+   * user 가 권한을 가진 파일을 cursor 기반으로 한 페이지씩 불러옵니다.
+   *
+   * @param userId  조회할 유저의 id
+   * @param request 페이지 조회 조건
+   * @return 조회된 페이지
+   */
+  public FilePageDTO getFileDTOPageByUserId(UUID userId, FilePageRequestDTO request) {
+    metadataCacheService.getUser(userId);
+    return toPage(fileRepository.findFileDTOPageByUser(userId, request, request.size() + 1),
+        request.size());
+  }
+
+  /**
+   * size 보다 하나 더 불러온 결과로 다음 페이지가 있는지 판단하고, 있다면 마지막 파일 id 를 다음 cursor 로 사용합니다.
+   */
+  private static FilePageDTO toPage(List<FileDTO> fetched, int size) {
+    if (fetched.size() <= size) {
+      return new FilePageDTO(fetched, null);
+    }
+    List<FileDTO> files = fetched.subList(0, size);
+    return new FilePageDTO(new ArrayList<>(files), files.getLast().id());
+  }
+
+  /**
+   * <pre>
+   * getFilesInDirectory 가 반환할 목록의 버전을 조회합니다. 목록을 불러오지 않고 권한 확인과 버전 조회만 수행하므로,
+   * 클라이언트가 가진 목록이 최신인지 확인할 때 사용합니다.
+   * </pre>
+   *
+   * @param directoryId 디렉토리의 id null 이면 루트 디렉토리로 간주합니다.
+   * @param userId      요청한 유저의 id
+   * @return 디렉토리 id, 목록 버전, 유저의 권한 버전으로 만든 ETag
+   */
+  @Transactional
+  public String getListingETag(UUID directoryId, UUID userId, boolean recursive) {
+    File directory = resolveListableDirectory(directoryId, userId);
+    long version = fileRepository.findVersionById(directory.getId()).orElseThrow();
+    long listingVersion = userDataRepository.findListingVersionById(userId).orElseThrow();
+    return "\"" + directory.getId() + "-" + version + "-" + listingVersion + (recursive ? "-r" : "")
+        + "\"";
+  }
+
+  /**
+   * 목록 조회의 대상이 될 디렉토리를 찾고, 요청한 유저가 접근할 수 있는지 확인합니다.
+   *
+   * @param directoryId 디렉토리의 id null 이면 루트 디렉토리로 간주합니다.
+   * @param userId      요청한 유저의 id
+   * @return 조회할 디렉토리
+   */
+  private File resolveListableDirectory(UUID directoryId, UUID userId) {
     File directory;
-    UserData user = userDataRepository.findById(userId)
-        .orElseThrow(() -> new NoSuchElementException("User not found with id: " + userId));
     if (directoryId == null) {
+      UserData user = userDataRepository.findById(userId)
+          .orElseThrow(() -> new NoSuchElementException("User not found with id: " + userId));
       directory = fileRepository.getRootDirectory(user);
     } else {
+      metadataCacheService.getUser(userId);
       directory = fileRepository.findFileById(directoryId).orElseThrow();
     }
 
@@ -325,26 +524,12 @@ public class FileService {
     if (directoryId != null && !hasAnyPermission(directory.getId(), userId)) {
       throw new IllegalArgumentException("User does not have permission to access this directory");
     }
-
-    if (!recursive) {
-      List<File> files = fileRepository.findFilesByDirectory(directory);
-      files.add(directory);
-      return files.stream()
-          .map(file -> new FileDTO(file, fileUserDataRepository.findOwnerByFile(file).getUser()))
-          .toList();
-    }
-
-    LinkedList<FileDTO> files = new LinkedList<>();
-    Consumer<File> onVisit = file -> files.add(
-        new FileDTO(file, fileUserDataRepository.findOwnerByFile(file).getUser()));
-    traverseFilesRecursively(directory, onVisit);
-
-    return files;
+    return directory;
   }
 
   /**
-   * 파일을 삭제합니다. 이때, 해당 파일에 대한 모든 FileUserData 를 먼저 삭제합니다. file 이 directory 라면 해당 directory 아래의 모든
-   * 파일을 재귀적으로 삭제합니다.
+   * 파일을 삭제합니다. 해당 파일에 대한 모든 FileUserData 도 함께 삭제됩니다. file 이 directory 라면 해당 directory 아래의 모든
+   * 파일을 함께 삭제합니다.
    *
    * @param fileId 삭제할 디렉토리
    * @param userId 삭제를 요청한 유저의 id
@@ -363,42 +548,58 @@ public class FileService {
     if (!hasAnyPermission(fileId, user.getId())) {
       throw new IllegalArgumentException("User does not have permission to delete this file");
     }
-    traverseFilesRecursively(file, this::deleteFileNode);
+    fileRepository.bumpVersions(file.getDirectory().getId());
+    deleteSubtree(fileId);
+    aclService.invalidateAll();
+  }
+
+  /**
+   * <pre>
+   * rootId 를 루트로 하는 subtree 를 set 단위의 질의로 삭제합니다.
+   * 파일 수와 관계없이 FILE_DTO_BATCH_SIZE 개씩 묶어 몇 개의 질의만 실행합니다.
+   *
+   * 1. 상위 디렉토리와 노트 참조를 끊어 FK 검사 순서에 상관없이 삭제할 수 있게 합니다.
+   * 2. 노트와 세그먼트를 삭제하고, 열려 있던 협업 세션을 제거합니다.
+   * 3. 파일을 삭제합니다. 권한과 closure 는 ON DELETE CASCADE 로 함께 삭제됩니다.
+   * </pre>
+   *
+   * @param rootId 삭제할 subtree 의 루트 파일 id
+   */
+  private void deleteSubtree(UUID rootId) {
+    List<UUID> fileIds = fileAncestryRepository.findDescendantIds(rootId);
+    List<UUID> noteIds = new ArrayList<>();
+    forEachBatch(fileIds, batch -> noteIds.addAll(fileRepository.findNoteIdsByIds(batch)));
+    forEachBatch(fileIds, fileRepository::unlinkDirectoriesAndNotes);
+    forEachBatch(noteIds, noteService::deleteNotes);
+    forEachBatch(fileIds, fileRepository::deleteAllByIds);
+    metadataCacheService.invalidateFiles(fileIds);
+    searchIndexService.markFilesDirty(fileIds);
   }
 
-  private void deleteFileNode(File file) {
-    Note note = file.getNote();
-    if (note != null) {
-      UUID noteId = note.getId();
-      note.setFile(null);
-      file.setNote(null);
-      noteService.deleteNote(noteId);
+  private static void forEachBatch(List<UUID> ids, Consumer<List<UUID>> action) {
+    for (int from = 0; from < ids.size(); from += FileRepository.FILE_DTO_BATCH_SIZE) {
+      action.accept(ids.subList(from, Math.min(ids.size(), from + FileRepository.FILE_DTO_BATCH_SIZE)));
     }
-    UUID fileId = file.getId();
-    fileUserDataRepository.deleteAllByFileId(fileId);
-    fileRepository.deleteById(fileId);
   }
 
   /**
-   * 특정 파일에 대해 특정 유저가 특정 permission 을 가지고 있는지 확인합니다.
+   * 특정 파일에 대해 특정 유저가 특정 permission 을 가지고 있는지 확인합니다. 상위 디렉토리로부터 상속된 권한을 포함합니다.
    *
    * @param fileId     검사할 file 의 id
    * @param userId     검사할 user 의 id
    * @param permission 검사할 permission
    * @return 해당 유저가 해당 파일에 대해 해당 permission 을 가지고 있는지 여부
+   * @see AclService#getPermission(UUID, UUID)
    */
   public boolean hasPermission(UUID fileId, UUID userId, FileUserData.Permission permission) {
-    File file = fileRepository.findById(fileId).orElseThrow();
-    UserData userData = userDataRepository.findById(userId).orElseThrow();
-    return fileUserDataRepository
-        .findByFileAndUser(file, userData)
-        .map(fileUserData -> fileUserData.getPermission() == permission)
+    return aclService.getPermission(fileId, userId)
+        .map(resolved -> resolved == permission)
         .orElse(false);
   }
 
   /**
    * 특정 파일에 대해 특정 유저가 permission 을 가지고 있는지 확인합니다. permission 이 무엇이든 상관없습니다. 만약 특정 권한을 가지는 있는 지를 확인하고
-   * 싶다면, hasPermission(fileId, userId, permission) 메소드를 사용하세요.
+   * 싶다면, hasPermission(fileId, userId, permission) 메소드를 사용하세요. 상위 디렉토리로부터 상속된 권한을 포함합니다.
    *
    * @param fileId 검사할 file 의 id
    * @param userId 검사할 user 의 id
@@ -406,11 +607,7 @@ public class FileService {
    * @see #hasPermission(UUID, UUID, FileUserData.Permission)
    */
   public boolean hasAnyPermission(UUID fileId, UUID userId) {
-    File file = fileRepository.findById(fileId).orElseThrow();
-    UserData userData = userDataRepository.findById(userId).orElseThrow();
-    return fileUserDataRepository
-        .findByFileAndUser(file, userData)
-        .isPresent();
+    return aclService.hasAnyPermission(fileId, userId);
   }
 
   @Transactional
@@ -433,16 +630,28 @@ public class FileService {
     }
 
     UUID newDirectoryId = fileEditDTO.dir();
-    file.setDirectory(fileRepository.findFileById(newDirectoryId)
-        .orElseThrow(() -> new NoSuchElementException("Directory not found with id: " + newDirectoryId)));
+    File newDirectory = fileRepository.findFileById(newDirectoryId)
+        .orElseThrow(() -> new NoSuchElementException("Directory not found with id: " + newDirectoryId));
 
     if (!hasAnyPermission(newDirectoryId, userId)) {
       throw new IllegalArgumentException("User does not have permission to move this file to the specified directory");
     }
 
-    UserData owner = fileUserDataRepository.findOwnerByFile(file).getUser();
+    if (file.getDirectory() == null || !file.getDirectory().getId().equals(newDirectoryId)) {
+      relocateSubtree(file, newDirectory);
+      file.setDirectory(newDirectory);
+    }
+
+    UserDataDTO owner = metadataCacheService.getOwner(fileId);
     fileRepository.save(file);
-    return new FileDTO(file, owner);
+    if (fileEditDTO.name() != null) {
+      fileRepository.bumpVersions(fileId);
+      searchIndexService.markFileDirty(fileId);
+    }
+    metadataCacheService.invalidateFile(fileId);
+    return new FileDTO(file.getName(), file.getId(), file.getType(),
+        file.getDirectory() != null ? file.getDirectory().getId() : null, owner,
+        file.isGithubImported());
   }
 
   @Transactional
@@ -458,9 +667,9 @@ public class FileService {
     UserData targetUser = userDataRepository.findByUsername(shareFileDTO.username())
         .orElseThrow(() -> new NoSuchElementException("Target user not found : " + shareFileDTO.username()));
 
-    traverseFilesRecursively(file, (f) -> {
-      grantPermission(f.getId(), targetUser.getId(), shareFileDTO.permission());
-    });
+    // 권한은 하위 파일로 상속되므로 공유한 파일에만 부여하고, 하위 파일에 따로 부여된 권한은 정리합니다.
+    fileUserDataRepository.deletePermissionsBelow(fileId, targetUser.getId());
+    grantPermission(fileId, targetUser.getId(), shareFileDTO.permission());
   }
 
   @Transactional
@@ -473,6 +682,7 @@ public class FileService {
       throw new IllegalArgumentException(
           "Requester has no permission : user=" + requestUserId + " file=" + fileId);
     }
-    return fileUserDataRepository.findByFile(file).stream().map(CollaboratorDTO::new).toList();
+    return fileUserDataRepository.findEffectivePermissionsByFileId(fileId).stream()
+        .map(CollaboratorDTO::new).toList();
   }
 }
\ No newline at end of file
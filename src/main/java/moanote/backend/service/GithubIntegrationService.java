@@ -1,6 +1,10 @@
 package moanote.backend.service;
 
 import jakarta.transaction.Transactional;
+import moanote.backend.domain.CRDTFugueTreeSnapshot;
+import moanote.backend.domain.CodeSearchPattern;
+import moanote.backend.domain.TrigramIndex;
+import moanote.backend.dto.CodeSearchHitDTO;
 import moanote.backend.dto.FileDTO;
 import moanote.backend.dto.GithubCredentials;
 import moanote.backend.dto.GithubImportedRepositoryDTO;
@@ -12,6 +16,7 @@ import moanote.backend.entity.Note.NoteType;
 import moanote.backend.entity.TextNoteSegment;
 import moanote.backend.entity.UserData;
 import moanote.backend.entity.GithubImportedRepository;
+import moanote.backend.repository.FileAncestryRepository;
 import moanote.backend.repository.FileRepository;
 import moanote.backend.repository.TextNoteSegmentRepository;
 import moanote.backend.repository.UserDataRepository;
@@ -31,7 +36,6 @@ import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -63,13 +67,21 @@ public class GithubIntegrationService {
   private final GithubTokenService githubTokenService;
   private final FileRepository fileRepository;
   private final TextNoteSegmentRepository textNoteSegmentRepository;
+  private final TextCollaborativeEditingService textCollaborativeEditingService;
   private final Path workspaceRoot;
   private final GithubImportedRepositoryRepository githubImportedRepositoryRepository;
+  private final FileAncestryRepository fileAncestryRepository;
+  private final SearchIndexService searchIndexService;
+  private final CodeSearchService codeSearchService;
+  private final ContentBlobService contentBlobService;
 
   public GithubIntegrationService(FileService fileService, NoteService noteService,
       UserDataRepository userDataRepository, FileRepository fileRepository,
       TextNoteSegmentRepository textNoteSegmentRepository, GithubTokenService githubTokenService,
-      GithubImportedRepositoryRepository githubImportedRepositoryRepository) {
+      GithubImportedRepositoryRepository githubImportedRepositoryRepository,
+      TextCollaborativeEditingService textCollaborativeEditingService,
+      FileAncestryRepository fileAncestryRepository, SearchIndexService searchIndexService,
+      CodeSearchService codeSearchService, ContentBlobService contentBlobService) {
     this.fileService = fileService;
     this.noteService = noteService;
     this.userDataRepository = userDataRepository;
@@ -77,6 +89,11 @@ public class GithubIntegrationService {
     this.textNoteSegmentRepository = textNoteSegmentRepository;
     this.githubTokenService = githubTokenService;
     this.githubImportedRepositoryRepository = githubImportedRepositoryRepository;
+    this.textCollaborativeEditingService = textCollaborativeEditingService;
+    this.fileAncestryRepository = fileAncestryRepository;
+    this.searchIndexService = searchIndexService;
+    this.codeSearchService = codeSearchService;
+    this.contentBlobService = contentBlobService;
     this.workspaceRoot = initializeWorkspaceRoot();
   }
 
@@ -125,14 +142,23 @@ public class GithubIntegrationService {
       directoryMapping.put(cloneDirectory, repositoryDirectory);
 
       List<FileDTO> createdDocuments = new ArrayList<>();
+      List<TrigramIndex.Document> indexedDocuments = new ArrayList<>();
 
       try (var paths = Files.walk(cloneDirectory)) {
         paths.sorted(Comparator.comparingInt(Path::getNameCount))
-            .forEach(path -> handlePath(userId, user, path, cloneDirectory, directoryMapping, createdDocuments));
+            .forEach(path -> handlePath(userId, user, path, cloneDirectory, directoryMapping, createdDocuments,
+                indexedDocuments));
       } catch (IOException e) {
         throw new IllegalStateException("Failed to traverse repository files", e);
       }
 
+      try {
+        codeSearchService.rebuild(codeIndexDirectory(cloneDirectory), indexedDocuments);
+      } catch (IOException e) {
+        // index 는 다음 fetch 에서 다시 만들어지므로 import 를 실패시키지 않습니다.
+        System.out.println("Failed to build code search index: " + e.getMessage());
+      }
+
       return createdDocuments;
 
     } catch (GitAPIException e) {
@@ -171,9 +197,11 @@ public class GithubIntegrationService {
    * @param cloneDirectory    클론된 저장소의 루트 경로
    * @param directoryMapping  로컬 경로와 DB 디렉터리 매핑
    * @param createdDocuments  생성된 문서 DTO 누적 리스트
+   * @param indexedDocuments  코드 검색 index 에 추가할 문서 누적 리스트
    */
   private void handlePath(UUID userId, UserData owner, Path currentPath, Path cloneDirectory,
-      Map<Path, File> directoryMapping, List<FileDTO> createdDocuments) {
+      Map<Path, File> directoryMapping, List<FileDTO> createdDocuments,
+      List<TrigramIndex.Document> indexedDocuments) {
     processRepositoryEntry(cloneDirectory, currentPath, directoryMapping,
         (parentDirectory, path) -> {
           File importedDirectory = fileService.createFile(userId, path.getFileName().toString(),
@@ -193,8 +221,11 @@ public class GithubIntegrationService {
           }
           note.setCodeLanguage(language);
 
-          populateNoteContent(importedFile, readFileContent(path));
+          String content = readFileContent(path);
+          populateNoteContent(importedFile, content);
           createdDocuments.add(new FileDTO(importedFile, owner));
+          indexedDocuments.add(new TrigramIndex.Document(repositoryRelativePath(cloneDirectory, path),
+              importedFile.getId(), content));
         });
   }
 
@@ -249,8 +280,9 @@ public class GithubIntegrationService {
       content = "";
     }
     TextNoteSegment segment = noteService.createTextNoteSegment(importedFile.getNote().getId());
-    segment.updateContent(content);
+    contentBlobService.share(segment, content);
     textNoteSegmentRepository.saveAndFlush(segment);
+    searchIndexService.markNoteDirty(importedFile.getNote().getId());
   }
 
   /**
@@ -506,12 +538,15 @@ public class GithubIntegrationService {
         throw new IllegalStateException("Document is missing note: " + fileId);
       }
 
-      List<TextNoteSegment> segments = textNoteSegmentRepository.findAllByNote(note);
-      segments.sort(Comparator.comparing(TextNoteSegment::getId));
+      List<TextNoteSegment> segments = textNoteSegmentRepository.findAllByNoteOrderByPositionAscIdAsc(
+          note);
 
+      // 편집 중인 노트는 DB 저장 시점과 무관하게 세션의 현재 snapshot 을 내보냅니다.
       StringBuilder contentBuilder = new StringBuilder();
       for (TextNoteSegment segment : segments) {
-        contentBuilder.append(segment.getContent());
+        contentBuilder.append(textCollaborativeEditingService.snapshotSegment(note.getId(), segment.getId())
+            .map(CRDTFugueTreeSnapshot::getContent)
+            .orElseGet(segment::getContent));
       }
 
       String relativePath = buildRepositoryRelativePath(file, repositoryRoot);
@@ -522,29 +557,15 @@ public class GithubIntegrationService {
   }
 
   private boolean isDescendantOfRepository(File candidate, File repositoryRoot) {
-    File current = candidate;
-    while (current != null) {
-      if (current.getId().equals(repositoryRoot.getId())) {
-        return true;
-      }
-      current = current.getDirectory();
-    }
-    return false;
+    return fileAncestryRepository.isAncestor(repositoryRoot.getId(), candidate.getId());
   }
 
   private String buildRepositoryRelativePath(File file, File repositoryRoot) {
-    List<String> segments = new ArrayList<>();
-    File current = file;
-    while (current != null && !current.getId().equals(repositoryRoot.getId())) {
-      segments.add(current.getName());
-      current = current.getDirectory();
-    }
-
-    if (current == null) {
+    List<String> segments = fileAncestryRepository.findRelativePathNames(repositoryRoot.getId(),
+        file.getId());
+    if (segments.isEmpty()) {
       throw new IllegalArgumentException("File is not under repository root: " + file.getId());
     }
-
-    Collections.reverse(segments);
     return String.join("/", segments);
   }
 
@@ -662,17 +683,25 @@ public class GithubIntegrationService {
     Map<Path, File> directoryMapping = new HashMap<>();
     directoryMapping.put(repositoryPath, repositoryDirectory);
     Map<UUID, Map<String, File>> directoryChildrenCache = new HashMap<>();
+    List<TrigramIndex.Document> indexedDocuments = new ArrayList<>();
     try (var paths = Files.walk(repositoryPath)) {
       paths.sorted(Comparator.comparingInt(Path::getNameCount))
           .forEach(currentPath -> synchronizePath(userId, repositoryPath, directoryMapping,
-              directoryChildrenCache, currentPath));
+              directoryChildrenCache, currentPath, indexedDocuments));
     } catch (IOException e) {
       throw new IllegalStateException("Failed to traverse repository files", e);
     }
+
+    try {
+      codeSearchService.update(codeIndexDirectory(repositoryPath), indexedDocuments);
+    } catch (IOException e) {
+      System.out.println("Failed to update code search index: " + e.getMessage());
+    }
   }
 
   private void synchronizePath(UUID userId, Path repositoryPath, Map<Path, File> directoryMapping,
-      Map<UUID, Map<String, File>> directoryChildrenCache, Path currentPath) {
+      Map<UUID, Map<String, File>> directoryChildrenCache, Path currentPath,
+      List<TrigramIndex.Document> indexedDocuments) {
     processRepositoryEntry(repositoryPath, currentPath, directoryMapping,
         (parentDirectory, path) -> resolveDirectory(userId, parentDirectory, path.getFileName().toString(),
             directoryChildrenCache),
@@ -687,11 +716,71 @@ public class GithubIntegrationService {
             note.setType(NoteType.CODE);
           }
           note.setCodeLanguage(language);
-          resetTextSegments(note);
-          populateNoteContent(document, readFileContent(path));
+          String content = readFileContent(path);
+          List<TextNoteSegment> segments = textNoteSegmentRepository.findAllByNote(note);
+          if (segments.size() == 1) {
+            // 기존 세그먼트는 유지하고 바뀐 줄만 반영하므로 열린 협업 세션도 끊기지 않습니다.
+            textCollaborativeEditingService.reconcileSegment(note.getId(), segments.getFirst(), content,
+                userId);
+          } else {
+            resetTextSegments(note);
+            populateNoteContent(document, content);
+          }
+          indexedDocuments.add(new TrigramIndex.Document(repositoryRelativePath(repositoryPath, currentPath),
+              document.getId(), content));
         });
   }
 
+  /**
+   * <pre>
+   *   코드 검색 index 는 clone 의 .git 디렉토리 안에 둡니다.
+   *   파일 순회와 git clean 에서 제외되고, 저장소를 다시 clone 하면 함께 지워집니다.
+   * </pre>
+   */
+  private static Path codeIndexDirectory(Path repositoryPath) {
+    return repositoryPath.resolve(".git").resolve("moanote-code-index");
+  }
+
+  private static String repositoryRelativePath(Path repositoryPath, Path path) {
+    List<String> names = new ArrayList<>();
+    repositoryPath.relativize(path).forEach(name -> names.add(name.toString()));
+    return String.join("/", names);
+  }
+
+  /**
+   * <pre>
+   *   import 한 저장소의 파일에서 검색어에 일치하는 줄을 찾습니다.
+   *   저장소 루트 디렉토리에 대한 권한이 있는 사용자만 검색할 수 있으며, 마지막 import 또는 fetch 시점의 내용을 검색합니다.
+   * </pre>
+   *
+   * @param userId        검색하는 사용자 ID
+   * @param repositoryId  저장소 루트 디렉토리의 파일 ID
+   * @param query         검색어
+   * @param regex         true 이면 검색어를 정규식으로, false 이면 부분 문자열로 취급합니다.
+   * @param caseSensitive 대소문자 구분 여부
+   * @param maxHits       반환할 최대 줄 수
+   * @return 경로와 줄 번호 순서로 정렬된 일치하는 줄
+   */
+  public List<CodeSearchHitDTO> searchRepository(UUID userId, UUID repositoryId, String query,
+      boolean regex, boolean caseSensitive, int maxHits) {
+    Objects.requireNonNull(userId, "userId must not be null");
+    Objects.requireNonNull(repositoryId, "repositoryId must not be null");
+    GithubImportedRepository repository = githubImportedRepositoryRepository.findById(repositoryId)
+        .orElseThrow(() -> new NoSuchElementException("Imported repository not found with id: " + repositoryId));
+    if (!fileService.hasAnyPermission(repositoryId, userId)) {
+      throw new IllegalArgumentException("User does not have permission to search this repository");
+    }
+    CodeSearchPattern pattern = regex ? CodeSearchPattern.regex(query, caseSensitive)
+        : CodeSearchPattern.substring(query, caseSensitive);
+    Path repositoryPath = workspaceRoot.resolve(repository.getUser().getId().toString())
+        .resolve(repository.getRepositoryName());
+    try {
+      return codeSearchService.search(codeIndexDirectory(repositoryPath), pattern, maxHits);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to search repository", e);
+    }
+  }
+
   private void processRepositoryEntry(Path repositoryRoot, Path currentPath, Map<Path, File> directoryMapping,
       BiFunction<File, Path, File> directoryHandler, BiConsumer<File, Path> fileHandler) {
     if (shouldSkipRepositoryEntry(repositoryRoot, currentPath)) {
@@ -774,6 +863,8 @@ public class GithubIntegrationService {
   }
 
   private void resetTextSegments(Note note) {
+    // 세그먼트를 삭제하면 참조 수를 줄일 수 없으므로, 삭제하기 전에 blob 의 참조를 놓습니다.
+    contentBlobService.releaseNotes(List.of(note.getId()));
     List<TextNoteSegment> segments = textNoteSegmentRepository.findAllByNote(note);
     for (TextNoteSegment segment : segments) {
       note.getSegments().remove(segment);
@@ -1,25 +1,40 @@
 package moanote.backend.service;
 
+import jakarta.annotation.PreDestroy;
 import jakarta.transaction.Transactional;
+import moanote.backend.domain.HybridLogicalClock;
 import moanote.backend.domain.LWWCollaborationSession;
 import moanote.backend.domain.LWWCollaborationSession.Participation;
+import moanote.backend.domain.LWWDiagramElement;
 import moanote.backend.domain.LWWNoteContent;
 import moanote.backend.domain.LWWRegister;
+import moanote.backend.dto.LWWElementStateDTO;
+import moanote.backend.dto.LWWPatchDTO;
 import moanote.backend.dto.LWWStateDTO;
 import moanote.backend.entity.DiagramNoteSegment;
 import moanote.backend.entity.UserData;
 import moanote.backend.repository.DiagramNoteSegmentRepository;
 import moanote.backend.repository.UserDataRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Collaborative editing sessions 을 관리하는 서비스 클래스
- * TODO@ 세션이 종료되면 세션을 삭제하는 로직을 구현해야 함
+ * 편집 사항은 세션에 먼저 반영하고, 저장은 주기적으로 모아서 수행합니다. (write-behind)
  */
 @Transactional
 @Service
@@ -31,10 +46,21 @@ public class LWWCollaborativeEditingService {
 
   final private UserDataRepository userDataRepository;
 
+  final private TransactionTemplate transactionTemplate;
+
+  /**
+   * LWW 편집 사항의 timeStamp 를 검증하고 발급하는 서버 clock 입니다.
+   */
+  final private HybridLogicalClock clock;
+
   @Autowired
   public LWWCollaborativeEditingService(DiagramNoteSegmentRepository segmentRepository,
-                                        UserDataRepository userDataRepository) {
+                                        UserDataRepository userDataRepository,
+                                        TransactionTemplate transactionTemplate,
+                                        @Value("${moanote.lww.max-clock-drift-ms:60000}") long maxClockDriftMillis) {
     this.segmentRepository = segmentRepository;
+    this.clock = new HybridLogicalClock(Clock.systemUTC(), maxClockDriftMillis);
+    this.transactionTemplate = transactionTemplate;
     this.collaborationSessions = new ConcurrentHashMap<>();
     this.userDataRepository = userDataRepository;
   }
@@ -57,7 +83,7 @@ public class LWWCollaborativeEditingService {
    * @param segmentId         협업 대상 세그먼트 ID
    * @param participantUserId 세션 참여자
    * @return 세션 생성 후, LWWStateDTO 를 반환합니다.
-   * @see LWWCollaborativeEditingService#doCreateSession(DiagramNoteSegment, UserData, UUID)
+   * @see LWWCollaborativeEditingService#doCreateSession(DiagramNoteSegment, UUID)
    */
   public LWWStateDTO<LWWNoteContent> participateSession(
       UUID participantUserId, UUID segmentId) {
@@ -83,47 +109,308 @@ public class LWWCollaborativeEditingService {
    */
   protected LWWStateDTO<LWWNoteContent> doParticipateSession(DiagramNoteSegment segment, UserData participant,
       UUID sessionId) {
+    // 세션 생성과 참여자 추가를 마지막 참여자가 나갈 때의 제거와 같은 key 의 lock 안에서 수행합니다.
+    return collaborationSessions.compute(sessionId, (key, session) -> {
+      LWWCollaborationSession joined = session == null ? doCreateSession(segment, sessionId) : session;
+      joined.addParticipant(participant);
+      return joined;
+    }).getLWWStateDTO();
+  }
+
+  /**
+   * <pre>
+   *  저장된 세그먼트로 협업 세션을 생성합니다.
+   *  Controller 에서 직접 이 메소드에 접근하는 대신, 세션 참가 요청을 통해서 접근합니다.
+   *  세션을 등록하는 것은 호출자의 책임입니다.
+   * </pre>
+   *
+   * @param segment   동시 수정 대상 노트
+   * @param sessionId 세션 ID
+   * @see LWWCollaborativeEditingService#doParticipateSession(DiagramNoteSegment, UserData, UUID)
+   */
+  protected LWWCollaborationSession doCreateSession(DiagramNoteSegment segment, UUID sessionId) {
+    return new LWWCollaborationSession(segment, clock::now);
+  }
+
+  /**
+   * <pre>
+   *   다이어그램 전체 content 편집 사항을 세션에 병합합니다.
+   *   병합에서 이긴 상태는 세션에 dirty 로 표시되고, 저장은 flushDirtySessions() 가 주기적으로 수행합니다.
+   *   요소 문서인 content 는 요소 상태와 병합한 결과로 바뀔 수 있으므로, 보낸 편집 사항 대신 세션의 현재 상태를 반환합니다.
+   * </pre>
+   *
+   * @param lwwStateDTO 편집 사항
+   * @param sessionId   세션 ID
+   * @return 편집 사항이 이긴 뒤의 세션 상태. timeStamp 는 서버가 다시 발급했을 수 있습니다. 졌으면 빈 값
+   * @see LWWCollaborativeEditingService#flushDirtySessions()
+   * @see LWWCollaborativeEditingService#stamp(long)
+   */
+  public Optional<LWWStateDTO<LWWNoteContent>> editSegment(LWWStateDTO<LWWNoteContent> lwwStateDTO,
+      UUID sessionId) {
     LWWCollaborationSession session = collaborationSessions.get(sessionId);
     if (session == null) {
-      return doCreateSession(segment, participant, sessionId).getLWWStateDTO();
+      throw new IllegalArgumentException("Session not found");
+    }
+
+    OptionalLong timeStamp = stamp(lwwStateDTO.timeStamp());
+    if (timeStamp.isEmpty()) {
+      return Optional.empty();
+    }
+    var stamped = new LWWStateDTO<>(lwwStateDTO.stateId(), timeStamp.getAsLong(),
+        lwwStateDTO.value());
+    if (!session.applyEdit(new LWWRegister<>(stamped.stateId(), stamped.timeStamp(), stamped.value()))) {
+      return Optional.empty();
+    }
+    return Optional.of(session.getLWWStateDTO());
+  }
+
+  /**
+   * <pre>
+   *   content 의 바뀐 부분만 담은 편집 사항을 세션에 적용합니다.
+   *   세션의 현재 상태가 patch 의 기준 상태와 다르거나, patch 를 적용한 결과가 올바르지 않으면 적용하지 않습니다.
+   *   이 경우 호출자는 보낸 사용자에게 전체 상태를 보내야 합니다.
+   * </pre>
+   *
+   * @param patch     편집 사항
+   * @param sessionId 세션 ID
+   * @return 적용된 편집 사항. timeStamp 는 서버가 다시 발급했을 수 있습니다. 적용되지 않았으면 빈 값
+   */
+  public Optional<LWWPatchDTO> patchSegment(LWWPatchDTO patch, UUID sessionId) {
+    LWWCollaborationSession session = collaborationSessions.get(sessionId);
+    if (session == null) {
+      throw new IllegalArgumentException("Session not found");
+    }
+
+    OptionalLong timeStamp = stamp(patch.timeStamp());
+    if (timeStamp.isEmpty()) {
+      return Optional.empty();
+    }
+    LWWPatchDTO stamped = patch.withTimeStamp(timeStamp.getAsLong());
+    if (!session.applyPatch(stamped)) {
+      return Optional.empty();
+    }
+    return Optional.of(stamped);
+  }
+
+  /**
+   * <pre>
+   *   클라이언트가 보낸 timeStamp 를 서버 clock 으로 검증합니다.
+   *   HLC 값이면 서버 clock 을 그 값까지 당기고 그대로 사용합니다. 서버 시각보다 허용 범위 이상 앞서면 거부합니다.
+   *   이전 방식의 작은 논리 시계 값이면 서버가 받은 시각으로 새 timeStamp 를 발급합니다. (도착 순서대로 이김)
+   * </pre>
+   *
+   * @param timeStamp 클라이언트가 보낸 timeStamp
+   * @return 병합에 사용할 timeStamp, 거부되었으면 빈 값
+   */
+  private OptionalLong stamp(long timeStamp) {
+    if (!HybridLogicalClock.isHybrid(timeStamp)) {
+      return OptionalLong.of(clock.now());
+    }
+    try {
+      clock.receive(timeStamp);
+    } catch (IllegalArgumentException e) {
+      System.out.println("LWW edit rejected: " + e.getMessage());
+      return OptionalLong.empty();
+    }
+    return OptionalLong.of(timeStamp);
+  }
+
+  /**
+   * @param sessionId 세션 ID
+   * @return 세션의 현재 content 상태
+   */
+  public LWWStateDTO<LWWNoteContent> getSessionState(UUID sessionId) {
+    LWWCollaborationSession session = collaborationSessions.get(sessionId);
+    if (session == null) {
+      throw new IllegalArgumentException("Session not found");
     }
-    session.addParticipant(participant);
     return session.getLWWStateDTO();
   }
 
+  /**
+   * @param sessionId  세션 ID
+   * @param elementIds 조회할 요소 ID 목록
+   * @return 요소들의 현재 상태. 세션에 없는 요소는 제외됩니다.
+   */
+  public List<LWWElementStateDTO<LWWDiagramElement>> getElementStates(UUID sessionId,
+      Collection<String> elementIds) {
+    LWWCollaborationSession session = collaborationSessions.get(sessionId);
+    if (session == null) {
+      throw new IllegalArgumentException("Session not found");
+    }
+    return elementIds.stream().distinct().map(session::getElementStateDTO)
+        .filter(Objects::nonNull).toList();
+  }
+
+  /**
+   * @param sessionId 세션 ID
+   * @return 세션의 모든 요소 상태. 삭제된 요소는 value 가 null 입니다.
+   */
+  public List<LWWElementStateDTO<LWWDiagramElement>> getElementStates(UUID sessionId) {
+    LWWCollaborationSession session = collaborationSessions.get(sessionId);
+    if (session == null) {
+      throw new IllegalArgumentException("Session not found");
+    }
+    return session.getElementStateDTOs();
+  }
+
+  /**
+   * @param sessionId 세션 ID
+   * @return 세션의 content 가 요소 문서여서 요소 단위 편집을 받을 수 있으면 true
+   */
+  public boolean acceptsElementEdits(UUID sessionId) {
+    LWWCollaborationSession session = collaborationSessions.get(sessionId);
+    if (session == null) {
+      throw new IllegalArgumentException("Session not found");
+    }
+    return session.acceptsElementEdits();
+  }
+
   /**
    * <pre>
-   *  협업 세션 생성의 entry point.
-   *  Controller 에서 직접 이 메소드에 접근하는 대신, 세션 참가 요청을 통해서 접근합니다.
+   *   요소 단위 세션 참여 요청을 처리합니다. 세션이 존재하지 않으면 세션을 생성합니다.
    * </pre>
    *
-   * @param segment        동시 수정 대상 노트
-   * @param participant 동시 수정 세션 참여자
-   * @param sessionId   세션 ID
-   * @see LWWCollaborativeEditingService#doParticipateSession(DiagramNoteSegment, UserData, UUID)
+   * @param participantUserId 세션 참여자
+   * @param segmentId         협업 대상 세그먼트 ID
+   * @return 세그먼트의 모든 요소 상태
    */
-  protected LWWCollaborationSession doCreateSession(DiagramNoteSegment segment, UserData participant, UUID sessionId) {
-    LWWCollaborationSession session = new LWWCollaborationSession(segment);
-    session.addParticipant(participant);
-    collaborationSessions.put(sessionId, session);
-    return session;
+  public List<LWWElementStateDTO<LWWDiagramElement>> participateElementSession(
+      UUID participantUserId, UUID segmentId) {
+    participateSession(participantUserId, segmentId);
+    return collaborationSessions.get(segmentId).getElementStateDTOs();
   }
 
-  public void editSegment(LWWStateDTO<LWWNoteContent> lwwStateDTO, UUID sessionId) {
+  /**
+   * <pre>
+   *   요소 단위 편집 사항을 병합합니다.
+   *   이긴 요소가 있으면 세션의 content 도 요소 상태를 직렬화한 값으로 바뀌므로, 전체 content 를 다루는 참여자와 저장되는
+   *   세그먼트 content 가 요소 단위 편집을 함께 반영합니다.
+   * </pre>
+   *
+   * @param edits     요소 단위 편집 사항
+   * @param sessionId 세션 ID
+   * @return 병합에서 이겨 세션 상태에 반영된 편집 사항. timeStamp 는 서버가 다시 발급했을 수 있습니다.
+   */
+  public List<LWWElementStateDTO<LWWDiagramElement>> editElements(
+      List<LWWElementStateDTO<LWWDiagramElement>> edits, UUID sessionId) {
     LWWCollaborationSession session = collaborationSessions.get(sessionId);
     if (session == null) {
       throw new IllegalArgumentException("Session not found");
     }
 
-    if (!session.applyEdit(
-        new LWWRegister<>(lwwStateDTO.stateId(), lwwStateDTO.timeStamp(),
-            lwwStateDTO.value()))) {
+    List<LWWElementStateDTO<LWWDiagramElement>> applied = new ArrayList<>();
+    for (LWWElementStateDTO<LWWDiagramElement> edit : edits) {
+      OptionalLong timeStamp = stamp(edit.timeStamp());
+      if (timeStamp.isEmpty()) {
+        continue;
+      }
+      var stamped = new LWWElementStateDTO<>(edit.elementId(), edit.stateId(),
+          timeStamp.getAsLong(), edit.value());
+      if (session.applyElementEdit(stamped)) {
+        applied.add(stamped);
+      }
+    }
+    return applied;
+  }
+
+  /**
+   * <pre>
+   *   세션에서 나가는 요청을 처리합니다.
+   *   마지막 참여자가 나가면 저장되지 않은 편집 사항을 저장한 뒤 세션을 제거합니다.
+   * </pre>
+   *
+   * @param participantUserId 나가는 사용자
+   * @param sessionId         세션 ID
+   */
+  @Transactional(Transactional.TxType.NOT_SUPPORTED)
+  public void leaveSession(UUID participantUserId, UUID sessionId) {
+    LWWCollaborationSession session = collaborationSessions.get(sessionId);
+    if (session == null) {
+      return;
+    }
+    userDataRepository.findById(participantUserId).ifPresent(session::removeParticipant);
+    if (session.getParticipantsCount() == 0) {
+      evictSession(sessionId);
+    }
+  }
+
+  /**
+   * <pre>
+   *   저장되지 않은 편집 사항을 저장한 뒤, 참여자가 없으면 세션을 제거합니다.
+   *   저장이 끝나기 전에 세션을 제거하면 그 사이에 참여한 사용자가 저장 전의 DB 상태로 새 세션을 만들게 되므로,
+   *   먼저 저장하고 참여자 수 확인과 제거는 참여 요청과 같은 key 의 lock 안에서 수행합니다.
+   * </pre>
+   *
+   * @param sessionId 제거할 세션 ID
+   */
+  @Transactional(Transactional.TxType.NOT_SUPPORTED)
+  public void evictSession(UUID sessionId) {
+    LWWCollaborationSession session = collaborationSessions.get(sessionId);
+    if (session == null) {
       return;
     }
+    flushSession(session);
+    AtomicBoolean removed = new AtomicBoolean(false);
+    collaborationSessions.computeIfPresent(sessionId, (key, current) -> {
+      removed.set(current == session && current.getParticipantsCount() == 0);
+      return removed.get() ? null : current;
+    });
+    if (removed.get()) {
+      // 저장과 제거 사이에 반영된 편집 사항을 저장합니다.
+      flushSession(session);
+    }
+  }
 
-    DiagramNoteSegment segment = segmentRepository.getReferenceById(session.segmentId);
-    segment.setContent(lwwStateDTO.value().content());
+  /**
+   * 세그먼트가 삭제되어 저장할 대상이 없는 세션을 저장하지 않고 제거합니다.
+   *
+   * @param sessionId 제거할 세션 ID
+   */
+  public void discardSession(UUID sessionId) {
+    collaborationSessions.remove(sessionId);
+  }
+
+  /**
+   * <pre>
+   *   모든 세션에서 마지막 저장 이후 바뀐 상태를 저장합니다.
+   *   한 주기 동안 여러 번 이긴 편집은 최신 상태 하나로 합쳐져 한 번만 저장됩니다.
+   *   주기는 moanote.diagram.flush-interval-ms 속성으로 설정합니다. (기본값 1000ms)
+   *   한 세션의 저장 실패가 다른 세션의 저장을 rollback 시키지 않도록 세션마다 별도의 transaction 으로 저장합니다.
+   * </pre>
+   */
+  @Transactional(Transactional.TxType.NOT_SUPPORTED)
+  @Scheduled(fixedDelayString = "${moanote.diagram.flush-interval-ms:1000}")
+  public void flushDirtySessions() {
+    collaborationSessions.values().forEach(this::flushSession);
+  }
+
+  /**
+   * 애플리케이션 종료 시 저장되지 않은 편집 사항이 유실되지 않도록 모든 세션을 저장합니다.
+   */
+  @Transactional(Transactional.TxType.NOT_SUPPORTED)
+  @PreDestroy
+  public void flushAllSessions() {
+    flushDirtySessions();
+  }
 
-    segmentRepository.save(segment);
+  private void flushSession(LWWCollaborationSession session) {
+    var content = session.drainDirtyContent();
+    if (content.isEmpty()) {
+      return;
+    }
+    try {
+      transactionTemplate.executeWithoutResult(status -> {
+        DiagramNoteSegment segment = segmentRepository.findById(session.segmentId).orElse(null);
+        if (segment == null) {
+          // 세그먼트가 삭제되었으면 저장할 대상이 없습니다.
+          return;
+        }
+        segment.setContent(content.get().value().content());
+      });
+    } catch (RuntimeException e) {
+      session.markDirty();
+      System.out.println("Failed to flush diagram session " + session.segmentId + ": " + e.getMessage());
+    }
   }
 }
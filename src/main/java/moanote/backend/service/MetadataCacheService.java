@@ -0,0 +1,136 @@
+package moanote.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import moanote.backend.dto.CacheStatsDTO;
+import moanote.backend.dto.FileDTO;
+import moanote.backend.dto.UserDataDTO;
+import moanote.backend.repository.FileRepository;
+import moanote.backend.repository.UserDataRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * <pre>
+ *   거의 모든 요청과 STOMP 메시지에서 반복되는 메타데이터 조회를 위한 cache 입니다.
+ *
+ *   유저 정보(id, username)와 파일의 FileDTO(이름, 위치, owner 포함)를 크기가 제한된 cache 에 보관합니다.
+ *   entity 가 아닌 DTO 를 보관하므로 transaction 밖에서도 안전하게 사용할 수 있습니다. entity 가 필요한 경우에는
+ *   repository 를 직접 사용해야 합니다.
+ *
+ *   Hibernate 2차 cache 는 native DML 이 실행될 때마다 전체 region 을 비우므로, closure table 과 bulk 삭제를
+ *   native query 로 수행하는 이 프로젝트에서는 서비스 수준 cache 를 사용합니다.
+ *   파일의 이름, 위치, 권한이 바뀌거나 파일, 유저가 삭제될 때는 caller 가 해당 항목을 무효화해야 합니다.
+ * </pre>
+ *
+ * @see AclService
+ */
+@Service
+public class MetadataCacheService {
+
+  private final UserDataRepository userDataRepository;
+
+  private final FileRepository fileRepository;
+
+  private final Cache<UUID, UserDataDTO> users;
+
+  private final Cache<UUID, FileDTO> files;
+
+  @Autowired
+  public MetadataCacheService(UserDataRepository userDataRepository, FileRepository fileRepository,
+      @Value("${moanote.metadata.cache-size:100000}") long cacheSize) {
+    this.userDataRepository = userDataRepository;
+    this.fileRepository = fileRepository;
+    this.users = Caffeine.newBuilder().maximumSize(cacheSize).recordStats().build();
+    this.files = Caffeine.newBuilder().maximumSize(cacheSize).recordStats().build();
+  }
+
+  /**
+   * 존재하지 않는 유저는 cache 에 보관하지 않습니다.
+   *
+   * @param userId 유저 id
+   * @return 유저 정보. 유저가 없으면 빈 값
+   */
+  public Optional<UserDataDTO> findUser(UUID userId) {
+    return Optional.ofNullable(users.get(userId,
+        id -> userDataRepository.findById(id).map(UserDataDTO::new).orElse(null)));
+  }
+
+  /**
+   * @param userId 유저 id
+   * @return 유저 정보
+   * @throws NoSuchElementException 유저가 존재하지 않는 경우
+   */
+  public UserDataDTO getUser(UUID userId) {
+    return findUser(userId)
+        .orElseThrow(() -> new NoSuchElementException("User not found with id: " + userId));
+  }
+
+  /**
+   * 존재하지 않는 파일은 cache 에 보관하지 않습니다.
+   *
+   * @param fileId 파일 id
+   * @return 파일의 FileDTO. 파일이 없으면 빈 값
+   */
+  public Optional<FileDTO> findFile(UUID fileId) {
+    return Optional.ofNullable(
+        files.get(fileId, id -> fileRepository.findFileDTOById(id).orElse(null)));
+  }
+
+  /**
+   * @param fileId 파일 id
+   * @return 파일의 owner
+   * @throws NoSuchElementException 파일이 존재하지 않는 경우
+   */
+  public UserDataDTO getOwner(UUID fileId) {
+    return findFile(fileId)
+        .orElseThrow(() -> new NoSuchElementException("File not found with id: " + fileId))
+        .owner();
+  }
+
+  /**
+   * 유저 정보가 바뀌거나 유저가 삭제되었을 때 호출합니다.
+   */
+  public void invalidateUser(UUID userId) {
+    CacheInvalidation.runNowAndAfterCommit(() -> users.invalidate(userId));
+  }
+
+  /**
+   * 파일의 이름, 위치, owner 가 바뀌거나 파일이 삭제되었을 때 호출합니다.
+   */
+  public void invalidateFile(UUID fileId) {
+    CacheInvalidation.runNowAndAfterCommit(() -> files.invalidate(fileId));
+  }
+
+  /**
+   * @see #invalidateFile(UUID)
+   */
+  public void invalidateFiles(Collection<UUID> fileIds) {
+    List<UUID> snapshot = List.copyOf(fileIds);
+    CacheInvalidation.runNowAndAfterCommit(() -> files.invalidateAll(snapshot));
+  }
+
+  /**
+   * 유저가 삭제되어 여러 파일의 owner 가 한 번에 바뀔 수 있을 때 호출합니다.
+   */
+  public void invalidateAll() {
+    CacheInvalidation.runNowAndAfterCommit(() -> {
+      users.invalidateAll();
+      files.invalidateAll();
+    });
+  }
+
+  /**
+   * @return 유저 cache 와 파일 cache 의 적중률 지표
+   */
+  public List<CacheStatsDTO> stats() {
+    return List.of(CacheStatsDTO.of("metadata.users", users),
+        CacheStatsDTO.of("metadata.files", files));
+  }
+}
@@ -7,24 +7,27 @@ import moanote.backend.dto.AddSegmentDTO;
 import moanote.backend.dto.FileDTO;
 import moanote.backend.dto.NoteDTO;
 import moanote.backend.dto.SegmentType;
+import moanote.backend.domain.FractionalIndex;
+import moanote.backend.entity.BaseNoteSegment;
 import moanote.backend.entity.DiagramNoteSegment;
 import moanote.backend.entity.File;
 import moanote.backend.entity.File.FileType;
 import moanote.backend.entity.FileUserData;
 import moanote.backend.entity.Note;
 import moanote.backend.entity.TextNoteSegment;
-import moanote.backend.entity.UserData;
+import moanote.backend.repository.BaseNoteSegmentRepository;
 import moanote.backend.repository.DiagramNoteSegmentRepository;
 import moanote.backend.repository.FileRepository;
 import moanote.backend.repository.FileUserDataRepository;
 import moanote.backend.repository.NoteRepository;
 import moanote.backend.repository.TextNoteSegmentRepository;
-import moanote.backend.repository.UserDataRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.UUID;
@@ -38,28 +41,48 @@ public class NoteService {
 
   private final DiagramNoteSegmentRepository diagramNoteSegmentRepository;
 
-  private final EntityManager entityManager;
+  private final BaseNoteSegmentRepository baseNoteSegmentRepository;
 
-  private final UserDataRepository userDataRepository;
+  private final EntityManager entityManager;
 
   private final FileRepository fileRepository;
 
   private final FileUserDataRepository fileUserDataRepository;
 
+  private final TextCollaborativeEditingService textCollaborativeEditingService;
+
+  private final LWWCollaborativeEditingService lwwCollaborativeEditingService;
+
+  private final MetadataCacheService metadataCacheService;
+
+  private final AclService aclService;
+
+  private final ContentBlobService contentBlobService;
+
   @Autowired
   public NoteService(NoteRepository noteRepository,
       TextNoteSegmentRepository textNoteSegmentRepository,
       DiagramNoteSegmentRepository diagramNoteSegmentRepository,
+      BaseNoteSegmentRepository baseNoteSegmentRepository,
       EntityManager entityManager,
-      UserDataRepository userDataRepository, FileRepository fileRepository,
-      FileUserDataRepository fileUserDataRepository) {
+      FileRepository fileRepository,
+      FileUserDataRepository fileUserDataRepository,
+      TextCollaborativeEditingService textCollaborativeEditingService,
+      LWWCollaborativeEditingService lwwCollaborativeEditingService,
+      MetadataCacheService metadataCacheService, AclService aclService,
+      ContentBlobService contentBlobService) {
     this.noteRepository = noteRepository;
     this.textNoteSegmentRepository = textNoteSegmentRepository;
     this.diagramNoteSegmentRepository = diagramNoteSegmentRepository;
+    this.baseNoteSegmentRepository = baseNoteSegmentRepository;
     this.entityManager = entityManager;
-    this.userDataRepository = userDataRepository;
     this.fileRepository = fileRepository;
     this.fileUserDataRepository = fileUserDataRepository;
+    this.textCollaborativeEditingService = textCollaborativeEditingService;
+    this.lwwCollaborativeEditingService = lwwCollaborativeEditingService;
+    this.metadataCacheService = metadataCacheService;
+    this.aclService = aclService;
+    this.contentBlobService = contentBlobService;
   }
 
   /**
@@ -79,21 +102,34 @@ public class NoteService {
 
   @Transactional
   public UUID createSegment(UUID noteId, UUID userId, AddSegmentDTO addSegmentDTO) {
-    Note note = noteRepository.findById(noteId).orElseThrow();
-    UserData userData = userDataRepository.findById(userId).orElseThrow();
+    metadataCacheService.getUser(userId);
 
     if (addSegmentDTO.type() == SegmentType.TEXT) {
-      return createTextNoteSegment(noteId).getId();
+      return createTextNoteSegment(noteId, addSegmentDTO.after()).getId();
     } else {
-      return createDiagramNoteSegment(noteId).getId();
+      return createDiagramNoteSegment(noteId, addSegmentDTO.after()).getId();
     }
   }
 
   @Transactional
   public TextNoteSegment createTextNoteSegment(UUID noteId) {
+    return createTextNoteSegment(noteId, null);
+  }
+
+  /**
+   * 텍스트 세그먼트를 생성하여 afterSegmentId 의 세그먼트 바로 뒤에 둡니다.
+   *
+   * @param noteId         세그먼트를 추가할 노트 id
+   * @param afterSegmentId 새 세그먼트의 바로 앞에 올 세그먼트 id. null 이면 노트의 끝에 추가합니다.
+   * @return 생성된 세그먼트
+   */
+  @Transactional
+  public TextNoteSegment createTextNoteSegment(UUID noteId, UUID afterSegmentId) {
+    noteRepository.bumpVersion(noteId);
     var note = noteRepository.findNoteById(noteId).orElseThrow();
     var segment = new TextNoteSegment();
     segment.setId(UuidCreator.getTimeOrderedEpoch());
+    segment.setPosition(newSegmentPosition(noteId, afterSegmentId, segment.getId()));
     segment.updateContent("");
     note.addSegment(segment);
     entityManager.flush();
@@ -102,33 +138,153 @@ public class NoteService {
 
   @Transactional
   public DiagramNoteSegment createDiagramNoteSegment(UUID noteId) {
+    return createDiagramNoteSegment(noteId, null);
+  }
+
+  /**
+   * 다이어그램 세그먼트를 생성하여 afterSegmentId 의 세그먼트 바로 뒤에 둡니다.
+   *
+   * @param noteId         세그먼트를 추가할 노트 id
+   * @param afterSegmentId 새 세그먼트의 바로 앞에 올 세그먼트 id. null 이면 노트의 끝에 추가합니다.
+   * @return 생성된 세그먼트
+   */
+  @Transactional
+  public DiagramNoteSegment createDiagramNoteSegment(UUID noteId, UUID afterSegmentId) {
+    noteRepository.bumpVersion(noteId);
     var note = noteRepository.findNoteById(noteId).orElseThrow();
     var segment = new DiagramNoteSegment();
     segment.setId(UuidCreator.getTimeOrderedEpoch());
+    segment.setPosition(newSegmentPosition(noteId, afterSegmentId, segment.getId()));
     segment.setContent("");
     note.addSegment(segment);
     return segment;
   }
 
+  /**
+   * <pre>
+   * 세그먼트를 afterSegmentId 의 세그먼트 바로 뒤로 옮깁니다.
+   * 옮기는 세그먼트의 position 만 바꾸므로, 노트의 세그먼트 수와 관계없이 한 row 만 수정합니다.
+   * 세그먼트를 추가할 때와 마찬가지로 position 을 계산하기 전에 노트 row 의 lock 을 잡습니다.
+   * </pre>
+   *
+   * @param noteId         세그먼트가 속한 노트 id
+   * @param segmentId      옮길 세그먼트 id
+   * @param afterSegmentId 옮긴 세그먼트의 바로 앞에 올 세그먼트 id. null 이면 노트의 처음으로 옮깁니다.
+   * @param userId         요청한 유저 id
+   * @throws NoSuchElementException   세그먼트가 노트에 속하지 않는 경우
+   * @throws IllegalArgumentException 노트를 수정할 권한이 없거나, 세그먼트를 자기 자신 뒤로 옮기려는 경우
+   */
+  @Transactional
+  public void moveSegment(UUID noteId, UUID segmentId, UUID afterSegmentId, UUID userId) {
+    if (!aclService.canWriteNote(noteId, userId)) {
+      throw new IllegalArgumentException("User does not have permission to edit this note");
+    }
+    noteRepository.bumpVersion(noteId);
+    baseNoteSegmentRepository.findPositionById(segmentId, noteId).orElseThrow(
+        () -> new NoSuchElementException("Segment not found in note: " + segmentId));
+    if (segmentId.equals(afterSegmentId)) {
+      throw new IllegalArgumentException("Cannot move a segment after itself");
+    }
+
+    String position;
+    if (afterSegmentId == null) {
+      position = FractionalIndex.between(null,
+          baseNoteSegmentRepository.findFirstPosition(noteId, segmentId).orElse(null));
+    } else {
+      position = positionAfter(noteId, afterSegmentId, segmentId);
+    }
+    baseNoteSegmentRepository.updatePosition(segmentId, position);
+  }
+
+  /**
+   * <pre>
+   * 동시에 같은 자리에 세그먼트를 추가하면 같은 position 을 계산하므로, 호출하기 전에 NoteRepository#bumpVersion 으로
+   * 노트 row 의 lock 을 잡아야 합니다. lock 은 transaction 이 끝날 때까지 유지되어, 다음 요청은 이전 요청의 세그먼트를
+   * 보고 position 을 계산합니다.
+   * </pre>
+   *
+   * @return 새 세그먼트의 position. afterSegmentId 가 null 이면 노트의 마지막 세그먼트 뒤의 position 입니다.
+   */
+  private String newSegmentPosition(UUID noteId, UUID afterSegmentId, UUID segmentId) {
+    if (afterSegmentId == null) {
+      return FractionalIndex.between(
+          baseNoteSegmentRepository.findLastPosition(noteId).orElse(null), null);
+    }
+    return positionAfter(noteId, afterSegmentId, segmentId);
+  }
+
+  /**
+   * @return afterSegmentId 의 세그먼트와 그 다음 세그먼트 사이의 position. segmentId 의 세그먼트는 다음 세그먼트에서 제외합니다.
+   */
+  private String positionAfter(UUID noteId, UUID afterSegmentId, UUID segmentId) {
+    String before = baseNoteSegmentRepository.findPositionById(afterSegmentId, noteId).orElseThrow(
+        () -> new NoSuchElementException("Segment not found in note: " + afterSegmentId));
+    String next = baseNoteSegmentRepository.findNextPosition(noteId, before, segmentId)
+        .orElse(null);
+    return FractionalIndex.between(before, next);
+  }
+
+  /**
+   * position 이 도입되기 전에 생성된 세그먼트에 노트별로 생성 순서대로 position 을 부여합니다.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional
+  public void backfillSegmentPositions() {
+    Map<UUID, String> lastPositions = new HashMap<>();
+    for (BaseNoteSegment segment : baseNoteSegmentRepository.findUnpositioned()) {
+      UUID noteId = segment.getNote().getId();
+      String last = lastPositions.computeIfAbsent(noteId,
+          id -> baseNoteSegmentRepository.findLastPosition(id).orElse(""));
+      String position = FractionalIndex.between(last, null);
+      baseNoteSegmentRepository.updatePosition(segment.getId(), position);
+      lastPositions.put(noteId, position);
+    }
+  }
+
   @Transactional
   public NoteDTO getNoteMetadata(UUID noteId, UUID userId) {
     Note note = noteRepository.findById(noteId).orElseThrow();
-    UserData userData = userDataRepository.findById(userId).orElseThrow();
+    metadataCacheService.getUser(userId);
+    checkReadPermission(noteId, userId);
 
-    List<TextNoteSegment> textSegments = textNoteSegmentRepository.findAllByNote(note);
-    List<DiagramNoteSegment> diagramSegments = diagramNoteSegmentRepository.findAllByNote(note);
-    Map<UUID, SegmentType> segments = new HashMap<>();
-    textSegments.forEach(segment -> segments.put(segment.getId(), SegmentType.TEXT));
-    diagramSegments.forEach(segment -> segments.put(segment.getId(), SegmentType.DIAGRAM));
+    Map<UUID, SegmentType> segments = baseNoteSegmentRepository.findSegmentTypesByNoteId(noteId);
     return new NoteDTO(
-        new FileDTO(note.getFile(),
-            fileUserDataRepository.findOwnerByFile(note.getFile()).getUser()),
+        metadataCacheService.findFile(note.getFile().getId()).orElseThrow(),
         segments,
         note.getType() == Note.NoteType.CODE,
         note.getCodeLanguage()
     );
   }
 
+  /**
+   * <pre>
+   * getNoteMetadata 가 반환할 메타데이터의 버전을 조회합니다.
+   * 세그먼트 목록은 노트 버전으로, 파일 이름과 위치는 파일 목록 버전으로 추적하므로 두 버전을 함께 사용합니다.
+   * </pre>
+   *
+   * @param noteId 조회할 노트 id
+   * @param userId 요청한 유저 id
+   * @return 노트 버전과 파일 버전으로 만든 ETag
+   */
+  @Transactional
+  public String getNoteMetadataETag(UUID noteId, UUID userId) {
+    metadataCacheService.getUser(userId);
+    String version = noteRepository.findMetadataVersionById(noteId).orElseThrow();
+    checkReadPermission(noteId, userId);
+    return "\"" + noteId + "-" + version + "\"";
+  }
+
+  /**
+   * 메타데이터와 ETag 조회가 같은 권한 확인을 거치도록, 유저가 노트를 읽을 수 있는지 확인합니다.
+   *
+   * @throws IllegalArgumentException 유저가 노트에 대한 권한이 없는 경우
+   */
+  private void checkReadPermission(UUID noteId, UUID userId) {
+    if (!aclService.canReadNote(noteId, userId)) {
+      throw new IllegalArgumentException("User does not have permission to read this note");
+    }
+  }
+
   /**
    * noteId 에 해당하는 Note 검색
    *
@@ -145,4 +301,28 @@ public class NoteService {
   public void deleteNote(UUID noteId) {
     noteRepository.findById(noteId).ifPresent(noteRepository::delete);
   }
+
+  /**
+   * <pre>
+   * 노트들과 노트에 속한 세그먼트를 set 단위의 질의로 한 번에 삭제합니다.
+   * 삭제되는 노트의 협업 세션은 저장하지 않고 제거합니다.
+   * 노트를 참조하는 File 의 note_id 는 caller 가 먼저 끊어야 합니다.
+   * </pre>
+   *
+   * @param noteIds 삭제할 노트 id 목록
+   * @see FileRepository#unlinkDirectoriesAndNotes(java.util.Collection)
+   */
+  @Transactional
+  public void deleteNotes(Collection<UUID> noteIds) {
+    if (noteIds.isEmpty()) {
+      return;
+    }
+    noteIds.forEach(textCollaborativeEditingService::discardSession);
+    diagramNoteSegmentRepository.findIdsByNoteIds(noteIds)
+        .forEach(lwwCollaborativeEditingService::discardSession);
+    contentBlobService.releaseNotes(noteIds);
+    textNoteSegmentRepository.deleteAllByNoteIds(noteIds);
+    diagramNoteSegmentRepository.deleteAllByNoteIds(noteIds);
+    noteRepository.deleteAllByIds(noteIds);
+  }
 }
\ No newline at end of file
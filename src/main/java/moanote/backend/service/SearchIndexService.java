@@ -0,0 +1,383 @@
+package moanote.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.transaction.Transactional;
+import moanote.backend.domain.AccessScope;
+import moanote.backend.dto.SearchHitDTO;
+import moanote.backend.dto.SearchPageDTO;
+import moanote.backend.dto.SearchSourceDTO;
+import moanote.backend.entity.TextNoteSegment;
+import moanote.backend.repository.FileAncestryRepository;
+import moanote.backend.repository.FileRepository;
+import moanote.backend.repository.TextNoteSegmentRepository;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <pre>
+ *   노트 내용과 파일 이름에 대한 전문 검색 index 를 관리하는 서비스입니다.
+ *
+ *   노트 파일 하나가 Lucene 문서 하나이며, 문서에는 파일 이름, 텍스트 세그먼트의 내용, 파일의 모든 조상 디렉토리 id 가 들어갑니다.
+ *   검색 시에는 유저에게 권한이 부여된 파일 중 가장 위에 있는 파일들을 조상으로 가진 문서만 남기므로,
+ *   권한 상속을 고려한 접근 범위가 질의 안에서 적용됩니다.
+ *
+ *   파일 생성, 이름 변경, 이동, 삭제와 세그먼트 내용 변경 시 caller 가 해당 파일이나 노트를 dirty 로 표시하면,
+ *   주기적으로 dirty 문서만 DB 에서 다시 읽어 index 에 반영합니다. 한 주기 동안 여러 번 바뀐 노트는 한 번만 색인됩니다.
+ *   주기는 moanote.search.flush-interval-ms 속성으로 설정합니다. (기본값 1000ms)
+ *
+ *   index 는 moanote.search.index-dir 디렉토리에 저장됩니다. 속성이 비어 있으면 메모리에 유지합니다.
+ *   index 가 비어 있는 상태로 시작하면 모든 노트를 다시 색인합니다.
+ * </pre>
+ */
+@Service
+public class SearchIndexService {
+
+  public static final int DEFAULT_PAGE_SIZE = 20;
+
+  public static final int MAX_PAGE_SIZE = 100;
+
+  /**
+   * 깊은 페이지 요청이 많은 문서를 정렬하지 않도록 조회할 수 있는 결과의 최대 순위를 제한합니다.
+   */
+  public static final int MAX_RESULT_WINDOW = 1000;
+
+  public static final int MAX_QUERY_TERMS = 32;
+
+  /**
+   * 한 번에 DB 에서 읽어 색인하는 노트 수
+   */
+  private static final int INDEX_BATCH_SIZE = 100;
+
+  private static final String FIELD_FILE_ID = "fileId";
+
+  private static final String FIELD_NAME = "name";
+
+  private static final String FIELD_CONTENT = "content";
+
+  private static final String FIELD_ANCESTOR = "ancestor";
+
+  /**
+   * 파일 이름에 일치하는 검색어가 내용에 일치하는 검색어보다 점수에 더 크게 반영되도록 합니다.
+   */
+  private static final float NAME_BOOST = 2.0f;
+
+  private final FileRepository fileRepository;
+
+  private final FileAncestryRepository fileAncestryRepository;
+
+  private final AclService aclService;
+
+  private final TextNoteSegmentRepository textNoteSegmentRepository;
+
+  private final MetadataCacheService metadataCacheService;
+
+  private final Analyzer analyzer;
+
+  private final Directory directory;
+
+  private final IndexWriter indexWriter;
+
+  private final SearcherManager searcherManager;
+
+  private final Set<UUID> dirtyFileIds = ConcurrentHashMap.newKeySet();
+
+  private final Set<UUID> dirtyNoteIds = ConcurrentHashMap.newKeySet();
+
+  @Autowired
+  public SearchIndexService(FileRepository fileRepository,
+      FileAncestryRepository fileAncestryRepository,
+      AclService aclService,
+      TextNoteSegmentRepository textNoteSegmentRepository,
+      MetadataCacheService metadataCacheService,
+      @Value("${moanote.search.index-dir:search-index}") String indexDir) throws IOException {
+    this.fileRepository = fileRepository;
+    this.fileAncestryRepository = fileAncestryRepository;
+    this.aclService = aclService;
+    this.textNoteSegmentRepository = textNoteSegmentRepository;
+    this.metadataCacheService = metadataCacheService;
+    this.analyzer = new StandardAnalyzer();
+    this.directory = indexDir.isBlank() ? new ByteBuffersDirectory()
+        : FSDirectory.open(Path.of(indexDir));
+    this.indexWriter = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+    this.searcherManager = new SearcherManager(indexWriter, null);
+  }
+
+  /**
+   * index 가 비어 있으면 모든 노트를 dirty 로 표시하여 다음 주기에 색인되도록 합니다.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuildIfEmpty() {
+    if (indexWriter.getDocStats().numDocs == 0) {
+      markFilesDirty(fileRepository.findIdsWithNote());
+    }
+  }
+
+  /**
+   * 파일이 생성되거나 이름이 바뀌었을 때 호출합니다. 노트가 없는 파일은 무시됩니다.
+   */
+  public void markFileDirty(UUID fileId) {
+    markFilesDirty(List.of(fileId));
+  }
+
+  /**
+   * <pre>
+   * 파일이 이동하거나 삭제되었을 때 subtree 의 모든 파일에 대해 호출합니다.
+   * 진행 중인 transaction 이 있으면 commit 이후에 한 번 더 표시하여, commit 전에 색인된 문서가 이전 상태로 남지 않게 합니다.
+   * </pre>
+   */
+  public void markFilesDirty(Collection<UUID> fileIds) {
+    List<UUID> snapshot = List.copyOf(fileIds);
+    CacheInvalidation.runNowAndAfterCommit(() -> dirtyFileIds.addAll(snapshot));
+  }
+
+  /**
+   * 노트의 세그먼트 내용이 바뀌었을 때 호출합니다.
+   *
+   * @see #markFilesDirty(Collection)
+   */
+  public void markNoteDirty(UUID noteId) {
+    CacheInvalidation.runNowAndAfterCommit(() -> dirtyNoteIds.add(noteId));
+  }
+
+  /**
+   * <pre>
+   *   dirty 로 표시된 문서를 DB 의 현재 상태로 다시 색인합니다.
+   *   DB 에 없는 파일의 문서는 삭제합니다. 색인에 실패하면 다음 주기에 다시 시도합니다.
+   * </pre>
+   */
+  @Transactional(Transactional.TxType.NOT_SUPPORTED)
+  @Scheduled(fixedDelayString = "${moanote.search.flush-interval-ms:1000}")
+  public synchronized void flushDirtyDocuments() {
+    if (dirtyFileIds.isEmpty() && dirtyNoteIds.isEmpty()) {
+      return;
+    }
+    List<UUID> fileIds = drain(dirtyFileIds);
+    List<UUID> noteIds = drain(dirtyNoteIds);
+    try {
+      reindex(fileIds, noteIds);
+      indexWriter.commit();
+      searcherManager.maybeRefresh();
+    } catch (IOException | RuntimeException e) {
+      dirtyFileIds.addAll(fileIds);
+      dirtyNoteIds.addAll(noteIds);
+      System.out.println("Failed to update search index: " + e.getMessage());
+    }
+  }
+
+  /**
+   * 애플리케이션 종료 시 반영되지 않은 변경 사항을 색인한 뒤 index 를 닫습니다.
+   */
+  @PreDestroy
+  public void close() throws IOException {
+    flushDirtyDocuments();
+    searcherManager.close();
+    indexWriter.close();
+    directory.close();
+  }
+
+  private static List<UUID> drain(Set<UUID> ids) {
+    List<UUID> drained = new ArrayList<>(ids);
+    drained.forEach(ids::remove);
+    return drained;
+  }
+
+  private void reindex(List<UUID> fileIds, List<UUID> noteIds) throws IOException {
+    Map<UUID, SearchSourceDTO> sources = new LinkedHashMap<>();
+    for (List<UUID> batch : batches(noteIds)) {
+      fileRepository.findSearchSourcesByNoteIds(batch)
+          .forEach(source -> sources.put(source.fileId(), source));
+    }
+    for (List<UUID> batch : batches(fileIds)) {
+      fileRepository.findSearchSourcesByIds(batch)
+          .forEach(source -> sources.put(source.fileId(), source));
+    }
+    // 삭제된 노트의 문서는 파일 삭제 시 표시되는 파일 id 로 삭제됩니다.
+    for (UUID fileId : fileIds) {
+      if (!sources.containsKey(fileId)) {
+        indexWriter.deleteDocuments(fileIdTerm(fileId));
+      }
+    }
+    for (List<SearchSourceDTO> batch : batches(List.copyOf(sources.values()))) {
+      indexDocuments(batch);
+    }
+  }
+
+  private void indexDocuments(List<SearchSourceDTO> sources) throws IOException {
+    Map<UUID, List<UUID>> ancestors = new HashMap<>();
+    fileAncestryRepository.findAncestors(sources.stream().map(SearchSourceDTO::fileId).toList())
+        .forEach(ancestor -> ancestors.computeIfAbsent(ancestor.descendantId(),
+            id -> new ArrayList<>()).add(ancestor.ancestorId()));
+    Map<UUID, StringBuilder> contents = new HashMap<>();
+    for (TextNoteSegment segment : textNoteSegmentRepository.findAllByNoteIdsOrderByPosition(
+        sources.stream().map(SearchSourceDTO::noteId).toList())) {
+      contents.computeIfAbsent(segment.getNote().getId(), id -> new StringBuilder())
+          .append(segment.getContent()).append('\n');
+    }
+
+    for (SearchSourceDTO source : sources) {
+      Document document = new Document();
+      document.add(new StringField(FIELD_FILE_ID, source.fileId().toString(), Field.Store.YES));
+      document.add(new TextField(FIELD_NAME, source.name(), Field.Store.NO));
+      document.add(new TextField(FIELD_CONTENT,
+          contents.getOrDefault(source.noteId(), new StringBuilder()).toString(), Field.Store.NO));
+      for (UUID ancestorId : ancestors.getOrDefault(source.fileId(), List.of())) {
+        document.add(new StringField(FIELD_ANCESTOR, ancestorId.toString(), Field.Store.NO));
+      }
+      indexWriter.updateDocument(fileIdTerm(source.fileId()), document);
+    }
+  }
+
+  private static Term fileIdTerm(UUID fileId) {
+    return new Term(FIELD_FILE_ID, fileId.toString());
+  }
+
+  private static <T> List<List<T>> batches(List<T> items) {
+    List<List<T>> batches = new ArrayList<>();
+    for (int from = 0; from < items.size(); from += INDEX_BATCH_SIZE) {
+      batches.add(items.subList(from, Math.min(items.size(), from + INDEX_BATCH_SIZE)));
+    }
+    return batches;
+  }
+
+  /**
+   * <pre>
+   *   유저가 접근할 수 있는 노트 중 모든 검색어가 파일 이름이나 내용에 포함된 노트를 점수 순서로 반환합니다.
+   *   index 에 반영되지 않은 최근 변경 사항은 다음 주기 이후에 검색됩니다.
+   * </pre>
+   *
+   * @param userId    검색하는 유저 id
+   * @param queryText 검색어
+   * @param page      0 부터 시작하는 페이지 번호
+   * @param size      페이지 크기
+   * @return 검색 결과의 한 페이지
+   * @throws IllegalArgumentException 검색어가 비어 있거나, 페이지 범위가 올바르지 않은 경우
+   * @throws java.util.NoSuchElementException 유저가 존재하지 않는 경우
+   */
+  public SearchPageDTO search(UUID userId, String queryText, int page, int size)
+      throws IOException {
+    if (queryText == null || queryText.isBlank()) {
+      throw new IllegalArgumentException("Search query must not be blank");
+    }
+    if (size < 1 || size > MAX_PAGE_SIZE) {
+      throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+    }
+    if (page < 0 || (long) (page + 1) * size > MAX_RESULT_WINDOW) {
+      throw new IllegalArgumentException(
+          "Search results are limited to the first " + MAX_RESULT_WINDOW + " hits");
+    }
+    metadataCacheService.getUser(userId);
+
+    List<String> terms = analyze(queryText);
+    if (terms.size() > MAX_QUERY_TERMS) {
+      throw new IllegalArgumentException(
+          "Search query must have at most " + MAX_QUERY_TERMS + " terms");
+    }
+    AccessScope scope = aclService.getAccessScope(userId);
+    if (terms.isEmpty() || scope.layers().isEmpty()) {
+      return new SearchPageDTO(List.of(), 0);
+    }
+
+    BooleanQuery.Builder query = new BooleanQuery.Builder();
+    for (String term : terms) {
+      query.add(new BooleanQuery.Builder()
+          .add(new BoostQuery(new TermQuery(new Term(FIELD_NAME, term)), NAME_BOOST), Occur.SHOULD)
+          .add(new TermQuery(new Term(FIELD_CONTENT, term)), Occur.SHOULD)
+          .build(), Occur.MUST);
+    }
+    query.add(accessFilter(scope), Occur.FILTER);
+
+    IndexSearcher searcher = searcherManager.acquire();
+    try {
+      TopDocs topDocs = searcher.search(query.build(), (page + 1) * size);
+      StoredFields storedFields = searcher.storedFields();
+      List<SearchHitDTO> hits = new ArrayList<>();
+      for (int i = page * size; i < topDocs.scoreDocs.length; i++) {
+        ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+        UUID fileId = UUID.fromString(storedFields.document(scoreDoc.doc).get(FIELD_FILE_ID));
+        metadataCacheService.findFile(fileId)
+            .ifPresent(file -> hits.add(new SearchHitDTO(file, scoreDoc.score)));
+      }
+      return new SearchPageDTO(hits, topDocs.totalHits.value);
+    } finally {
+      searcherManager.release(searcher);
+    }
+  }
+
+  /**
+   * 문서의 조상 중 한 단계에서 권한이 부여된 파일이 있고, 그 단계의 접근 거부된 파일은 없는 문서만 남깁니다.
+   *
+   * @see AccessScope#canAccess(Collection)
+   */
+  private static Query accessFilter(AccessScope scope) {
+    BooleanQuery.Builder filter = new BooleanQuery.Builder();
+    for (AccessScope.Layer layer : scope.layers()) {
+      BooleanQuery.Builder clause = new BooleanQuery.Builder()
+          .add(ancestorIn(layer.grantedIds()), Occur.FILTER);
+      if (!layer.deniedIds().isEmpty()) {
+        clause.add(ancestorIn(layer.deniedIds()), Occur.MUST_NOT);
+      }
+      filter.add(clause.build(), Occur.SHOULD);
+    }
+    return filter.build();
+  }
+
+  private static Query ancestorIn(Collection<UUID> fileIds) {
+    return new TermInSetQuery(FIELD_ANCESTOR,
+        fileIds.stream().map(id -> new BytesRef(id.toString())).toList());
+  }
+
+  private List<String> analyze(String text) throws IOException {
+    List<String> terms = new ArrayList<>();
+    try (TokenStream stream = analyzer.tokenStream(FIELD_CONTENT, text)) {
+      CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+      stream.reset();
+      while (stream.incrementToken()) {
+        terms.add(term.toString());
+      }
+      stream.end();
+    }
+    return terms.stream().distinct().toList();
+  }
+}
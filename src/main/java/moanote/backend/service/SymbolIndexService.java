@@ -0,0 +1,287 @@
+package moanote.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import moanote.backend.domain.AccessScope;
+import moanote.backend.domain.SymbolLexer;
+import moanote.backend.domain.SymbolLexer.Symbol;
+import moanote.backend.dto.AncestorDTO;
+import moanote.backend.dto.CacheStatsDTO;
+import moanote.backend.dto.SegmentRefDTO;
+import moanote.backend.dto.SymbolDTO;
+import moanote.backend.dto.SymbolSourceDTO;
+import jakarta.transaction.Transactional;
+import moanote.backend.entity.File;
+import moanote.backend.entity.Note.CodeLanguage;
+import moanote.backend.entity.TextNoteSegment;
+import moanote.backend.repository.FileAncestryRepository;
+import moanote.backend.repository.FileRepository;
+import moanote.backend.repository.TextNoteSegmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * <pre>
+ *   코드 노트의 outline 과 go-to-symbol 을 위한 심볼 index 입니다.
+ *
+ *   세그먼트마다 SymbolLexer 로 뽑은 심볼을 크기가 제한된 cache 에 보관하고, 노트의 outline 은 세그먼트 순서대로
+ *   cache 의 심볼을 이어 만듭니다. 세그먼트 내용이 바뀌면 그 세그먼트의 항목만 무효화하므로, 다음 요청은 바뀐 세그먼트만
+ *   다시 읽어 lexing 하고 나머지 세그먼트는 내용을 불러오지 않습니다.
+ *   항목은 lexing 할 때의 코드 언어를 함께 기록하므로, 노트의 언어가 바뀌면 다음 요청에서 다시 lexing 합니다.
+ * </pre>
+ *
+ * @see SymbolLexer
+ */
+@Service
+public class SymbolIndexService {
+
+  public static final int DEFAULT_SYMBOL_LIMIT = 50;
+
+  public static final int MAX_SYMBOL_LIMIT = 500;
+
+  /**
+   * 한 번의 IN 질의로 불러올 노트 또는 세그먼트 수
+   */
+  private static final int BATCH_SIZE = 500;
+
+  private record SegmentSymbols(CodeLanguage language, List<Symbol> symbols) {
+
+  }
+
+  /**
+   * 심볼 검색어나 limit 이 올바르지 않은 경우 던지는 예외입니다. 권한이 없는 경우와 구분하기 위해 사용합니다.
+   */
+  public static class InvalidSymbolQueryException extends IllegalArgumentException {
+
+    public InvalidSymbolQueryException(String message) {
+      super(message);
+    }
+  }
+
+  private final FileRepository fileRepository;
+
+  private final FileAncestryRepository fileAncestryRepository;
+
+  private final TextNoteSegmentRepository textNoteSegmentRepository;
+
+  private final AclService aclService;
+
+  private final MetadataCacheService metadataCacheService;
+
+  /**
+   * 세그먼트 id 별 심볼. 항목의 무게는 심볼 수에 1 을 더한 값입니다.
+   */
+  private final Cache<UUID, SegmentSymbols> segmentSymbols;
+
+  @Autowired
+  public SymbolIndexService(FileRepository fileRepository,
+      FileAncestryRepository fileAncestryRepository,
+      TextNoteSegmentRepository textNoteSegmentRepository, AclService aclService,
+      MetadataCacheService metadataCacheService,
+      @Value("${moanote.symbol.cache-weight:1000000}") long cacheWeight) {
+    this.fileRepository = fileRepository;
+    this.fileAncestryRepository = fileAncestryRepository;
+    this.textNoteSegmentRepository = textNoteSegmentRepository;
+    this.aclService = aclService;
+    this.metadataCacheService = metadataCacheService;
+    this.segmentSymbols = Caffeine.newBuilder()
+        .maximumWeight(cacheWeight)
+        .weigher((UUID id, SegmentSymbols entry) -> entry.symbols().size() + 1)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * 세그먼트의 내용이 바뀌었을 때 호출합니다.
+   */
+  public void invalidateSegment(UUID segmentId) {
+    CacheInvalidation.runNowAndAfterCommit(() -> segmentSymbols.invalidate(segmentId));
+  }
+
+  /**
+   * <pre>
+   * 노트의 모든 심볼을 세그먼트 순서, 세그먼트 안의 줄 순서대로 반환합니다.
+   * depth 로 심볼의 중첩 관계를 나타냅니다.
+   * </pre>
+   *
+   * @param fileId 노트 파일 id
+   * @param userId 요청한 유저 id
+   * @return 노트의 outline. 심볼을 뽑지 않는 언어이면 빈 리스트
+   * @throws NoSuchElementException   유저나 노트 파일이 존재하지 않는 경우
+   * @throws IllegalArgumentException 유저가 노트를 읽을 수 없는 경우
+   */
+  @Transactional
+  public List<SymbolDTO> getOutline(UUID fileId, UUID userId) {
+    metadataCacheService.getUser(userId);
+    File file = fileRepository.findById(fileId)
+        .orElseThrow(() -> new NoSuchElementException("File not found with id: " + fileId));
+    if (file.getNote() == null) {
+      throw new NoSuchElementException("Note not found with file id: " + fileId);
+    }
+    if (!aclService.hasAnyPermission(fileId, userId)) {
+      throw new IllegalArgumentException("User does not have permission to read this note");
+    }
+    return symbolsOf(List.of(new SymbolSourceDTO(fileId, file.getNote().getCodeLanguage())));
+  }
+
+  /**
+   * <pre>
+   * root 아래의 모든 노트에서 이름에 query 가 포함된 심볼을 찾습니다. 대소문자는 구분하지 않습니다.
+   * 이름이 query 와 같은 심볼, query 로 시작하는 심볼, query 를 포함하는 심볼 순서로, 같은 순서 안에서는 짧은 이름부터
+   * 반환합니다.
+   * </pre>
+   *
+   * @param rootId 검색할 디렉토리 또는 노트 파일 id
+   * @param userId 요청한 유저 id
+   * @param query  찾을 심볼 이름
+   * @param limit  반환할 최대 심볼 수
+   * @return 이름이 query 와 일치하는 심볼
+   * @throws NoSuchElementException     유저가 존재하지 않는 경우
+   * @throws InvalidSymbolQueryException query 가 비어 있거나 limit 이 범위를 벗어난 경우
+   * @throws IllegalArgumentException     유저가 root 를 읽을 수 없는 경우
+   */
+  public List<SymbolDTO> findSymbols(UUID rootId, UUID userId, String query, int limit) {
+    if (query == null || query.isBlank()) {
+      throw new InvalidSymbolQueryException("Symbol query must not be empty");
+    }
+    if (limit < 1 || limit > MAX_SYMBOL_LIMIT) {
+      throw new InvalidSymbolQueryException("limit must be between 1 and " + MAX_SYMBOL_LIMIT);
+    }
+    metadataCacheService.getUser(userId);
+    if (!aclService.hasAnyPermission(rootId, userId)) {
+      throw new IllegalArgumentException("User does not have permission to read this file");
+    }
+    String needle = query.strip().toLowerCase(Locale.ROOT);
+    Comparator<SymbolDTO> ranking = Comparator.<SymbolDTO>comparingInt(
+            symbol -> matchRank(symbol.name(), needle))
+        .thenComparingInt(symbol -> symbol.name().length())
+        .thenComparing(SymbolDTO::name);
+    return symbolsOf(readableSources(fileAncestryRepository.findSymbolSourcesInSubtree(rootId),
+        userId)).stream()
+        .filter(symbol -> matchRank(symbol.name(), needle) < Integer.MAX_VALUE)
+        .sorted(ranking)
+        .limit(limit)
+        .toList();
+  }
+
+  /**
+   * <pre>
+   * 권한은 하위 파일로 상속되므로, root 아래에서 접근이 거부된 파일이 없으면 root 의 권한만으로 충분합니다.
+   * 거부된 파일이 있으면 sources 의 조상을 불러와 유저가 읽을 수 있는 노트만 남깁니다.
+   * </pre>
+   */
+  private List<SymbolSourceDTO> readableSources(List<SymbolSourceDTO> sources, UUID userId) {
+    AccessScope scope = aclService.getAccessScope(userId);
+    if (!scope.hasDenials()) {
+      return sources;
+    }
+    List<SymbolSourceDTO> readable = new ArrayList<>();
+    for (int from = 0; from < sources.size(); from += BATCH_SIZE) {
+      List<SymbolSourceDTO> batch = sources.subList(from,
+          Math.min(sources.size(), from + BATCH_SIZE));
+      Map<UUID, List<UUID>> ancestors = fileAncestryRepository.findAncestors(
+              batch.stream().map(SymbolSourceDTO::fileId).toList()).stream()
+          .collect(Collectors.groupingBy(AncestorDTO::descendantId,
+              Collectors.mapping(AncestorDTO::ancestorId, Collectors.toList())));
+      for (SymbolSourceDTO source : batch) {
+        if (scope.canAccess(ancestors.getOrDefault(source.fileId(), List.of()))) {
+          readable.add(source);
+        }
+      }
+    }
+    return readable;
+  }
+
+  private static int matchRank(String name, String needle) {
+    String lower = name.toLowerCase(Locale.ROOT);
+    if (lower.equals(needle)) {
+      return 0;
+    }
+    if (lower.startsWith(needle)) {
+      return 1;
+    }
+    return lower.contains(needle) ? 2 : Integer.MAX_VALUE;
+  }
+
+  /**
+   * @return sources 노트들의 심볼. 노트 안에서는 세그먼트 순서, 줄 순서대로 정렬됩니다.
+   */
+  private List<SymbolDTO> symbolsOf(List<SymbolSourceDTO> sources) {
+    Map<UUID, CodeLanguage> languages = new HashMap<>();
+    for (SymbolSourceDTO source : sources) {
+      if (SymbolLexer.supports(source.language())) {
+        languages.put(source.fileId(), source.language());
+      }
+    }
+    List<UUID> noteIds = new ArrayList<>(languages.keySet());
+    List<SymbolDTO> result = new ArrayList<>();
+    for (int from = 0; from < noteIds.size(); from += BATCH_SIZE) {
+      List<SegmentRefDTO> segments = textNoteSegmentRepository.findRefsByNoteIdsOrderByPosition(
+          noteIds.subList(from, Math.min(noteIds.size(), from + BATCH_SIZE)));
+      Map<UUID, SegmentSymbols> symbols = segmentSymbols(segments, languages);
+      for (SegmentRefDTO segment : segments) {
+        for (Symbol symbol : symbols.get(segment.segmentId()).symbols()) {
+          result.add(new SymbolDTO(segment.noteId(), segment.segmentId(), symbol.name(),
+              symbol.kind(), symbol.line(), symbol.depth()));
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * cache 에 없거나 언어가 바뀐 세그먼트만 내용을 불러와 lexing 합니다.
+   */
+  private Map<UUID, SegmentSymbols> segmentSymbols(Collection<SegmentRefDTO> segments,
+      Map<UUID, CodeLanguage> languages) {
+    Map<UUID, SegmentSymbols> result = new HashMap<>();
+    Map<UUID, CodeLanguage> missing = new HashMap<>();
+    for (SegmentRefDTO segment : segments) {
+      CodeLanguage language = languages.get(segment.noteId());
+      SegmentSymbols cached = segmentSymbols.getIfPresent(segment.segmentId());
+      if (cached != null && cached.language() == language) {
+        result.put(segment.segmentId(), cached);
+      } else {
+        missing.put(segment.segmentId(), language);
+      }
+    }
+    List<UUID> missingIds = new ArrayList<>(missing.keySet());
+    for (int from = 0; from < missingIds.size(); from += BATCH_SIZE) {
+      Map<UUID, TextNoteSegment> loaded = textNoteSegmentRepository.findAllById(
+              missingIds.subList(from, Math.min(missingIds.size(), from + BATCH_SIZE))).stream()
+          .collect(Collectors.toMap(TextNoteSegment::getId, Function.identity()));
+      for (UUID segmentId : missingIds.subList(from,
+          Math.min(missingIds.size(), from + BATCH_SIZE))) {
+        CodeLanguage language = missing.get(segmentId);
+        TextNoteSegment segment = loaded.get(segmentId);
+        SegmentSymbols entry = new SegmentSymbols(language,
+            segment == null ? List.of() : SymbolLexer.extract(language, segment.getContent()));
+        if (segment != null) {
+          segmentSymbols.put(segmentId, entry);
+        }
+        result.put(segmentId, entry);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return 세그먼트 심볼 cache 의 적중률 지표
+   */
+  public List<CacheStatsDTO> stats() {
+    return List.of(CacheStatsDTO.of("symbols.segments", segmentSymbols));
+  }
+}
@@ -3,7 +3,6 @@ package moanote.backend.service;
 import com.github.f4b6a3.uuid.UuidCreator;
 import moanote.backend.dto.UserChatMessageBroadcastDTO;
 import moanote.backend.dto.UserChatSendDTO;
-import moanote.backend.repository.UserDataRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
@@ -20,11 +19,11 @@ import java.util.UUID;
 @Service
 public class TextChatService {
 
-  private final UserDataRepository userDataRepository;
+  private final MetadataCacheService metadataCacheService;
 
   @Autowired
-  public TextChatService(UserDataRepository userDataRepository) {
-    this.userDataRepository = userDataRepository;
+  public TextChatService(MetadataCacheService metadataCacheService) {
+    this.metadataCacheService = metadataCacheService;
   }
 
   /**
@@ -53,7 +52,7 @@ public class TextChatService {
 
     // TODO@ Authority 기능 구현 후 이를 통한 user id 확인 및 username 불러오기
     UUID senderId = message.senderId();
-    String senderName = userDataRepository.findById(message.senderId()).orElseThrow().getUsername();
+    String senderName = metadataCacheService.getUser(message.senderId()).name();
     String date = LocalDateTime.now().atZone(ZoneId.systemDefault())
         .withZoneSameInstant(ZoneId.of("UTC")).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
     UUID chatId = UuidCreator.getTimeOrderedEpoch();
@@ -1,16 +1,19 @@
 package moanote.backend.service;
 
 
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import jakarta.transaction.Transactional;
 import moanote.backend.domain.CRDTFugueTree;
 import moanote.backend.domain.CRDTFugueTreeNode;
+import moanote.backend.domain.CRDTFugueTreeSnapshot;
 import moanote.backend.domain.TextCollaborationSession;
 import moanote.backend.domain.TextCollaborationSession.Participation;
 import moanote.backend.dto.CRDTOperationDTO;
@@ -23,11 +26,17 @@ import moanote.backend.dto.TextSegmentDTO;
 import moanote.backend.entity.Note;
 import moanote.backend.entity.TextNoteSegment;
 import moanote.backend.entity.UserData;
-import moanote.backend.repository.FileUserDataRepository;
+import moanote.backend.repository.BaseNoteSegmentRepository;
 import moanote.backend.repository.NoteRepository;
 import moanote.backend.repository.TextNoteSegmentRepository;
 import moanote.backend.repository.UserDataRepository;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 /**
@@ -40,20 +49,38 @@ public class TextCollaborativeEditingService {
 
   final private TextNoteSegmentRepository segmentRepository;
 
+  final private BaseNoteSegmentRepository baseNoteSegmentRepository;
+
   final private UserDataRepository userDataRepository;
 
   final private NoteRepository noteRepository;
 
-  final private FileUserDataRepository fileUserDataRepository;
+  final private MetadataCacheService metadataCacheService;
+
+  final private SearchIndexService searchIndexService;
+
+  final private SymbolIndexService symbolIndexService;
+
+  final private ContentBlobService contentBlobService;
+
+  final private SimpMessagingTemplate messagingTemplate;
 
   @Autowired
   public TextCollaborativeEditingService(TextNoteSegmentRepository segmentRepository,
+      BaseNoteSegmentRepository baseNoteSegmentRepository,
       UserDataRepository userDataRepository, NoteRepository noteRepository,
-      FileUserDataRepository fileUserDataRepository) {
+      MetadataCacheService metadataCacheService, SearchIndexService searchIndexService,
+      SymbolIndexService symbolIndexService, ContentBlobService contentBlobService,
+      SimpMessagingTemplate messagingTemplate) {
     this.noteRepository = noteRepository;
-    this.fileUserDataRepository = fileUserDataRepository;
+    this.messagingTemplate = messagingTemplate;
+    this.metadataCacheService = metadataCacheService;
+    this.searchIndexService = searchIndexService;
+    this.symbolIndexService = symbolIndexService;
+    this.contentBlobService = contentBlobService;
     this.collaborationSessions = new ConcurrentHashMap<>();
     this.segmentRepository = segmentRepository;
+    this.baseNoteSegmentRepository = baseNoteSegmentRepository;
     this.userDataRepository = userDataRepository;
   }
 
@@ -84,16 +111,9 @@ public class TextCollaborativeEditingService {
     Note note = noteRepository.getReferenceById(noteId);
     UserData participant = userDataRepository.findById(participantUserId).orElseThrow();
 
-    FileDTO fileDTO = new FileDTO(note.getFile(),
-        fileUserDataRepository.findOwnerByFile(note.getFile()).getUser());
-    Map<UUID, SegmentType> uuidSegmentTypeMap = new HashMap<>();
-    note.getSegments().forEach(segment -> {
-      if (segmentRepository.findById(segment.getId()).isPresent()) {
-        uuidSegmentTypeMap.put(segment.getId(), SegmentType.TEXT);
-      } else {
-        uuidSegmentTypeMap.put(segment.getId(), SegmentType.DIAGRAM);
-      }
-    });
+    FileDTO fileDTO = metadataCacheService.findFile(note.getFile().getId()).orElseThrow();
+    Map<UUID, SegmentType> uuidSegmentTypeMap = baseNoteSegmentRepository.findSegmentTypesByNoteId(
+        noteId);
     var segmentLists = doParticipateSession(note, participant, noteId);
     NoteDTO noteDTO = new NoteDTO(
         fileDTO,
@@ -156,6 +176,119 @@ public class TextCollaborativeEditingService {
     return session;
   }
 
+  /**
+   * 노트가 삭제되어 저장할 대상이 없는 세션을 제거합니다.
+   *
+   * @param noteId 세션 ID 로 사용되는 노트 ID
+   */
+  public void discardSession(UUID noteId) {
+    collaborationSessions.remove(noteId);
+  }
+
+  /**
+   * <pre>
+   *   열려 있는 협업 세션에서 세그먼트의 현재 내용을 snapshot 으로 가져옵니다.
+   *   snapshot 은 편집을 막지 않으므로 export, commit 처럼 오래 걸리는 읽기에 사용합니다.
+   *   세션이 없으면 DB 의 내용이 최신이므로 빈 값을 반환합니다.
+   * </pre>
+   *
+   * @param noteId    세션 ID 로 사용되는 노트 ID
+   * @param segmentId 세그먼트 ID
+   * @return 세그먼트의 snapshot
+   */
+  public Optional<CRDTFugueTreeSnapshot> snapshotSegment(UUID noteId, UUID segmentId) {
+    TextCollaborationSession session = collaborationSessions.get(noteId);
+    if (session == null) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(session.snapshot(segmentId));
+  }
+
+  /**
+   * <pre>
+   *   외부에서 바뀐 세그먼트 내용(예: GitHub fetch)을 바뀐 줄만 반영하도록 적용합니다.
+   *   협업 세션이 열려 있으면 현재 트리 내용과 새 내용을 줄 단위로 diff 하고, 바뀐 범위만 CRDT 연산으로 트리에 적용한 뒤
+   *   세션 참여자에게 편집 topic 으로 전파합니다. 세션이 없으면 내용이 달라진 경우에만 세그먼트를 저장합니다.
+   * </pre>
+   *
+   * @param noteId    세션 ID 로 사용되는 노트 ID
+   * @param segment   갱신할 세그먼트
+   * @param content   새 내용
+   * @param byWho     변경을 일으킨 사용자 ID
+   * @return 내용이 바뀌었으면 true
+   */
+  @Transactional
+  public boolean reconcileSegment(UUID noteId, TextNoteSegment segment, String content,
+      UUID byWho) {
+    String updatedContent = content == null ? "" : content;
+    TextCollaborationSession session = collaborationSessions.get(noteId);
+    CRDTFugueTree tree = session == null ? null : session.getSegment(segment.getId());
+    if (tree == null) {
+      if (updatedContent.equals(segment.getContent())) {
+        return false;
+      }
+      // 외부에서 온 내용이므로 같은 내용을 가진 다른 세그먼트와 공유합니다.
+      contentBlobService.share(segment, updatedContent);
+      segmentRepository.save(segment);
+      searchIndexService.markNoteDirty(noteId);
+      symbolIndexService.invalidateSegment(segment.getId());
+      return true;
+    }
+
+    List<CRDTOperationDTO> operations = new ArrayList<>();
+    // diff 계산부터 적용까지 다른 참여자의 편집이 끼어들어 offset 이 어긋나지 않도록 트리 lock 을 유지합니다.
+    synchronized (tree) {
+      String currentContent = tree.getContent();
+      List<Edit> edits = diffLines(currentContent, updatedContent);
+      int[] currentLineStarts = lineStarts(currentContent);
+      int[] updatedLineStarts = lineStarts(updatedContent);
+      // 뒤쪽 편집부터 적용해야 앞쪽 편집의 offset 이 유지됩니다.
+      for (Edit edit : edits.reversed()) {
+        int from = offsetOfLine(currentLineStarts, currentContent, edit.getBeginA());
+        int to = offsetOfLine(currentLineStarts, currentContent, edit.getEndA());
+        String replacement = updatedContent.substring(
+            offsetOfLine(updatedLineStarts, updatedContent, edit.getBeginB()),
+            offsetOfLine(updatedLineStarts, updatedContent, edit.getEndB()));
+        operations.addAll(tree.replaceRange(from, to, replacement, byWho.toString()));
+      }
+    }
+    if (operations.isEmpty()) {
+      return false;
+    }
+    contentBlobService.write(segment, tree.getContent());
+    segmentRepository.save(segment);
+    searchIndexService.markNoteDirty(noteId);
+    symbolIndexService.invalidateSegment(segment.getId());
+    messagingTemplate.convertAndSend("/topic/docs/text/" + noteId + "/" + segment.getId(),
+        operations);
+    return true;
+  }
+
+  private static List<Edit> diffLines(String before, String after) {
+    RawText beforeText = new RawText(before.getBytes(StandardCharsets.UTF_8));
+    RawText afterText = new RawText(after.getBytes(StandardCharsets.UTF_8));
+    return DiffAlgorithm.getAlgorithm(SupportedAlgorithm.HISTOGRAM)
+        .diff(RawTextComparator.DEFAULT, beforeText, afterText);
+  }
+
+  /**
+   * RawText 와 같은 방식으로 줄을 나눈 각 줄의 시작 offset 입니다. 마지막 개행 뒤의 빈 문자열은 줄로 세지 않습니다.
+   */
+  private static int[] lineStarts(String text) {
+    List<Integer> starts = new ArrayList<>();
+    int start = 0;
+    while (start < text.length()) {
+      starts.add(start);
+      int lineBreak = text.indexOf('\n', start);
+      start = lineBreak == -1 ? text.length() : lineBreak + 1;
+    }
+    return starts.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  private static int offsetOfLine(int[] lineStarts, String text, int line) {
+    return line < lineStarts.length ? lineStarts[line] : text.length();
+  }
+
   @Transactional
   public void editSegment(List<CRDTOperationDTO> operations, UUID segmentId, UUID sessionId) {
     var session = collaborationSessions.get(sessionId);
@@ -177,9 +310,11 @@ public class TextCollaborativeEditingService {
       throw new IllegalArgumentException("Insert operation requires a parent node identifier");
     }
     if (appliedNode != null) {
-      String updatedContent = String.join("", tree.getOrderedElements());
-      segment.updateContent(updatedContent);
+      String updatedContent = tree.getContent();
+      contentBlobService.write(segment, updatedContent);
       segmentRepository.save(segment);
+      searchIndexService.markNoteDirty(segment.getNote().getId());
+      symbolIndexService.invalidateSegment(segment.getId());
     }
   }
 }
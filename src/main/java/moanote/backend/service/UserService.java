@@ -5,6 +5,7 @@ import moanote.backend.dto.UserDataDTO;
 import moanote.backend.entity.File;
 import moanote.backend.entity.FileUserData.Permission;
 import moanote.backend.entity.UserData;
+import moanote.backend.repository.FileAncestryRepository;
 import moanote.backend.repository.FileRepository;
 import moanote.backend.repository.FileUserDataRepository;
 import moanote.backend.repository.UserDataRepository;
@@ -27,10 +28,18 @@ public class UserService {
   @Autowired
   private FileUserDataRepository fileUserDataRepository;
 
+  @Autowired
+  private FileAncestryRepository fileAncestryRepository;
+
+  @Autowired
+  private MetadataCacheService metadataCacheService;
+
   @Transactional
   public UserData createUser(String username, String password) {
     UserData userData = userDataRepository.create(username, password);
     File rootDirectory = fileRepository.createRootDirectory();
+    fileAncestryRepository.insertFile(rootDirectory);
+    userData.setRootDirectory(rootDirectory);
     fileUserDataRepository.createFileUserData(userData, rootDirectory, Permission.OWNER);
     return userData;
   }
@@ -47,6 +56,7 @@ public class UserService {
     try {
       UserData user = findByUsername(username);
       userDataRepository.delete(user);
+      metadataCacheService.invalidateAll();
     } catch (Exception e) {
       return false;
     }
@@ -58,6 +68,7 @@ public class UserService {
       Optional<UserData> user = findById(id);
       if (user.isPresent()) {
         userDataRepository.delete(user.get());
+        metadataCacheService.invalidateAll();
       } else {
         return false;
       }
@@ -75,6 +86,7 @@ public class UserService {
   public boolean delete(UserData user) {
     try {
       userDataRepository.delete(user);
+      metadataCacheService.invalidateAll();
     } catch (Exception e) {
       return false;
     }
@@ -89,6 +101,7 @@ public class UserService {
   public boolean deleteAll() {
     try {
       userDataRepository.deleteAll();
+      metadataCacheService.invalidateAll();
     } catch (Exception e) {
       return false;
     }
@@ -0,0 +1,51 @@
+package moanote.backend;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * <pre>
+ * 테스트에서 action 이 실행하는 SQL statement 의 수를 Hibernate Statistics 로 셉니다.
+ * N+1 질의가 다시 생기지 않았는지, cache 가 질의를 대신하는지 확인할 때 사용합니다.
+ * </pre>
+ */
+public final class QueryCountAssertions {
+
+  private QueryCountAssertions() {
+  }
+
+  /**
+   * @return action 을 실행하는 동안 준비된 SQL statement 의 수
+   */
+  public static long countStatements(EntityManagerFactory entityManagerFactory, Runnable action) {
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.setStatisticsEnabled(true);
+    statistics.clear();
+    try {
+      action.run();
+      return statistics.getPrepareStatementCount();
+    } finally {
+      statistics.setStatisticsEnabled(false);
+    }
+  }
+
+  /**
+   * action 이 정확히 expected 개의 SQL statement 를 실행하는지 확인합니다.
+   *
+   * @return action 의 결과
+   */
+  public static <T> T assertStatementCount(EntityManagerFactory entityManagerFactory,
+      long expected, Supplier<T> action) {
+    Object[] result = new Object[1];
+    long statements = countStatements(entityManagerFactory, () -> result[0] = action.get());
+    assertEquals(expected, statements, "prepared SQL statements");
+    @SuppressWarnings("unchecked")
+    T value = (T) result[0];
+    return value;
+  }
+}
@@ -18,6 +18,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -78,7 +79,7 @@ class FileControllerTest {
         FileType.DOCUMENT);
 
     {
-      var response = fileController.listFiles(null, otherUser.getId(), false);
+      var response = fileController.listFiles(null, otherUser.getId(), false, null);
       Assert.isTrue(response.hasBody(), "body should not be null");
       if (response.getBody() != null) {
         Assert.isTrue(response.getBody().size() == 2, "Other user's files should not be listed");
@@ -90,7 +91,7 @@ class FileControllerTest {
     }
 
     {
-      var response = fileController.listFiles(null, user.getId(), false);
+      var response = fileController.listFiles(null, user.getId(), false, null);
       if (response.getBody() == null) {
         fail("Response body should not be null");
       }
@@ -106,7 +107,7 @@ class FileControllerTest {
     }
 
     {
-      var response = fileController.listFiles(null, user.getId(), true);
+      var response = fileController.listFiles(null, user.getId(), true, null);
       if (response.getBody() == null) {
         fail("Response body should not be null");
       }
@@ -117,7 +118,7 @@ class FileControllerTest {
     }
 
     {
-      var response = fileController.listFiles(subdirectory.getId(), user.getId(), true);
+      var response = fileController.listFiles(subdirectory.getId(), user.getId(), true, null);
       if (response.getBody() == null) {
         fail("Response body should not be null");
       }
@@ -133,13 +134,13 @@ class FileControllerTest {
     }
 
     {
-      var response = fileController.listFiles(subSubdirectory.getId(), otherUser.getId(), true);
+      var response = fileController.listFiles(subSubdirectory.getId(), otherUser.getId(), true, null);
       Assert.isTrue(response.getStatusCode().is4xxClientError(),
           "Response should not be successful");
     }
 
     {
-      var response = fileController.listFiles(subSubdirectory.getId(), otherUser.getId(), false);
+      var response = fileController.listFiles(subSubdirectory.getId(), otherUser.getId(), false, null);
       Assert.isTrue(response.getStatusCode().is4xxClientError(),
           "Response should not be successful");
     }
@@ -278,4 +279,75 @@ class FileControllerTest {
           "must be found in collab the user : " + collab.getUsername());
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  void listingReturnsNotModifiedUntilDirectoryChanges() {
+    UserData user = userService.createUser("etagUser", "etagPassword");
+    File directory = fileService.createFile(user.getId(), "directory", FileType.DIRECTORY);
+    File subdirectory = fileService.createFile(user.getId(), "subdirectory", FileType.DIRECTORY,
+        directory.getId());
+    File file = fileService.createFile(user.getId(), "file.txt", FileType.DOCUMENT,
+        directory.getId());
+
+    var first = fileController.listFiles(directory.getId(), user.getId(), false, null);
+    String eTag = first.getHeaders().getETag();
+    assertEquals(HttpStatus.OK, first.getStatusCode());
+    assertNotNull(eTag);
+
+    var unchanged = fileController.listFiles(directory.getId(), user.getId(), false, eTag);
+    assertEquals(HttpStatus.NOT_MODIFIED, unchanged.getStatusCode());
+    assertNull(unchanged.getBody());
+
+    fileService.updateFileName(file.getId(), "renamed.txt");
+    var renamed = fileController.listFiles(directory.getId(), user.getId(), false, eTag);
+    assertEquals(HttpStatus.OK, renamed.getStatusCode());
+    assertNotEquals(eTag, renamed.getHeaders().getETag());
+
+    // 재귀 목록은 하위 디렉토리의 변경도 반영해야 합니다.
+    String recursiveETag = fileController.listFiles(null, user.getId(), true, null).getHeaders()
+        .getETag();
+    fileService.createFile(user.getId(), "nested.txt", FileType.DOCUMENT, subdirectory.getId());
+    assertEquals(HttpStatus.OK,
+        fileController.listFiles(null, user.getId(), true, recursiveETag).getStatusCode());
+
+    String beforeMove = fileController.listFiles(directory.getId(), user.getId(), false, null)
+        .getHeaders().getETag();
+    fileService.moveFile(file.getId(), directory.getDirectory().getId());
+    String afterMove = fileController.listFiles(directory.getId(), user.getId(), false, beforeMove)
+        .getHeaders().getETag();
+    assertNotEquals(beforeMove, afterMove);
+
+    fileService.deleteFile(subdirectory.getId(), user.getId());
+    assertEquals(HttpStatus.OK,
+        fileController.listFiles(directory.getId(), user.getId(), false, afterMove)
+            .getStatusCode());
+  }
+
+  @Test
+  void listingReturnsModifiedWhenPermissionChanges() {
+    UserData owner = userService.createUser("etagOwner", "etagPassword");
+    UserData collaborator = userService.createUser("etagCollaborator", "etagPassword");
+    File directory = fileService.createFile(owner.getId(), "shared", FileType.DIRECTORY);
+    fileService.grantPermission(directory.getId(), collaborator.getId(),
+        FileUserData.Permission.READ);
+
+    String eTag = fileController.listFiles(directory.getId(), collaborator.getId(), false, null)
+        .getHeaders().getETag();
+    assertEquals(HttpStatus.NOT_MODIFIED,
+        fileController.listFiles(directory.getId(), collaborator.getId(), false, eTag)
+            .getStatusCode());
+
+    // 디렉토리는 그대로여도 권한이 바뀌면 캐시된 목록을 다시 받아야 합니다.
+    fileService.grantPermission(directory.getId(), collaborator.getId(),
+        FileUserData.Permission.WRITE);
+    var granted = fileController.listFiles(directory.getId(), collaborator.getId(), false, eTag);
+    assertEquals(HttpStatus.OK, granted.getStatusCode());
+    assertNotEquals(eTag, granted.getHeaders().getETag());
+
+    fileService.grantPermission(directory.getId(), collaborator.getId(),
+        FileUserData.Permission.NONE);
+    assertEquals(HttpStatus.FORBIDDEN,
+        fileController.listFiles(directory.getId(), collaborator.getId(), false,
+            granted.getHeaders().getETag()).getStatusCode());
+  }
+}
@@ -9,16 +9,20 @@ import moanote.backend.repository.NoteRepository;
 import moanote.backend.service.FileService;
 import moanote.backend.service.NoteService;
 import moanote.backend.service.UserService;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.UUID;
+
 
 @AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2, replace = AutoConfigureTestDatabase.Replace.ANY)
 @TestPropertySource("classpath:application.properties")
@@ -57,4 +61,46 @@ class NoteControllerTest {
     File file = fileService.createFile(user.getId(),"note", FileType.DOCUMENT);
 
   }
-}
\ No newline at end of file
+
+  @Test
+  void getNoteMetadataReturnsNotModifiedUntilNoteChanges() {
+    UserData user = userService.createUser("etag-tester", "tester");
+    File file = fileService.createFile(user.getId(), "note", FileType.DOCUMENT);
+    UUID noteId = file.getNote().getId();
+
+    var first = noteController.getNoteMetadata(noteId, user.getId(), null);
+    String eTag = first.getHeaders().getETag();
+    Assertions.assertEquals(HttpStatus.OK, first.getStatusCode());
+    Assertions.assertNotNull(eTag);
+    Assertions.assertEquals(HttpStatus.NOT_MODIFIED,
+        noteController.getNoteMetadata(noteId, user.getId(), eTag).getStatusCode());
+
+    noteService.createTextNoteSegment(noteId);
+    var added = noteController.getNoteMetadata(noteId, user.getId(), eTag);
+    Assertions.assertEquals(HttpStatus.OK, added.getStatusCode());
+    Assertions.assertEquals(1, added.getBody().segments().size());
+
+    String afterSegment = added.getHeaders().getETag();
+    fileService.updateFileName(file.getId(), "renamed");
+    Assertions.assertEquals(HttpStatus.OK,
+        noteController.getNoteMetadata(noteId, user.getId(), afterSegment).getStatusCode());
+  }
+
+  @Test
+  void getNoteMetadataRequiresReadPermission() {
+    UserData owner = userService.createUser("etag-owner", "tester");
+    UserData stranger = userService.createUser("etag-stranger", "tester");
+    File file = fileService.createFile(owner.getId(), "note", FileType.DOCUMENT);
+    UUID noteId = file.getNote().getId();
+    String eTag = noteController.getNoteMetadata(noteId, owner.getId(), null).getHeaders()
+        .getETag();
+
+    // ETag 만 확인하는 요청도 메타데이터 조회와 같은 권한 확인을 거칩니다.
+    Assertions.assertEquals(HttpStatus.FORBIDDEN,
+        noteController.getNoteMetadata(noteId, stranger.getId(), eTag).getStatusCode());
+    Assertions.assertEquals(HttpStatus.FORBIDDEN,
+        noteController.getNoteMetadata(noteId, stranger.getId(), null).getStatusCode());
+    Assertions.assertEquals(HttpStatus.NOT_FOUND,
+        noteController.getNoteMetadata(UUID.randomUUID(), owner.getId(), null).getStatusCode());
+  }
+}
@@ -6,6 +6,12 @@ import moanote.backend.dto.OperationType;
 import org.junit.jupiter.api.Test;
 import org.springframework.util.Assert;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class CRDTOrderTreeTest {
@@ -42,4 +48,169 @@ class CRDTOrderTreeTest {
     Assert.isTrue(String.join("", tree.getOrderedElements()).equals(content),
         "In-order traversal must reconstruct the source text");
   }
+
+  @Test
+  void lineQueriesOnPlainText() {
+    CRDTFugueTree tree = CRDTFugueTree.fromPlainText("first\nsecond\n\nfourth");
+
+    assertEquals(4, tree.getLineCount());
+    assertEquals(0, tree.lineStart(0));
+    assertEquals(6, tree.lineStart(1));
+    assertEquals(13, tree.lineStart(2));
+    assertEquals(14, tree.lineStart(3));
+    assertEquals(1, tree.lineOf("pl00000006"));
+    assertEquals(3, tree.lineOf("pl00000014"));
+    assertEquals("second\n\n", tree.lineRange(1, 3));
+    assertEquals("fourth", tree.lineRange(3, 4));
+    assertThrows(IndexOutOfBoundsException.class, () -> tree.lineStart(4));
+  }
+
+  /**
+   * 무작위 삽입/삭제 이후에도 집계 값 기반 질의 결과가 전체 렌더링 결과와 일치하는지 확인한다.
+   */
+  @Test
+  void lineIndexMatchesRenderedTextAfterRandomEdits() {
+    Random random = new Random(26);
+    CRDTFugueTree tree = CRDTFugueTree.fromPlainText("ab\ncd\n");
+    List<String> nodeIds = new ArrayList<>();
+    tree.getNodesDTO().forEach(node -> nodeIds.add(node.id()));
+
+    for (int step = 0; step < 2000; step++) {
+      if (random.nextInt(4) == 0 && nodeIds.size() > 1) {
+        String target = nodeIds.get(1 + random.nextInt(nodeIds.size() - 1));
+        tree.delete(new CRDTOperationDTO(OperationType.REMOVE, target, null, null, null, "user1"));
+      } else {
+        String parent = nodeIds.get(random.nextInt(nodeIds.size()));
+        String nodeId = String.format("n%05d", step);
+        String value = random.nextInt(5) == 0 ? "\n" : String.valueOf((char) ('a' + random.nextInt(26)));
+        tree.insert(new CRDTOperationDTO(OperationType.INSERT, nodeId, value, parent,
+            random.nextBoolean() ? Side.LEFT : Side.RIGHT, "user1"));
+        nodeIds.add(nodeId);
+      }
+    }
+
+    String rendered = String.join("", tree.getOrderedElements());
+    String[] lines = rendered.split("\n", -1);
+    assertEquals(rendered.length(), tree.getLength());
+    assertEquals(lines.length, tree.getLineCount());
+    int offset = 0;
+    for (int line = 0; line < lines.length; line++) {
+      assertEquals(offset, tree.lineStart(line));
+      assertEquals(lines[line] + (line + 1 < lines.length ? "\n" : ""), tree.lineRange(line, line + 1));
+      offset += lines[line].length() + 1;
+    }
+    for (String nodeId : nodeIds.subList(1, nodeIds.size())) {
+      int nodeOffset = tree.offsetOf(nodeId);
+      int expectedLine = (int) rendered.substring(0, nodeOffset).chars().filter(c -> c == '\n').count();
+      assertEquals(expectedLine, tree.lineOf(nodeId));
+    }
+  }
+
+  @Test
+  void readerStreamsFromOffsetAndNode() throws Exception {
+    CRDTFugueTree tree = CRDTFugueTree.fromPlainText("hello world");
+    tree.delete(new CRDTOperationDTO(OperationType.REMOVE, "pl00000005", null, null, null, "user1"));
+
+    assertEquals("helloworld", tree.getContent());
+    try (CRDTFugueTreeReader reader = tree.reader(3)) {
+      char[] buffer = new char[4];
+      assertEquals(4, reader.read(buffer, 0, 4));
+      assertEquals("lowo", new String(buffer));
+      assertEquals(7, reader.position());
+    }
+    try (CRDTFugueTreeReader reader = tree.reader("pl00000005")) {
+      assertEquals(5, reader.position());
+      assertEquals('w', reader.read());
+    }
+    try (CRDTFugueTreeReader reader = tree.reader(2, 4)) {
+      assertEquals('l', reader.read());
+      assertEquals('l', reader.read());
+      assertEquals(-1, reader.read());
+    }
+  }
+
+  @Test
+  void charSequenceViewSupportsRegexSearch() {
+    CRDTFugueTree tree = CRDTFugueTree.fromPlainText("int a = 1;\nint bb = 22;\n");
+    CharSequence text = tree.asCharSequence();
+
+    Matcher matcher = Pattern.compile("int (\\w+) = (\\d+);").matcher(text);
+    List<String> names = new ArrayList<>();
+    while (matcher.find()) {
+      names.add(matcher.group(1) + "=" + matcher.group(2));
+    }
+    assertEquals(List.of("a=1", "bb=22"), names);
+    assertEquals("bb", text.subSequence(15, 17).toString());
+  }
+
+  @Test
+  void snapshotKeepsContentWhileTreeIsEdited() {
+    CRDTFugueTree tree = CRDTFugueTree.fromPlainText("abc");
+    CRDTFugueTreeSnapshot before = tree.snapshot();
+
+    tree.insert(new CRDTOperationDTO(OperationType.INSERT, "n1", "X", "pl00000001", Side.RIGHT,
+        "user1"));
+    tree.delete(new CRDTOperationDTO(OperationType.REMOVE, "pl00000000", null, null, null, "user1"));
+    CRDTFugueTreeSnapshot after = tree.snapshot();
+    tree.insert(new CRDTOperationDTO(OperationType.INSERT, "n2", "Y", "n1", Side.RIGHT, "user1"));
+
+    assertEquals("abc", before.getContent());
+    assertEquals(3, before.getLength());
+    assertEquals("bXc", after.getContent());
+    assertEquals(2, after.getVersion());
+    assertEquals("bXYc", tree.getContent());
+    assertNull(tree.getNodesDTO().stream()
+        .filter(node -> node.id().equals("pl00000000")).findFirst().orElseThrow().value());
+  }
+
+  @Test
+  void snapshotReadsAreConsistentUnderConcurrentEdits() throws Exception {
+    CRDTFugueTree tree = CRDTFugueTree.fromPlainText("x".repeat(1000));
+    Thread writer = new Thread(() -> {
+      String parentId = "pl00000999";
+      for (int index = 0; index < 5000; index++) {
+        String nodeId = String.format("w%08d", index);
+        tree.insert(new CRDTOperationDTO(OperationType.INSERT, nodeId, "y", parentId, Side.RIGHT,
+            "user1"));
+        parentId = nodeId;
+      }
+    });
+    writer.start();
+    while (writer.isAlive()) {
+      CRDTFugueTreeSnapshot snapshot = tree.snapshot();
+      String content = snapshot.getContent();
+      assertEquals(snapshot.getLength(), content.length());
+      assertEquals("x".repeat(1000) + "y".repeat(content.length() - 1000), content);
+    }
+    writer.join();
+    assertEquals(6000, tree.snapshot().getContent().length());
+  }
+
+  @Test
+  void replaceRangeMatchesStringReplacementAndReplaysOnReplica() {
+    Random random = new Random(29);
+    CRDTFugueTree tree = CRDTFugueTree.fromPlainText("the quick brown fox\njumps over\n");
+    CRDTFugueTree replica = CRDTFugueTree.fromPlainText("the quick brown fox\njumps over\n");
+    tree.insert(new CRDTOperationDTO(OperationType.INSERT, "multi", "MULTI", "pl00000003",
+        Side.RIGHT, "user1"));
+    replica.insert(new CRDTOperationDTO(OperationType.INSERT, "multi", "MULTI", "pl00000003",
+        Side.RIGHT, "user1"));
+    StringBuilder expected = new StringBuilder(tree.getContent());
+
+    for (int step = 0; step < 300; step++) {
+      int from = random.nextInt(expected.length() + 1);
+      int to = from + random.nextInt(Math.min(6, expected.length() - from) + 1);
+      String text = "abc\n".substring(0, random.nextInt(5));
+      expected.replace(from, to, text);
+      for (CRDTOperationDTO operation : tree.replaceRange(from, to, text, "server")) {
+        if (operation.type() == OperationType.INSERT) {
+          replica.insert(operation);
+        } else {
+          replica.delete(operation);
+        }
+      }
+      assertEquals(expected.toString(), tree.getContent());
+    }
+    assertEquals(expected.toString(), replica.getContent());
+  }
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package moanote.backend.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodeSearchPatternTest {
+
+  @Test
+  void requiredLiteralsSkipOptionalAndVariableParts() {
+    assertEquals(List.of("public ", " void"), CodeSearchPattern.requiredLiterals("public \\w+ void"));
+    assertEquals(List.of("get", "Name("), CodeSearchPattern.requiredLiterals("gett?(er)?Name\\("));
+    assertEquals(List.of("foo", "bar"), CodeSearchPattern.requiredLiterals("foo[0-9]{0,2}bar"));
+    assertEquals(List.of("a.b*c"), CodeSearchPattern.requiredLiterals("\\Qa.b*c\\E"));
+    assertEquals(List.of(), CodeSearchPattern.requiredLiterals("foo|bar"));
+    assertEquals(List.of(), CodeSearchPattern.requiredLiterals("(?x) foo bar"));
+    // 여러 문자로 이루어진 escape 는 전체를 건너뛰고, 뒤의 문자만 literal 로 남깁니다.
+    assertEquals(List.of("bc"), CodeSearchPattern.requiredLiterals("\\x41bc"));
+    assertEquals(List.of("bc"), CodeSearchPattern.requiredLiterals("\\x{41}bc"));
+    assertEquals(List.of("bc"), CodeSearchPattern.requiredLiterals("\\u0041bc"));
+    assertEquals(List.of(), CodeSearchPattern.requiredLiterals("\\0101"));
+    assertEquals(List.of("bc"), CodeSearchPattern.requiredLiterals("\\cAbc"));
+    assertEquals(List.of("x"), CodeSearchPattern.requiredLiterals("(?<g>a)\\k<g>x"));
+    assertEquals(List.of("ab"), CodeSearchPattern.requiredLiterals("\\p{Lu}ab\\P{L}"));
+    assertEquals(List.of("b"), CodeSearchPattern.requiredLiterals("(a)\\1b"));
+    assertTrue(CodeSearchPattern.regex("\\x41bc", true).matches("Abc"));
+  }
+
+  @Test
+  void matchesHonorCaseSensitivity() {
+    assertTrue(CodeSearchPattern.substring("TODO(", false).matches("// todo(fix)"));
+    assertFalse(CodeSearchPattern.substring("TODO(", true).matches("// todo(fix)"));
+    assertTrue(CodeSearchPattern.regex("fo+\\s*=", true).matches("int fooo = 1;"));
+    assertThrows(IllegalArgumentException.class, () -> CodeSearchPattern.regex("(unclosed", true));
+    assertThrows(IllegalArgumentException.class, () -> CodeSearchPattern.substring("", true));
+  }
+
+  @Test
+  void catastrophicBacktrackingStopsAtDeadline() {
+    // 일치하지 않는 줄에서 backtracking 이 줄 길이의 10 제곱에 비례합니다.
+    CodeSearchPattern pattern = CodeSearchPattern.regex("(.*a){10}x", true);
+    String line = "a".repeat(40);
+    long deadline = System.nanoTime() + 100_000_000L;
+
+    assertTimeoutPreemptively(Duration.ofSeconds(10),
+        () -> assertThrows(CodeSearchPattern.MatchTimeoutException.class,
+            () -> pattern.matches(line, deadline)));
+    assertTrue(pattern.matches("a".repeat(10) + "x", System.nanoTime() + 100_000_000L));
+  }
+}
@@ -0,0 +1,33 @@
+package moanote.backend.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiagramElementDocumentTest {
+
+  @Test
+  void serializedElementsParseBackWithTombstones() {
+    Map<String, LWWRegister.State<LWWDiagramElement>> elements = Map.of(
+        "shape-2", new LWWRegister.State<>("user2", 7, null),
+        "shape-1", new LWWRegister.State<>("user1", 5, new LWWDiagramElement("{\"x\":1}")));
+
+    String content = DiagramElementDocument.serialize(elements);
+
+    assertEquals(elements, DiagramElementDocument.parse(content).orElseThrow());
+    assertTrue(content.indexOf("shape-1") < content.indexOf("shape-2"));
+    assertEquals(content, DiagramElementDocument.serialize(
+        DiagramElementDocument.parse(content).orElseThrow()));
+  }
+
+  @Test
+  void otherContentIsNotAnElementDocument() {
+    assertTrue(DiagramElementDocument.parse("").isEmpty());
+    assertTrue(DiagramElementDocument.parse("<svg/>").isEmpty());
+    assertTrue(DiagramElementDocument.parse("{\"shapes\":[]}").isEmpty());
+    assertTrue(DiagramElementDocument.parse("{\"elements\":[{\"content\":\"a\"}]}").isEmpty());
+    assertTrue(DiagramElementDocument.parse("{\"elements\":[]}").orElseThrow().isEmpty());
+  }
+}
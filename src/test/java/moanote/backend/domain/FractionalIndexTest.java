@@ -0,0 +1,60 @@
+package moanote.backend.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FractionalIndexTest {
+
+  @Test
+  void betweenIsStrictlyOrdered() {
+    String first = FractionalIndex.between(null, null);
+    String after = FractionalIndex.between(first, null);
+    String before = FractionalIndex.between(null, first);
+    String middle = FractionalIndex.between(first, after);
+
+    assertTrue(before.compareTo(first) < 0);
+    assertTrue(first.compareTo(middle) < 0);
+    assertTrue(middle.compareTo(after) < 0);
+  }
+
+  @Test
+  void appendingGrowsKeysSlowly() {
+    String last = null;
+    for (int i = 0; i < 300; i++) {
+      String next = FractionalIndex.between(last, null);
+      assertTrue(last == null || last.compareTo(next) < 0);
+      last = next;
+    }
+    assertTrue(last.length() <= 20, "key length " + last.length());
+  }
+
+  @Test
+  void randomInsertionsKeepListOrder() {
+    Random random = new Random(42);
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      int index = random.nextInt(keys.size() + 1);
+      String before = index == 0 ? null : keys.get(index - 1);
+      String after = index == keys.size() ? null : keys.get(index);
+      String key = FractionalIndex.between(before, after);
+      assertFalse(key.endsWith("0"));
+      keys.add(index, key);
+    }
+    for (int i = 1; i < keys.size(); i++) {
+      assertTrue(keys.get(i - 1).compareTo(keys.get(i)) < 0);
+    }
+  }
+
+  @Test
+  void rejectsUnorderedOrMalformedKeys() {
+    assertThrows(IllegalArgumentException.class, () -> FractionalIndex.between("k", "k"));
+    assertThrows(IllegalArgumentException.class, () -> FractionalIndex.between("z", "a"));
+    assertThrows(IllegalArgumentException.class, () -> FractionalIndex.between("A", null));
+    assertThrows(IllegalArgumentException.class, () -> FractionalIndex.between("a0", null));
+  }
+}
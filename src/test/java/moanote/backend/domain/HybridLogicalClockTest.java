@@ -0,0 +1,49 @@
+package moanote.backend.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HybridLogicalClockTest {
+
+  private static final long WALL = 1_760_000_000_000L;
+
+  @Test
+  void nowIsMonotonicWithinSameMillisecond() {
+    HybridLogicalClock clock = new HybridLogicalClock(
+        Clock.fixed(Instant.ofEpochMilli(WALL), ZoneOffset.UTC), 1000);
+
+    long first = clock.now();
+    long second = clock.now();
+
+    assertEquals(WALL, HybridLogicalClock.physicalMillis(first));
+    assertEquals(0, HybridLogicalClock.counter(first));
+    assertEquals(1, HybridLogicalClock.counter(second));
+    assertTrue(HybridLogicalClock.isHybrid(first));
+    assertTrue(first < (1L << 53));
+  }
+
+  @Test
+  void receiveAdvancesPastRemoteAndRejectsRunawayClock() {
+    HybridLogicalClock clock = new HybridLogicalClock(
+        Clock.fixed(Instant.ofEpochMilli(WALL), ZoneOffset.UTC), 1000);
+
+    long remote = HybridLogicalClock.pack(WALL + 500, 3);
+    clock.receive(remote);
+    assertTrue(clock.now() > remote);
+
+    assertThrows(IllegalArgumentException.class,
+        () -> clock.receive(HybridLogicalClock.pack(WALL + 5000, 0)));
+  }
+
+  @Test
+  void smallLogicalCountersAreNotHybrid() {
+    assertFalse(HybridLogicalClock.isHybrid(0));
+    assertFalse(HybridLogicalClock.isHybrid(Integer.MAX_VALUE));
+    assertFalse(HybridLogicalClock.isHybrid(-1));
+  }
+}
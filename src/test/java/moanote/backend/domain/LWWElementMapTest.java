@@ -0,0 +1,69 @@
+package moanote.backend.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LWWElementMapTest {
+
+  private record Edit(String elementId, LWWRegister<LWWDiagramElement> register) {
+
+  }
+
+  @Test
+  void concurrentEditsOnDifferentElementsAreBothKept() {
+    LWWElementMap<LWWDiagramElement> map = new LWWElementMap<>();
+
+    assertTrue(map.merge("shape-1", new LWWRegister<>("user1", 5, new LWWDiagramElement("moved"))));
+    assertTrue(map.merge("shape-2", new LWWRegister<>("user2", 3, new LWWDiagramElement("resized"))));
+
+    assertEquals("moved", map.get("shape-1").getValue().orElseThrow().content());
+    assertEquals("resized", map.get("shape-2").getValue().orElseThrow().content());
+  }
+
+  @Test
+  void deletionWinsOnlyWhenNewer() {
+    LWWElementMap<LWWDiagramElement> map = new LWWElementMap<>();
+    map.merge("shape-1", new LWWRegister<>("user1", 2, new LWWDiagramElement("created")));
+
+    assertTrue(map.merge("shape-1", new LWWRegister<>("user2", 4, null)));
+    assertFalse(map.merge("shape-1", new LWWRegister<>("user1", 3, new LWWDiagramElement("late"))));
+
+    assertTrue(map.get("shape-1").getValue().isEmpty());
+    assertEquals(4, map.get("shape-1").getTimeStamp());
+  }
+
+  @Test
+  void mergeOrderDoesNotChangeResult() {
+    Random random = new Random(30);
+    List<Edit> edits = new ArrayList<>();
+    for (int index = 0; index < 60; index++) {
+      String elementId = "shape-" + random.nextInt(5);
+      String value = random.nextInt(4) == 0 ? null : "v" + index;
+      edits.add(new Edit(elementId, new LWWRegister<>("user" + random.nextInt(3) + "-" + index,
+          random.nextInt(10), value == null ? null : new LWWDiagramElement(value))));
+    }
+
+    LWWElementMap<LWWDiagramElement> expected = new LWWElementMap<>();
+    edits.forEach(edit -> expected.merge(edit.elementId(), edit.register()));
+
+    for (int round = 0; round < 20; round++) {
+      Collections.shuffle(edits, random);
+      LWWElementMap<LWWDiagramElement> actual = new LWWElementMap<>();
+      edits.forEach(edit -> actual.merge(edit.elementId(), edit.register()));
+
+      assertEquals(expected.getRegisters().keySet(), actual.getRegisters().keySet());
+      expected.getRegisters().forEach((elementId, register) -> {
+        LWWRegister<LWWDiagramElement> other = actual.get(elementId);
+        assertEquals(register.getStateId(), other.getStateId());
+        assertEquals(register.getTimeStamp(), other.getTimeStamp());
+        assertEquals(register.getValue(), other.getValue());
+      });
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package moanote.backend.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 여러 스레드가 같은 레지스터에 동시에 병합할 때, 가장 높은 상태가 남고 읽는 쪽이 일관된 상태만 보는지 확인합니다.
+ */
+class LWWRegisterContentionTest {
+
+  private static final int THREADS = 4;
+
+  private static final int MERGES_PER_THREAD = 50_000;
+
+  private record Payload(String content) {
+
+  }
+
+  @Test
+  void lockFreeMergeKeepsHighestStateAndConsistentSnapshots() throws Exception {
+    LWWRegister<Payload> register = new LWWRegister<>("");
+    AtomicBoolean torn = new AtomicBoolean(false);
+    AtomicBoolean running = new AtomicBoolean(true);
+    Thread reader = new Thread(() -> {
+      while (running.get()) {
+        LWWRegister.State<Payload> state = register.getState();
+        if (state.value() != null
+            && !state.value().content().equals(state.stateId() + ":" + state.timeStamp())) {
+          torn.set(true);
+        }
+      }
+    });
+    reader.start();
+
+    runContended(thread -> {
+      String stateId = "user" + thread;
+      for (int index = 0; index < MERGES_PER_THREAD; index++) {
+        int timeStamp = index / 2;
+        register.merge(new LWWRegister.State<>(stateId, timeStamp,
+            new Payload(stateId + ":" + timeStamp)));
+      }
+    });
+    running.set(false);
+    reader.join();
+
+    LWWRegister.State<Payload> state = register.getState();
+    assertEquals("user" + (THREADS - 1), state.stateId());
+    assertEquals((MERGES_PER_THREAD - 1) / 2, state.timeStamp());
+    assertFalse(torn.get());
+  }
+
+  private void runContended(Consumer<Integer> work) throws InterruptedException {
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int thread = 0; thread < THREADS; thread++) {
+      int id = thread;
+      Thread worker = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        work.accept(id);
+      });
+      worker.start();
+      threads.add(worker);
+    }
+    start.countDown();
+    for (Thread worker : threads) {
+      worker.join();
+    }
+  }
+}
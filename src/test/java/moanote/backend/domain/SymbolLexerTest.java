@@ -0,0 +1,152 @@
+package moanote.backend.domain;
+
+import moanote.backend.domain.SymbolLexer.Kind;
+import moanote.backend.domain.SymbolLexer.Symbol;
+import moanote.backend.entity.Note.CodeLanguage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolLexerTest {
+
+  @Test
+  void javaDeclarationsNestByBraces() {
+    String content = """
+        package demo;
+
+        @Service
+        public class Greeter<T> extends Base implements Runnable {
+          // void commented(int x) {
+          private static final String TEXT = "class Fake { void fake() {} }";
+
+          @GetMapping("/hello")
+          public Greeter(int count) throws IOException {
+            if (count > 0) {
+              run();
+            }
+          }
+
+          enum Mode { ON, OFF }
+
+          public <R> List<R> map(Function<T, R> mapper) {
+            return list.stream().map(item -> {
+              return mapper.apply(item);
+            }).toList();
+          }
+        }
+
+        record Point(int x, int y) {
+        }
+        """;
+
+    assertEquals(List.of(
+        new Symbol("Greeter", Kind.TYPE, 4, 0),
+        new Symbol("Greeter", Kind.FUNCTION, 9, 1),
+        new Symbol("Mode", Kind.TYPE, 15, 1),
+        new Symbol("map", Kind.FUNCTION, 17, 1),
+        new Symbol("Point", Kind.TYPE, 24, 0)), SymbolLexer.extract(CodeLanguage.JAVA, content));
+  }
+
+  @Test
+  void cppSkipsPreprocessorAndQualifiesMethods() {
+    String content = """
+        #include <vector>
+        #define MAX(a, b) \\
+          ((a) > (b) ? (a) : (b))
+        namespace geometry {
+        struct Vec;
+        template <class T> class Box {
+        };
+        }
+        Shape::Shape(int n) : count(n), items() {
+        }
+        int main(int argc, char **argv) {
+          return 0;
+        }
+        """;
+
+    assertEquals(List.of(
+        new Symbol("geometry", Kind.NAMESPACE, 4, 0),
+        new Symbol("Box", Kind.TYPE, 6, 1),
+        new Symbol("Shape::Shape", Kind.FUNCTION, 9, 0),
+        new Symbol("main", Kind.FUNCTION, 11, 0)), SymbolLexer.extract(CodeLanguage.CPP, content));
+  }
+
+  @Test
+  void typescriptFindsAssignedAndArrowFunctions() {
+    String content = """
+        export class Store {
+          handle = (event: Event): void => {
+          };
+          async load(id: string): Promise<void> {
+            const pattern = /[{(]/g;
+          }
+        }
+        export const fetchAll = async () => {};
+        const double = x => x * 2;
+        const total = sum(1, 2);
+        function render(props) {
+          const label = `class ${props.name} {`;
+        }
+        """;
+
+    assertEquals(List.of(
+        new Symbol("Store", Kind.TYPE, 1, 0),
+        new Symbol("handle", Kind.FUNCTION, 2, 1),
+        new Symbol("load", Kind.FUNCTION, 4, 1),
+        new Symbol("fetchAll", Kind.FUNCTION, 8, 0),
+        new Symbol("double", Kind.FUNCTION, 9, 0),
+        new Symbol("render", Kind.FUNCTION, 11, 0)),
+        SymbolLexer.extract(CodeLanguage.TYPESCRIPT, content));
+  }
+
+  @Test
+  void pythonNestsByIndentation() {
+    String content = """
+        class Parser:
+            \"\"\"
+            def not_a_function():
+            \"\"\"
+            def parse(self,
+                      text):
+                def helper():
+                    pass
+
+            async def close(self):
+                pass
+
+        def main():
+            pass
+        """;
+
+    assertEquals(List.of(
+        new Symbol("Parser", Kind.TYPE, 1, 0),
+        new Symbol("parse", Kind.FUNCTION, 5, 1),
+        new Symbol("helper", Kind.FUNCTION, 7, 2),
+        new Symbol("close", Kind.FUNCTION, 10, 1),
+        new Symbol("main", Kind.FUNCTION, 13, 0)),
+        SymbolLexer.extract(CodeLanguage.PYTHON, content));
+  }
+
+  @Test
+  void markdownHeadingsSkipCodeFences() {
+    String content = """
+        # Guide
+        ### Details ###
+        ```bash
+        # not a heading
+        ```
+        ## Setup
+        #hashtag
+        """;
+
+    assertEquals(List.of(
+        new Symbol("Guide", Kind.HEADING, 1, 0),
+        new Symbol("Details", Kind.HEADING, 2, 1),
+        new Symbol("Setup", Kind.HEADING, 6, 1)),
+        SymbolLexer.extract(CodeLanguage.MARKDOWN, content));
+    assertTrue(SymbolLexer.extract(CodeLanguage.TEXT, content).isEmpty());
+  }
+}
@@ -0,0 +1,57 @@
+package moanote.backend.domain;
+
+import moanote.backend.domain.TrigramIndex.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void writtenShardRoundTripsDocumentsAndTombstones() throws IOException {
+    UUID mainId = UUID.randomUUID();
+    Path shard = directory.resolve("shard.trigram");
+    TrigramIndex.write(shard, List.of(
+        new Document("src/Main.java", mainId, "class Main {\n  // 한글 주석\n}\n"),
+        new Document("README.md", UUID.randomUUID(), "Hello")), List.of("old.txt"));
+
+    TrigramIndex index = TrigramIndex.open(shard);
+    assertEquals(2, index.documentCount());
+    int id = index.findDocument("src/Main.java");
+    assertEquals(mainId, index.fileId(id));
+    assertEquals("class Main {\n  // 한글 주석\n}\n", index.content(id));
+    assertTrue(index.contentEquals(id, "class Main {\n  // 한글 주석\n}\n"));
+    assertFalse(index.contentEquals(id, "class Main {}\n"));
+    assertEquals(-1, index.findDocument("old.txt"));
+    assertEquals(Set.of("old.txt"), index.tombstones());
+  }
+
+  @Test
+  void candidatesIntersectPostingsIgnoringCase() throws IOException {
+    Path shard = directory.resolve("shard.trigram");
+    TrigramIndex.write(shard, List.of(
+        new Document("a.txt", UUID.randomUUID(), "parseRequest(body)"),
+        new Document("b.txt", UUID.randomUUID(), "PARSE the response"),
+        new Document("c.txt", UUID.randomUUID(), "nothing\nrelevant")), List.of());
+
+    TrigramIndex index = TrigramIndex.open(shard);
+    int a = index.findDocument("a.txt");
+    int b = index.findDocument("b.txt");
+    assertArrayEquals(new int[]{a, b}, index.candidates(List.of("parse")));
+    assertArrayEquals(new int[]{a}, index.candidates(List.of("Parse", "request")));
+    assertArrayEquals(new int[0], index.candidates(List.of("missing")));
+    // 줄을 넘는 문자열과 trigram 을 만들 수 없는 짧은 문자열은 후보를 줄이지 않습니다.
+    assertEquals(3, index.candidates(List.of("g\nr")).length);
+    assertEquals(3, index.candidates(List.of("pa")).length);
+  }
+}
@@ -0,0 +1,75 @@
+package moanote.backend.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.transaction.Transactional;
+import moanote.backend.BackendApplication;
+import moanote.backend.dto.SegmentType;
+import moanote.backend.entity.File;
+import moanote.backend.entity.File.FileType;
+import moanote.backend.entity.UserData;
+import moanote.backend.service.FileService;
+import moanote.backend.service.NoteService;
+import moanote.backend.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static moanote.backend.QueryCountAssertions.assertStatementCount;
+import static org.junit.jupiter.api.Assertions.*;
+
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2, replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource("classpath:application.properties")
+@Transactional
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = BackendApplication.class)
+class BaseNoteSegmentRepositoryTest {
+
+  @Autowired
+  private BaseNoteSegmentRepository baseNoteSegmentRepository;
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private FileService fileService;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private EntityManager entityManager;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Test
+  void findSegmentTypesByNoteIdUsesSingleQuery() {
+    UserData user = userService.createUser("segment-type-user", "password");
+    File file = fileService.createFile(user.getId(), "mixed", FileType.DOCUMENT);
+    UUID noteId = file.getNote().getId();
+    UUID text1 = noteService.createTextNoteSegment(noteId).getId();
+    UUID diagram = noteService.createDiagramNoteSegment(noteId).getId();
+    UUID text2 = noteService.createTextNoteSegment(noteId).getId();
+    File other = fileService.createFile(user.getId(), "other", FileType.DOCUMENT);
+    noteService.createTextNoteSegment(other.getNote().getId());
+    entityManager.flush();
+    entityManager.clear();
+
+    Map<UUID, SegmentType> segmentTypes = assertStatementCount(entityManagerFactory, 1,
+        () -> baseNoteSegmentRepository.findSegmentTypesByNoteId(noteId));
+
+    assertEquals(Map.of(text1, SegmentType.TEXT, diagram, SegmentType.DIAGRAM, text2,
+        SegmentType.TEXT), segmentTypes);
+  }
+}
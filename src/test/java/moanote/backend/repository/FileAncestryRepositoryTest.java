@@ -0,0 +1,138 @@
+package moanote.backend.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import moanote.backend.BackendApplication;
+import moanote.backend.dto.FileEditDTO;
+import moanote.backend.entity.File;
+import moanote.backend.entity.File.FileType;
+import moanote.backend.entity.FileAncestry;
+import moanote.backend.entity.UserData;
+import moanote.backend.service.FileService;
+import moanote.backend.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2, replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource("classpath:application.properties")
+@Transactional
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = BackendApplication.class)
+class FileAncestryRepositoryTest {
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private FileRepository fileRepository;
+
+  @Autowired
+  private FileService fileService;
+
+  @Autowired
+  private FileAncestryRepository fileAncestryRepository;
+
+  @Autowired
+  private EntityManager entityManager;
+
+  private Set<String> closureRows() {
+    entityManager.flush();
+    entityManager.clear();
+    return fileAncestryRepository.findAll().stream()
+        .map(row -> row.getAncestor().getId() + ">" + row.getDescendant().getId() + ":" + row.getDepth())
+        .collect(Collectors.toSet());
+  }
+
+  @Test
+  void pathAndAncestorLookups() {
+    UserData user = userService.createUser("ancestry-user", "ancestry-password");
+    File root = fileRepository.getRootDirectory(user);
+    File repo = fileService.createFile(user.getId(), "repo", FileType.DIRECTORY, root.getId());
+    File src = fileService.createFile(user.getId(), "src", FileType.DIRECTORY, repo.getId());
+    File main = fileService.createFile(user.getId(), "Main.java", FileType.DOCUMENT, src.getId());
+
+    assertTrue(fileAncestryRepository.isAncestor(repo.getId(), main.getId()));
+    assertTrue(fileAncestryRepository.isAncestor(main.getId(), main.getId()));
+    assertFalse(fileAncestryRepository.isAncestor(main.getId(), repo.getId()));
+    assertEquals(List.of("src", "Main.java"),
+        fileAncestryRepository.findRelativePathNames(repo.getId(), main.getId()));
+    assertEquals(List.of(root.getId(), repo.getId(), src.getId(), main.getId()),
+        fileAncestryRepository.findPath(main.getId()).stream().map(File::getId).toList());
+    assertEquals(Set.of(src.getId(), main.getId()),
+        Set.copyOf(fileAncestryRepository.findDescendantIds(src.getId())));
+  }
+
+  @Test
+  void movingSubtreeRewritesOutsideAncestors() {
+    UserData user = userService.createUser("ancestry-move-user", "ancestry-password");
+    File root = fileRepository.getRootDirectory(user);
+    File left = fileService.createFile(user.getId(), "left", FileType.DIRECTORY, root.getId());
+    File right = fileService.createFile(user.getId(), "right", FileType.DIRECTORY, root.getId());
+    File moved = fileService.createFile(user.getId(), "moved", FileType.DIRECTORY, left.getId());
+    File leaf = fileService.createFile(user.getId(), "leaf.txt", FileType.DOCUMENT, moved.getId());
+
+    fileService.moveFile(moved.getId(), right.getId());
+    assertFalse(fileAncestryRepository.isAncestor(left.getId(), leaf.getId()));
+    assertTrue(fileAncestryRepository.isAncestor(right.getId(), leaf.getId()));
+    assertEquals(List.of("right", "moved", "leaf.txt"),
+        fileAncestryRepository.findRelativePathNames(root.getId(), leaf.getId()));
+
+    fileService.editFile(user.getId(), moved.getId(), new FileEditDTO(null, left.getId()));
+    assertTrue(fileAncestryRepository.isAncestor(left.getId(), leaf.getId()));
+    assertFalse(fileAncestryRepository.isAncestor(right.getId(), leaf.getId()));
+
+    assertThrows(IllegalArgumentException.class,
+        () -> fileService.moveFile(left.getId(), moved.getId()));
+  }
+
+  @Test
+  void detachingSubtreeKeepsInsidePairs() {
+    UserData user = userService.createUser("ancestry-detach-user", "ancestry-password");
+    File root = fileRepository.getRootDirectory(user);
+    File parent = fileService.createFile(user.getId(), "parent", FileType.DIRECTORY, root.getId());
+    File detached = fileService.createFile(user.getId(), "detached", FileType.DIRECTORY,
+        parent.getId());
+    File leaf = fileService.createFile(user.getId(), "leaf.txt", FileType.DOCUMENT,
+        detached.getId());
+
+    // DELETE 문은 file_ancestry 를 subquery 로 다시 읽지 않으므로 MySQL 에서도 실행됩니다.
+    fileAncestryRepository.detachSubtree(detached.getId());
+    Set<String> rows = closureRows();
+    assertTrue(rows.contains(detached.getId() + ">" + detached.getId() + ":0"));
+    assertTrue(rows.contains(detached.getId() + ">" + leaf.getId() + ":1"));
+    assertTrue(rows.contains(leaf.getId() + ">" + leaf.getId() + ":0"));
+    assertTrue(rows.contains(root.getId() + ">" + parent.getId() + ":1"));
+    assertFalse(fileAncestryRepository.isAncestor(parent.getId(), detached.getId()));
+    assertFalse(fileAncestryRepository.isAncestor(root.getId(), leaf.getId()));
+  }
+
+  @Test
+  void rebuildMatchesIncrementalMaintenance() {
+    UserData user = userService.createUser("ancestry-rebuild-user", "ancestry-password");
+    File root = fileRepository.getRootDirectory(user);
+    File a = fileService.createFile(user.getId(), "a", FileType.DIRECTORY, root.getId());
+    File b = fileService.createFile(user.getId(), "b", FileType.DIRECTORY, a.getId());
+    fileService.createFile(user.getId(), "c.txt", FileType.DOCUMENT, b.getId());
+    fileService.createFile(user.getId(), "d.txt", FileType.DOCUMENT, root.getId());
+    fileService.moveFile(b.getId(), root.getId());
+
+    Set<String> incremental = closureRows();
+    fileAncestryRepository.deleteAllInBatch();
+    fileAncestryRepository.rebuild();
+    assertEquals(incremental, closureRows());
+  }
+}
@@ -1,10 +1,13 @@
 package moanote.backend.repository;
 
 import com.github.f4b6a3.uuid.util.UuidComparator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.transaction.Transactional;
 import moanote.backend.BackendApplication;
 import moanote.backend.entity.File;
 import moanote.backend.entity.File.FileType;
+import moanote.backend.entity.FileUserData.Permission;
 import moanote.backend.entity.UserData;
 import moanote.backend.service.FileService;
 import moanote.backend.service.UserService;
@@ -21,6 +24,7 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import java.util.ArrayList;
 import java.util.List;
 
+import static moanote.backend.QueryCountAssertions.assertStatementCount;
 import static org.junit.jupiter.api.Assertions.*;
 
 @AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2, replace = AutoConfigureTestDatabase.Replace.ANY)
@@ -40,6 +44,15 @@ class FileRepositoryTest {
   @Autowired
   private FileService fileService;
 
+  @Autowired
+  private UserDataRepository userDataRepository;
+
+  @Autowired
+  private EntityManager entityManager;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
 
   @Test
   void findFilesByOwnerTest() {
@@ -66,4 +79,43 @@ class FileRepositoryTest {
     assertEquals(files.get(2).getId(), foundNotes.get(2).getId());
     assertEquals(files.get(3).getId(), foundNotes.get(3).getId());
   }
-}
\ No newline at end of file
+
+  @Test
+  void getRootDirectoryDoesNotScanSharedFiles() {
+    UserData user = userService.createUser("rootPointerUser", "testPassword");
+    UserData sharer = userService.createUser("rootPointerSharer", "testPassword");
+    File sharerRoot = fileRepository.getRootDirectory(sharer);
+    for (int i = 0; i < 30; i++) {
+      File shared = fileService.createFile(sharer.getId(), "shared" + i, FileType.DOCUMENT, sharerRoot.getId());
+      fileService.grantPermission(shared.getId(), user.getId(), Permission.READ);
+    }
+    File expectedRoot = fileRepository.getRootDirectory(user);
+    entityManager.flush();
+    entityManager.clear();
+    UserData reloaded = userDataRepository.findById(user.getId()).orElseThrow();
+
+    File root = assertStatementCount(entityManagerFactory, 1,
+        () -> fileRepository.getRootDirectory(reloaded));
+
+    assertEquals(expectedRoot.getId(), root.getId());
+    assertNull(root.getDirectory());
+  }
+
+  @Test
+  void backfillRestoresMissingRootDirectoryPointer() {
+    UserData user = userService.createUser("rootBackfillUser", "testPassword");
+    File root = fileRepository.getRootDirectory(user);
+    entityManager.flush();
+    entityManager.createNativeQuery("UPDATE user_data SET root_directory_id = NULL WHERE id = :id")
+        .setParameter("id", user.getId())
+        .executeUpdate();
+    entityManager.clear();
+    assertNull(userDataRepository.findById(user.getId()).orElseThrow().getRootDirectory());
+    assertEquals(root.getId(),
+        fileRepository.getRootDirectory(userDataRepository.findById(user.getId()).orElseThrow()).getId());
+
+    fileService.backfillRootDirectories();
+    UserData backfilled = userDataRepository.findById(user.getId()).orElseThrow();
+    assertEquals(root.getId(), backfilled.getRootDirectory().getId());
+  }
+}
@@ -0,0 +1,162 @@
+package moanote.backend.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import moanote.backend.BackendApplication;
+import moanote.backend.dto.ShareFileDTO;
+import moanote.backend.entity.File;
+import moanote.backend.entity.File.FileType;
+import moanote.backend.entity.FileUserData.Permission;
+import moanote.backend.entity.UserData;
+import moanote.backend.repository.FileRepository;
+import moanote.backend.repository.FileUserDataRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static moanote.backend.QueryCountAssertions.countStatements;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2, replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource("classpath:application.properties")
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = BackendApplication.class)
+class AclServiceTest {
+
+  @Autowired
+  private AclService aclService;
+
+  @Autowired
+  private FileService fileService;
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private FileRepository fileRepository;
+
+  @Autowired
+  private FileUserDataRepository fileUserDataRepository;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Test
+  void permissionsAreInheritedFromNearestDirectory() {
+    UserData owner = userService.createUser("acl-owner", "password");
+    UserData guest = userService.createUser("acl-guest", "password");
+    File root = fileRepository.getRootDirectory(owner);
+    File shared = fileService.createFile(owner.getId(), "shared", FileType.DIRECTORY, root.getId());
+    File nested = fileService.createFile(owner.getId(), "nested", FileType.DIRECTORY, shared.getId());
+    File document = fileService.createFile(owner.getId(), "doc.md", FileType.DOCUMENT, nested.getId());
+
+    assertThat(aclService.hasAnyPermission(document.getId(), guest.getId())).isFalse();
+
+    fileService.grantPermission(shared.getId(), guest.getId(), Permission.READ);
+    assertThat(aclService.getPermission(document.getId(), guest.getId())).contains(Permission.READ);
+    assertThat(aclService.canReadNote(document.getNote().getId(), guest.getId())).isTrue();
+    assertThat(aclService.canWriteNote(document.getNote().getId(), guest.getId())).isFalse();
+
+    fileService.grantPermission(nested.getId(), guest.getId(), Permission.WRITE);
+    assertThat(aclService.getPermission(document.getId(), guest.getId())).contains(Permission.WRITE);
+    assertThat(aclService.canWriteNote(document.getNote().getId(), guest.getId())).isTrue();
+    UUID segmentId = noteService.createDiagramNoteSegment(document.getNote().getId()).getId();
+    assertThat(aclService.canWriteSegment(segmentId, guest.getId())).isTrue();
+
+    fileService.grantPermission(shared.getId(), guest.getId(), Permission.NONE);
+    fileService.grantPermission(nested.getId(), guest.getId(), Permission.NONE);
+    assertThat(aclService.getPermission(document.getId(), guest.getId())).isEqualTo(Optional.empty());
+    assertThat(aclService.canWriteSegment(segmentId, guest.getId())).isFalse();
+    assertThat(aclService.getPermission(document.getId(), owner.getId())).contains(Permission.OWNER);
+  }
+
+  @Test
+  void revokingFileInsideSharedDirectoryDeniesInheritedAccess() {
+    UserData owner = userService.createUser("acl-revoke-owner", "password");
+    UserData guest = userService.createUser("acl-revoke-guest", "password");
+    File root = fileRepository.getRootDirectory(owner);
+    File shared = fileService.createFile(owner.getId(), "shared", FileType.DIRECTORY, root.getId());
+    File nested = fileService.createFile(owner.getId(), "nested", FileType.DIRECTORY, shared.getId());
+    File document = fileService.createFile(owner.getId(), "doc.md", FileType.DOCUMENT, nested.getId());
+    File sibling = fileService.createFile(owner.getId(), "sibling.md", FileType.DOCUMENT, shared.getId());
+
+    // 공유한 디렉토리에만 권한 행을 만들고, 하위 파일은 상속으로 접근합니다.
+    fileService.shareFile(shared.getId(), owner.getId(),
+        new ShareFileDTO(guest.getUsername(), Permission.WRITE));
+    assertThat(fileUserDataRepository.findByFileAndUser(document, guest)).isEmpty();
+    assertThat(aclService.getPermission(document.getId(), guest.getId())).contains(Permission.WRITE);
+
+    fileService.shareFile(nested.getId(), owner.getId(),
+        new ShareFileDTO(guest.getUsername(), Permission.NONE));
+    assertThat(aclService.hasAnyPermission(nested.getId(), guest.getId())).isFalse();
+    assertThat(aclService.hasAnyPermission(document.getId(), guest.getId())).isFalse();
+    assertThat(aclService.getPermission(sibling.getId(), guest.getId())).contains(Permission.WRITE);
+    assertThat(fileService.getFilesByUserId(guest.getId())).extracting(File::getId)
+        .contains(shared.getId(), sibling.getId())
+        .doesNotContain(nested.getId(), document.getId());
+    assertThat(fileService.getCollaborators(document.getId(), owner.getId()))
+        .noneMatch(collaborator -> collaborator.user().id().equals(guest.getId()));
+
+    // 접근이 거부된 디렉토리 안에서도 다시 공유할 수 있습니다.
+    fileService.shareFile(document.getId(), owner.getId(),
+        new ShareFileDTO(guest.getUsername(), Permission.READ));
+    assertThat(aclService.getPermission(document.getId(), guest.getId())).contains(Permission.READ);
+    assertThat(aclService.hasAnyPermission(nested.getId(), guest.getId())).isFalse();
+
+    // 상위 디렉토리를 다시 공유하면 하위 파일에 따로 부여된 권한과 거부는 정리됩니다.
+    fileService.shareFile(shared.getId(), owner.getId(),
+        new ShareFileDTO(guest.getUsername(), Permission.READ));
+    assertThat(fileUserDataRepository.findByFileAndUser(nested, guest)).isEmpty();
+    assertThat(fileUserDataRepository.findByFileAndUser(document, guest)).isEmpty();
+    assertThat(aclService.getPermission(document.getId(), guest.getId())).contains(Permission.READ);
+  }
+
+  @Test
+  void repeatedChecksAreServedFromCache() {
+    UserData owner = userService.createUser("acl-cache-owner", "password");
+    File root = fileRepository.getRootDirectory(owner);
+    File document = fileService.createFile(owner.getId(), "doc.md", FileType.DOCUMENT, root.getId());
+    UUID noteId = document.getNote().getId();
+    aclService.invalidateAll();
+
+    long cold = countStatements(entityManagerFactory,
+        () -> assertThat(aclService.canWriteNote(noteId, owner.getId())).isTrue());
+    long warm = countStatements(entityManagerFactory, () -> {
+      for (int i = 0; i < 100; i++) {
+        assertThat(aclService.canWriteNote(noteId, owner.getId())).isTrue();
+      }
+    });
+
+    assertThat(cold).isEqualTo(2);
+    assertThat(warm).isZero();
+  }
+
+  @Test
+  void movingFileInvalidatesInheritedPermissions() {
+    UserData owner = userService.createUser("acl-move-owner", "password");
+    UserData guest = userService.createUser("acl-move-guest", "password");
+    File root = fileRepository.getRootDirectory(owner);
+    File shared = fileService.createFile(owner.getId(), "shared", FileType.DIRECTORY, root.getId());
+    File privateDirectory = fileService.createFile(owner.getId(), "private", FileType.DIRECTORY, root.getId());
+    File document = fileService.createFile(owner.getId(), "doc.md", FileType.DOCUMENT, privateDirectory.getId());
+    fileService.grantPermission(shared.getId(), guest.getId(), Permission.WRITE);
+
+    assertThat(aclService.hasAnyPermission(document.getId(), guest.getId())).isFalse();
+    fileService.moveFile(document.getId(), shared.getId());
+    assertThat(aclService.getPermission(document.getId(), guest.getId())).contains(Permission.WRITE);
+    fileService.moveFile(document.getId(), privateDirectory.getId());
+    assertThat(aclService.hasAnyPermission(document.getId(), guest.getId())).isFalse();
+  }
+}
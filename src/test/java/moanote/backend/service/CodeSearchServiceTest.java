@@ -0,0 +1,36 @@
+package moanote.backend.service;
+
+import moanote.backend.domain.CodeSearchPattern;
+import moanote.backend.domain.TrigramIndex;
+import moanote.backend.dto.CodeSearchHitDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodeSearchServiceTest {
+
+  @TempDir
+  Path indexDirectory;
+
+  @Test
+  void truncatedHitsAreTheFirstByPath() throws Exception {
+    CodeSearchService codeSearchService = new CodeSearchService(2000);
+    TrigramIndex.Document first = new TrigramIndex.Document("a.txt", UUID.randomUUID(), "needle\n");
+    codeSearchService.rebuild(indexDirectory, List.of(first));
+    // 새로운 shard 의 문서를 먼저 검사하더라도 결과는 경로 순서로 처음 maxHits 개여야 합니다.
+    codeSearchService.update(indexDirectory, List.of(
+        first,
+        new TrigramIndex.Document("b.txt", UUID.randomUUID(), "needle\nneedle\n")));
+
+    List<CodeSearchHitDTO> hits = codeSearchService.search(indexDirectory,
+        CodeSearchPattern.substring("needle", true), 2);
+
+    assertEquals(List.of("a.txt", "b.txt"), hits.stream().map(CodeSearchHitDTO::path).toList());
+    assertEquals(List.of(1, 1), hits.stream().map(CodeSearchHitDTO::lineNumber).toList());
+  }
+}
@@ -0,0 +1,129 @@
+package moanote.backend.service;
+
+import moanote.backend.BackendApplication;
+import moanote.backend.dto.FileCreateDTO;
+import moanote.backend.entity.File.FileType;
+import moanote.backend.entity.Note.CodeLanguage;
+import moanote.backend.entity.TextNoteSegment;
+import moanote.backend.entity.UserData;
+import moanote.backend.repository.ContentBlobRepository;
+import moanote.backend.repository.TextNoteSegmentRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.UUID;
+
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2, replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource("classpath:application.properties")
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = BackendApplication.class)
+class ContentBlobServiceTest {
+
+  @Autowired
+  private ContentBlobService contentBlobService;
+
+  @Autowired
+  private ContentBlobRepository contentBlobRepository;
+
+  @Autowired
+  private TextNoteSegmentRepository textNoteSegmentRepository;
+
+  @Autowired
+  private FileService fileService;
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private TextCollaborativeEditingService textCollaborativeEditingService;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  private UUID createNote(UserData owner, String name) {
+    return fileService.createFile(null, owner.getId(),
+        new FileCreateDTO(name, FileType.DOCUMENT, true, CodeLanguage.JAVA)).id();
+  }
+
+  private TextNoteSegment addSegment(UserData owner, UUID noteId, String content) {
+    TextNoteSegment segment = noteService.createTextNoteSegment(noteId);
+    textCollaborativeEditingService.reconcileSegment(noteId, segment, content, owner.getId());
+    return textNoteSegmentRepository.findById(segment.getId()).orElseThrow();
+  }
+
+  @Test
+  void segmentsWithSameContentShareOneBlob() {
+    UserData owner = userService.createUser("blob-owner", "password");
+    String content = "// " + UUID.randomUUID() + "\n" + "class Shared {}\n".repeat(10);
+    String hash = ContentBlobService.hash(content);
+    UUID firstNoteId = createNote(owner, "First.java");
+    UUID secondNoteId = createNote(owner, "Second.java");
+
+    TextNoteSegment first = addSegment(owner, firstNoteId, content);
+    TextNoteSegment second = addSegment(owner, secondNoteId, content);
+    Assertions.assertEquals(hash, first.getBlob().getHash());
+    Assertions.assertEquals(hash, second.getBlob().getHash());
+    Assertions.assertEquals(content, second.getContent());
+    Assertions.assertEquals(Optional.of(2L), contentBlobRepository.findRefCount(hash));
+
+    // 편집된 세그먼트는 내용을 복사해 가지고 blob 의 참조를 놓습니다.
+    String edited = content + "class Edited {}\n";
+    contentBlobService.write(first, edited);
+    textNoteSegmentRepository.save(first);
+    first = textNoteSegmentRepository.findById(first.getId()).orElseThrow();
+    Assertions.assertNull(first.getBlob());
+    Assertions.assertEquals(edited, first.getContent());
+    Assertions.assertEquals(Optional.of(1L), contentBlobRepository.findRefCount(hash));
+
+    // 참조가 남아 있는 blob 은 정리되지 않습니다.
+    contentBlobService.deleteUnreferencedBlobs();
+    Assertions.assertEquals(Optional.of(1L), contentBlobRepository.findRefCount(hash));
+
+    fileService.deleteFile(secondNoteId, owner.getId());
+    Assertions.assertEquals(Optional.of(0L), contentBlobRepository.findRefCount(hash));
+    contentBlobService.deleteUnreferencedBlobs();
+    Assertions.assertEquals(Optional.empty(), contentBlobRepository.findRefCount(hash));
+  }
+
+  @Test
+  void creatingAnExistingBlobAddsAReference() {
+    String content = "// " + UUID.randomUUID() + "\n" + "class Raced {}\n".repeat(10);
+    String hash = ContentBlobService.hash(content);
+
+    // 두 transaction 이 모두 blob 이 없다고 보고 생성하는 경우에도 primary key 충돌 없이 참조 수만 늘어납니다.
+    transactionTemplate.executeWithoutResult(
+        status -> contentBlobRepository.mergeReference(hash, content));
+    transactionTemplate.executeWithoutResult(
+        status -> contentBlobRepository.mergeReference(hash, content));
+
+    Assertions.assertEquals(Optional.of(2L), contentBlobRepository.findRefCount(hash));
+    Assertions.assertEquals(content, contentBlobRepository.findById(hash).orElseThrow().getContent());
+  }
+
+  @Test
+  void shortContentStaysInSegment() {
+    UserData owner = userService.createUser("blob-short-owner", "password");
+    UUID noteId = createNote(owner, "Short.java");
+    String content = "class Short {}\n";
+
+    TextNoteSegment segment = addSegment(owner, noteId, content);
+    Assertions.assertNull(segment.getBlob());
+    Assertions.assertEquals(content, segment.getContent());
+    Assertions.assertEquals(Optional.empty(),
+        contentBlobRepository.findRefCount(ContentBlobService.hash(content)));
+  }
+}
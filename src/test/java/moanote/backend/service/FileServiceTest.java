@@ -1,10 +1,14 @@
 package moanote.backend.service;
 
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.transaction.Transactional;
 import moanote.backend.BackendApplication;
+import moanote.backend.QueryCountAssertions;
 import moanote.backend.dto.FileCreateDTO;
 import moanote.backend.dto.FileDTO;
+import moanote.backend.dto.FilePageDTO;
+import moanote.backend.dto.FilePageRequestDTO;
 import moanote.backend.entity.File;
 import moanote.backend.entity.File.FileType;
 import moanote.backend.entity.Note;
@@ -26,6 +30,11 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.util.Assert;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.function.Supplier;
 
 @AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2, replace = AutoConfigureTestDatabase.Replace.ANY)
 @TestPropertySource("classpath:application.properties")
@@ -49,6 +58,63 @@ class FileServiceTest {
   @Autowired
   private NoteService noteService;
 
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  private TextCollaborativeEditingService textCollaborativeEditingService;
+
+  @Autowired
+  private LWWCollaborativeEditingService lwwCollaborativeEditingService;
+
+  @Autowired
+  private AclService aclService;
+
+  @Autowired
+  private MetadataCacheService metadataCacheService;
+
+  /**
+   * cache 의 상태에 따라 결과가 달라지지 않도록 cache 를 비운 뒤 실행한 질의 수를 셉니다.
+   */
+  private long countStatements(Supplier<?> action) {
+    metadataCacheService.invalidateAll();
+    return QueryCountAssertions.countStatements(entityManagerFactory, action::get);
+  }
+
+  @Test
+  void listingFilesDoesNotQueryOwnerPerFile() {
+    UserData user = userService.createUser("query-count-user", "query-count-password");
+    File rootDirectory = fileRepository.getRootDirectory(user);
+    File directory = fileService.createFile(user.getId(), "dir", FileType.DIRECTORY, rootDirectory.getId());
+    File subDirectory = fileService.createFile(user.getId(), "sub", FileType.DIRECTORY, directory.getId());
+    for (int i = 0; i < 3; i++) {
+      fileService.createFile(user.getId(), "a" + i, FileType.DOCUMENT, directory.getId());
+      fileService.createFile(user.getId(), "b" + i, FileType.DOCUMENT, subDirectory.getId());
+    }
+
+    long flatBefore = countStatements(() -> fileService.getFilesInDirectory(directory.getId(), user.getId(), false));
+    long recursiveBefore = countStatements(() -> fileService.getFilesInDirectory(directory.getId(), user.getId(), true));
+    long accessibleBefore = countStatements(() -> fileService.getFileDTOByUserId(user.getId()));
+
+    for (int i = 3; i < 20; i++) {
+      fileService.createFile(user.getId(), "a" + i, FileType.DOCUMENT, directory.getId());
+      fileService.createFile(user.getId(), "b" + i, FileType.DOCUMENT, subDirectory.getId());
+    }
+
+    Assertions.assertEquals(flatBefore,
+        countStatements(() -> fileService.getFilesInDirectory(directory.getId(), user.getId(), false)));
+    Assertions.assertEquals(recursiveBefore,
+        countStatements(() -> fileService.getFilesInDirectory(directory.getId(), user.getId(), true)));
+    Assertions.assertEquals(accessibleBefore,
+        countStatements(() -> fileService.getFileDTOByUserId(user.getId())));
+
+    List<FileDTO> recursive = fileService.getFilesInDirectory(directory.getId(), user.getId(), true);
+    Assertions.assertEquals(42, recursive.size());
+    Assertions.assertEquals(directory.getId(), recursive.getLast().id());
+    Assertions.assertTrue(recursive.stream().allMatch(dto -> dto.owner().id().equals(user.getId())));
+    Assertions.assertEquals(2, recursive.stream().filter(dto -> dto.type() == FileType.DIRECTORY).count());
+  }
+
   @Test
   void removeFilesRecursively() {
     UserData userData = userService.createUser("testuser", "testpassword");
@@ -158,4 +224,136 @@ class FileServiceTest {
       entityManager.flush();
     });
   }
-}
\ No newline at end of file
+
+  @Test
+  void recursiveListingUsesSingleSubtreeQuery() {
+    UserData user = userService.createUser("subtree-user", "subtree-password");
+    File rootDirectory = fileRepository.getRootDirectory(user);
+    File top = fileService.createFile(user.getId(), "top", FileType.DIRECTORY, rootDirectory.getId());
+    File deepest = top;
+    for (int depth = 0; depth < 2; depth++) {
+      deepest = fileService.createFile(user.getId(), "d" + depth, FileType.DIRECTORY, deepest.getId());
+      fileService.createFile(user.getId(), "f" + depth, FileType.DOCUMENT, deepest.getId());
+    }
+    long shallow = countStatements(() -> fileService.getFilesInDirectory(top.getId(), user.getId(), true));
+
+    for (int depth = 2; depth < 12; depth++) {
+      deepest = fileService.createFile(user.getId(), "d" + depth, FileType.DIRECTORY, deepest.getId());
+      fileService.createFile(user.getId(), "f" + depth, FileType.DOCUMENT, deepest.getId());
+    }
+    Assertions.assertEquals(shallow,
+        countStatements(() -> fileService.getFilesInDirectory(top.getId(), user.getId(), true)));
+
+    // 후위 순회: 모든 파일은 자신의 상위 디렉토리보다 먼저 나온다.
+    List<FileDTO> postOrder = fileService.getFilesInDirectory(top.getId(), user.getId(), true);
+    Assertions.assertEquals(25, postOrder.size());
+    List<UUID> postOrderIds = postOrder.stream().map(FileDTO::id).toList();
+    for (FileDTO file : postOrder) {
+      if (!file.id().equals(top.getId())) {
+        Assertions.assertTrue(postOrderIds.indexOf(file.id()) < postOrderIds.indexOf(file.dir()));
+      }
+    }
+
+    // 스트리밍: 상위 디렉토리가 하위 파일보다 먼저 전달된다.
+    List<FileDTO> streamed = new ArrayList<>();
+    fileService.streamFilesInDirectory(top.getId(), user.getId(), streamed::add);
+    List<UUID> streamedIds = streamed.stream().map(FileDTO::id).toList();
+    Assertions.assertEquals(top.getId(), streamedIds.getFirst());
+    Assertions.assertEquals(new HashSet<>(postOrderIds), new HashSet<>(streamedIds));
+    for (FileDTO file : streamed) {
+      if (!file.id().equals(top.getId())) {
+        Assertions.assertTrue(streamedIds.indexOf(file.dir()) < streamedIds.indexOf(file.id()));
+      }
+    }
+  }
+
+  @Test
+  void deletingSubtreeUsesSetBasedStatementsAndEvictsSessions() {
+    UserData user = userService.createUser("bulk-delete-user", "bulk-delete-password");
+    File rootDirectory = fileRepository.getRootDirectory(user);
+    File small = fileService.createFile(user.getId(), "small", FileType.DIRECTORY, rootDirectory.getId());
+    File large = fileService.createFile(user.getId(), "large", FileType.DIRECTORY, rootDirectory.getId());
+    File smallSub = fileService.createFile(user.getId(), "sub", FileType.DIRECTORY, small.getId());
+    File largeSub = fileService.createFile(user.getId(), "sub", FileType.DIRECTORY, large.getId());
+    for (int i = 0; i < 2; i++) {
+      fileService.createFile(user.getId(), "f" + i, FileType.DOCUMENT, smallSub.getId());
+    }
+    List<File> largeDocuments = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      largeDocuments.add(fileService.createFile(user.getId(), "f" + i, FileType.DOCUMENT,
+          i % 2 == 0 ? large.getId() : largeSub.getId()));
+    }
+    UUID textNoteId = largeDocuments.getFirst().getNote().getId();
+    noteService.createTextNoteSegment(textNoteId);
+    UUID diagramSegmentId = noteService.createDiagramNoteSegment(
+        largeDocuments.getLast().getNote().getId()).getId();
+    textCollaborativeEditingService.participateSession(user.getId(), textNoteId);
+    lwwCollaborativeEditingService.participateSession(user.getId(), diagramSegmentId);
+
+    long smallCount = countStatements(() -> {
+      aclService.invalidateAll();
+      fileService.deleteFile(small.getId(), user.getId());
+      return null;
+    });
+    long largeCount = countStatements(() -> {
+      aclService.invalidateAll();
+      fileService.deleteFile(large.getId(), user.getId());
+      return null;
+    });
+    Assertions.assertEquals(smallCount, largeCount);
+
+    Assertions.assertFalse(fileRepository.existsById(large.getId()));
+    Assertions.assertFalse(fileRepository.existsById(largeSub.getId()));
+    largeDocuments.forEach(file -> Assertions.assertFalse(fileRepository.existsById(file.getId())));
+    Assertions.assertTrue(fileRepository.existsById(rootDirectory.getId()));
+    Assertions.assertThrows(NoSuchElementException.class, () -> noteService.getNoteById(textNoteId));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> textCollaborativeEditingService.getUsersInSession(textNoteId));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> lwwCollaborativeEditingService.getSessionState(diagramSegmentId));
+  }
+
+  @Test
+  void pagingFilesFollowsCursorAndFilters() {
+    UserData user = userService.createUser("paging-user", "paging-password");
+    File rootDirectory = fileRepository.getRootDirectory(user);
+    File folder = fileService.createFile(user.getId(), "folder", FileType.DIRECTORY, rootDirectory.getId());
+    List<UUID> created = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      created.add(fileService.createFile(user.getId(), "note_" + i, FileType.DOCUMENT, folder.getId()).getId());
+    }
+    created.add(fileService.createFile(user.getId(), "notebook", FileType.DIRECTORY, folder.getId()).getId());
+
+    List<UUID> paged = new ArrayList<>();
+    UUID cursor = null;
+    do {
+      FilePageDTO page = fileService.getFilePageInDirectory(folder.getId(), user.getId(),
+          new FilePageRequestDTO(cursor, 4, null, null, null, false));
+      page.files().forEach(dto -> paged.add(dto.id()));
+      cursor = page.nextCursor();
+    } while (cursor != null);
+    Assertions.assertEquals(created, paged);
+
+    FilePageDTO descending = fileService.getFilePageInDirectory(folder.getId(), user.getId(),
+        new FilePageRequestDTO(null, 2, null, null, null, true));
+    Assertions.assertEquals(created.reversed().subList(0, 2),
+        descending.files().stream().map(FileDTO::id).toList());
+
+    // '_' 는 와일드카드가 아니라 문자로 취급되어야 합니다.
+    FilePageDTO prefixed = fileService.getFilePageInDirectory(folder.getId(), user.getId(),
+        new FilePageRequestDTO(null, 10, null, "note_", null, false));
+    Assertions.assertEquals(created.subList(0, 5),
+        prefixed.files().stream().map(FileDTO::id).toList());
+
+    FilePageDTO directories = fileService.getFileDTOPageByUserId(user.getId(),
+        new FilePageRequestDTO(null, 10, FileType.DIRECTORY, null, false, false));
+    Assertions.assertEquals(List.of(rootDirectory.getId(), folder.getId(), created.getLast()),
+        directories.files().stream().map(FileDTO::id).toList());
+    Assertions.assertNull(directories.nextCursor());
+
+    UserData stranger = userService.createUser("paging-stranger", "paging-password");
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> fileService.getFilePageInDirectory(folder.getId(), stranger.getId(),
+            new FilePageRequestDTO(null, 10, null, null, null, false)));
+  }
+}
@@ -1,6 +1,8 @@
 package moanote.backend.service;
 
 import moanote.backend.BackendApplication;
+import moanote.backend.domain.CRDTFugueTreeSnapshot;
+import moanote.backend.dto.CodeSearchHitDTO;
 import moanote.backend.dto.FileDTO;
 import moanote.backend.dto.GithubImportedRepositoryDTO;
 import moanote.backend.entity.File;
@@ -9,6 +11,7 @@ import moanote.backend.entity.Note.CodeLanguage;
 import moanote.backend.entity.Note.NoteType;
 import moanote.backend.entity.TextNoteSegment;
 import moanote.backend.entity.UserData;
+import moanote.backend.repository.ContentBlobRepository;
 import moanote.backend.repository.FileRepository;
 import moanote.backend.repository.TextNoteSegmentRepository;
 import moanote.backend.repository.GithubImportedRepositoryRepository;
@@ -47,6 +50,7 @@ import java.util.stream.StreamSupport;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
 @AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2, replace = AutoConfigureTestDatabase.Replace.ANY)
 @TestPropertySource("classpath:application.properties")
@@ -76,6 +80,18 @@ class GithubIntegrationServiceTest {
   @Autowired
   private FileUserDataRepository fileUserDataRepository;
 
+  @Autowired
+  private TextCollaborativeEditingService textCollaborativeEditingService;
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private ContentBlobService contentBlobService;
+
+  @Autowired
+  private ContentBlobRepository contentBlobRepository;
+
   private static final String REPOSITORY_NAME = "sample-repo";
 
   private Path workspace;
@@ -414,8 +430,7 @@ class GithubIntegrationServiceTest {
     List<TextNoteSegment> readmeSegments = textNoteSegmentRepository.findAllByNote(refreshedReadme.getNote());
     assertThat(readmeSegments).hasSize(1);
     TextNoteSegment updatedReadmeSegment = readmeSegments.getFirst();
-    assertThat(updatedReadmeSegment.getId()).isNotEqualTo(originalSegmentId);
-    assertThat(textNoteSegmentRepository.findById(originalSegmentId)).isEmpty();
+    assertThat(updatedReadmeSegment.getId()).isEqualTo(originalSegmentId);
     assertThat(readSegmentContent(updatedReadmeSegment)).isEqualTo("Updated README\n");
     assertThat(originalReadmeContent).isEqualTo("Hello Repo\n");
 
@@ -432,6 +447,103 @@ class GithubIntegrationServiceTest {
     assertThat(readSegmentContent(changelogSegments.getFirst())).isEqualTo("entry");
   }
 
+  @Test
+  @Transactional
+  void fetchRepositoryAppliesChangedLinesToOpenSession() throws Exception {
+    UserData user = userService.createUser("fetch-session-user", "password");
+    createRemoteCommit("README.md", "line 1\nline 2\nline 3\n", "Expand README");
+    githubIntegrationService.importRepository(user.getId(), remoteRepository.toUri().toString());
+    scheduleWorkspaceCleanup(user.getId());
+
+    File readmeFile = fileRepository.findFilesByDirectory(findImportedRepositoryDirectory(user)).stream()
+        .filter(file -> file.getName().equals("README.md"))
+        .findFirst()
+        .orElseThrow();
+    TextNoteSegment segment = textNoteSegmentRepository.findAllByNote(readmeFile.getNote()).getFirst();
+    textCollaborativeEditingService.participateSession(user.getId(), readmeFile.getNote().getId());
+    CRDTFugueTreeSnapshot beforeFetch = textCollaborativeEditingService
+        .snapshotSegment(readmeFile.getNote().getId(), segment.getId()).orElseThrow();
+
+    createRemoteCommit("README.md", "line 1\nline two\nline 3\n", "Edit README");
+    githubIntegrationService.fetchRepository(user.getId(), remoteRepository.toUri().toString(), "master");
+
+    CRDTFugueTreeSnapshot afterFetch = textCollaborativeEditingService
+        .snapshotSegment(readmeFile.getNote().getId(), segment.getId()).orElseThrow();
+    assertThat(afterFetch.getContent()).isEqualTo("line 1\nline two\nline 3\n");
+    // "line 2\n" 의 7 글자 삭제와 "line two\n" 의 9 글자 삽입만 적용됩니다.
+    assertThat(afterFetch.getVersion() - beforeFetch.getVersion()).isEqualTo(16);
+    assertThat(beforeFetch.getContent()).isEqualTo("line 1\nline 2\nline 3\n");
+    assertThat(readSegmentContent(segment)).isEqualTo("line 1\nline two\nline 3\n");
+    assertThat(textNoteSegmentRepository.findAllByNote(readmeFile.getNote()))
+        .extracting(TextNoteSegment::getId)
+        .containsExactly(segment.getId());
+  }
+
+  @Test
+  @Transactional
+  void searchRepositoryFindsLinesAndFollowsFetchedChanges() throws Exception {
+    UserData user = userService.createUser("code-search-user", "password");
+    createRemoteCommit("src/Util.java", "class Util {\n  static int parseCount(String s) {}\n}\n",
+        "Add util");
+    githubIntegrationService.importRepository(user.getId(), remoteRepository.toUri().toString());
+    scheduleWorkspaceCleanup(user.getId());
+    UUID repositoryId = findImportedRepositoryDirectory(user).getId();
+
+    List<CodeSearchHitDTO> hits = githubIntegrationService.searchRepository(user.getId(),
+        repositoryId, "class ", false, true, CodeSearchService.DEFAULT_MAX_HITS);
+    assertThat(hits).extracting(CodeSearchHitDTO::path)
+        .containsExactly("src/Main.java", "src/Util.java");
+    assertThat(githubIntegrationService.searchRepository(user.getId(), repositoryId,
+        "parse\\w+\\(", true, false, CodeSearchService.DEFAULT_MAX_HITS))
+        .extracting(CodeSearchHitDTO::lineNumber, CodeSearchHitDTO::line)
+        .containsExactly(tuple(2, "  static int parseCount(String s) {}"));
+
+    createRemoteCommit("src/Main.java", "class Main {\n  void parseArgs() {}\n}\n", "Parse args");
+    githubIntegrationService.fetchRepository(user.getId(), remoteRepository.toUri().toString(), "master");
+
+    assertThat(githubIntegrationService.searchRepository(user.getId(), repositoryId, "PARSE",
+        false, false, CodeSearchService.DEFAULT_MAX_HITS))
+        .extracting(CodeSearchHitDTO::path, CodeSearchHitDTO::lineNumber)
+        .containsExactly(tuple("src/Main.java", 2), tuple("src/Util.java", 2));
+    assertThat(githubIntegrationService.searchRepository(user.getId(), repositoryId, "Main {}",
+        false, true, CodeSearchService.DEFAULT_MAX_HITS)).isEmpty();
+
+    UserData otherUser = userService.createUser("code-search-other", "password");
+    assertThatThrownBy(() -> githubIntegrationService.searchRepository(otherUser.getId(),
+        repositoryId, "class", false, true, CodeSearchService.DEFAULT_MAX_HITS))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  @Transactional
+  void fetchingMultiSegmentNoteReleasesItsBlobs() throws Exception {
+    UserData user = userService.createUser("fetch-blob-user", "password");
+    String original = "// " + UUID.randomUUID() + "\n" + "class Original {}\n".repeat(10);
+    String originalHash = ContentBlobService.hash(original);
+    createRemoteCommit("src/Large.java", original, "Add large file");
+    githubIntegrationService.importRepository(user.getId(), remoteRepository.toUri().toString());
+    scheduleWorkspaceCleanup(user.getId());
+
+    File srcDirectory = fileRepository.findFilesByDirectory(findImportedRepositoryDirectory(user))
+        .stream().filter(file -> file.getName().equals("src")).findFirst().orElseThrow();
+    File largeFile = fileRepository.findFilesByDirectory(srcDirectory).stream()
+        .filter(file -> file.getName().equals("Large.java"))
+        .findFirst()
+        .orElseThrow();
+    TextNoteSegment added = noteService.createTextNoteSegment(largeFile.getNote().getId());
+    contentBlobService.share(added, original);
+    assertThat(contentBlobRepository.findRefCount(originalHash)).contains(2L);
+
+    // 세그먼트가 여러 개인 노트는 fetch 할 때 세그먼트를 다시 만듭니다.
+    createRemoteCommit("src/Large.java", original + "class Added {}\n", "Grow large file");
+    githubIntegrationService.fetchRepository(user.getId(), remoteRepository.toUri().toString(), "master");
+
+    assertThat(textNoteSegmentRepository.findAllByNote(largeFile.getNote())).hasSize(1);
+    assertThat(contentBlobRepository.findRefCount(originalHash)).contains(0L);
+    contentBlobService.deleteUnreferencedBlobs();
+    assertThat(contentBlobRepository.findRefCount(originalHash)).isEmpty();
+  }
+
   private void createRemoteCommit(String filePath, String content, String message) throws GitAPIException, IOException {
     Path updater = workspace.resolve("updater");
     if (Files.exists(updater)) {
@@ -0,0 +1,266 @@
+package moanote.backend.service;
+
+import moanote.backend.BackendApplication;
+import moanote.backend.domain.DiagramElementDocument;
+import moanote.backend.domain.HybridLogicalClock;
+import moanote.backend.domain.LWWDiagramElement;
+import moanote.backend.domain.LWWNoteContent;
+import moanote.backend.domain.LWWRegister;
+import moanote.backend.dto.LWWElementStateDTO;
+import moanote.backend.dto.LWWPatchDTO;
+import moanote.backend.dto.LWWStateDTO;
+import moanote.backend.entity.DiagramNoteSegment;
+import moanote.backend.entity.File;
+import moanote.backend.entity.File.FileType;
+import moanote.backend.entity.UserData;
+import moanote.backend.repository.DiagramNoteSegmentRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2, replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource(locations = "classpath:application.properties",
+    properties = "moanote.diagram.flush-interval-ms=3600000")
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = BackendApplication.class)
+class LWWCollaborativeEditingServiceTest {
+
+  @Autowired
+  private LWWCollaborativeEditingService lwwCollaborativeEditingService;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private FileService fileService;
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private DiagramNoteSegmentRepository diagramNoteSegmentRepository;
+
+  @Test
+  void winningEditsAreCoalescedUntilFlush() {
+    UserData user = userService.createUser("diagram-flush-user", "password");
+    UUID segmentId = createDiagramSegment(user);
+    lwwCollaborativeEditingService.participateSession(user.getId(), segmentId);
+
+    for (int timeStamp = 1; timeStamp <= 30; timeStamp++) {
+      lwwCollaborativeEditingService.editSegment(
+          new LWWStateDTO<>("user", timeStamp, new LWWNoteContent("drag " + timeStamp)), segmentId);
+    }
+
+    assertThat(readContent(segmentId)).isEmpty();
+
+    lwwCollaborativeEditingService.flushDirtySessions();
+
+    assertThat(readContent(segmentId)).isEqualTo("drag 30");
+  }
+
+  @Test
+  void elementEditsAndWholeContentShareOneState() {
+    UserData user = userService.createUser("diagram-element-user", "password");
+    UUID segmentId = createDiagramSegment(user);
+    lwwCollaborativeEditingService.participateSession(user.getId(), segmentId);
+    long now = HybridLogicalClock.pack(System.currentTimeMillis(), 0);
+
+    lwwCollaborativeEditingService.editElements(List.of(
+        new LWWElementStateDTO<>("shape-1", "user-a", now, new LWWDiagramElement("a")),
+        new LWWElementStateDTO<>("shape-2", "user-a", now, new LWWDiagramElement("b"))), segmentId);
+    LWWStateDTO<LWWNoteContent> state = lwwCollaborativeEditingService.getSessionState(segmentId);
+    assertThat(elementContents(state.value().content())).containsExactly("a", "b");
+
+    // 전체 content 편집이 요소 문서이면 바뀐 요소와 빠진 요소가 요소 상태에 반영됩니다.
+    // 요소 편집은 content 를 서버 시각으로 다시 쓰므로, 전체 편집은 그보다 나중이어야 이깁니다.
+    // 서버 시각은 다른 테스트가 보낸 시각을 따라 앞서 있을 수 있으므로 현재 상태의 시각을 기준으로 합니다.
+    long later = state.timeStamp() + 1;
+    String edited = DiagramElementDocument.serialize(Map.of("shape-1",
+        new LWWRegister.State<>("user-a", now, new LWWDiagramElement("moved"))));
+    var applied = lwwCollaborativeEditingService.editSegment(
+        new LWWStateDTO<>("user-b", later, new LWWNoteContent(edited)), segmentId);
+    assertThat(applied).isPresent();
+    assertThat(lwwCollaborativeEditingService.getElementStates(segmentId))
+        .extracting(LWWElementStateDTO::value)
+        .containsExactlyInAnyOrder(new LWWDiagramElement("moved"), null);
+
+    // 저장된 content 로 세션을 다시 만들어도 삭제된 요소가 늦은 편집으로 되살아나지 않습니다.
+    lwwCollaborativeEditingService.leaveSession(user.getId(), segmentId);
+    assertThat(elementContents(readContent(segmentId))).containsExactly("moved", null);
+    lwwCollaborativeEditingService.participateElementSession(user.getId(), segmentId);
+    assertThat(lwwCollaborativeEditingService.editElements(List.of(new LWWElementStateDTO<>(
+        "shape-2", "user-a", now + 1, new LWWDiagramElement("late"))), segmentId)).isEmpty();
+  }
+
+  @Test
+  void elementEditsDoNotOverwriteNonDocumentContent() {
+    UserData user = userService.createUser("diagram-legacy-user", "password");
+    UUID segmentId = createDiagramSegment(user);
+    lwwCollaborativeEditingService.participateSession(user.getId(), segmentId);
+    String legacy = "<svg><rect id=\"legacy\"/></svg>";
+    lwwCollaborativeEditingService.editSegment(
+        new LWWStateDTO<>("user-a", 1, new LWWNoteContent(legacy)), segmentId);
+    long now = HybridLogicalClock.pack(System.currentTimeMillis(), 0);
+
+    // 요소 문서가 아닌 content 는 요소 편집으로 덮어쓰지 않습니다.
+    assertThat(lwwCollaborativeEditingService.acceptsElementEdits(segmentId)).isFalse();
+    assertThat(lwwCollaborativeEditingService.editElements(List.of(new LWWElementStateDTO<>(
+        "shape-1", "user-b", now, new LWWDiagramElement("a"))), segmentId)).isEmpty();
+    assertThat(lwwCollaborativeEditingService.getSessionState(segmentId).value().content())
+        .isEqualTo(legacy);
+    assertThat(lwwCollaborativeEditingService.getElementStates(segmentId)).isEmpty();
+    lwwCollaborativeEditingService.flushDirtySessions();
+    assertThat(readContent(segmentId)).isEqualTo(legacy);
+
+    // 전체 content 를 다루는 참여자가 요소 문서를 저장하면 요소 편집을 받을 수 있습니다.
+    long later = HybridLogicalClock.pack(System.currentTimeMillis() + 1000, 0);
+    String migrated = DiagramElementDocument.serialize(Map.of("legacy",
+        new LWWRegister.State<>("user-a", later, new LWWDiagramElement(legacy))));
+    lwwCollaborativeEditingService.editSegment(
+        new LWWStateDTO<>("user-a", later, new LWWNoteContent(migrated)), segmentId);
+    assertThat(lwwCollaborativeEditingService.editElements(List.of(new LWWElementStateDTO<>(
+        "shape-1", "user-b", later + 1, new LWWDiagramElement("a"))), segmentId)).hasSize(1);
+    assertThat(elementContents(
+        lwwCollaborativeEditingService.getSessionState(segmentId).value().content()))
+        .containsExactly(legacy, "a");
+
+    // 요소 문서가 아닌 content 가 이겨도 요소 상태를 지우지 않으므로, 요소 문서로 돌아오면 요소가 남아 있습니다.
+    long latest = HybridLogicalClock.pack(System.currentTimeMillis() + 2000, 0);
+    lwwCollaborativeEditingService.editSegment(
+        new LWWStateDTO<>("user-a", latest, new LWWNoteContent(legacy)), segmentId);
+    assertThat(lwwCollaborativeEditingService.acceptsElementEdits(segmentId)).isFalse();
+    String restored = lwwCollaborativeEditingService.getSessionState(segmentId).value().content();
+    assertThat(restored).isEqualTo(legacy);
+  }
+
+  private static List<String> elementContents(String content) {
+    return DiagramElementDocument.parse(content).orElseThrow().values().stream()
+        .map(state -> state.value() == null ? null : state.value().content())
+        .toList();
+  }
+
+  @Test
+  void lastParticipantLeavingFlushesAndEvictsSession() {
+    UserData user = userService.createUser("diagram-leave-user", "password");
+    UUID segmentId = createDiagramSegment(user);
+    lwwCollaborativeEditingService.participateSession(user.getId(), segmentId);
+    lwwCollaborativeEditingService.editSegment(
+        new LWWStateDTO<>("user", 1, new LWWNoteContent("final")), segmentId);
+
+    lwwCollaborativeEditingService.leaveSession(user.getId(), segmentId);
+
+    assertThat(readContent(segmentId)).isEqualTo("final");
+    assertThat(lwwCollaborativeEditingService.participateSession(user.getId(), segmentId).value()
+        .content()).isEqualTo("final");
+  }
+
+  @Test
+  void evictionKeepsSessionThatGainedParticipants() {
+    UserData user = userService.createUser("diagram-evict-user", "password");
+    UUID segmentId = createDiagramSegment(user);
+    lwwCollaborativeEditingService.participateSession(user.getId(), segmentId);
+    lwwCollaborativeEditingService.editSegment(
+        new LWWStateDTO<>("user", 1, new LWWNoteContent("kept")), segmentId);
+
+    // 참여자가 남아 있으면 저장만 하고 세션은 제거하지 않으므로, 진행 중인 편집이 실패하지 않습니다.
+    lwwCollaborativeEditingService.evictSession(segmentId);
+
+    assertThat(readContent(segmentId)).isEqualTo("kept");
+    assertThat(lwwCollaborativeEditingService.editSegment(
+        new LWWStateDTO<>("user", 2, new LWWNoteContent("after")), segmentId)).isPresent();
+    assertThat(lwwCollaborativeEditingService.getUsersInSession(segmentId)).hasSize(1);
+  }
+
+  @Test
+  void losingEditsAreReportedWithCanonicalState() {
+    UserData user = userService.createUser("diagram-loser-user", "password");
+    UUID segmentId = createDiagramSegment(user);
+    lwwCollaborativeEditingService.participateSession(user.getId(), segmentId);
+    long now = HybridLogicalClock.pack(System.currentTimeMillis(), 0);
+
+    assertThat(lwwCollaborativeEditingService.editSegment(
+        new LWWStateDTO<>("user-b", now + 5, new LWWNoteContent("winner")), segmentId)).isPresent();
+    assertThat(lwwCollaborativeEditingService.editSegment(
+        new LWWStateDTO<>("user-a", now + 4, new LWWNoteContent("stale")), segmentId)).isEmpty();
+    assertThat(lwwCollaborativeEditingService.getSessionState(segmentId))
+        .isEqualTo(new LWWStateDTO<>("user-b", now + 5, new LWWNoteContent("winner")));
+
+    // 요소 편집은 요소 문서인 content 에만 적용되므로, 빈 다이어그램으로 되돌린 뒤 요소를 편집합니다.
+    lwwCollaborativeEditingService.editSegment(
+        new LWWStateDTO<>("user-b", now + 6, new LWWNoteContent("")), segmentId);
+    var applied = lwwCollaborativeEditingService.editElements(List.of(
+        new LWWElementStateDTO<>("shape-1", "user-b", now + 3, new LWWDiagramElement("kept")),
+        new LWWElementStateDTO<>("shape-1", "user-a", now + 2, new LWWDiagramElement("lost"))), segmentId);
+    assertThat(applied).extracting(LWWElementStateDTO::stateId).containsExactly("user-b");
+    assertThat(lwwCollaborativeEditingService.getElementStates(segmentId, List.of("shape-1", "missing")))
+        .containsExactly(new LWWElementStateDTO<>("shape-1", "user-b", now + 3, new LWWDiagramElement("kept")));
+  }
+
+  @Test
+  void timestampsAreIssuedAndValidatedByServerClock() {
+    UserData user = userService.createUser("diagram-clock-user", "password");
+    UUID segmentId = createDiagramSegment(user);
+    lwwCollaborativeEditingService.participateSession(user.getId(), segmentId);
+
+    var legacy = lwwCollaborativeEditingService.editSegment(
+        new LWWStateDTO<>("user-a", 7, new LWWNoteContent("legacy")), segmentId).orElseThrow();
+    assertThat(HybridLogicalClock.isHybrid(legacy.timeStamp())).isTrue();
+
+    long runaway = HybridLogicalClock.pack(System.currentTimeMillis() + 3_600_000L, 0);
+    assertThat(lwwCollaborativeEditingService.editSegment(
+        new LWWStateDTO<>("user-b", runaway, new LWWNoteContent("runaway")), segmentId)).isEmpty();
+
+    var next = lwwCollaborativeEditingService.editSegment(
+        new LWWStateDTO<>("user-c", 8, new LWWNoteContent("later")), segmentId).orElseThrow();
+    assertThat(next.timeStamp()).isGreaterThan(legacy.timeStamp());
+    assertThat(lwwCollaborativeEditingService.getSessionState(segmentId).value().content())
+        .isEqualTo("later");
+  }
+
+  @Test
+  void patchesApplyOnlyAgainstCurrentState() {
+    UserData user = userService.createUser("diagram-patch-user", "password");
+    UUID segmentId = createDiagramSegment(user);
+    lwwCollaborativeEditingService.participateSession(user.getId(), segmentId);
+    long now = HybridLogicalClock.pack(System.currentTimeMillis(), 0);
+    lwwCollaborativeEditingService.editSegment(
+        new LWWStateDTO<>("user-a", now, new LWWNoteContent("<rect x=1/>")), segmentId);
+
+    var applied = lwwCollaborativeEditingService.patchSegment(new LWWPatchDTO("user-a", now + 1,
+        "user-a", now, List.of(new LWWPatchDTO.Splice(8, 1, "25")), 12), segmentId);
+    assertThat(applied).isPresent();
+    assertThat(lwwCollaborativeEditingService.getSessionState(segmentId))
+        .isEqualTo(new LWWStateDTO<>("user-a", now + 1, new LWWNoteContent("<rect x=25/>")));
+
+    // 이미 지나간 상태를 기준으로 만든 patch 와 길이가 맞지 않는 patch 는 적용되지 않습니다.
+    assertThat(lwwCollaborativeEditingService.patchSegment(new LWWPatchDTO("user-b", now + 2,
+        "user-a", now, List.of(new LWWPatchDTO.Splice(8, 1, "3")), 11), segmentId)).isEmpty();
+    assertThat(lwwCollaborativeEditingService.patchSegment(new LWWPatchDTO("user-b", now + 2,
+        "user-a", now + 1, List.of(new LWWPatchDTO.Splice(8, 2, "3")), 12), segmentId)).isEmpty();
+    assertThat(lwwCollaborativeEditingService.getSessionState(segmentId).value().content())
+        .isEqualTo("<rect x=25/>");
+  }
+
+  private UUID createDiagramSegment(UserData user) {
+    File file = fileService.createFile(user.getId(), "diagram", FileType.DOCUMENT);
+    return noteService.createDiagramNoteSegment(file.getNote().getId()).getId();
+  }
+
+  private String readContent(UUID segmentId) {
+    return diagramNoteSegmentRepository.findById(segmentId).map(DiagramNoteSegment::getContent)
+        .orElseThrow();
+  }
+}
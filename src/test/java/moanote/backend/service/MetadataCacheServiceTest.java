@@ -0,0 +1,93 @@
+package moanote.backend.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import moanote.backend.BackendApplication;
+import moanote.backend.dto.CacheStatsDTO;
+import moanote.backend.dto.FileEditDTO;
+import moanote.backend.entity.File;
+import moanote.backend.entity.File.FileType;
+import moanote.backend.entity.UserData;
+import moanote.backend.repository.FileRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static moanote.backend.QueryCountAssertions.countStatements;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2, replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource("classpath:application.properties")
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = BackendApplication.class)
+class MetadataCacheServiceTest {
+
+  @Autowired
+  private MetadataCacheService metadataCacheService;
+
+  @Autowired
+  private FileService fileService;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private FileRepository fileRepository;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Test
+  void repeatedLookupsAreServedFromCache() {
+    UserData user = userService.createUser("metadata-user", "password");
+    File file = fileService.createFile(user.getId(), "doc.md", FileType.DOCUMENT);
+    metadataCacheService.getUser(user.getId());
+    fileService.getFileById(file.getId(), user.getId());
+    long usersHitsBefore = hits("metadata.users");
+    long filesHitsBefore = hits("metadata.files");
+
+    long statements = countStatements(entityManagerFactory, () -> {
+      for (int i = 0; i < 10; i++) {
+        assertThat(metadataCacheService.getUser(user.getId()).name()).isEqualTo("metadata-user");
+        assertThat(fileService.getFileById(file.getId(), user.getId()).name()).isEqualTo("doc.md");
+      }
+    });
+
+    assertThat(statements).isZero();
+    assertThat(hits("metadata.users")).isEqualTo(usersHitsBefore + 10);
+    assertThat(hits("metadata.files")).isEqualTo(filesHitsBefore + 10);
+  }
+
+  @Test
+  void renamingMovingAndDeletingInvalidateFileMetadata() {
+    UserData user = userService.createUser("metadata-editor", "password");
+    File root = fileRepository.getRootDirectory(user);
+    File directory = fileService.createFile(user.getId(), "dir", FileType.DIRECTORY, root.getId());
+    File file = fileService.createFile(user.getId(), "before.md", FileType.DOCUMENT);
+    assertThat(fileService.getFileById(file.getId(), user.getId()).name()).isEqualTo("before.md");
+
+    fileService.editFile(user.getId(), file.getId(), new FileEditDTO("after.md", root.getId()));
+    assertThat(fileService.getFileById(file.getId(), user.getId()).name()).isEqualTo("after.md");
+
+    fileService.moveFile(file.getId(), directory.getId());
+    assertThat(fileService.getFileById(file.getId(), user.getId()).dir()).isEqualTo(directory.getId());
+
+    fileService.deleteFile(directory.getId(), user.getId());
+    assertThat(metadataCacheService.findFile(file.getId())).isEmpty();
+    assertThat(metadataCacheService.findFile(directory.getId())).isEmpty();
+  }
+
+  private long hits(String name) {
+    return metadataCacheService.stats().stream()
+        .filter(stats -> stats.name().equals(name))
+        .mapToLong(CacheStatsDTO::hitCount)
+        .findFirst()
+        .orElseThrow();
+  }
+}
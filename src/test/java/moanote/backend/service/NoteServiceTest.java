@@ -3,11 +3,14 @@ package moanote.backend.service;
 import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 import moanote.backend.BackendApplication;
+import moanote.backend.dto.AddSegmentDTO;
+import moanote.backend.dto.SegmentType;
 import moanote.backend.entity.*;
 import moanote.backend.entity.File.FileType;
 import moanote.backend.repository.DiagramNoteSegmentRepository;
 import moanote.backend.repository.NoteRepository;
 import moanote.backend.repository.TextNoteSegmentRepository;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +22,16 @@ import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.util.Assert;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 
 @AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2, replace = AutoConfigureTestDatabase.Replace.ANY)
 @TestPropertySource("classpath:application.properties")
@@ -106,4 +119,67 @@ class NoteServiceTest {
     TextNoteSegment updated = textNoteSegmentRepository.findById(segment.getId()).orElseThrow();
     Assert.isTrue("hello".equals(updated.getContent()), "Updated content must be persisted");
   }
+
+  @Test
+  void segmentsKeepInsertionOrderAndMoveWithSingleRowUpdate() {
+    UserData user = userService.createUser("segment-order-user", "tester");
+    UserData reader = userService.createUser("segment-order-reader", "tester");
+    File file = fileService.createFile(user.getId(), "ordered", FileType.DOCUMENT);
+    UUID noteId = file.getNote().getId();
+    UUID first = noteService.createTextNoteSegment(noteId).getId();
+    UUID third = noteService.createDiagramNoteSegment(noteId).getId();
+    UUID second = noteService.createSegment(noteId, user.getId(),
+        new AddSegmentDTO(SegmentType.TEXT, first));
+    Assertions.assertEquals(List.of(first, second, third), segmentOrder(noteId, user));
+
+    noteService.moveSegment(noteId, third, null, user.getId());
+    Assertions.assertEquals(List.of(third, first, second), segmentOrder(noteId, user));
+
+    noteService.moveSegment(noteId, third, second, user.getId());
+    Assertions.assertEquals(List.of(first, second, third), segmentOrder(noteId, user));
+
+    noteService.moveSegment(noteId, first, second, user.getId());
+    Assertions.assertEquals(List.of(second, first, third), segmentOrder(noteId, user));
+
+    fileService.grantPermission(file.getId(), reader.getId(), FileUserData.Permission.READ);
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> noteService.moveSegment(noteId, first, null, reader.getId()));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> noteService.moveSegment(noteId, first, first, user.getId()));
+  }
+
+  @Test
+  void concurrentAppendsGetDistinctPositions() throws Exception {
+    UserData user = userService.createUser("segment-append-user", "tester");
+    UUID noteId = fileService.createFile(user.getId(), "appended", FileType.DOCUMENT).getNote()
+        .getId();
+    int appends = 8;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(appends);
+    try {
+      List<Future<TextNoteSegment>> segments = new ArrayList<>();
+      for (int i = 0; i < appends; i++) {
+        segments.add(executor.submit(() -> {
+          start.await();
+          return noteService.createTextNoteSegment(noteId);
+        }));
+      }
+      start.countDown();
+      for (Future<TextNoteSegment> segment : segments) {
+        segment.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    List<String> positions = textNoteSegmentRepository
+        .findAllByNoteIdsOrderByPosition(List.of(noteId)).stream()
+        .map(TextNoteSegment::getPosition).toList();
+    Assertions.assertEquals(appends, positions.size());
+    Assertions.assertEquals(appends, Set.copyOf(positions).size());
+  }
+
+  private List<UUID> segmentOrder(UUID noteId, UserData user) {
+    return List.copyOf(noteService.getNoteMetadata(noteId, user.getId()).segments().keySet());
+  }
 }
\ No newline at end of file
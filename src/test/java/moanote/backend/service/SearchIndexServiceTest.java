@@ -0,0 +1,153 @@
+package moanote.backend.service;
+
+import moanote.backend.BackendApplication;
+import moanote.backend.dto.SearchHitDTO;
+import moanote.backend.dto.SearchPageDTO;
+import moanote.backend.entity.File;
+import moanote.backend.entity.File.FileType;
+import moanote.backend.entity.FileUserData.Permission;
+import moanote.backend.entity.TextNoteSegment;
+import moanote.backend.entity.UserData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2, replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource("classpath:application.properties")
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = BackendApplication.class)
+class SearchIndexServiceTest {
+
+  @Autowired
+  private SearchIndexService searchIndexService;
+
+  @Autowired
+  private FileService fileService;
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private TextCollaborativeEditingService textCollaborativeEditingService;
+
+  private File createNoteWithContent(UserData owner, String name, UUID directoryId,
+      String content) {
+    File file = directoryId == null ? fileService.createFile(owner.getId(), name, FileType.DOCUMENT)
+        : fileService.createFile(owner.getId(), name, FileType.DOCUMENT, directoryId);
+    UUID noteId = file.getNote().getId();
+    TextNoteSegment segment = noteService.createTextNoteSegment(noteId);
+    textCollaborativeEditingService.reconcileSegment(noteId, segment, content, owner.getId());
+    return file;
+  }
+
+  private List<UUID> search(UserData user, String query) throws IOException {
+    searchIndexService.flushDirtyDocuments();
+    return searchIndexService.search(user.getId(), query, 0, SearchIndexService.MAX_PAGE_SIZE)
+        .hits().stream().map(hit -> hit.file().id()).toList();
+  }
+
+  @Test
+  void searchFindsContentAndNamesWithinAccessibleFiles() throws IOException {
+    UserData owner = userService.createUser("search-owner", "password");
+    UserData reader = userService.createUser("search-reader", "password");
+    File shared = fileService.createFile(owner.getId(), "shared", FileType.DIRECTORY);
+    File sharedNote = createNoteWithContent(owner, "meeting", shared.getId(),
+        "The quarterly roadmap covers the search backlog");
+    File privateNote = createNoteWithContent(owner, "diary", null,
+        "Roadmap thoughts that nobody else should read");
+
+    Assertions.assertEquals(List.of(sharedNote.getId()), search(owner, "quarterly ROADMAP"));
+    Assertions.assertEquals(List.of(sharedNote.getId()), search(owner, "meeting"));
+    Assertions.assertEquals(2, search(owner, "roadmap").size());
+    Assertions.assertTrue(search(reader, "roadmap").isEmpty());
+
+    // 디렉토리 권한은 하위 노트로 상속됩니다.
+    fileService.grantPermission(shared.getId(), reader.getId(), Permission.READ);
+    Assertions.assertEquals(List.of(sharedNote.getId()), search(reader, "roadmap"));
+
+    fileService.moveFile(privateNote.getId(), shared.getId());
+    Assertions.assertEquals(2, search(reader, "roadmap").size());
+
+    fileService.updateFileName(privateNote.getId(), "journal");
+    Assertions.assertEquals(List.of(privateNote.getId()), search(reader, "journal"));
+    Assertions.assertTrue(search(reader, "diary").isEmpty());
+
+    TextNoteSegment segment = noteService.createTextNoteSegment(sharedNote.getNote().getId());
+    textCollaborativeEditingService.reconcileSegment(sharedNote.getNote().getId(), segment,
+        "appendix about latency", owner.getId());
+    Assertions.assertEquals(List.of(sharedNote.getId()), search(reader, "latency roadmap"));
+
+    fileService.deleteFile(shared.getId(), owner.getId());
+    Assertions.assertTrue(search(owner, "roadmap").isEmpty());
+  }
+
+  @Test
+  void searchExcludesFilesRevokedInsideSharedDirectory() throws IOException {
+    UserData owner = userService.createUser("search-revoke-owner", "password");
+    UserData reader = userService.createUser("search-revoke-reader", "password");
+    File shared = fileService.createFile(owner.getId(), "shared", FileType.DIRECTORY);
+    File hidden = fileService.createFile(owner.getId(), "hidden", FileType.DIRECTORY,
+        shared.getId());
+    File visibleNote = createNoteWithContent(owner, "visible", shared.getId(), "telemetry plan");
+    File revokedNote = createNoteWithContent(owner, "revoked", shared.getId(), "telemetry costs");
+    File hiddenNote = createNoteWithContent(owner, "secret", hidden.getId(), "telemetry keys");
+    File regrantedNote = createNoteWithContent(owner, "public", hidden.getId(),
+        "telemetry dashboards");
+    fileService.grantPermission(shared.getId(), reader.getId(), Permission.READ);
+    Assertions.assertEquals(4, search(reader, "telemetry").size());
+
+    fileService.grantPermission(revokedNote.getId(), reader.getId(), Permission.NONE);
+    fileService.grantPermission(hidden.getId(), reader.getId(), Permission.NONE);
+    fileService.grantPermission(regrantedNote.getId(), reader.getId(), Permission.READ);
+    List<UUID> hits = search(reader, "telemetry");
+    Assertions.assertEquals(2, hits.size());
+    Assertions.assertTrue(hits.containsAll(List.of(visibleNote.getId(), regrantedNote.getId())));
+    Assertions.assertFalse(hits.contains(hiddenNote.getId()));
+    Assertions.assertEquals(4, search(owner, "telemetry").size());
+  }
+
+  @Test
+  void searchRanksAndPagesResults() throws IOException {
+    UserData owner = userService.createUser("search-pager", "password");
+    File nameMatch = createNoteWithContent(owner, "kubernetes", null, "cluster notes");
+    createNoteWithContent(owner, "first", null, "deploying kubernetes workloads");
+    createNoteWithContent(owner, "second", null, "kubernetes upgrade checklist");
+    searchIndexService.flushDirtyDocuments();
+
+    SearchPageDTO firstPage = searchIndexService.search(owner.getId(), "kubernetes", 0, 2);
+    SearchPageDTO secondPage = searchIndexService.search(owner.getId(), "kubernetes", 1, 2);
+    Assertions.assertEquals(3, firstPage.totalHits());
+    Assertions.assertEquals(2, firstPage.hits().size());
+    Assertions.assertEquals(1, secondPage.hits().size());
+    Assertions.assertEquals(nameMatch.getId(), firstPage.hits().getFirst().file().id());
+    Assertions.assertTrue(firstPage.hits().stream().map(SearchHitDTO::file)
+        .noneMatch(file -> file.id().equals(secondPage.hits().getFirst().file().id())));
+
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> searchIndexService.search(owner.getId(), " ", 0, 2));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> searchIndexService.search(owner.getId(), "kubernetes", 0,
+            SearchIndexService.MAX_PAGE_SIZE + 1));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> searchIndexService.search(owner.getId(), "kubernetes",
+            SearchIndexService.MAX_RESULT_WINDOW, 1));
+    Assertions.assertThrows(NoSuchElementException.class,
+        () -> searchIndexService.search(UUID.randomUUID(), "kubernetes", 0, 2));
+  }
+}
@@ -0,0 +1,136 @@
+package moanote.backend.service;
+
+import moanote.backend.BackendApplication;
+import moanote.backend.domain.SymbolLexer.Kind;
+import moanote.backend.dto.CacheStatsDTO;
+import moanote.backend.dto.FileCreateDTO;
+import moanote.backend.dto.SymbolDTO;
+import moanote.backend.entity.File;
+import moanote.backend.entity.File.FileType;
+import moanote.backend.entity.FileUserData.Permission;
+import moanote.backend.entity.Note.CodeLanguage;
+import moanote.backend.entity.TextNoteSegment;
+import moanote.backend.entity.UserData;
+import moanote.backend.service.SymbolIndexService.InvalidSymbolQueryException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2, replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource("classpath:application.properties")
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = BackendApplication.class)
+class SymbolIndexServiceTest {
+
+  @Autowired
+  private SymbolIndexService symbolIndexService;
+
+  @Autowired
+  private FileService fileService;
+
+  @Autowired
+  private NoteService noteService;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private TextCollaborativeEditingService textCollaborativeEditingService;
+
+  private UUID createCodeNote(UserData owner, UUID directoryId, String name,
+      CodeLanguage language) {
+    return fileService.createFile(directoryId, owner.getId(),
+        new FileCreateDTO(name, FileType.DOCUMENT, true, language)).id();
+  }
+
+  private TextNoteSegment addSegment(UserData owner, UUID noteId, String content) {
+    TextNoteSegment segment = noteService.createTextNoteSegment(noteId);
+    textCollaborativeEditingService.reconcileSegment(noteId, segment, content, owner.getId());
+    return segment;
+  }
+
+  private long hitCount() {
+    return symbolIndexService.stats().stream().mapToLong(CacheStatsDTO::hitCount).sum();
+  }
+
+  @Test
+  void outlineFollowsSegmentEdits() {
+    UserData owner = userService.createUser("symbol-owner", "password");
+    UUID noteId = createCodeNote(owner, null, "Main.java", CodeLanguage.JAVA);
+    TextNoteSegment first = addSegment(owner, noteId, "class Main {\n  void run() {}\n}\n");
+    TextNoteSegment second = addSegment(owner, noteId, "class Helper {\n}\n");
+
+    Assertions.assertEquals(List.of(
+        new SymbolDTO(noteId, first.getId(), "Main", Kind.TYPE, 1, 0),
+        new SymbolDTO(noteId, first.getId(), "run", Kind.FUNCTION, 2, 1),
+        new SymbolDTO(noteId, second.getId(), "Helper", Kind.TYPE, 1, 0)),
+        symbolIndexService.getOutline(noteId, owner.getId()));
+
+    // 바뀐 세그먼트만 다시 lexing 하고, 나머지 세그먼트는 cache 의 심볼을 사용합니다.
+    long hitsBefore = hitCount();
+    textCollaborativeEditingService.reconcileSegment(noteId, second,
+        "class Helper {\n  static int parse(String s) { return 0; }\n}\n", owner.getId());
+    Assertions.assertEquals(List.of("Main", "run", "Helper", "parse"),
+        symbolIndexService.getOutline(noteId, owner.getId()).stream().map(SymbolDTO::name)
+            .toList());
+    Assertions.assertEquals(hitsBefore + 1, hitCount());
+
+    UserData stranger = userService.createUser("symbol-stranger", "password");
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> symbolIndexService.getOutline(noteId, stranger.getId()));
+    Assertions.assertThrows(NoSuchElementException.class,
+        () -> symbolIndexService.getOutline(UUID.randomUUID(), owner.getId()));
+    File directory = fileService.createFile(owner.getId(), "symbol-directory", FileType.DIRECTORY);
+    Assertions.assertThrows(NoSuchElementException.class,
+        () -> symbolIndexService.getOutline(directory.getId(), owner.getId()));
+  }
+
+  @Test
+  void findSymbolsRanksMatchesUnderDirectory() {
+    UserData owner = userService.createUser("symbol-finder", "password");
+    File project = fileService.createFile(owner.getId(), "project", FileType.DIRECTORY);
+    UUID java = createCodeNote(owner, project.getId(), "Parser.java", CodeLanguage.JAVA);
+    UUID python = createCodeNote(owner, project.getId(), "tools.py", CodeLanguage.PYTHON);
+    UUID outside = createCodeNote(owner, null, "Other.java", CodeLanguage.JAVA);
+    addSegment(owner, java, "class TokenParser {\n  Token parse() {}\n}\n");
+    addSegment(owner, python, "def parse_args():\n    pass\n\nclass Parser:\n    pass\n");
+    addSegment(owner, outside, "class Parser {}\n");
+
+    List<SymbolDTO> symbols = symbolIndexService.findSymbols(project.getId(), owner.getId(),
+        "PARSE", SymbolIndexService.DEFAULT_SYMBOL_LIMIT);
+    Assertions.assertEquals(List.of("parse", "Parser", "parse_args", "TokenParser"),
+        symbols.stream().map(SymbolDTO::name).toList());
+    Assertions.assertTrue(symbols.stream().noneMatch(symbol -> symbol.fileId().equals(outside)));
+    Assertions.assertEquals(2, symbolIndexService.findSymbols(project.getId(), owner.getId(),
+        "parse", 2).size());
+
+    UserData stranger = userService.createUser("symbol-finder-stranger", "password");
+    IllegalArgumentException denied = Assertions.assertThrows(IllegalArgumentException.class,
+        () -> symbolIndexService.findSymbols(project.getId(), stranger.getId(), "parse", 10));
+    Assertions.assertFalse(denied instanceof InvalidSymbolQueryException);
+    Assertions.assertThrows(InvalidSymbolQueryException.class,
+        () -> symbolIndexService.findSymbols(project.getId(), owner.getId(), " ", 10));
+    Assertions.assertThrows(InvalidSymbolQueryException.class,
+        () -> symbolIndexService.findSymbols(project.getId(), stranger.getId(), "parse",
+            SymbolIndexService.MAX_SYMBOL_LIMIT + 1));
+
+    // 공유된 디렉토리 안에서 공유를 해제한 노트의 심볼은 찾지 않습니다.
+    fileService.grantPermission(project.getId(), stranger.getId(), Permission.READ);
+    fileService.grantPermission(python, stranger.getId(), Permission.NONE);
+    Assertions.assertEquals(List.of("parse", "TokenParser"),
+        symbolIndexService.findSymbols(project.getId(), stranger.getId(), "parse", 10).stream()
+            .map(SymbolDTO::name).toList());
+  }
+}